@@ -0,0 +1,65 @@
+package com.controller.config;
+
+import com.controller.model.ApiResponse;
+import com.controller.service.FileLeaseStore;
+import com.controller.service.LeaderElectionService;
+import com.controller.service.LeaseStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Active/standby wiring. controller.ha.lease-store=file enables it; with no
+ * LeaseStore bean the controller runs standalone. A standby answers only
+ * health, status and /ha; everything else gets 503 naming the leader.
+ */
+@Configuration
+public class HaConfig implements WebMvcConfigurer {
+
+    public static final String LEADER_HEADER = "X-Controller-Leader";
+
+    private final LeaderElectionService leadership;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public HaConfig(@Lazy LeaderElectionService leadership) {
+        this.leadership = leadership;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "controller.ha.lease-store", havingValue = "file")
+    public LeaseStore fileLeaseStore(@Value("${controller.ha.lease-file:controller-lease.json}") String file)
+            throws IOException {
+        return new FileLeaseStore(Path.of(file));
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+                    throws IOException {
+                if (leadership.isLeader()) return true;
+
+                String leaderUrl = leadership.getLeaderUrl();
+                if (leaderUrl != null) response.setHeader(LEADER_HEADER, leaderUrl);
+                response.setStatus(503);
+                response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                mapper.writeValue(response.getOutputStream(),
+                        ApiResponse.fail(503, "Standby controller; leader=" + leaderUrl));
+                return false;
+            }
+        }).excludePathPatterns("/ha/**", "/worker/health", "/worker/status", "/actuator/**", "/error");
+    }
+}
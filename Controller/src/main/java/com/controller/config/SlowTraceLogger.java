@@ -0,0 +1,114 @@
+package com.controller.config;
+
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Logs the span tree of every request slower than the threshold. Child spans
+ * are held per trace until the local root (the span whose parent is remote or
+ * absent) ends; the tree covers this process, and its traceId finds the
+ * matching trees on the other nodes.
+ */
+public class SlowTraceLogger implements SpanProcessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(SlowTraceLogger.class);
+
+    private final long thresholdNanos;
+    private final int maxPendingTraces;
+    private final Map<String, Queue<SpanData>> pending = new ConcurrentHashMap<>();
+    private final Queue<String> arrival = new ConcurrentLinkedQueue<>();
+
+    public SlowTraceLogger(long thresholdMs, int maxPendingTraces) {
+        this.thresholdNanos = thresholdMs * 1_000_000L;
+        this.maxPendingTraces = maxPendingTraces;
+    }
+
+    @Override
+    public void onStart(Context parentContext, ReadWriteSpan span) {
+    }
+
+    @Override
+    public boolean isStartRequired() {
+        return false;
+    }
+
+    @Override
+    public void onEnd(ReadableSpan span) {
+        SpanData data = span.toSpanData();
+        String traceId = data.getTraceId();
+        boolean localRoot = !data.getParentSpanContext().isValid() || data.getParentSpanContext().isRemote();
+
+        if (!localRoot) {
+            pending.computeIfAbsent(traceId, id -> {
+                arrival.add(id);
+                return new ConcurrentLinkedQueue<>();
+            }).add(data);
+            // spans that end after their root (e.g. a Kafka send acked late) would otherwise pile up
+            while (pending.size() > maxPendingTraces) {
+                String oldest = arrival.poll();
+                if (oldest == null) break;
+                pending.remove(oldest);
+            }
+            return;
+        }
+
+        Queue<SpanData> children = pending.remove(traceId);
+        if (data.getEndEpochNanos() - data.getStartEpochNanos() < thresholdNanos) return;
+
+        logger.warn("Slow request {} took {}ms trace={}\n{}",
+                data.getName(), String.format("%.1f", millis(data)), traceId, render(data, children));
+    }
+
+    @Override
+    public boolean isEndRequired() {
+        return true;
+    }
+
+    private static String render(SpanData root, Queue<SpanData> spans) {
+        Map<String, List<SpanData>> byParent = new HashMap<>();
+        if (spans != null) {
+            for (SpanData span : spans) {
+                byParent.computeIfAbsent(span.getParentSpanId(), id -> new ArrayList<>()).add(span);
+            }
+        }
+        StringBuilder out = new StringBuilder();
+        append(out, root, root.getStartEpochNanos(), byParent, 0);
+        return out.toString();
+    }
+
+    private static void append(StringBuilder out, SpanData span, long rootStart,
+                               Map<String, List<SpanData>> byParent, int depth) {
+        out.append("  ".repeat(depth + 1))
+                .append(span.getName())
+                .append(" +").append(String.format("%.1f", (span.getStartEpochNanos() - rootStart) / 1e6)).append("ms")
+                .append(' ').append(String.format("%.1f", millis(span))).append("ms");
+        if (span.getStatus().getStatusCode() == StatusCode.ERROR) out.append(" ERROR");
+        out.append('\n');
+
+        List<SpanData> children = byParent.get(span.getSpanId());
+        if (children == null) return;
+        children.sort(Comparator.comparingLong(SpanData::getStartEpochNanos));
+        for (SpanData child : children) {
+            append(out, child, rootStart, byParent, depth + 1);
+        }
+    }
+
+    private static double millis(SpanData span) {
+        return (span.getEndEpochNanos() - span.getStartEpochNanos()) / 1e6;
+    }
+}
@@ -0,0 +1,46 @@
+package com.controller.controller;
+
+import com.controller.model.ApiResponse;
+import com.controller.service.ClusterViewService;
+import com.controller.service.RebalanceService;
+import com.controller.service.ReplicaAssignmentService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/cluster")
+public class ClusterController {
+
+    @Autowired
+    private ClusterViewService clusterViewService;
+
+    @Autowired
+    private RebalanceService rebalanceService;
+
+    @Autowired
+    private ReplicaAssignmentService replicaAssignmentService;
+
+    /**
+     * The current cluster view. With since=epoch, only the membership and slot
+     * changes after that epoch; the full view when it is no longer in history.
+     */
+    @GetMapping("/view")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> view(@RequestParam(required = false) Long since) {
+        return ResponseEntity.ok(ApiResponse.success(200, clusterViewService.updateSince(since)));
+    }
+
+    /** Replica placement weight of each alive worker, with the capacity and load it came from. */
+    @GetMapping("/placement")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> placement() {
+        return ResponseEntity.ok(ApiResponse.success(200, replicaAssignmentService.snapshot()));
+    }
+
+    /** Slots queued and in migration, and what the rebalancer has moved so far. */
+    @GetMapping("/rebalance")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> rebalance() {
+        return ResponseEntity.ok(ApiResponse.success(200, rebalanceService.status()));
+    }
+}
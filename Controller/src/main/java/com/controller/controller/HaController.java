@@ -0,0 +1,78 @@
+package com.controller.controller;
+
+import com.controller.model.ApiResponse;
+import com.controller.model.ClusterView;
+import com.controller.service.ClusterViewService;
+import com.controller.service.LeaderElectionService;
+import com.controller.service.MetadataStore;
+import com.controller.service.WorkerRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.*;
+
+/** Leadership discovery for workers and clients, and the metadata stream a standby tails. */
+@RestController
+@RequestMapping("/ha")
+public class HaController {
+
+    @Autowired
+    private LeaderElectionService leadership;
+
+    @Autowired
+    private MetadataStore metadataStore;
+
+    @Autowired
+    private ClusterViewService clusterViewService;
+
+    @Autowired
+    private WorkerRegistry workerRegistry;
+
+    @GetMapping("/leader")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> leader() {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("nodeId", leadership.getNodeId());
+        payload.put("leader", leadership.isLeader());
+        payload.put("leaderUrl", leadership.getLeaderUrl());
+        payload.put("term", leadership.getTerm());
+        return ResponseEntity.ok(ApiResponse.success(200, payload));
+    }
+
+    /**
+     * Metadata journal entries after {@code after}, at most limit. When after
+     * is -1 or older than the journal keeps, a snapshot of the whole table
+     * instead. The cluster view and worker list ride along when the caller's
+     * viewEpoch is behind.
+     */
+    @GetMapping("/journal")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> journal(
+            @RequestParam long after,
+            @RequestParam(defaultValue = "1000") int limit,
+            @RequestParam(defaultValue = "-1") long viewEpoch) {
+
+        if (!leadership.isLeader())
+            return ResponseEntity.status(503).body(ApiResponse.fail(503, "Not the leader"));
+
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("term", leadership.getTerm());
+
+        List<MetadataStore.JournalEntry> entries = after < 0 ? null : metadataStore.journalAfter(after, limit);
+        if (entries == null) {
+            var snapshot = metadataStore.snapshot();
+            payload.put("snapshot", true);
+            payload.put("seq", snapshot.getKey());
+            payload.put("table", snapshot.getValue());
+        } else {
+            payload.put("snapshot", false);
+            payload.put("entries", entries);
+        }
+
+        ClusterView view = clusterViewService.current();
+        if (view.getEpoch() > viewEpoch) {
+            payload.put("view", view.toFull());
+            payload.put("workers", workerRegistry.snapshotUrls());
+        }
+        return ResponseEntity.ok(ApiResponse.success(200, payload));
+    }
+}
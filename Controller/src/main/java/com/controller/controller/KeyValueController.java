@@ -3,7 +3,11 @@ package com.controller.controller;
 import com.controller.model.ApiResponse;
 import com.controller.model.KeyMetadata;
 import com.controller.model.KeyValue;
+import com.controller.service.ClusterScanService;
 import com.controller.service.MetadataStore;
+import com.controller.service.RebalanceService;
+import com.controller.service.RequestMetrics;
+import com.controller.service.WorkerKeyFilters;
 import com.controller.service.WorkerManager;
 import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
@@ -11,17 +15,21 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 @RestController
 @RequestMapping("/")
 public class KeyValueController {
 
     private static final Logger logger = LoggerFactory.getLogger(KeyValueController.class);
-    private final RestTemplate restTemplate = new RestTemplate();
+    // traced: the primary's /put and /get continue the controller's trace
+    @Autowired
+    private RestTemplate restTemplate;
 
     @Autowired
     private WorkerManager workerManager;
@@ -29,8 +37,52 @@ public class KeyValueController {
     @Autowired
     private MetadataStore metadataStore;
 
+    @Autowired
+    private WorkerKeyFilters keyFilters;
+
+    @Autowired
+    private ClusterScanService clusterScanService;
+
+    @Autowired
+    private RequestMetrics requestMetrics;
+
+    @Autowired
+    private RebalanceService rebalanceService;
+
     @PutMapping("/put")
     public ResponseEntity<ApiResponse<String>> put(@RequestBody Map<String, String> body) {
+        long start = System.nanoTime();
+        AtomicReference<String> target = new AtomicReference<>();
+        ResponseEntity<ApiResponse<String>> response = doPut(body, target);
+        requestMetrics.record("put", target.get(), response, System.nanoTime() - start);
+        return response;
+    }
+
+    /**
+     * Writes several keys as one unit through their primary. All keys must
+     * hash to one slot: with controller.cluster-view.hash-tags on, give them a
+     * common {hash tag}. The primary applies and replicates the batch
+     * all-or-nothing. Body: {"entries": {k: v}, "ttl": s}.
+     */
+    @PutMapping("/mput")
+    public ResponseEntity<ApiResponse<String>> mput(@RequestBody Map<String, Object> body) {
+        long start = System.nanoTime();
+        AtomicReference<String> target = new AtomicReference<>();
+        ResponseEntity<ApiResponse<String>> response = doMput(body, target);
+        requestMetrics.record("mput", target.get(), response, System.nanoTime() - start);
+        return response;
+    }
+
+    @PostMapping("/get")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> get(@RequestBody Map<String, String> body) {
+        long start = System.nanoTime();
+        AtomicReference<String> target = new AtomicReference<>();
+        ResponseEntity<ApiResponse<Map<String, Object>>> response = doGet(body, target);
+        requestMetrics.record("get", target.get(), response, System.nanoTime() - start);
+        return response;
+    }
+
+    private ResponseEntity<ApiResponse<String>> doPut(Map<String, String> body, AtomicReference<String> target) {
         try {
             Optional<Map.Entry<String, String>> entryOpt = extractSingleEntry(body);
             if (entryOpt.isEmpty())
@@ -43,41 +95,112 @@ public class KeyValueController {
             if (isBlank(key) || isBlank(value))
                 return fail(400, "Key and value are required");
 
-            // Determine primary for key
-            KeyMetadata meta = metadataStore.get(key);
-            String primaryWorker;
-
-            if (meta == null) {
-                primaryWorker = workerManager.getWorkerForKey(key);
-                if (primaryWorker == null)
-                    return fail(503, "No active workers available");
-            } else {
-                primaryWorker = meta.getPrimaryReplica();
-            }
+            // Optional expiry in seconds, enforced and replicated by the workers
+            String ttl = body.get("ttl");
+            if (ttl != null && !isPositiveNumber(ttl))
+                return fail(400, "ttl must be a positive number of seconds");
 
-            Map<String, String> request = Map.of("key", key, "value", value);
+            // Optional per-put consistency level, applied by the primary worker
+            String consistency = body.get("consistency");
+            if (consistency != null && !isConsistencyLevel(consistency))
+                return fail(400, "consistency must be ONE, SYNC or ALL");
 
-            ResponseEntity<Map> response =
-                    restTemplate.postForEntity(primaryWorker + "/put", request, Map.class);
+            String ttlSeconds = ttl == null ? null : ttl.trim();
+            return rebalanceService.guarded(key, () -> store(key, value, ttlSeconds, consistency, target));
 
-            if (response == null || !response.getStatusCode().is2xxSuccessful())
-                return fail(503, "Primary worker failed to store key");
+        } catch (HttpStatusCodeException he) {
+            // memory admission control on the worker: surface it instead of masking as 503
+            if (he.getStatusCode().value() == 507)
+                return fail(507, "Primary worker memory limit reached");
+            return fail(503, "Failed to connect to primary worker: " + he.getMessage());
+        } catch (RestClientException re) {
+            return fail(503, "Failed to connect to primary worker: " + re.getMessage());
+        } catch (Exception e) {
+            return fail(500, "Internal server error: " + e.getMessage());
+        }
+    }
+
+    private ResponseEntity<ApiResponse<String>> store(String key, String value, String ttl, String consistency,
+                                                      AtomicReference<String> target) {
+        // Determine primary for key
+        KeyMetadata meta = metadataStore.get(key);
+        String primaryWorker;
+
+        if (meta == null) {
+            primaryWorker = workerManager.getWorkerForKey(key);
+            if (primaryWorker == null)
+                return fail(503, "No active workers available");
+        } else {
+            primaryWorker = meta.getPrimaryReplica();
+        }
+        target.set(primaryWorker);
+
+        Map<String, String> request = new HashMap<>();
+        request.put("key", key);
+        request.put("value", value);
+        if (ttl != null) request.put("ttl", ttl);
+        if (consistency != null) request.put("consistency", consistency.trim());
+
+        ResponseEntity<Map> response =
+                restTemplate.postForEntity(primaryWorker + "/put", request, Map.class);
+
+        if (response == null || !response.getStatusCode().is2xxSuccessful())
+            return fail(503, "Primary worker failed to store key");
+
+        Map<String, Object> resBody = response.getBody();
+        if (resBody == null) return fail(503, "Invalid worker response");
 
-            Map<String, Object> resBody = response.getBody();
-            if (resBody == null) return fail(503, "Invalid worker response");
+        Map<String, Object> payload = (Map<String, Object>) resBody.get("payload");
+        if (payload == null)
+            return fail(503, "Worker sent empty payload");
 
-            Map<String, Object> payload = (Map<String, Object>) resBody.get("payload");
-            if (payload == null)
-                return fail(503, "Worker sent empty payload");
+        // Worker sends sync replica
+        String syncReplica = (String) payload.get("syncReplica");
+
+        // a key of a slot being migrated is written to its new owner too
+        Map<String, Object> written = new HashMap<>();
+        written.put("value", value);
+        written.put("version", payload.get("version"));
+        written.put("expiresAt", payload.get("expiresAt"));
+        rebalanceService.mirror(key, primaryWorker, written);
+
+        KeyMetadata newMeta = new KeyMetadata(primaryWorker, syncReplica, null);
+        metadataStore.update(key, newMeta);
+        keyFilters.recordKey(primaryWorker, key);
+
+        return ok("Stored key=" + key + " on primary=" + primaryWorker + ", sync=" + syncReplica);
+    }
+
+    private ResponseEntity<ApiResponse<String>> doMput(Map<String, Object> body, AtomicReference<String> target) {
+        try {
+            if (!(body.get("entries") instanceof Map<?, ?> raw) || raw.isEmpty())
+                return fail(400, "entries (key -> value) are required");
+
+            Map<String, String> entries = new LinkedHashMap<>();
+            for (var e : raw.entrySet()) {
+                if (!(e.getKey() instanceof String key) || !(e.getValue() instanceof String value)
+                        || isBlank(key) || isBlank(value))
+                    return fail(400, "entries must map keys to non-empty values");
+                entries.put(key, value);
+            }
 
-            // Worker sends sync replica
-            String syncReplica = (String) payload.get("syncReplica");
+            String ttl = body.get("ttl") == null ? null : String.valueOf(body.get("ttl")).trim();
+            if (ttl != null && !isPositiveNumber(ttl))
+                return fail(400, "ttl must be a positive number of seconds");
 
-            KeyMetadata newMeta = new KeyMetadata(primaryWorker, syncReplica, null);
-            metadataStore.update(key, newMeta);
+            if (!rebalanceService.sameSlot(entries.keySet()))
+                return fail(400, "All keys of a batch must hash to one slot"
+                        + (rebalanceService.hashTags() ? "; give them a common {hash tag}" : ""));
 
-            return ok("Stored key=" + key + " on primary=" + primaryWorker + ", sync=" + syncReplica);
+            String first = entries.keySet().iterator().next();
+            return rebalanceService.guarded(first, () -> storeAll(first, entries, ttl, target));
 
+        } catch (HttpStatusCodeException he) {
+            // refused by the primary: a key it does not own, a bad batch, or no memory
+            int code = he.getStatusCode().value();
+            if (code == 400 || code == 409 || code == 507)
+                return fail(code, "Primary worker refused batch: " + he.getMessage());
+            return fail(503, "Failed to connect to primary worker: " + he.getMessage());
         } catch (RestClientException re) {
             return fail(503, "Failed to connect to primary worker: " + re.getMessage());
         } catch (Exception e) {
@@ -85,8 +208,58 @@ public class KeyValueController {
         }
     }
 
-    @PostMapping("/get")
-    public ResponseEntity<ApiResponse<Map<String, Object>>> get(@RequestBody Map<String, String> body) {
+    private ResponseEntity<ApiResponse<String>> storeAll(String first, Map<String, String> entries, String ttl,
+                                                         AtomicReference<String> target) {
+        // keys already stored name their primary; one batch cannot span two
+        Set<String> primaries = new HashSet<>();
+        for (String key : entries.keySet()) {
+            KeyMetadata meta = metadataStore.get(key);
+            if (meta != null) primaries.add(meta.getPrimaryReplica());
+        }
+        if (primaries.size() > 1)
+            return fail(409, "Keys of the batch are stored on different primaries: " + primaries);
+
+        String primaryWorker = primaries.isEmpty()
+                ? workerManager.getWorkerForKey(first)
+                : primaries.iterator().next();
+        if (primaryWorker == null)
+            return fail(503, "No active workers available");
+        target.set(primaryWorker);
+
+        Map<String, Object> request = new HashMap<>();
+        request.put("entries", entries);
+        if (ttl != null) request.put("ttl", ttl);
+
+        ResponseEntity<Map> response =
+                restTemplate.postForEntity(primaryWorker + "/mput", request, Map.class);
+
+        Map<String, Object> resBody = response.getBody();
+        Map<String, Object> payload = resBody == null ? null : (Map<String, Object>) resBody.get("payload");
+        if (payload == null || !(payload.get("entries") instanceof Map<?, ?> stored))
+            return fail(503, "Invalid worker response");
+
+        // one metadata rewrite for the whole batch
+        Map<String, KeyMetadata> updates = new HashMap<>();
+        for (var e : entries.entrySet()) {
+            Map<String, Object> replicas = (Map<String, Object>) stored.get(e.getKey());
+            if (replicas == null) continue;
+
+            Map<String, Object> written = new HashMap<>();
+            written.put("value", e.getValue());
+            written.put("version", replicas.get("version"));
+            written.put("expiresAt", payload.get("expiresAt"));
+            rebalanceService.mirror(e.getKey(), primaryWorker, written);
+
+            updates.put(e.getKey(), new KeyMetadata(primaryWorker, (String) replicas.get("syncReplica"), null));
+        }
+        metadataStore.updateAll(updates);
+        updates.keySet().forEach(key -> keyFilters.recordKey(primaryWorker, key));
+
+        return ok("Stored " + updates.size() + " keys on primary=" + primaryWorker);
+    }
+
+    private ResponseEntity<ApiResponse<Map<String, Object>>> doGet(Map<String, String> body,
+                                                                   AtomicReference<String> target) {
         try {
             Optional<String> keyOpt = extractSingleKey(body);
             if (keyOpt.isEmpty() || isBlank(keyOpt.get()))
@@ -101,6 +274,12 @@ public class KeyValueController {
                         .body(ApiResponse.fail(404, "No metadata available for key=" + key));
 
             String primaryUrl = meta.getPrimaryReplica();
+            target.set(primaryUrl);
+
+            // Skip the network hop when the primary's key filter proves the key is absent
+            if (!keyFilters.mightContain(primaryUrl, key))
+                return ResponseEntity.status(404)
+                        .body(ApiResponse.fail(404, "Key not found"));
 
             Map<String, String> req = Map.of("key", key);
 
@@ -130,6 +309,93 @@ public class KeyValueController {
     }
 
 
+    @PostMapping("/delete")
+    public ResponseEntity<ApiResponse<String>> delete(@RequestBody Map<String, String> body) {
+        Optional<String> keyOpt = extractSingleKey(body);
+        if (keyOpt.isEmpty() || isBlank(keyOpt.get()))
+            return fail(400, "Key is required");
+
+        String key = keyOpt.get();
+
+        try {
+            return rebalanceService.guarded(key, () -> remove(key));
+        } catch (HttpStatusCodeException he) {
+            if (he.getStatusCode().value() == 404) {
+                metadataStore.remove(key);
+                return fail(404, "Key not found");
+            }
+            return fail(503, "Primary worker failed to delete key: " + he.getMessage());
+        } catch (RestClientException re) {
+            return fail(503, "Failed to connect to primary worker: " + re.getMessage());
+        } catch (Exception e) {
+            return fail(500, "Internal server error: " + e.getMessage());
+        }
+    }
+
+    private ResponseEntity<ApiResponse<String>> remove(String key) {
+        KeyMetadata meta = metadataStore.get(key);
+        if (meta == null || meta.getPrimaryReplica() == null)
+            return fail(404, "No metadata available for key=" + key);
+
+        String primaryUrl = meta.getPrimaryReplica();
+
+        // Primary holds no live copy: only the stale metadata is left to drop
+        if (!keyFilters.mightContain(primaryUrl, key)) {
+            metadataStore.remove(key);
+            return fail(404, "Key not found");
+        }
+
+        // The primary writes a tombstone and replicates it to the sync and async replicas
+        ResponseEntity<Map> response =
+                restTemplate.postForEntity(primaryUrl + "/delete", Map.of("key", key), Map.class);
+
+        if (response.getBody() != null && response.getBody().get("payload") instanceof Map payload) {
+            Map<String, Object> tombstone = new HashMap<>();
+            tombstone.put("tombstone", true);
+            tombstone.put("version", payload.get("version"));
+            rebalanceService.mirror(key, primaryUrl, tombstone);
+        }
+
+        metadataStore.remove(key);
+        return ok("Deleted key=" + key + " on primary=" + primaryUrl);
+    }
+
+    /**
+     * Ordered scan across all primaries. Optional start (inclusive), end
+     * (exclusive), prefix, limit, and after (the nextCursor of the previous page).
+     */
+    @PostMapping("/scan")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> scan(@RequestBody Map<String, Object> body) {
+        try {
+            int limit = 100;
+            if (body.get("limit") instanceof Number n) limit = n.intValue();
+            if (limit <= 0 || limit > 10000)
+                return ResponseEntity.status(400)
+                        .body(ApiResponse.fail(400, "limit must be between 1 and 10000"));
+
+            Map<String, Object> page = clusterScanService.scan(
+                    (String) body.get("start"),
+                    (String) body.get("end"),
+                    (String) body.get("prefix"),
+                    (String) body.get("after"),
+                    limit
+            );
+
+            return ResponseEntity.ok(ApiResponse.success(200, page));
+
+        } catch (ClassCastException e) {
+            return ResponseEntity.status(400)
+                    .body(ApiResponse.fail(400, "start, end, prefix and after must be strings"));
+        } catch (RestClientException re) {
+            // a missing worker would silently drop its keys from the range
+            return ResponseEntity.status(503)
+                    .body(ApiResponse.fail(503, "Scan failed on a worker: " + re.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500)
+                    .body(ApiResponse.fail(500, e.getMessage()));
+        }
+    }
+
     @PostMapping("/notify/async")
     public ResponseEntity<ApiResponse<String>> notifyAsync(
             @RequestBody Map<String, String> body,
@@ -186,6 +452,7 @@ public class KeyValueController {
                 meta.setPrimaryReplica(newPrimary);
 
             metadataStore.update(key, meta);
+            keyFilters.recordKey(newPrimary, key);
 
             return ResponseEntity.ok(
                     ApiResponse.success(
@@ -200,7 +467,49 @@ public class KeyValueController {
         }
     }
 
-    private Optional<Map.Entry<String, String>> extractSingleEntry(Map<String, String> body) {
+    /**
+     * Keys a worker dropped on its own, evicted or expired, with the version
+     * each last had: their metadata goes while it still names that worker as
+     * primary, and a slot migrating away gets a tombstone too.
+     */
+    @PostMapping("/notify/removed")
+    public ResponseEntity<ApiResponse<String>> notifyRemoved(@RequestBody Map<String, Object> body) {
+        try {
+            if (!(body.get("worker") instanceof String worker) || worker.isBlank())
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.fail(400, "Worker URL missing"));
+
+            if (!(body.get("keys") instanceof Map<?, ?> keys))
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.fail(400, "Keys required"));
+
+            int removed = 0;
+            for (var e : keys.entrySet()) {
+                String key = (String) e.getKey();
+                boolean dropped = rebalanceService.guarded(key, () -> {
+                    KeyMetadata meta = metadataStore.get(key);
+                    if (meta == null || !worker.equals(meta.getPrimaryReplica())) return false;
+
+                    Map<String, Object> tombstone = new HashMap<>();
+                    tombstone.put("tombstone", true);
+                    tombstone.put("version", e.getValue());
+                    rebalanceService.mirror(key, worker, tombstone);
+                    metadataStore.remove(key);
+                    return true;
+                });
+                if (dropped) removed++;
+            }
+
+            return ResponseEntity.ok(ApiResponse.success(
+                    200, "Removed " + removed + " of " + keys.size() + " keys on " + worker));
+
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.fail(500, e.getMessage()));
+        }
+    }
+
+    static Optional<Map.Entry<String, String>> extractSingleEntry(Map<String, String> body) {
         if (body == null || body.isEmpty()) return Optional.empty();
         if (body.containsKey("key") && body.containsKey("value"))
             return Optional.of(Map.entry(body.get("key"), body.get("value")));
@@ -211,17 +520,30 @@ public class KeyValueController {
         return Optional.empty();
     }
 
-    private Optional<String> extractSingleKey(Map<String, String> body) {
+    static Optional<String> extractSingleKey(Map<String, String> body) {
         if (body == null || body.isEmpty()) return Optional.empty();
         if (body.containsKey("key")) return Optional.of(body.get("key"));
         if (body.size() == 1) return Optional.of(body.keySet().iterator().next());
         return Optional.empty();
     }
 
-    private boolean isBlank(String s) {
+    static boolean isBlank(String s) {
         return s == null || s.trim().isEmpty();
     }
 
+    static boolean isConsistencyLevel(String s) {
+        String level = s.trim().toUpperCase(Locale.ROOT);
+        return level.equals("ONE") || level.equals("SYNC") || level.equals("ALL");
+    }
+
+    static boolean isPositiveNumber(String s) {
+        try {
+            return Long.parseLong(s.trim()) > 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
     private ResponseEntity<ApiResponse<String>> fail(int code, String msg) {
         return ResponseEntity.status(code).body(ApiResponse.fail(code, msg));
     }
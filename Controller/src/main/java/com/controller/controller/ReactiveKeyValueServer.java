@@ -0,0 +1,349 @@
+package com.controller.controller;
+
+import com.controller.config.HaConfig;
+import com.controller.model.ApiResponse;
+import com.controller.model.KeyMetadata;
+import com.controller.service.LeaderElectionService;
+import com.controller.service.MetadataStore;
+import com.controller.service.RebalanceService;
+import com.controller.service.RequestMetrics;
+import com.controller.service.WorkerKeyFilters;
+import com.controller.service.WorkerManager;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.ByteBufFlux;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Non-blocking alternative to KeyValueController's put, get and delete, served
+ * by Reactor Netty on controller.reactive.port. An in-flight request holds no
+ * thread while its worker call is outstanding, so concurrency is bounded by
+ * connections rather than Tomcat's pool. Replies use the same ApiResponse
+ * contract; a successful get streams the primary's body through unchanged.
+ * The metadata fsync after a put stays blocking and runs on boundedElastic.
+ */
+@Component
+public class ReactiveKeyValueServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveKeyValueServer.class);
+    private static final TypeReference<Map<String, String>> STRING_MAP = new TypeReference<>() {};
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final WorkerManager workerManager;
+    private final MetadataStore metadataStore;
+    private final WorkerKeyFilters keyFilters;
+    private final RequestMetrics requestMetrics;
+    private final RebalanceService rebalanceService;
+    private final LeaderElectionService leadership;
+
+    private final int port;
+    private final HttpClient client;
+    private volatile DisposableServer server;
+
+    private record Reply(int status, ApiResponse<?> body) {}
+    private record WorkerReply(int status, String body) {}
+
+    public ReactiveKeyValueServer(WorkerManager workerManager,
+                                  MetadataStore metadataStore,
+                                  WorkerKeyFilters keyFilters,
+                                  RequestMetrics requestMetrics,
+                                  RebalanceService rebalanceService,
+                                  LeaderElectionService leadership,
+                                  @Value("${controller.reactive.port:-1}") int port,
+                                  @Value("${controller.reactive.max-connections:500}") int maxConnections,
+                                  @Value("${controller.reactive.response-timeout-ms:10000}") long responseTimeoutMs) {
+        this.workerManager = workerManager;
+        this.metadataStore = metadataStore;
+        this.keyFilters = keyFilters;
+        this.requestMetrics = requestMetrics;
+        this.rebalanceService = rebalanceService;
+        this.leadership = leadership;
+        this.port = port;
+
+        // requests beyond max-connections per worker wait for a connection; they hold no thread meanwhile
+        ConnectionProvider pool = ConnectionProvider.builder("controller-workers")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(-1)
+                .build();
+        this.client = HttpClient.create(pool)
+                .responseTimeout(Duration.ofMillis(responseTimeoutMs))
+                .headers(h -> h.set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (port < 0) return;
+        server = HttpServer.create()
+                .port(port)
+                .route(routes -> routes
+                        .put("/put", this::put)
+                        .post("/get", this::get)
+                        .post("/delete", this::delete))
+                .bindNow();
+        logger.info("Reactive data path listening on port {}", server.port());
+    }
+
+    /** Bound port, or -1 when the reactive data path is off. */
+    public int getPort() {
+        DisposableServer s = server;
+        return s == null ? -1 : s.port();
+    }
+
+    @PreDestroy
+    public void stop() {
+        DisposableServer s = server;
+        if (s != null) s.disposeNow();
+    }
+
+    private Mono<Void> put(HttpServerRequest request, HttpServerResponse response) {
+        long start = System.nanoTime();
+        String[] target = new String[1];
+        Mono<Reply> reply = readBody(request).flatMap(body -> {
+            Optional<Map.Entry<String, String>> entry = KeyValueController.extractSingleEntry(body);
+            if (entry.isEmpty()) return fail(400, "Key and value are required");
+
+            String key = entry.get().getKey();
+            String value = entry.get().getValue();
+            if (KeyValueController.isBlank(key) || KeyValueController.isBlank(value))
+                return fail(400, "Key and value are required");
+
+            String ttl = body.get("ttl");
+            if (ttl != null && !KeyValueController.isPositiveNumber(ttl))
+                return fail(400, "ttl must be a positive number of seconds");
+
+            String consistency = body.get("consistency");
+            if (consistency != null && !KeyValueController.isConsistencyLevel(consistency))
+                return fail(400, "consistency must be ONE, SYNC or ALL");
+
+            String ttlSeconds = ttl == null ? null : ttl.trim();
+            return Mono.usingWhen(enterSlot(key),
+                    stamp -> store(key, value, ttlSeconds, consistency, target),
+                    stamp -> Mono.fromRunnable(() -> rebalanceService.exit(key, stamp)));
+        });
+        return respond("put", request, response, reply, target, start);
+    }
+
+    private Mono<Reply> store(String key, String value, String ttl, String consistency, String[] target) {
+        KeyMetadata meta = metadataStore.get(key);
+        String primaryWorker = meta == null ? workerManager.getWorkerForKey(key) : meta.getPrimaryReplica();
+        if (primaryWorker == null) return fail(503, "No active workers available");
+        target[0] = primaryWorker;
+
+        Map<String, String> request = new HashMap<>();
+        request.put("key", key);
+        request.put("value", value);
+        if (ttl != null) request.put("ttl", ttl);
+        if (consistency != null) request.put("consistency", consistency.trim());
+
+        return post(primaryWorker + "/put", request).flatMap(worker -> {
+            if (worker.status() == 507) return fail(507, "Primary worker memory limit reached");
+            if (worker.status() / 100 != 2)
+                return fail(503, "Failed to connect to primary worker: status " + worker.status());
+
+            Map<String, Object> payload = payloadOf(worker.body());
+            if (payload == null) return fail(503, "Worker sent empty payload");
+            String syncReplica = (String) payload.get("syncReplica");
+
+            // mirroring and the metadata fsync block: keep them off the event loop
+            return Mono.fromCallable(() -> {
+                Map<String, Object> written = new HashMap<>();
+                written.put("value", value);
+                written.put("version", payload.get("version"));
+                written.put("expiresAt", payload.get("expiresAt"));
+                rebalanceService.mirror(key, primaryWorker, written);
+
+                metadataStore.update(key, new KeyMetadata(primaryWorker, syncReplica, null));
+                keyFilters.recordKey(primaryWorker, key);
+                return new Reply(200, ApiResponse.success(200,
+                        "Stored key=" + key + " on primary=" + primaryWorker + ", sync=" + syncReplica));
+            }).subscribeOn(Schedulers.boundedElastic());
+        });
+    }
+
+    private Mono<Void> get(HttpServerRequest request, HttpServerResponse response) {
+        long start = System.nanoTime();
+        if (!leadership.isLeader()) return standby(response);
+
+        return readBody(request).flatMap(body -> {
+            Optional<String> keyOpt = KeyValueController.extractSingleKey(body);
+            if (keyOpt.isEmpty() || KeyValueController.isBlank(keyOpt.get()))
+                return send("get", response, null, new Reply(400, ApiResponse.fail(400, "Key is required")), start);
+
+            String key = keyOpt.get();
+            KeyMetadata meta = metadataStore.get(key);
+            if (meta == null || meta.getPrimaryReplica() == null)
+                return send("get", response, null,
+                        new Reply(404, ApiResponse.fail(404, "No metadata available for key=" + key)), start);
+
+            String primaryUrl = meta.getPrimaryReplica();
+            if (!keyFilters.mightContain(primaryUrl, key))
+                return send("get", response, primaryUrl, new Reply(404, ApiResponse.fail(404, "Key not found")), start);
+
+            // the primary answers in the same ApiResponse shape: pass its body through as it arrives
+            return client.post()
+                    .uri(primaryUrl + "/get")
+                    .send(ByteBufFlux.fromString(Mono.just(json(Map.of("key", key)))))
+                    .response((workerResponse, content) -> {
+                        int status = workerResponse.status().code();
+                        if (status / 100 == 2 || status == 404) {
+                            requestMetrics.record("get", primaryUrl, status, System.nanoTime() - start);
+                            return response.status(status)
+                                    .header(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON)
+                                    .send(content.retain())
+                                    .then();
+                        }
+                        return content.then().then(send("get", response, primaryUrl,
+                                new Reply(503, ApiResponse.fail(503, "Primary replica unreachable")), start));
+                    })
+                    .then()
+                    .onErrorResume(e -> send("get", response, primaryUrl,
+                            new Reply(503, ApiResponse.fail(503, "Primary replica unreachable: " + e.getMessage())), start));
+        }).onErrorResume(e -> send("get", response, null, new Reply(500, ApiResponse.fail(500, e.getMessage())), start));
+    }
+
+    private Mono<Void> delete(HttpServerRequest request, HttpServerResponse response) {
+        long start = System.nanoTime();
+        String[] target = new String[1];
+        Mono<Reply> reply = readBody(request).flatMap(body -> {
+            Optional<String> keyOpt = KeyValueController.extractSingleKey(body);
+            if (keyOpt.isEmpty() || KeyValueController.isBlank(keyOpt.get()))
+                return fail(400, "Key is required");
+
+            String key = keyOpt.get();
+            return Mono.usingWhen(enterSlot(key),
+                    stamp -> remove(key, target),
+                    stamp -> Mono.fromRunnable(() -> rebalanceService.exit(key, stamp)));
+        });
+        return respond("delete", request, response, reply, target, start);
+    }
+
+    private Mono<Reply> remove(String key, String[] target) {
+        KeyMetadata meta = metadataStore.get(key);
+        if (meta == null || meta.getPrimaryReplica() == null)
+            return fail(404, "No metadata available for key=" + key);
+
+        String primaryUrl = meta.getPrimaryReplica();
+        target[0] = primaryUrl;
+        if (!keyFilters.mightContain(primaryUrl, key)) {
+            metadataStore.remove(key);
+            return fail(404, "Key not found");
+        }
+
+        return post(primaryUrl + "/delete", Map.of("key", key)).flatMap(worker -> {
+            if (worker.status() == 404) {
+                metadataStore.remove(key);
+                return fail(404, "Key not found");
+            }
+            if (worker.status() / 100 != 2)
+                return fail(503, "Primary worker failed to delete key: status " + worker.status());
+
+            Map<String, Object> payload = payloadOf(worker.body());
+            return Mono.fromCallable(() -> {
+                if (payload != null) {
+                    Map<String, Object> tombstone = new HashMap<>();
+                    tombstone.put("tombstone", true);
+                    tombstone.put("version", payload.get("version"));
+                    rebalanceService.mirror(key, primaryUrl, tombstone);
+                }
+                metadataStore.remove(key);
+                return new Reply(200, ApiResponse.success(200, "Deleted key=" + key + " on primary=" + primaryUrl));
+            }).subscribeOn(Schedulers.boundedElastic());
+        });
+    }
+
+    /** A read stamp on key's slot; only waits, off the event loop, while the slot switches owner. */
+    private Mono<Long> enterSlot(String key) {
+        long stamp = rebalanceService.tryEnter(key);
+        if (stamp != 0) return Mono.just(stamp);
+        return Mono.fromCallable(() -> rebalanceService.enter(key)).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Mono<WorkerReply> post(String url, Map<String, String> body) {
+        return client.post()
+                .uri(url)
+                .send(ByteBufFlux.fromString(Mono.just(json(body))))
+                .responseSingle((workerResponse, content) -> content.asString()
+                        .defaultIfEmpty("")
+                        .map(text -> new WorkerReply(workerResponse.status().code(), text)));
+    }
+
+    private Mono<Void> respond(String op, HttpServerRequest request, HttpServerResponse response,
+                               Mono<Reply> reply, String[] target, long start) {
+        if (!leadership.isLeader()) return standby(response);
+        return reply
+                .onErrorResume(e -> fail(503, "Failed to connect to primary worker: " + e.getMessage()))
+                .flatMap(r -> send(op, response, target[0], r, start));
+    }
+
+    private Mono<Void> send(String op, HttpServerResponse response, String target, Reply reply, long start) {
+        requestMetrics.record(op, target, reply.status(), System.nanoTime() - start);
+        return response.status(reply.status())
+                .header(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON)
+                .sendString(Mono.just(json(reply.body())))
+                .then();
+    }
+
+    private Mono<Void> standby(HttpServerResponse response) {
+        String leaderUrl = leadership.getLeaderUrl();
+        if (leaderUrl != null) response.header(HaConfig.LEADER_HEADER, leaderUrl);
+        return response.status(503)
+                .header(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON)
+                .sendString(Mono.just(json(ApiResponse.fail(503, "Standby controller; leader=" + leaderUrl))))
+                .then();
+    }
+
+    private Mono<Map<String, String>> readBody(HttpServerRequest request) {
+        return request.receive().aggregate().asString()
+                .defaultIfEmpty("")
+                .map(text -> {
+                    try {
+                        return text.isBlank() ? Map.<String, String>of() : mapper.readValue(text, STRING_MAP);
+                    } catch (Exception e) {
+                        return Map.<String, String>of();
+                    }
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> payloadOf(String body) {
+        try {
+            Map<String, Object> map = mapper.readValue(body, Map.class);
+            return map == null ? null : (Map<String, Object>) map.get("payload");
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private String json(Object value) {
+        try {
+            return mapper.writeValueAsString(value);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Mono<Reply> fail(int status, String message) {
+        return Mono.just(new Reply(status, ApiResponse.fail(status, message)));
+    }
+}
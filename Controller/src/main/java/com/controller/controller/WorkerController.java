@@ -3,7 +3,9 @@ package com.controller.controller;
 import com.controller.model.ApiResponse;
 import com.controller.model.WorkerNode;
 import com.controller.service.ClusterResyncService;
+import com.controller.service.ReplicaAssignmentService;
 import com.controller.service.WorkerManager;
+import com.controller.service.WorkerRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -20,11 +22,22 @@ public class WorkerController {
     @Autowired
     private ClusterResyncService clusterResyncService;
 
+    @Autowired
+    private WorkerRegistry workerRegistry;
+
+    @Autowired
+    private ReplicaAssignmentService replicaAssignmentService;
+
     @PostMapping("/register")
-    public ResponseEntity<ApiResponse<Map<String, String>>> registerWorker(@RequestBody Map<String, String> body) {
-        String url = body.get("url");
-        if (url == null || url.isBlank()) return ResponseEntity.badRequest().body(ApiResponse.fail(400, "url is required"));
-        String workerId = workerManager.register(url);
+    public ResponseEntity<ApiResponse<Map<String, String>>> registerWorker(@RequestBody Map<String, Object> body) {
+        if (!(body.get("url") instanceof String url) || url.isBlank())
+            return ResponseEntity.badRequest().body(ApiResponse.fail(400, "url is required"));
+        // capacity is known before the first heartbeat, so the new worker is weighted right away
+        if (body.get("capacity") instanceof Map capacity)
+            replicaAssignmentService.recordCapacity(url, (Map<String, Object>) capacity);
+        Map<String, Object> topology = body.get("topology") instanceof Map t ? t : Map.of();
+        replicaAssignmentService.recordTopology(url, topology);
+        String workerId = workerManager.register(url, (String) topology.get("zone"), (String) topology.get("rack"));
         Map<String, String> payload = Map.of("workerId", workerId);
         return ResponseEntity.ok(ApiResponse.success(200, payload));
     }
@@ -44,6 +57,7 @@ public class WorkerController {
         status.put("activeWorkers", workerManager.getActiveWorkers());
         status.put("allWorkers", workerManager.getAllWorkers());
         status.put("workerNodes", workerManager.getWorkerNodes());
+        status.put("liveness", workerRegistry.snapshotLiveness());
         return ResponseEntity.ok(ApiResponse.success(200, status));
     }
 }
@@ -0,0 +1,178 @@
+package com.controller.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * One immutable, numbered version of the cluster: the alive members and the
+ * owner of every hash slot. Each membership change produces the next epoch;
+ * workers install views in epoch order and ignore anything older than what
+ * they hold. The checksum lets a worker verify a delta-applied view matches
+ * the controller's. Whether keys are slotted by their {hash tag} is part of
+ * the view, so controller and workers always agree on it.
+ */
+public final class ClusterView {
+
+    public static final ClusterView EMPTY = new ClusterView(0, List.of(), List.of());
+
+    private final long epoch;
+    private final List<String> members; // sorted
+    private final List<String> slots;   // slot -> owner url
+    private final boolean hashTags;
+    private final long checksum;
+
+    public ClusterView(long epoch, List<String> members, List<String> slots) {
+        this(epoch, members, slots, false);
+    }
+
+    public ClusterView(long epoch, List<String> members, List<String> slots, boolean hashTags) {
+        this.epoch = epoch;
+        this.members = List.copyOf(members);
+        this.slots = Collections.unmodifiableList(new ArrayList<>(slots));
+        this.hashTags = hashTags;
+        this.checksum = checksum(epoch, this.members, this.slots);
+    }
+
+    public long getEpoch() { return epoch; }
+    public List<String> getMembers() { return members; }
+    public List<String> getSlots() { return slots; }
+    public long getChecksum() { return checksum; }
+    public boolean isHashTags() { return hashTags; }
+
+    /** Hash slot of a key; controller and workers must agree on it. */
+    public static int slotOf(String key, int slotCount) {
+        return slotOf(key, slotCount, false);
+    }
+
+    /**
+     * With hashTags, a key that has a non-empty {hash tag} is slotted by the
+     * tag alone, so keys written together by /mput can share a slot
+     * (user:{42}:name, user:{42}:email).
+     */
+    public static int slotOf(String key, int slotCount, boolean hashTags) {
+        return Math.floorMod((hashTags ? hashTag(key) : key).hashCode(), slotCount);
+    }
+
+    private static String hashTag(String key) {
+        int open = key.indexOf('{');
+        if (open < 0) return key;
+        int close = key.indexOf('}', open + 1);
+        return close > open + 1 ? key.substring(open + 1, close) : key;
+    }
+
+    public String ownerOf(String key) {
+        if (slots.isEmpty()) return null;
+        return slots.get(slotOf(key, slots.size(), hashTags));
+    }
+
+    /**
+     * The next epoch for a new member set. Slots of departed members and the
+     * surplus of over-quota members move to under-quota members; every other
+     * slot keeps its owner, so a join or leave moves about slots/n slots.
+     */
+    public ClusterView next(Collection<String> newMembers, int slotCount) {
+        List<String> sorted = new ArrayList<>(new TreeSet<>(newMembers));
+        List<String> owners = new ArrayList<>(slots.size() == slotCount
+                ? slots : Collections.nCopies(slotCount, (String) null));
+        if (sorted.isEmpty()) {
+            return new ClusterView(epoch + 1, sorted, Collections.nCopies(slotCount, (String) null), hashTags);
+        }
+
+        Map<String, Integer> quota = new HashMap<>();
+        for (int i = 0; i < sorted.size(); i++) {
+            quota.put(sorted.get(i), slotCount / sorted.size() + (i < slotCount % sorted.size() ? 1 : 0));
+        }
+
+        Map<String, Integer> owned = new HashMap<>();
+        Deque<Integer> orphans = new ArrayDeque<>();
+        for (int slot = 0; slot < slotCount; slot++) {
+            String owner = owners.get(slot);
+            Integer limit = owner == null ? null : quota.get(owner);
+            if (limit == null || owned.getOrDefault(owner, 0) >= limit) {
+                orphans.add(slot);
+            } else {
+                owned.merge(owner, 1, Integer::sum);
+            }
+        }
+
+        for (String member : sorted) {
+            int missing = quota.get(member) - owned.getOrDefault(member, 0);
+            for (int i = 0; i < missing && !orphans.isEmpty(); i++) {
+                owners.set(orphans.poll(), member);
+            }
+        }
+        return new ClusterView(epoch + 1, sorted, owners, hashTags);
+    }
+
+    /** Same members and slots under a later epoch. */
+    public ClusterView renumber(long newEpoch) {
+        return new ClusterView(newEpoch, members, slots, hashTags);
+    }
+
+    /** The next epoch with hash tags switched on or off; every tagged key may change slot. */
+    public ClusterView withHashTags(boolean on) {
+        return new ClusterView(epoch + 1, members, slots, on);
+    }
+
+    public Map<String, Object> toFull() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("type", "full");
+        out.put("epoch", epoch);
+        out.put("members", members);
+        out.put("slots", slots);
+        out.put("hashTags", hashTags);
+        out.put("checksum", checksum);
+        return out;
+    }
+
+    /** What a holder of {@code older} needs to reach this view: membership and slot changes only. */
+    public Map<String, Object> deltaFrom(ClusterView older) {
+        List<String> added = new ArrayList<>(members);
+        added.removeAll(older.members);
+        List<String> removed = new ArrayList<>(older.members);
+        removed.removeAll(members);
+
+        Map<String, String> moved = new TreeMap<>();
+        for (int slot = 0; slot < slots.size(); slot++) {
+            String before = slot < older.slots.size() ? older.slots.get(slot) : null;
+            if (!Objects.equals(before, slots.get(slot))) moved.put(String.valueOf(slot), slots.get(slot));
+        }
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("type", "delta");
+        out.put("fromEpoch", older.epoch);
+        out.put("epoch", epoch);
+        out.put("slotCount", slots.size());
+        out.put("added", added);
+        out.put("removed", removed);
+        out.put("slots", moved);
+        out.put("hashTags", hashTags);
+        out.put("checksum", checksum);
+        return out;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static ClusterView fromFull(Map<String, Object> full) {
+        return new ClusterView(((Number) full.get("epoch")).longValue(),
+                (List<String>) full.get("members"),
+                (List<String>) full.get("slots"),
+                Boolean.TRUE.equals(full.get("hashTags")));
+    }
+
+    /** CRC32 over epoch, members and slot owners; the worker computes the same. */
+    public static long checksum(long epoch, List<String> members, List<String> slots) {
+        CRC32 crc = new CRC32();
+        crc.update(Long.toString(epoch).getBytes(StandardCharsets.UTF_8));
+        for (String m : members) {
+            crc.update('\n');
+            crc.update(m.getBytes(StandardCharsets.UTF_8));
+        }
+        crc.update('|');
+        for (String s : slots) {
+            crc.update('\n');
+            if (s != null) crc.update(s.getBytes(StandardCharsets.UTF_8));
+        }
+        return crc.getValue();
+    }
+}
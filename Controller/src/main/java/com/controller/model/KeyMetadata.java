@@ -5,6 +5,9 @@ public class KeyMetadata {
     private String syncReplica;
     private String asyncReplica;
 
+    // for Jackson when metadata.json is loaded back
+    public KeyMetadata() {}
+
     public KeyMetadata(String primaryReplica, String syncReplica, String asyncReplica) {
         this.primaryReplica = primaryReplica;
         this.syncReplica = syncReplica;
@@ -2,25 +2,67 @@ package com.controller.service;
 
 import com.controller.model.KeyMetadata;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Component
 public class MetadataStore {
 
+    private static final Logger logger = LoggerFactory.getLogger(MetadataStore.class);
+
     private final ConcurrentHashMap<String, KeyMetadata> table = new ConcurrentHashMap<>();
     private final ObjectMapper mapper = new ObjectMapper();
-    private final Object writeLock = new Object();
+    // held across the fsync; a ReentrantLock so a virtual thread waiting on it does not pin its carrier
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    // Removals only mark the table dirty; the file is rewritten once per flush interval
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+
+    private final File metadataFile;
 
-    private final File metadataFile = new File("metadata.json");
+    // Recent mutations in order, tailed by a standby controller. A null value is a removal.
+    private final Object journalLock = new Object();
+    private final ArrayDeque<JournalEntry> journal = new ArrayDeque<>();
+    private final int journalSize;
+    private long lastSeq;
 
-    public MetadataStore() {
+    public record JournalEntry(long seq, String key, KeyMetadata meta) {}
+
+    // full rewrite + fsync of the table; paid synchronously by every put
+    private final Timer persistTimer;
+    private final Tracer tracer;
+
+    public MetadataStore(@Value("${controller.metadata.file:metadata.json}") File metadataFile,
+                         @Value("${controller.ha.journal-size:100000}") int journalSize,
+                         MeterRegistry meterRegistry,
+                         Tracer tracer) {
+        this.metadataFile = metadataFile;
+        this.journalSize = Math.max(1, journalSize);
+        this.tracer = tracer;
+        this.persistTimer = Timer.builder("kv.metadata.persist")
+                .description("Time to rewrite and fsync the metadata file")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("kv.metadata.keys", table, Map::size)
+                .description("Keys tracked in the metadata table")
+                .register(meterRegistry);
         load();
     }
 
@@ -29,10 +71,105 @@ public class MetadataStore {
     }
 
     public void update(String key, KeyMetadata meta) {
-        table.put(key, meta);
+        synchronized (journalLock) {
+            table.put(key, meta);
+            append(key, copy(meta));
+        }
         saveAtomic();
     }
 
+    /** Several updates written with one file rewrite; used when a slot changes owner and for /mput batches. */
+    public void updateAll(Map<String, KeyMetadata> updates) {
+        if (updates.isEmpty()) return;
+        synchronized (journalLock) {
+            updates.forEach((key, meta) -> {
+                table.put(key, meta);
+                append(key, copy(meta));
+            });
+        }
+        saveAtomic();
+    }
+
+    public KeyMetadata remove(String key) {
+        KeyMetadata removed;
+        synchronized (journalLock) {
+            removed = table.remove(key);
+            if (removed != null) append(key, null);
+        }
+        if (removed != null) dirty.set(true);
+        return removed;
+    }
+
+    public long lastSeq() {
+        synchronized (journalLock) {
+            return lastSeq;
+        }
+    }
+
+    /** Entries after seq, at most limit; null when seq is older than the journal keeps. */
+    public List<JournalEntry> journalAfter(long seq, int limit) {
+        synchronized (journalLock) {
+            if (seq > lastSeq) return null;
+            if (seq < lastSeq - journal.size()) return null;
+
+            // a standby tailing the leader is only a few entries behind: walk back from the end
+            Deque<JournalEntry> tail = new ArrayDeque<>();
+            Iterator<JournalEntry> it = journal.descendingIterator();
+            for (long s = lastSeq; s > seq && it.hasNext(); s--) tail.addFirst(it.next());
+            return tail.stream().limit(limit).toList();
+        }
+    }
+
+    /** Full table and the journal position it reflects, for a standby that cannot catch up from the journal. */
+    public Map.Entry<Long, Map<String, KeyMetadata>> snapshot() {
+        synchronized (journalLock) {
+            Map<String, KeyMetadata> copy = new HashMap<>();
+            table.forEach((k, v) -> copy.put(k, copy(v)));
+            return Map.entry(lastSeq, copy);
+        }
+    }
+
+    /** Standby side: applies the leader's entries in order. Persisted by the next flush. */
+    public void applyReplicated(List<JournalEntry> entries) {
+        if (entries.isEmpty()) return;
+        synchronized (journalLock) {
+            for (JournalEntry e : entries) {
+                if (e.seq() <= lastSeq) continue;
+                if (e.meta() == null) table.remove(e.key());
+                else table.put(e.key(), e.meta());
+                journal.addLast(e);
+                if (journal.size() > journalSize) journal.removeFirst();
+                lastSeq = e.seq();
+            }
+        }
+        dirty.set(true);
+    }
+
+    /** Standby side: replaces the table with a leader snapshot. */
+    public void installSnapshot(long seq, Map<String, KeyMetadata> data) {
+        synchronized (journalLock) {
+            table.clear();
+            table.putAll(data);
+            journal.clear();
+            lastSeq = seq;
+        }
+        dirty.set(true);
+    }
+
+    private void append(String key, KeyMetadata meta) {
+        journal.addLast(new JournalEntry(++lastSeq, key, meta));
+        if (journal.size() > journalSize) journal.removeFirst();
+    }
+
+    private static KeyMetadata copy(KeyMetadata m) {
+        return new KeyMetadata(m.getPrimaryReplica(), m.getSyncReplica(), m.getAsyncReplica());
+    }
+
+    @Scheduled(fixedDelayString = "${controller.metadata.flush-interval-ms:1000}")
+    public void flush() {
+        if (dirty.get()) saveAtomic();
+    }
+
     private void load() {
         try {
             if (metadataFile.exists() && metadataFile.length() > 0) {
@@ -47,31 +184,45 @@ public class MetadataStore {
                 table.putAll(data);
             }
         } catch (Exception e) {
-            System.err.println("Failed to load metadata.json: " + e.getMessage());
+            logger.error("Failed to load {}: {}", metadataFile, e.getMessage());
         }
     }
 
     private void saveAtomic() {
-        synchronized (writeLock) {
-            try {
-                File tmp = new File("metadata.json.tmp");
-
-                mapper.writerWithDefaultPrettyPrinter().writeValue(tmp, table);
+        writeLock.lock();
+        try {
+            Span span = tracer.nextSpan().name("metadata.persist").start();
+            try (Tracer.SpanInScope ignored = tracer.withSpan(span)) {
+                persistTimer.record(this::persist);
+            } finally {
+                span.end();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
 
-                try (FileOutputStream fos = new FileOutputStream(tmp, true)) {
-                    fos.getFD().sync();
-                }
+    private void persist() {
+        // cleared before serializing, so a removal racing this write marks it dirty again
+        dirty.set(false);
+        try {
+            File tmp = new File(metadataFile.getPath() + ".tmp");
 
-                Files.move(
-                        tmp.toPath(),
-                        metadataFile.toPath(),
-                        StandardCopyOption.REPLACE_EXISTING,
-                        StandardCopyOption.ATOMIC_MOVE
-                );
+            mapper.writerWithDefaultPrettyPrinter().writeValue(tmp, table);
 
-            } catch (Exception e) {
-                System.err.println("Failed to write metadata.json: " + e.getMessage());
+            try (FileOutputStream fos = new FileOutputStream(tmp, true)) {
+                fos.getFD().sync();
             }
+
+            Files.move(
+                    tmp.toPath(),
+                    metadataFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE
+            );
+
+        } catch (Exception e) {
+            logger.error("Failed to write {}: {}", metadataFile, e.getMessage());
         }
     }
 }
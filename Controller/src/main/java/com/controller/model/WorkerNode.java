@@ -12,6 +12,8 @@ public class WorkerNode {
     private transient long lastHeartbeat;
     private List<String> replicaUrls;
     private String workerId;
+    private String zone;
+    private String rack;
 
     public WorkerNode(String url, String workerId) {
         this.url = url;
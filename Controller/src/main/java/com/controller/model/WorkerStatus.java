@@ -0,0 +1,11 @@
+package com.controller.model;
+
+/**
+ * Liveness as judged by the phi-accrual detector. SUSPECT workers stay in the
+ * alive set, so a stall alone never triggers failover; only DEAD does.
+ */
+public enum WorkerStatus {
+    ALIVE,
+    SUSPECT,
+    DEAD
+}
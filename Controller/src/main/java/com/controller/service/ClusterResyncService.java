@@ -1,70 +1,247 @@
 package com.controller.service;
 
+import com.controller.model.ClusterView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Service
 public class ClusterResyncService {
 
+    private static final Logger logger = LoggerFactory.getLogger(ClusterResyncService.class);
+
     private final RestTemplate rest = new RestTemplate();
     private final WorkerRegistry registry;
     private final ReplicaAssignmentService assignmentService;
-    private final ReplicationManager replication;
+    private final RebalanceService rebalance;
+    private final WorkerKeyFilters keyFilters;
+    private final ClusterViewService views;
+    private final LeaderElectionService leadership;
+
+    // epoch each worker last confirmed; a worker missing here gets the full view
+    private final Map<String, Long> ackedEpochs = new ConcurrentHashMap<>();
+    private final Map<String, Long> failedEpochs = new ConcurrentHashMap<>();
+    // epoch the key filters were last distrusted for
+    private long filterEpoch = -1;
 
-    private Set<String> lastAlive = new HashSet<>();
+    // pushes are HTTP calls made while holding it; a lock, unlike synchronized, does not pin a virtual thread
+    private final ReentrantLock pushLock = new ReentrantLock();
 
     public ClusterResyncService(WorkerRegistry registry,
                                 ReplicaAssignmentService assignmentService,
-                                ReplicationManager replication) {
+                                RebalanceService rebalance,
+                                WorkerKeyFilters keyFilters,
+                                ClusterViewService views,
+                                LeaderElectionService leadership) {
         this.registry = registry;
         this.assignmentService = assignmentService;
-        this.replication = replication;
+        this.rebalance = rebalance;
+        this.keyFilters = keyFilters;
+        this.views = views;
+        this.leadership = leadership;
     }
 
-    public synchronized void resyncCluster() {
-        List<String> aliveList = registry.getAliveWorkerUrls();
-        Set<String> aliveSet = new HashSet<>(aliveList);
-
-        List<String> dead = lastAlive.stream()
-                .filter(id -> !aliveSet.contains(id))
-                .toList();
-
-        if (!aliveSet.equals(lastAlive)) {
-            broadcast(aliveSet, dead);
+    /**
+     * Called on every heartbeat. Advances the view when membership changed and
+     * pushes it to members that have not confirmed the current epoch, which
+     * also retries workers a previous push failed on. Steady state sends nothing.
+     * A new epoch also starts moving existing keys to their new slot owners.
+     * Once they have settled, the key filters are refreshed once more.
+     */
+    public void resyncCluster() {
+        pushLock.lock();
+        try {
+            push(views.advance(registry.getAliveWorkerUrls()));
+            rebalance.onView(views.current());
+            refreshKeyFilters(views.current());
+        } finally {
+            pushLock.unlock();
         }
+    }
 
-        lastAlive = aliveSet;
+    /** A re-registering worker may have restarted without a view: send it the full one. */
+    public void resyncWorker(String workerUrl) {
+        pushLock.lock();
+        try {
+            ackedEpochs.remove(workerUrl);
+            keyFilters.viewChanged();
+            resyncCluster();
+        } finally {
+            pushLock.unlock();
+        }
     }
 
+    public void forceResync() {
+        pushLock.lock();
+        try {
+            ackedEpochs.clear();
+            keyFilters.viewChanged();
+            push(views.advance(registry.getAliveWorkerUrls()));
+
+            // keys left on a non-owner by a restart are moved at the throttled rate
+            rebalance.replan(views.current());
+        } finally {
+            pushLock.unlock();
+        }
+    }
 
-    public synchronized void forceResync() {
-        Set<String> aliveWorkers = new HashSet<>(registry.getAliveWorkerUrls());
+    /**
+     * A standby just took over. Its metadata and view were streamed from the
+     * old leader, so only the workers need telling: the full view carries the
+     * new term and leader URL, which they follow from then on.
+     */
+    public void takeOver() {
+        pushLock.lock();
+        try {
+            ackedEpochs.clear();
+            keyFilters.viewChanged();
+            push(views.advance(registry.getAliveWorkerUrls()));
+            rebalance.replan(views.current());
+        } finally {
+            pushLock.unlock();
+        }
+    }
 
-        broadcast(aliveWorkers, List.of());
+    private void push(ClusterView view) {
+        if (view.getEpoch() != filterEpoch) {
+            filterEpoch = view.getEpoch();
+            keyFilters.viewChanged();
+        }
+        ackedEpochs.keySet().retainAll(view.getMembers());
+        long aheadEpoch = broadcast(view);
 
-        replication.recoverAll();
-        lastAlive = aliveWorkers;
+        if (aheadEpoch > view.getEpoch()) {
+            ackedEpochs.clear();
+            broadcast(views.fastForward(aheadEpoch));
+        }
     }
 
-    private void broadcast(Set<String> aliveWorkers, List<String> deadWorkers) {
-        aliveWorkers.forEach(workerUrl -> {
+    /** Returns the highest epoch a worker reported beyond the view's, or -1. */
+    private long broadcast(ClusterView view) {
+        long aheadEpoch = -1;
+        for (String workerUrl : view.getMembers()) {
+            Long acked = ackedEpochs.get(workerUrl);
+            if (acked != null && acked == view.getEpoch()) continue;
+
             try {
-                Map<String, Object> body = new HashMap<>();
-                body.put("deadWorkers", deadWorkers);
-                body.put("aliveWorkers", aliveWorkers);
+                keyFilters.beginRefresh(workerUrl);
 
-                rest.postForEntity(
+                Map<String, Object> body = new HashMap<>();
+                body.put("view", views.updateSince(acked));
+                body.put("term", leadership.getTerm());
+                body.put("leaderUrl", leadership.getNodeUrl());
+                body.put("placement", assignmentService.placementWeights());
+                body.put("domains", assignmentService.failureDomains());
+                body.put("rebuildRates", assignmentService.rebuildRates());
+
+                ResponseEntity<Map> response = rest.postForEntity(
                         workerUrl + "/replicas/update",
                         body,
-                        Void.class
+                        Map.class
                 );
 
+                ackedEpochs.put(workerUrl, reportedEpoch(response.getBody(), view.getEpoch()));
+                failedEpochs.remove(workerUrl);
+                installKeyFilter(workerUrl, response.getBody());
+
+            } catch (HttpClientErrorException.Conflict stale) {
+                keyFilters.abortRefresh(workerUrl);
+                Map<String, Object> reply = stale.getResponseBodyAs(Map.class);
+                if (reportedTerm(reply) > leadership.getTerm()) {
+                    // fenced: a newer leader has reached this worker; our lease is about to be gone
+                    logger.warn("Worker {} follows a newer controller term; not pushing", workerUrl);
+                    continue;
+                }
+                // the worker holds a newer epoch than this controller knows about
+                aheadEpoch = Math.max(aheadEpoch, reportedEpoch(reply, -1));
             } catch (Exception e) {
-                System.err.println("Failed to broadcast cluster state to "
-                        + workerUrl + ": " + e.getMessage());
+                keyFilters.abortRefresh(workerUrl);
+                // retried on every heartbeat until the worker confirms or is declared dead
+                Long failedAt = failedEpochs.put(workerUrl, view.getEpoch());
+                if (failedAt == null || failedAt != view.getEpoch()) {
+                    logger.warn("Failed to push cluster view epoch={} to {}: {}",
+                            view.getEpoch(), workerUrl, e.getMessage());
+                } else {
+                    logger.debug("Retry of cluster view epoch={} to {} failed: {}",
+                            view.getEpoch(), workerUrl, e.getMessage());
+                }
+            }
+        }
+        return aheadEpoch;
+    }
+
+    private long reportedTerm(Map<String, Object> response) {
+        if (response != null
+                && response.get("payload") instanceof Map payload
+                && payload.get("term") instanceof Number t) {
+            return t.longValue();
+        }
+        return -1;
+    }
+
+    private long reportedEpoch(Map<String, Object> response, long fallback) {
+        if (response != null
+                && response.get("payload") instanceof Map payload
+                && payload.get("epoch") instanceof Number epoch) {
+            return epoch.longValue();
+        }
+        return fallback;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void installKeyFilter(String workerUrl, Map<String, Object> response) {
+        if (response != null
+                && response.get("payload") instanceof Map payload
+                && payload.get("keyFilter") instanceof Map filter) {
+            // taken as the view changes, before rebuilds and migrations have moved keys
+            keyFilters.install(workerUrl, (Map<String, Object>) filter, false);
+        } else {
+            keyFilters.abortRefresh(workerUrl);
+        }
+    }
+
+    /**
+     * Re-reads every member's key filter once all confirmed the view, no slot
+     * is migrating and no worker is rebuilding replicas. Nothing starts either
+     * again without a new view, so these snapshots miss no key and are trusted.
+     */
+    @SuppressWarnings("unchecked")
+    private void refreshKeyFilters(ClusterView view) {
+        List<String> members = view.getMembers();
+        if (members.isEmpty() || !keyFilters.anyUntrusted(members) || !rebalance.idle()) return;
+        for (String workerUrl : members) {
+            if (!Objects.equals(ackedEpochs.get(workerUrl), view.getEpoch())) return;
+        }
+
+        Map<String, Map<String, Object>> snapshots = new HashMap<>();
+        try {
+            for (String workerUrl : members) {
+                Map<String, Object> recovery = payload(rest.getForObject(workerUrl + "/replicas/recovery", Map.class));
+                if (Boolean.TRUE.equals(recovery.get("recovering"))) return;
             }
-        });
+            for (String workerUrl : members) {
+                keyFilters.beginRefresh(workerUrl);
+                snapshots.put(workerUrl, payload(rest.getForObject(workerUrl + "/replicas/key-filter", Map.class)));
+            }
+        } catch (Exception e) {
+            // retried on the next heartbeat; misses keep going to the workers meanwhile
+            members.forEach(keyFilters::abortRefresh);
+            logger.debug("Key filter refresh for epoch={} failed: {}", view.getEpoch(), e.getMessage());
+            return;
+        }
+        snapshots.forEach((workerUrl, snapshot) -> keyFilters.install(workerUrl, snapshot, true));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> payload(Map<String, Object> response) {
+        if (response != null && response.get("payload") instanceof Map payload) return payload;
+        throw new IllegalStateException("No payload in " + response);
     }
 }
@@ -0,0 +1,117 @@
+package com.controller.service;
+
+import com.controller.model.KeyValue;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.*;
+
+/**
+ * Cluster-wide ordered scan. Every alive worker returns its primary keys for the
+ * range in sorted pages; the pages are combined with a k-way merge on a heap of
+ * per-worker cursors. At most one page per worker is held at a time, so memory
+ * stays at workers x page-size regardless of how many keys the range covers.
+ */
+@Service
+public class ClusterScanService {
+
+    private final RestTemplate rest = new RestTemplate();
+    private final WorkerRegistry registry;
+
+    @Value("${controller.scan.page-size:256}")
+    private int pageSize;
+
+    public ClusterScanService(WorkerRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Returns {entries, nextCursor}. nextCursor is the last key returned when the
+     * page is full, to be passed back as {@code after}; null when the range is done.
+     */
+    public Map<String, Object> scan(String start, String end, String prefix, String after, int limit) {
+        Map<String, Object> query = new HashMap<>();
+        query.put("start", start);
+        query.put("end", end);
+        query.put("prefix", prefix);
+        query.put("primaryOnly", true);
+        query.put("limit", Math.min(pageSize, limit));
+
+        PriorityQueue<WorkerCursor> heap =
+                new PriorityQueue<>(Comparator.comparing(WorkerCursor::headKey));
+
+        for (String workerUrl : registry.getAliveWorkerUrls()) {
+            WorkerCursor cursor = new WorkerCursor(workerUrl, query, after);
+            if (cursor.advance()) heap.add(cursor);
+        }
+
+        List<KeyValue> entries = new ArrayList<>();
+        String lastKey = null;
+
+        while (!heap.isEmpty() && entries.size() < limit) {
+            WorkerCursor cursor = heap.poll();
+            Map<String, Object> head = cursor.head;
+
+            String key = (String) head.get("key");
+            // a key can briefly have two primaries around a failover; emit it once
+            if (!key.equals(lastKey)) {
+                entries.add(new KeyValue(key, (String) head.get("value")));
+                lastKey = key;
+            }
+
+            if (cursor.advance()) heap.add(cursor);
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("entries", entries);
+        result.put("nextCursor", entries.size() < limit ? null : lastKey);
+        return result;
+    }
+
+    /** Sorted stream of one worker's keys, fetched a page at a time. */
+    private class WorkerCursor {
+        private final String workerUrl;
+        private final Map<String, Object> query;
+        private final Deque<Map<String, Object>> buffer = new ArrayDeque<>();
+        private String after;
+        private boolean exhausted;
+        private Map<String, Object> head;
+
+        WorkerCursor(String workerUrl, Map<String, Object> query, String after) {
+            this.workerUrl = workerUrl;
+            this.query = query;
+            this.after = after;
+        }
+
+        String headKey() {
+            return (String) head.get("key");
+        }
+
+        /** Moves to the next entry, fetching the next page when the buffer runs dry. */
+        boolean advance() {
+            if (buffer.isEmpty() && !exhausted) fetch();
+            head = buffer.poll();
+            return head != null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void fetch() {
+            Map<String, Object> req = new HashMap<>(query);
+            req.put("after", after);
+
+            ResponseEntity<Map> response = rest.postForEntity(workerUrl + "/scan", req, Map.class);
+
+            Map<String, Object> body = response.getBody();
+            Map<String, Object> page = body == null ? null : (Map<String, Object>) body.get("payload");
+            if (page == null) throw new IllegalStateException("Invalid scan response from " + workerUrl);
+
+            List<Map<String, Object>> entries = (List<Map<String, Object>>) page.get("entries");
+            if (entries != null) buffer.addAll(entries);
+
+            after = (String) page.get("nextCursor");
+            exhausted = after == null;
+        }
+    }
+}
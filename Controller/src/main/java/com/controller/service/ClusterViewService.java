@@ -0,0 +1,117 @@
+package com.controller.service;
+
+import com.controller.model.ClusterView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Owns the versioned cluster view. Keeps the last few epochs so a worker
+ * that is behind can be sent just the slot and membership changes since the
+ * epoch it holds; anything older than the history gets the full view.
+ */
+@Service
+public class ClusterViewService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterViewService.class);
+
+    private final StatePersistenceService persistence;
+    private final int slotCount;
+    private final int historySize;
+    private final Deque<ClusterView> history = new ArrayDeque<>(); // oldest first, ends with current
+
+    private volatile ClusterView current;
+
+    // install() persists the view while holding it
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public ClusterViewService(StatePersistenceService persistence,
+                              @Value("${controller.cluster-view.slots:256}") int slotCount,
+                              @Value("${controller.cluster-view.history:64}") int historySize,
+                              @Value("${controller.cluster-view.hash-tags:false}") boolean hashTags) {
+        this.persistence = persistence;
+        this.slotCount = slotCount;
+        this.historySize = Math.max(1, historySize);
+
+        ClusterView restored = persistence.loadClusterView();
+        this.current = restored == null ? new ClusterView(0, List.of(), List.of(), hashTags) : restored;
+        history.add(current);
+        if (current.isHashTags() != hashTags) {
+            // stored keys are not moved: tagged keys already written may now sit in the wrong slot
+            install(current.withHashTags(hashTags));
+            logger.warn("cluster view hash tags switched {} at epoch={}; keys containing {{...}} change slot",
+                    hashTags ? "on" : "off", current.getEpoch());
+        }
+    }
+
+    public ClusterView current() {
+        return current;
+    }
+
+    /** Moves to the next epoch if the member set changed; otherwise returns the current view. */
+    public ClusterView advance(Collection<String> aliveUrls) {
+        lock.lock();
+        try {
+            if (new HashSet<>(current.getMembers()).equals(new HashSet<>(aliveUrls))) return current;
+            install(current.next(aliveUrls, slotCount));
+            logger.info("cluster view epoch={} members={}", current.getEpoch(), current.getMembers());
+            return current;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** The update that takes a holder of {@code epoch} to the current view; full when epoch is unknown. */
+    public Map<String, Object> updateSince(Long epoch) {
+        lock.lock();
+        try {
+            if (epoch != null) {
+                for (ClusterView past : history) {
+                    if (past.getEpoch() == epoch) return current.deltaFrom(past);
+                }
+            }
+            return current.toFull();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Standby side: follows the leader's view so a takeover starts from the same epoch. */
+    public void adopt(ClusterView view) {
+        lock.lock();
+        try {
+            if (view.getEpoch() > current.getEpoch()) install(view);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A worker holds an epoch this controller never issued (state file lost or
+     * restored from an old copy). Jump past it so the worker accepts our view;
+     * deltas from the old numbering are meaningless, so the history restarts.
+     */
+    public ClusterView fastForward(long seenEpoch) {
+        lock.lock();
+        try {
+            if (seenEpoch < current.getEpoch()) return current;
+            history.clear();
+            install(current.renumber(seenEpoch + 1));
+            logger.warn("cluster view fast-forwarded past worker epoch={} to epoch={}", seenEpoch, current.getEpoch());
+            return current;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void install(ClusterView view) {
+        current = view;
+        history.addLast(view);
+        while (history.size() > historySize) history.removeFirst();
+        persistence.saveClusterView(view);
+    }
+}
@@ -0,0 +1,94 @@
+package com.controller.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lease kept in a file on storage every controller mounts, guarded by an OS
+ * file lock. Expiry uses the local wall clock, so the hosts' clocks must be
+ * closer together than the lease TTL. Meant for tests and small deployments;
+ * an etcd or ZooKeeper backed LeaseStore drops in the same way.
+ */
+public class FileLeaseStore implements LeaseStore {
+
+    // FileLock is per process: two controllers in one JVM (the load generator) must not overlap it
+    private static final ReentrantLock JVM_LOCK = new ReentrantLock();
+
+    private final Path file;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public FileLeaseStore(Path file) throws IOException {
+        this.file = file;
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+    }
+
+    @Override
+    public Lease tryAcquire(String nodeId, String nodeUrl, long ttlMs) throws IOException {
+        JVM_LOCK.lock();
+        try (FileChannel channel = open(); FileLock ignored = channel.lock()) {
+            Lease current = read(channel);
+            long now = System.currentTimeMillis();
+
+            if (current != null && !current.holderId().equals(nodeId) && current.expiresAtMs() > now) {
+                return current;
+            }
+
+            long term = current == null ? 1
+                    : current.holderId().equals(nodeId) ? current.term() : current.term() + 1;
+            Lease next = new Lease(nodeId, nodeUrl, term, now + ttlMs);
+            write(channel, next);
+            return next;
+        } finally {
+            JVM_LOCK.unlock();
+        }
+    }
+
+    @Override
+    public Lease current() throws IOException {
+        JVM_LOCK.lock();
+        try (FileChannel channel = open(); FileLock ignored = channel.lock()) {
+            return read(channel);
+        } finally {
+            JVM_LOCK.unlock();
+        }
+    }
+
+    @Override
+    public void release(String nodeId) throws IOException {
+        JVM_LOCK.lock();
+        try (FileChannel channel = open(); FileLock ignored = channel.lock()) {
+            Lease current = read(channel);
+            if (current != null && current.holderId().equals(nodeId)) {
+                write(channel, new Lease(nodeId, current.holderUrl(), current.term(), 0));
+            }
+        } finally {
+            JVM_LOCK.unlock();
+        }
+    }
+
+    private FileChannel open() throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private Lease read(FileChannel channel) throws IOException {
+        if (channel.size() == 0) return null;
+        ByteBuffer buf = ByteBuffer.allocate((int) channel.size());
+        channel.read(buf, 0);
+        return mapper.readValue(buf.array(), Lease.class);
+    }
+
+    private void write(FileChannel channel, Lease lease) throws IOException {
+        byte[] bytes = mapper.writeValueAsBytes(lease);
+        channel.truncate(0);
+        channel.write(ByteBuffer.wrap(bytes), 0);
+        channel.force(true);
+    }
+}
@@ -1,7 +1,5 @@
 package com.controller.service;
 
-import com.controller.service.ClusterResyncService;
-import com.controller.service.WorkerRegistry;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
 
@@ -12,21 +10,29 @@ public class HeartbeatConsumer {
 
     private final WorkerRegistry registry;
     private final ClusterResyncService resync;
+    private final LeaderElectionService leadership;
+    private final ReplicaAssignmentService assignment;
 
     public HeartbeatConsumer(WorkerRegistry registry,
-                             ClusterResyncService resync) {
+                             ClusterResyncService resync,
+                             LeaderElectionService leadership,
+                             ReplicaAssignmentService assignment) {
         this.registry = registry;
         this.resync = resync;
+        this.leadership = leadership;
+        this.assignment = assignment;
     }
 
-    @KafkaListener(topics = "worker-heartbeats", groupId = "controller-group")
+    // every controller needs every heartbeat, so HA nodes must each use their own group
+    @KafkaListener(topics = "worker-heartbeats", groupId = "${controller.heartbeat.group-id:controller-group}")
     public void consume(Map<String, Object> heartbeat) {
         String workerId = (String) heartbeat.get("workerId");
         if (workerId == null) return;
 
         registry.updateHeartbeat(workerId);
+        assignment.recordHeartbeat(registry.getUrl(workerId), heartbeat);
 
         // IMPORTANT: this triggers replica reassignment
-        resync.resyncCluster();
+        if (leadership.isLeader()) resync.resyncCluster();
     }
 }
@@ -0,0 +1,73 @@
+package com.controller.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Plain Bloom filter rebuilt from the bit set a worker publishes on resync.
+ * Hashing must stay identical to the worker's CountingBloomFilter.
+ */
+public class KeyBloomFilter {
+
+    private final AtomicLongArray bits;
+    private final int numBits;
+    private final int numHashes;
+
+    private KeyBloomFilter(long[] words, int numBits, int numHashes) {
+        this.bits = new AtomicLongArray(words);
+        this.numBits = numBits;
+        this.numHashes = numHashes;
+    }
+
+    public static KeyBloomFilter fromSnapshot(int numBits, int numHashes, String base64Bits) {
+        byte[] raw = Base64.getDecoder().decode(base64Bits);
+        long[] words = new long[(numBits + Long.SIZE - 1) / Long.SIZE];
+        ByteBuffer.wrap(raw).asLongBuffer().get(words, 0, Math.min(words.length, raw.length / Long.BYTES));
+        return new KeyBloomFilter(words, numBits, numHashes);
+    }
+
+    /** Records a key the controller routed to this worker after the snapshot was taken. */
+    public void add(String key) {
+        long h1 = hash(key);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            int idx = index(h1, h2, i);
+            long mask = 1L << (idx & 63);
+            bits.getAndAccumulate(idx >>> 6, mask, (a, b) -> a | b);
+        }
+    }
+
+    public boolean mightContain(String key) {
+        long h1 = hash(key);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            int idx = index(h1, h2, i);
+            if ((bits.get(idx >>> 6) & (1L << (idx & 63))) == 0) return false;
+        }
+        return true;
+    }
+
+    private int index(long h1, long h2, int i) {
+        return (int) Math.floorMod(h1 + i * h2, (long) numBits);
+    }
+
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= (b & 0xff);
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
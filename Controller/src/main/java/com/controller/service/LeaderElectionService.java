@@ -0,0 +1,134 @@
+package com.controller.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Active/standby leadership from a {@link LeaseStore}. The leader renews its
+ * lease every renew interval; a standby retries on the same schedule and takes
+ * over once the lease expires. Without a lease store the controller runs
+ * standalone and always leads.
+ */
+@Service
+public class LeaderElectionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LeaderElectionService.class);
+
+    /** Published on every change of leadership after startup. */
+    public record LeadershipChanged(boolean leader, long term, String leaderUrl) {}
+
+    private final LeaseStore leaseStore;
+    private final ApplicationEventPublisher events;
+    private final String nodeId;
+    private final String nodeUrl;
+    private final long leaseTtlMs;
+
+    private volatile boolean leader;
+    private volatile long term;
+    private volatile String leaderUrl;
+    private volatile long leaseExpiresAt;
+
+    // held across the lease store round trip
+    private final ReentrantLock electLock = new ReentrantLock();
+
+    public LeaderElectionService(ObjectProvider<LeaseStore> leaseStore,
+                                 ApplicationEventPublisher events,
+                                 @Value("${controller.ha.node-id:}") String nodeId,
+                                 @Value("${controller.ha.advertised-url:http://localhost:${server.port:8080}}") String nodeUrl,
+                                 @Value("${controller.ha.lease-ttl-ms:5000}") long leaseTtlMs) {
+        this.leaseStore = leaseStore.getIfAvailable();
+        this.events = events;
+        this.nodeId = nodeId.isBlank() ? "controller-" + UUID.randomUUID().toString().substring(0, 8) : nodeId;
+        this.nodeUrl = nodeUrl;
+        this.leaseTtlMs = leaseTtlMs;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (leaseStore == null) {
+            leader = true;
+            leaderUrl = nodeUrl;
+            return;
+        }
+        // decided before ApplicationReady, so startup knows whether to push views to workers
+        elect(false);
+        logger.info("node={} starting as {} term={} leader={}", nodeId, leader ? "LEADER" : "STANDBY", term, leaderUrl);
+    }
+
+    @Scheduled(fixedDelayString = "${controller.ha.renew-interval-ms:1000}")
+    public void renew() {
+        if (leaseStore != null) elect(true);
+    }
+
+    private void elect(boolean publish) {
+        electLock.lock();
+        try {
+            boolean wasLeader = leader;
+            try {
+                LeaseStore.Lease lease = leaseStore.tryAcquire(nodeId, nodeUrl, leaseTtlMs);
+                leader = lease.isHeldBy(nodeId, System.currentTimeMillis());
+                term = lease.term();
+                leaderUrl = lease.expiresAtMs() > System.currentTimeMillis() ? lease.holderUrl() : null;
+                if (leader) leaseExpiresAt = lease.expiresAtMs();
+            } catch (Exception e) {
+                // cannot reach the store: keep leading only while the last lease is certainly ours
+                if (leader && System.currentTimeMillis() >= leaseExpiresAt) leader = false;
+                logger.warn("lease store unavailable node={}: {}", nodeId, e.getMessage());
+            }
+
+            if (leader != wasLeader) {
+                logger.info("node={} {} term={}", nodeId, leader ? "became LEADER" : "stepped down", term);
+                if (publish) events.publishEvent(new LeadershipChanged(leader, term, leaderUrl));
+            }
+        } finally {
+            electLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (leaseStore == null || !leader) return;
+        try {
+            leader = false;
+            leaseStore.release(nodeId);
+        } catch (Exception e) {
+            logger.warn("lease release failed node={}: {}", nodeId, e.getMessage());
+        }
+    }
+
+    /** False once the lease may have expired, even if the renew thread has not run yet. */
+    public boolean isLeader() {
+        return leader && (leaseStore == null || System.currentTimeMillis() < leaseExpiresAt);
+    }
+
+    public boolean isStandalone() {
+        return leaseStore == null;
+    }
+
+    public long getTerm() {
+        return term;
+    }
+
+    /** Null while no node holds an unexpired lease. */
+    public String getLeaderUrl() {
+        return leaderUrl;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public String getNodeUrl() {
+        return nodeUrl;
+    }
+}
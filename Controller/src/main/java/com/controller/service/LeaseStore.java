@@ -0,0 +1,28 @@
+package com.controller.service;
+
+/**
+ * Where controllers compete for leadership. Whoever holds an unexpired lease
+ * is the leader; the term goes up each time the lease changes hands and
+ * fences pushes from a deposed leader.
+ */
+public interface LeaseStore {
+
+    record Lease(String holderId, String holderUrl, long term, long expiresAtMs) {
+
+        public boolean isHeldBy(String nodeId, long nowMs) {
+            return holderId.equals(nodeId) && expiresAtMs > nowMs;
+        }
+    }
+
+    /**
+     * Takes or renews the lease for nodeId unless another node holds an
+     * unexpired one. Returns the lease as it stands afterwards, whoever holds it.
+     */
+    Lease tryAcquire(String nodeId, String nodeUrl, long ttlMs) throws Exception;
+
+    /** The current lease, or null when none was ever taken. */
+    Lease current() throws Exception;
+
+    /** Gives the lease up early if nodeId holds it, so a standby need not wait out the TTL. */
+    void release(String nodeId) throws Exception;
+}
@@ -0,0 +1,82 @@
+package com.controller.service;
+
+/**
+ * Phi-accrual failure detector for one worker (Hayashibara et al.). Instead of
+ * a yes/no timeout it reports phi = -log10(P(a heartbeat arrives this late)),
+ * fitted to a normal distribution over the recent heartbeat inter-arrival
+ * times. Phi grows smoothly with silence, and grows slower for a worker whose
+ * heartbeats have been jittery, so one stall does not read as a crash.
+ *
+ * Thread-safe; heartbeats and phi reads come from different threads.
+ */
+public class PhiAccrualFailureDetector {
+
+    private final long[] intervals;
+    private final long minStdDevMs;
+    private final long acceptablePauseMs;
+
+    private int count;
+    private int next;
+    private double sum;
+    private double sumOfSquares;
+    private long lastHeartbeat;
+
+    /**
+     * @param windowSize        inter-arrival samples kept
+     * @param expectedIntervalMs seeds the window so a fresh worker is not suspected early
+     * @param minStdDevMs       floor on the deviation; perfectly regular heartbeats would
+     *                          otherwise make a few ms of delay look fatal
+     * @param acceptablePauseMs added to the mean: a pause this long (GC, consumer rebalance)
+     *                          barely moves phi
+     */
+    public PhiAccrualFailureDetector(int windowSize, long expectedIntervalMs,
+                                     long minStdDevMs, long acceptablePauseMs, long nowMs) {
+        this.intervals = new long[Math.max(2, windowSize)];
+        this.minStdDevMs = minStdDevMs;
+        this.acceptablePauseMs = acceptablePauseMs;
+        this.lastHeartbeat = nowMs;
+
+        // mean = expected interval, deviation = a quarter of it
+        add(expectedIntervalMs - expectedIntervalMs / 4);
+        add(expectedIntervalMs + expectedIntervalMs / 4);
+    }
+
+    public synchronized void heartbeat(long nowMs) {
+        long interval = nowMs - lastHeartbeat;
+        lastHeartbeat = nowMs;
+        if (interval > 0) add(interval);
+    }
+
+    public synchronized long lastHeartbeat() {
+        return lastHeartbeat;
+    }
+
+    public synchronized double phi(long nowMs) {
+        double mean = sum / count;
+        double variance = sumOfSquares / count - mean * mean;
+        double stdDev = Math.max(Math.sqrt(Math.max(variance, 0)), minStdDevMs);
+        return phi(nowMs - lastHeartbeat, mean + acceptablePauseMs, stdDev);
+    }
+
+    /** Logistic approximation of the normal CDF tail, as used by Akka and Cassandra. */
+    static double phi(long elapsedMs, double mean, double stdDev) {
+        double y = (elapsedMs - mean) / stdDev;
+        double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+        if (elapsedMs > mean) return -Math.log10(e / (1.0 + e));
+        return -Math.log10(1.0 - 1.0 / (1.0 + e));
+    }
+
+    private void add(long interval) {
+        if (count == intervals.length) {
+            long evicted = intervals[next];
+            sum -= evicted;
+            sumOfSquares -= (double) evicted * evicted;
+        } else {
+            count++;
+        }
+        intervals[next] = interval;
+        next = (next + 1) % intervals.length;
+        sum += interval;
+        sumOfSquares += (double) interval * interval;
+    }
+}
@@ -0,0 +1,501 @@
+package com.controller.service;
+
+import com.controller.model.ClusterView;
+import com.controller.model.KeyMetadata;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * Moves existing keys to the owner of their slot after the cluster view
+ * changes. The view already moves the fewest slots; here each moved slot is
+ * copied from its old primary to the new owner a page at a time, under a
+ * shared byte rate and a cap on slots in flight. Writes to a slot being
+ * copied also go to the new owner, and the switch of the slot's keys in the
+ * metadata happens under the slot's write lock, so no write is lost and
+ * reads never see a half-moved slot. Client writes hold the slot's read lock
+ * for their whole worker round trip, so the write lock is waited for at most
+ * switch-timeout-ms; a slot that stays busy longer is retried on a later plan
+ * rather than stalling every write to it behind one slow put.
+ */
+@Service
+public class RebalanceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RebalanceService.class);
+
+    private final RestTemplate rest = new RestTemplate();
+    // a thread per migrating slot; virtual with spring.threads.virtual.enabled on Java 21
+    private final SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("rebalance-");
+    private final ScheduledExecutorService releaser = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "rebalance-release");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final MetadataStore metadataStore;
+    private final ClusterViewService views;
+    private final WorkerKeyFilters keyFilters;
+
+    private final boolean enabled;
+    private final int slotCount;
+    private final boolean hashTags;
+    private final int maxConcurrentSlots;
+    private final int batchSize;
+    private final int streamBatchSize;
+    private final long maxBytesPerSec;
+    private final long releaseDelayMs;
+    private final long switchTimeoutMs;
+    // bytes one /migration/push may stream, reserved from the rate before it is sent
+    private final long pageBytes;
+
+    // slot -> old primaries still holding keys of it; at most maxConcurrentSlots run at once
+    private final Map<Integer, Set<String>> pending = new LinkedHashMap<>();
+    private final Set<Integer> running = new HashSet<>();
+    private long plannedEpoch = -1;
+
+    // writes hold the read lock of their key's slot; the ownership switch holds the write lock.
+    // Stamped, so the reactive data path can release it from whichever thread completes the write.
+    private final Map<Integer, StampedLock> slotLocks = new ConcurrentHashMap<>();
+    private final Map<Integer, Migration> migrating = new ConcurrentHashMap<>();
+
+    private final Object throttleLock = new Object();
+    private long nextSendNanos;
+
+    private final Counter movedKeys;
+    private final Counter movedBytes;
+
+    private static final class Migration {
+        final String source;
+        final String target;
+        volatile String failure;
+
+        Migration(String source, String target) {
+            this.source = source;
+            this.target = target;
+        }
+    }
+
+    public RebalanceService(MetadataStore metadataStore,
+                            ClusterViewService views,
+                            WorkerKeyFilters keyFilters,
+                            MeterRegistry meterRegistry,
+                            Environment environment,
+                            @Value("${controller.rebalance.enabled:true}") boolean enabled,
+                            @Value("${controller.cluster-view.slots:256}") int slotCount,
+                            @Value("${controller.cluster-view.hash-tags:false}") boolean hashTags,
+                            @Value("${controller.rebalance.max-concurrent-slots:2}") int maxConcurrentSlots,
+                            @Value("${controller.rebalance.batch-size:200}") int batchSize,
+                            @Value("${controller.rebalance.stream-batch-size:5000}") int streamBatchSize,
+                            @Value("${controller.rebalance.max-bytes-per-sec:4194304}") long maxBytesPerSec,
+                            @Value("${controller.rebalance.release-delay-ms:2000}") long releaseDelayMs,
+                            @Value("${controller.rebalance.switch-timeout-ms:1000}") long switchTimeoutMs) {
+        this.metadataStore = metadataStore;
+        this.views = views;
+        this.keyFilters = keyFilters;
+        this.enabled = enabled;
+        this.slotCount = slotCount;
+        this.hashTags = hashTags;
+        this.maxConcurrentSlots = Math.max(1, maxConcurrentSlots);
+        this.batchSize = Math.max(1, batchSize);
+        this.streamBatchSize = Math.max(1, streamBatchSize);
+        this.maxBytesPerSec = maxBytesPerSec;
+        this.releaseDelayMs = releaseDelayMs;
+        this.switchTimeoutMs = switchTimeoutMs;
+        // a quarter second's worth, so a page never bursts far past the rate
+        this.pageBytes = maxBytesPerSec > 0 ? Math.max(64 * 1024, maxBytesPerSec / 4) : 0;
+
+        executor.setDaemon(true);
+        executor.setVirtualThreads(Threading.VIRTUAL.isActive(environment));
+
+        this.movedKeys = Counter.builder("kv.rebalance.keys")
+                .description("Keys moved to a new slot owner")
+                .register(meterRegistry);
+        this.movedBytes = Counter.builder("kv.rebalance.bytes")
+                .description("Key and value bytes copied by slot migrations")
+                .register(meterRegistry);
+        Gauge.builder("kv.rebalance.slots.queued", this, RebalanceService::queuedSlots)
+                .description("Slots waiting for or in migration")
+                .register(meterRegistry);
+    }
+
+    /** Plans migrations for a view epoch not planned yet; a no-op in steady state. */
+    public void onView(ClusterView view) {
+        synchronized (this) {
+            if (view.getEpoch() == plannedEpoch) return;
+        }
+        replan(view);
+    }
+
+    /** Compares every key's primary with its slot owner and queues the slots that differ. */
+    public void replan(ClusterView view) {
+        if (!enabled || view.getMembers().isEmpty()) return;
+        synchronized (this) {
+            plannedEpoch = view.getEpoch();
+        }
+
+        Set<String> alive = new HashSet<>(view.getMembers());
+        Map<Integer, Set<String>> plan = new TreeMap<>();
+        metadataStore.snapshot().getValue().forEach((key, meta) -> {
+            String primary = meta.getPrimaryReplica();
+            String owner = view.ownerOf(key);
+            // a dead primary's keys are failed over by the workers, not copied
+            if (primary == null || owner == null || primary.equals(owner) || !alive.contains(primary)) return;
+            plan.computeIfAbsent(ClusterView.slotOf(key, slotCount, hashTags), s -> new HashSet<>()).add(primary);
+        });
+        if (plan.isEmpty()) return;
+
+        logger.info("Rebalance for epoch={}: {} slots to move", view.getEpoch(), plan.size());
+        synchronized (this) {
+            plan.forEach((slot, sources) -> pending.computeIfAbsent(slot, s -> new HashSet<>()).addAll(sources));
+        }
+        dispatch();
+    }
+
+    /** No slot waiting or moving: every key sits on the primary its metadata names. */
+    public synchronized boolean idle() {
+        return pending.isEmpty() && running.isEmpty();
+    }
+
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("plannedEpoch", plannedEpoch);
+        status.put("pendingSlots", new ArrayList<>(pending.keySet()));
+        status.put("runningSlots", new ArrayList<>(running));
+        status.put("movedKeys", (long) movedKeys.count());
+        status.put("movedBytes", (long) movedBytes.count());
+        return status;
+    }
+
+    /**
+     * Runs a client write of key so it cannot interleave with the ownership
+     * switch of the key's slot; mirror() is called from inside it.
+     */
+    public <T> T guarded(String key, Supplier<T> write) {
+        long stamp = enter(key);
+        try {
+            return write.get();
+        } finally {
+            exit(key, stamp);
+        }
+    }
+
+    /** Whether keys are slotted by their {hash tag} (controller.cluster-view.hash-tags). */
+    public boolean hashTags() {
+        return hashTags;
+    }
+
+    /** Whether all keys share one slot, as the keys of an /mput batch must. */
+    public boolean sameSlot(Collection<String> keys) {
+        return keys.stream().mapToInt(key -> ClusterView.slotOf(key, slotCount, hashTags)).distinct().count() <= 1;
+    }
+
+    /** guarded() split in two for callers that finish the write on another thread. Blocks during a switch. */
+    public long enter(String key) {
+        return slotLock(ClusterView.slotOf(key, slotCount, hashTags)).readLock();
+    }
+
+    /** Like enter() but never blocks: 0 while the key's slot is switching owner. */
+    public long tryEnter(String key) {
+        return slotLock(ClusterView.slotOf(key, slotCount, hashTags)).tryReadLock();
+    }
+
+    public void exit(String key, long stamp) {
+        slotLock(ClusterView.slotOf(key, slotCount, hashTags)).unlockRead(stamp);
+    }
+
+    /**
+     * Dual write: a write that the old primary of a migrating slot accepted is
+     * copied to the new owner as well. A failure here fails the migration,
+     * not the client's write; the slot is retried after a replan.
+     */
+    public void mirror(String key, String primaryUrl, Map<String, Object> entry) {
+        Migration migration = migrating.get(ClusterView.slotOf(key, slotCount, hashTags));
+        if (migration == null || !migration.source.equals(primaryUrl)) return;
+
+        if (!(entry.get("version") instanceof Number)) {
+            migration.failure = "no version for mirrored write of key=" + key;
+            return;
+        }
+        Map<String, Object> copy = new HashMap<>(entry);
+        copy.put("key", key);
+        try {
+            importEntries(migration, List.of(copy));
+        } catch (Exception e) {
+            migration.failure = "mirrored write of key=" + key + " failed: " + e.getMessage();
+        }
+    }
+
+    private synchronized int queuedSlots() {
+        return pending.size() + running.size();
+    }
+
+    private synchronized void dispatch() {
+        Iterator<Map.Entry<Integer, Set<String>>> it = pending.entrySet().iterator();
+        while (running.size() < maxConcurrentSlots && it.hasNext()) {
+            Map.Entry<Integer, Set<String>> next = it.next();
+            int slot = next.getKey();
+            if (running.contains(slot)) continue;
+
+            Set<String> sources = next.getValue();
+            it.remove();
+            running.add(slot);
+            executor.submit(() -> {
+                try {
+                    for (String source : sources) migrateSlot(slot, source);
+                } finally {
+                    synchronized (this) {
+                        running.remove(slot);
+                    }
+                    dispatch();
+                }
+            });
+        }
+    }
+
+    private void migrateSlot(int slot, String source) {
+        ClusterView view = views.current();
+        String target = slot < view.getSlots().size() ? view.getSlots().get(slot) : null;
+        // the view moved on since planning; the next plan covers this slot
+        if (target == null || target.equals(source) || !view.getMembers().contains(source)) return;
+
+        Migration migration = new Migration(source, target);
+        long start = System.currentTimeMillis();
+        try {
+            StampedLock lock = slotLock(slot);
+            long stamp = switchLock(slot);
+            try {
+                migrating.put(slot, migration);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+
+            List<String> copied = copy(slot, migration);
+            int moved = switchOwner(slot, migration, copied);
+            if (moved > 0) {
+                logger.info("Slot {} moved {} keys {} -> {} in {} ms",
+                        slot, moved, source, target, System.currentTimeMillis() - start);
+            }
+        } catch (Exception e) {
+            logger.warn("Migration of slot {} from {} to {} aborted: {}", slot, source, target, e.getMessage());
+            // replanned from the next heartbeat's resync
+            synchronized (this) {
+                plannedEpoch = -1;
+            }
+        } finally {
+            migrating.remove(slot, migration);
+        }
+    }
+
+    /**
+     * Has the source stream the slot's primary keys straight to the target,
+     * a page at a time, within the byte rate. Each page's bytes are reserved
+     * from the rate before it is requested, and the source stops a page once
+     * it has streamed that many, so no page goes out ahead of the rate. The
+     * data no longer passes through here; only the keys moved come back.
+     */
+    @SuppressWarnings("unchecked")
+    private List<String> copy(int slot, Migration migration) throws InterruptedException {
+        List<String> copied = new ArrayList<>();
+        String after = null;
+        do {
+            checkStillValid(slot, migration);
+            throttle(pageBytes);
+
+            Map<String, Object> request = new HashMap<>();
+            request.put("slot", slot);
+            request.put("slotCount", slotCount);
+            request.put("hashTags", hashTags);
+            request.put("after", after);
+            request.put("limit", streamBatchSize);
+            request.put("target", migration.target);
+            if (pageBytes > 0) request.put("maxBytes", pageBytes);
+            Map<String, Object> response = rest.postForObject(migration.source + "/migration/push", request, Map.class);
+            Map<String, Object> page = (Map<String, Object>) response.get("payload");
+            List<String> keys = (List<String>) page.get("keys");
+            if (keys.isEmpty()) break;
+
+            copied.addAll(keys);
+            long bytes = ((Number) page.get("bytes")).longValue();
+            movedBytes.increment(bytes);
+            // a page ends on the entry that crosses maxBytes; the next one waits for the excess
+            if (bytes > pageBytes) throttle(bytes - pageBytes);
+            else refund(pageBytes - bytes);
+
+            after = (String) page.get("next");
+        } while (after != null);
+        return copied;
+    }
+
+    /**
+     * The target takes the keys over and builds their replicas while writes to
+     * the slot go on; those writes still reach it through mirror(). Only the
+     * metadata flip holds writes off: the keys still on the source point at
+     * the target in one persisted batch. The old copies are released a little
+     * later. If a mirrored write was lost the target's copies may be stale, so
+     * they are dropped and nothing moves.
+     */
+    @SuppressWarnings("unchecked")
+    private int switchOwner(int slot, Migration migration, List<String> copied) {
+        checkStillValid(slot, migration);
+
+        List<String> keys = new ArrayList<>();
+        for (String key : copied) {
+            KeyMetadata meta = metadataStore.get(key);
+            if (meta != null && migration.source.equals(meta.getPrimaryReplica())) keys.add(key);
+        }
+
+        Map<String, KeyMetadata> activated = new LinkedHashMap<>();
+        RuntimeException failed = null;
+        try {
+            for (int i = 0; i < keys.size(); i += batchSize) {
+                List<String> batch = keys.subList(i, Math.min(keys.size(), i + batchSize));
+                Map<String, Object> response = rest.postForObject(
+                        migration.target + "/migration/activate", Map.of("keys", batch), Map.class);
+                Map<String, Map<String, String>> replicas =
+                        (Map<String, Map<String, String>>) response.get("payload");
+                replicas.forEach((key, r) -> activated.put(key,
+                        new KeyMetadata(migration.target, r.get("syncReplica"), r.get("asyncReplica"))));
+            }
+        } catch (RuntimeException e) {
+            // keys the target already took over still move
+            failed = e;
+        }
+
+        Map<String, KeyMetadata> before = new HashMap<>();
+        Map<String, KeyMetadata> after = new HashMap<>();
+        StampedLock lock = slotLock(slot);
+        long stamp;
+        try {
+            stamp = switchLock(slot);
+        } catch (RuntimeException e) {
+            // nothing flipped; the target's copies would go stale without the mirror
+            migrating.remove(slot, migration);
+            release(migration.source, activated);
+            throw e;
+        }
+        try {
+            if (migration.failure == null) {
+                activated.forEach((key, meta) -> {
+                    KeyMetadata current = metadataStore.get(key);
+                    // deleted meanwhile; the target got the tombstone through mirror()
+                    if (current == null || !migration.source.equals(current.getPrimaryReplica())) return;
+                    before.put(key, current);
+                    after.put(key, meta);
+                });
+                // its filter learns the keys first, as reads see the metadata before the file sync
+                after.keySet().forEach(key -> keyFilters.recordKey(migration.target, key));
+                metadataStore.updateAll(after);
+            }
+            migrating.remove(slot, migration);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+
+        if (migration.failure != null) {
+            release(migration.source, activated);
+            throw new IllegalStateException(migration.failure);
+        }
+
+        // reads routed by the old metadata may still be on their way to the old primary
+        releaser.schedule(() -> release(migration.target, before), releaseDelayMs, TimeUnit.MILLISECONDS);
+        movedKeys.increment(after.size());
+        if (failed != null) throw failed;
+        return after.size();
+    }
+
+    /**
+     * Holders of the given keys, other than owner, drop copies not made under
+     * owner: the old primary and replicas after a move, or the target and its
+     * new replicas after an abandoned one. Best effort, a leftover copy is only
+     * wasted memory.
+     */
+    private void release(String owner, Map<String, KeyMetadata> before) {
+        Map<String, List<String>> byHolder = new HashMap<>();
+        before.forEach((key, meta) -> {
+            for (String holder : new String[]{meta.getPrimaryReplica(), meta.getSyncReplica(), meta.getAsyncReplica()}) {
+                if (holder != null && !holder.equals(owner)) {
+                    byHolder.computeIfAbsent(holder, h -> new ArrayList<>()).add(key);
+                }
+            }
+        });
+
+        byHolder.forEach((holder, keys) -> {
+            try {
+                rest.postForObject(holder + "/migration/release", Map.of("keys", keys, "owner", owner), Map.class);
+            } catch (Exception e) {
+                logger.warn("Release of {} migrated keys on {} failed: {}", keys.size(), holder, e.getMessage());
+            }
+        });
+    }
+
+    private void importEntries(Migration migration, List<Map<String, Object>> entries) {
+        rest.postForObject(migration.target + "/migration/import",
+                Map.of("source", migration.source, "entries", entries), Map.class);
+    }
+
+    private void checkStillValid(int slot, Migration migration) {
+        if (migration.failure != null) throw new IllegalStateException(migration.failure);
+        ClusterView view = views.current();
+        if (!view.getMembers().contains(migration.source) || !view.getMembers().contains(migration.target)
+                || !migration.target.equals(view.getSlots().get(slot))) {
+            throw new IllegalStateException("slot " + slot + " ownership changed in epoch " + view.getEpoch());
+        }
+    }
+
+    /**
+     * The slot's write lock, waited for at most switch-timeout-ms: writes in
+     * flight hold the read lock through their worker round trip, and the
+     * writes queued behind a waiting switch would stall as long.
+     */
+    private long switchLock(int slot) {
+        try {
+            long stamp = slotLock(slot).tryWriteLock(switchTimeoutMs, TimeUnit.MILLISECONDS);
+            if (stamp != 0) return stamp;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        throw new IllegalStateException("slot " + slot + " still busy with writes after " + switchTimeoutMs + " ms");
+    }
+
+    /** Spaces pages so all migrations together stay under max-bytes-per-sec. */
+    private void throttle(long bytes) throws InterruptedException {
+        if (maxBytesPerSec <= 0 || bytes <= 0) return;
+        long waitNanos;
+        synchronized (throttleLock) {
+            long now = System.nanoTime();
+            long sendAt = Math.max(now, nextSendNanos);
+            nextSendNanos = sendAt + bytes * 1_000_000_000L / maxBytesPerSec;
+            waitNanos = sendAt - now;
+        }
+        if (waitNanos > 0) TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+
+    /** Gives back reserved bytes a page did not use. */
+    private void refund(long bytes) {
+        if (maxBytesPerSec <= 0 || bytes <= 0) return;
+        synchronized (throttleLock) {
+            nextSendNanos = Math.max(System.nanoTime(), nextSendNanos - bytes * 1_000_000_000L / maxBytesPerSec);
+        }
+    }
+
+    private StampedLock slotLock(int slot) {
+        return slotLocks.computeIfAbsent(slot, s -> new StampedLock());
+    }
+}
@@ -1,35 +1,189 @@
 package com.controller.service;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToDoubleFunction;
 
+/**
+ * Placement weights for the alive workers. A worker's weight is its capacity
+ * (reported at registration and with each heartbeat, relative to the cluster
+ * average) scaled down by how loaded it is. Workers rank replica targets per
+ * key by these weights, so bigger and idler workers take proportionally more
+ * replicas and one worker's replicas are spread over all of its peers.
+ * Workers also report zone and rack labels; these are published so replicas
+ * of a key are spread across failure domains, together with a per-domain
+ * rate for rebuilding lost replicas.
+ */
 @Service
 public class ReplicaAssignmentService {
 
     private final WorkerRegistry registry;
+    private final double minLoadFactor;
+    private final long rebuildBytesPerSec;
 
-    public ReplicaAssignmentService(WorkerRegistry registry) {
+    private record Capacity(long memoryBytes, int cpus, double weight) {}
+    private record Load(long usedBytes, double systemLoad) {}
+    private record Topology(String zone, String rack) {
+        String key() { return zone + "/" + rack; }
+    }
+
+    private static final Topology UNLABELLED = new Topology("", "");
+
+    private final Map<String, Capacity> capacities = new ConcurrentHashMap<>();
+    private final Map<String, Load> loads = new ConcurrentHashMap<>();
+    private final Map<String, Topology> topologies = new ConcurrentHashMap<>();
+
+    public ReplicaAssignmentService(WorkerRegistry registry,
+                                    @Value("${controller.placement.min-load-factor:0.1}") double minLoadFactor,
+                                    @Value("${controller.rebuild.worker-bytes-per-sec:8388608}") long rebuildBytesPerSec) {
         this.registry = registry;
+        this.minLoadFactor = Math.max(0.01, Math.min(1.0, minLoadFactor));
+        this.rebuildBytesPerSec = rebuildBytesPerSec;
+    }
+
+    public void recordTopology(String workerUrl, Map<String, Object> topology) {
+        if (workerUrl == null || topology == null) return;
+        topologies.put(workerUrl, new Topology(label(topology.get("zone")), label(topology.get("rack"))));
+    }
+
+    public void recordCapacity(String workerUrl, Map<String, Object> capacity) {
+        if (workerUrl == null || capacity == null) return;
+        capacities.put(workerUrl, new Capacity(
+                longOf(capacity.get("memoryBytes")),
+                (int) longOf(capacity.get("cpus")),
+                capacity.get("weight") instanceof Number w ? w.doubleValue() : 0));
+    }
+
+    @SuppressWarnings("unchecked")
+    public void recordHeartbeat(String workerUrl, Map<String, Object> heartbeat) {
+        if (workerUrl == null) return;
+        if (heartbeat.get("capacity") instanceof Map capacity) recordCapacity(workerUrl, capacity);
+        if (heartbeat.get("topology") instanceof Map topology) recordTopology(workerUrl, topology);
+        if (heartbeat.get("load") instanceof Map load) {
+            loads.put(workerUrl, new Load(
+                    longOf(load.get("usedBytes")),
+                    load.get("systemLoad") instanceof Number l ? l.doubleValue() : -1));
+        }
+    }
+
+    /** Weight per alive worker, averaging 1.0; workers that never reported count as average. */
+    public Map<String, Double> placementWeights() {
+        List<String> alive = registry.getAliveWorkerUrls();
+        Map<String, Double> weights = new TreeMap<>();
+        if (alive.isEmpty()) return weights;
+
+        double meanMemory = mean(alive, c -> (double) c.memoryBytes());
+        double meanCpus = mean(alive, c -> (double) c.cpus());
+
+        double total = 0;
+        for (String url : alive) {
+            double w = capacityWeight(capacities.get(url), meanMemory, meanCpus) * loadFactor(url);
+            weights.put(url, w);
+            total += w;
+        }
+
+        // normalized and rounded, so small load changes do not reshuffle placement
+        double scale = total > 0 ? alive.size() / total : 1;
+        weights.replaceAll((url, w) -> Math.round(w * scale * 100) / 100.0);
+        return weights;
     }
 
-    public synchronized Map<String, List<String>> recomputeReplicas() {
-        List<String> ids = registry.getAliveWorkerIds();
-        int n = ids.size();
-        Map<String, List<String>> result = new HashMap<>();
-        if (n == 0) return result;
+    /** url -> {zone, rack} of every alive worker; unlabelled workers share one blank domain. */
+    public Map<String, Map<String, String>> failureDomains() {
+        Map<String, Map<String, String>> domains = new TreeMap<>();
+        for (String url : registry.getAliveWorkerUrls()) {
+            Topology t = topologies.getOrDefault(url, UNLABELLED);
+            domains.put(url, Map.of("zone", t.zone(), "rack", t.rack()));
+        }
+        return domains;
+    }
 
-        for (int i = 0; i < n; i++) {
-            String id = ids.get(i);
-            String syncId = ids.get((i + 1) % n);
-            String asyncId = (n >= 3) ? ids.get((i + 2) % n) : null;
+    /**
+     * Bytes/s each worker may send into each failure domain (zone/rack) while
+     * rebuilding replicas. After a domain is lost every survivor rebuilds at
+     * once; splitting each domain's ingress budget (worker-bytes-per-sec per
+     * member) across all senders keeps the total into it at that budget.
+     */
+    public Map<String, Long> rebuildRates() {
+        Map<String, Long> rates = new TreeMap<>();
+        if (rebuildBytesPerSec <= 0) return rates;
 
-            String url = registry.getUrl(id);
-            String syncUrl = registry.getUrl(syncId);
-            String asyncUrl = asyncId == null ? null : registry.getUrl(asyncId);
+        List<String> alive = registry.getAliveWorkerUrls();
+        int senders = Math.max(1, alive.size() - 1);
+        Map<String, Integer> members = new HashMap<>();
+        for (String url : alive) members.merge(topologies.getOrDefault(url, UNLABELLED).key(), 1, Integer::sum);
+        members.forEach((domain, n) -> rates.put(domain, Math.max(1, rebuildBytesPerSec * n / senders)));
+        return rates;
+    }
 
-            result.put(url, Arrays.asList(syncUrl, asyncUrl));
+    /** Weights plus the inputs behind them, for /cluster/placement. */
+    public Map<String, Object> snapshot() {
+        Map<String, Double> weights = placementWeights();
+        Map<String, Object> workers = new TreeMap<>();
+        for (String url : weights.keySet()) {
+            Map<String, Object> w = new LinkedHashMap<>();
+            w.put("weight", weights.get(url));
+            w.put("capacity", capacities.get(url));
+            w.put("load", loads.get(url));
+            w.put("utilization", utilization(url));
+            w.put("topology", topologies.getOrDefault(url, UNLABELLED));
+            workers.put(url, w);
         }
-        return result;
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("weights", weights);
+        out.put("domains", failureDomains());
+        out.put("rebuildRates", rebuildRates());
+        out.put("workers", workers);
+        return out;
+    }
+
+    private double capacityWeight(Capacity c, double meanMemory, double meanCpus) {
+        if (c == null) return 1.0;
+        if (c.weight() > 0) return c.weight();
+        // geometric mean of memory and cpu relative to the cluster average
+        double memory = meanMemory > 0 && c.memoryBytes() > 0 ? c.memoryBytes() / meanMemory : 1.0;
+        double cpu = meanCpus > 0 && c.cpus() > 0 ? c.cpus() / meanCpus : 1.0;
+        return Math.sqrt(memory * cpu);
+    }
+
+    /** 1 when idle, falling towards min-load-factor as memory or cpu fills up. */
+    private double loadFactor(String url) {
+        double utilization = utilization(url);
+        return Math.max(minLoadFactor, 1.0 - utilization);
+    }
+
+    private double utilization(String url) {
+        Capacity c = capacities.get(url);
+        Load l = loads.get(url);
+        if (c == null || l == null) return 0;
+
+        double memory = c.memoryBytes() > 0 ? (double) l.usedBytes() / c.memoryBytes() : 0;
+        double cpu = c.cpus() > 0 && l.systemLoad() >= 0 ? l.systemLoad() / c.cpus() : 0;
+        return Math.min(1.0, Math.max(memory, cpu));
+    }
+
+    private double mean(List<String> urls, ToDoubleFunction<Capacity> field) {
+        double sum = 0;
+        int n = 0;
+        for (String url : urls) {
+            Capacity c = capacities.get(url);
+            if (c == null) continue;
+            double v = field.applyAsDouble(c);
+            if (v <= 0) continue;
+            sum += v;
+            n++;
+        }
+        return n == 0 ? 0 : sum / n;
+    }
+
+    private static String label(Object o) {
+        return o == null ? "" : o.toString().trim();
+    }
+
+    private static long longOf(Object o) {
+        return o instanceof Number n ? n.longValue() : 0;
     }
 }
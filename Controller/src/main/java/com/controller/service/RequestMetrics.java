@@ -0,0 +1,47 @@
+package com.controller.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client-facing request latency, tagged by operation, the worker the request
+ * was routed to ("none" when it never left the controller) and the status returned.
+ * Timers are built once per tag combination rather than looked up on every request.
+ */
+@Component
+public class RequestMetrics {
+
+    private final MeterRegistry registry;
+    private final Map<Tags, Timer> timers = new ConcurrentHashMap<>();
+
+    private record Tags(String op, String worker, int status) {}
+
+    public RequestMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void record(String op, String worker, ResponseEntity<?> response, long elapsedNanos) {
+        record(op, worker, response.getStatusCode().value(), elapsedNanos);
+    }
+
+    public void record(String op, String worker, int status, long elapsedNanos) {
+        timers.computeIfAbsent(new Tags(op, worker == null ? "none" : worker, status), this::timer)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer timer(Tags tags) {
+        return Timer.builder("kv.controller.requests")
+                .description("Controller put/get latency by target worker")
+                .tag("op", tags.op())
+                .tag("worker", tags.worker())
+                .tag("status", String.valueOf(tags.status()))
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
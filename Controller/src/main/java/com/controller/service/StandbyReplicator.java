@@ -0,0 +1,107 @@
+package com.controller.service;
+
+import com.controller.model.ClusterView;
+import com.controller.model.KeyMetadata;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * On a standby, tails the leader's metadata journal so a takeover starts with
+ * the table already in memory. Following a new leader term starts from a
+ * snapshot: entries the old leader never shipped are not carried over.
+ */
+@Service
+public class StandbyReplicator {
+
+    private static final Logger logger = LoggerFactory.getLogger(StandbyReplicator.class);
+
+    private final RestTemplate rest = new RestTemplate();
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final LeaderElectionService leadership;
+    private final MetadataStore metadataStore;
+    private final ClusterViewService views;
+    private final WorkerManager workerManager;
+    private final int batchSize;
+
+    private long followingTerm = -1;
+    private boolean failing;
+
+    public StandbyReplicator(LeaderElectionService leadership,
+                             MetadataStore metadataStore,
+                             ClusterViewService views,
+                             WorkerManager workerManager,
+                             @Value("${controller.ha.replication-batch:1000}") int batchSize) {
+        this.leadership = leadership;
+        this.metadataStore = metadataStore;
+        this.views = views;
+        this.workerManager = workerManager;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${controller.ha.replication-interval-ms:200}")
+    public void pull() {
+        if (leadership.isStandalone() || leadership.isLeader()) {
+            followingTerm = -1;
+            return;
+        }
+        String leaderUrl = leadership.getLeaderUrl();
+        if (leaderUrl == null || leaderUrl.equals(leadership.getNodeUrl())) return;
+
+        try {
+            // a full batch means more is waiting
+            while (pullOnce(leaderUrl) >= batchSize) {
+                if (leadership.isLeader()) return;
+            }
+            if (failing) logger.info("Replicating from leader {} again", leaderUrl);
+            failing = false;
+        } catch (Exception e) {
+            if (!failing) logger.warn("Replication from leader {} failed: {}", leaderUrl, e.getMessage());
+            failing = true;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private int pullOnce(String leaderUrl) {
+        long term = leadership.getTerm();
+        long after = followingTerm == term ? metadataStore.lastSeq() : -1;
+
+        Map<String, Object> response = rest.getForObject(
+                leaderUrl + "/ha/journal?after=" + after + "&limit=" + batchSize
+                        + "&viewEpoch=" + views.current().getEpoch(),
+                Map.class);
+        Map<String, Object> payload = (Map<String, Object>) response.get("payload");
+
+        if (payload.get("workers") instanceof Map workers) {
+            workerManager.follow((Map<String, String>) workers);
+        }
+        if (payload.get("view") instanceof Map view) {
+            views.adopt(ClusterView.fromFull((Map<String, Object>) view));
+        }
+
+        if (Boolean.TRUE.equals(payload.get("snapshot"))) {
+            Map<String, KeyMetadata> table = mapper.convertValue(payload.get("table"),
+                    new TypeReference<Map<String, KeyMetadata>>() {});
+            long seq = ((Number) payload.get("seq")).longValue();
+            metadataStore.installSnapshot(seq, table);
+            followingTerm = ((Number) payload.get("term")).longValue();
+            logger.info("Installed metadata snapshot from {} term={} seq={} keys={}",
+                    leaderUrl, followingTerm, seq, table.size());
+            return 0;
+        }
+
+        List<MetadataStore.JournalEntry> entries = mapper.convertValue(payload.get("entries"),
+                new TypeReference<List<MetadataStore.JournalEntry>>() {});
+        metadataStore.applyReplicated(entries);
+        return entries.size();
+    }
+}
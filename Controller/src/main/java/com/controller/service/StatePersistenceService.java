@@ -1,5 +1,6 @@
 package com.controller.service;
 
+import com.controller.model.ClusterView;
 import com.controller.model.WorkerNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
@@ -9,12 +10,17 @@ import org.springframework.stereotype.Service;
 import java.io.File;
 import java.nio.file.Files;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Service
 public class StatePersistenceService {
 
+    // file writes happen under it; a lock rather than synchronized so virtual threads do not pin
+    private final ReentrantLock lock = new ReentrantLock();
+
     private final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules()
             .enable(SerializationFeature.INDENT_OUTPUT);
 
@@ -24,6 +30,9 @@ public class StatePersistenceService {
     @Value("${controller.state.fallback-dir:./}")
     private String fallbackDir;
 
+    @Value("${controller.cluster-view.file:cluster-view.json}")
+    private String clusterViewPath;
+
     public static class ControllerState {
         private Map<String, WorkerNode> workers;
         private List<String> workerUrls;
@@ -40,30 +49,70 @@ public class StatePersistenceService {
         public long getLastSaved() { return lastSaved; }
     }
 
-    public synchronized void saveState(Map<String, WorkerNode> workers, List<String> workerUrls) {
-        ControllerState state = new ControllerState(workers, workerUrls);
-        File f = new File(stateFilePath);
+    public void saveState(Map<String, WorkerNode> workers, List<String> workerUrls) {
+        lock.lock();
+        try {
+            ControllerState state = new ControllerState(workers, workerUrls);
+            File f = new File(stateFilePath);
+            try {
+                if (f.getParentFile() != null) f.getParentFile().mkdirs();
+                mapper.writeValue(f, state);
+            } catch (Exception e) {
+                try {
+                    Files.createDirectories(new File(fallbackDir).toPath());
+                    File fallback = new File(fallbackDir, "controller-state-fallback-" + System.currentTimeMillis() + ".json");
+                    mapper.writeValue(fallback, state);
+                } catch (Exception ignored) {}
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public ControllerState loadState() {
+        lock.lock();
         try {
-            if (f.getParentFile() != null) f.getParentFile().mkdirs();
-            mapper.writeValue(f, state);
-        } catch (Exception e) {
+            File f = new File(stateFilePath);
+            if (!f.exists()) return null;
             try {
-                Files.createDirectories(new File(fallbackDir).toPath());
-                File fallback = new File(fallbackDir, "controller-state-fallback-" + System.currentTimeMillis() + ".json");
-                mapper.writeValue(fallback, state);
+                ControllerState s = mapper.readValue(f, ControllerState.class);
+                if (s.getWorkers() == null) s = new ControllerState(Collections.emptyMap(), s.getWorkerUrls());
+                return s;
+            } catch (Exception e) {
+                return null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** The epoch must survive a restart, or workers would reject every view sent afterwards. */
+    public void saveClusterView(ClusterView view) {
+        lock.lock();
+        try {
+            File f = new File(clusterViewPath);
+            try {
+                if (f.getParentFile() != null) f.getParentFile().mkdirs();
+                mapper.writeValue(f, view.toFull());
             } catch (Exception ignored) {}
+        } finally {
+            lock.unlock();
         }
     }
 
-    public synchronized ControllerState loadState() {
-        File f = new File(stateFilePath);
-        if (!f.exists()) return null;
+    @SuppressWarnings("unchecked")
+    public ClusterView loadClusterView() {
+        lock.lock();
         try {
-            ControllerState s = mapper.readValue(f, ControllerState.class);
-            if (s.getWorkers() == null) s = new ControllerState(Collections.emptyMap(), s.getWorkerUrls());
-            return s;
-        } catch (Exception e) {
-            return null;
+            File f = new File(clusterViewPath);
+            if (!f.exists()) return null;
+            try {
+                return ClusterView.fromFull(mapper.readValue(f, LinkedHashMap.class));
+            } catch (Exception e) {
+                return null;
+            }
+        } finally {
+            lock.unlock();
         }
     }
 }
@@ -1,42 +1,61 @@
 package com.controller.service;
 
-import org.springframework.beans.factory.annotation.Value;
+import com.controller.model.WorkerStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.util.Map;
+import java.util.HashSet;
+import java.util.Set;
 
 @Service
 public class WorkerCleanupScheduler {
 
+    private static final Logger logger = LoggerFactory.getLogger(WorkerCleanupScheduler.class);
+
     private final WorkerRegistry registry;
     private final ClusterResyncService resync;
+    private final LeaderElectionService leadership;
 
-    @Value("${controller.heartbeat.timeout:15}")
-    private long timeout;
+    // only touched by the scheduler thread; used to log status transitions once
+    private final Set<String> suspects = new HashSet<>();
 
-    public WorkerCleanupScheduler(WorkerRegistry registry, ClusterResyncService resync) {
+    public WorkerCleanupScheduler(WorkerRegistry registry,
+                                  ClusterResyncService resync,
+                                  LeaderElectionService leadership) {
         this.registry = registry;
         this.resync = resync;
+        this.leadership = leadership;
     }
 
-    @Scheduled(fixedRate = 3000)
+    @Scheduled(fixedRateString = "${controller.failure-detector.check-interval-ms:1000}")
     public void checkCluster() {
-        long now = System.currentTimeMillis();
+        // a standby keeps its detectors fed but leaves failure handling to the leader
+        if (!leadership.isLeader()) return;
+
         boolean changed = false;
 
         for (String id : registry.getAllWorkerIds()) {
-            Long last = registry.getLastHeartbeat(id);
-            if (last == null) continue;
+            WorkerStatus status = registry.getStatus(id);
 
-            if (now - last > timeout * 1000) {
+            if (status == WorkerStatus.DEAD) {
+                Double phi = registry.getPhi(id);
                 String url = registry.markDead(id);
-                System.out.println("DEAD WORKER → " + id + " (" + url + ")");
+                suspects.remove(id);
+                logger.info("DEAD WORKER id={} url={} phi={}", id, url, phi);
                 changed = true;
+            } else if (status == WorkerStatus.SUSPECT) {
+                if (suspects.add(id)) {
+                    logger.warn("SUSPECT WORKER id={} url={} phi={}", id, registry.getUrl(id), registry.getPhi(id));
+                }
+            } else if (suspects.remove(id)) {
+                logger.info("Worker id={} recovered from suspicion", id);
             }
         }
 
+        suspects.retainAll(registry.getAllWorkerIds());
+
         if (changed) resync.resyncCluster();
     }
 }
-
@@ -0,0 +1,100 @@
+package com.controller.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-worker key filters, refreshed from the snapshots workers return on each
+ * cluster resync. Keys the controller routes to a worker in the meantime are
+ * added locally, so a filter can only err towards "might contain".
+ *
+ * Keys also reach a worker without passing the controller's put path: replica
+ * rebuilds, migration pages and failover after a view change. A filter is
+ * therefore only trusted once it was refreshed after the last view change,
+ * with no migration or rebuild still running; until then a miss goes to the
+ * worker.
+ */
+@Component
+public class WorkerKeyFilters {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkerKeyFilters.class);
+
+    private final Map<String, KeyBloomFilter> filters = new ConcurrentHashMap<>();
+
+    // keys recorded while a snapshot request to that worker is in flight
+    private final Map<String, Refresh> pending = new ConcurrentHashMap<>();
+
+    // workers whose filter was refreshed after the last view change settled
+    private final Set<String> trusted = ConcurrentHashMap.newKeySet();
+    // bumped on every view change; a refresh begun before one is not trusted
+    private final AtomicLong generation = new AtomicLong();
+
+    private record Refresh(long generation, Set<String> keys) {}
+
+    /** False only when the worker's trusted filter proves the key is absent. Unknown workers always pass. */
+    public boolean mightContain(String workerUrl, String key) {
+        KeyBloomFilter filter = filters.get(workerUrl);
+        return filter == null || !trusted.contains(workerUrl) || filter.mightContain(key);
+    }
+
+    public void recordKey(String workerUrl, String key) {
+        if (workerUrl == null) return;
+
+        // order matters: a concurrent install() swaps the filter before draining pending
+        Refresh inFlight = pending.get(workerUrl);
+        if (inFlight != null) inFlight.keys().add(key);
+
+        KeyBloomFilter filter = filters.get(workerUrl);
+        if (filter != null) filter.add(key);
+    }
+
+    /** Keys may move under every filter: distrust them until each is refreshed again. */
+    public void viewChanged() {
+        generation.incrementAndGet();
+        trusted.clear();
+    }
+
+    /** True when some of the workers has no filter trusted since the last view change. */
+    public boolean anyUntrusted(Collection<String> workerUrls) {
+        return !trusted.containsAll(workerUrls);
+    }
+
+    public void beginRefresh(String workerUrl) {
+        pending.put(workerUrl, new Refresh(generation.get(), ConcurrentHashMap.newKeySet()));
+    }
+
+    /** Installs a snapshot; settled means no keys were still moving onto the worker when it was taken. */
+    public void install(String workerUrl, Map<String, Object> snapshot, boolean settled) {
+        try {
+            KeyBloomFilter filter = KeyBloomFilter.fromSnapshot(
+                    ((Number) snapshot.get("numBits")).intValue(),
+                    ((Number) snapshot.get("numHashes")).intValue(),
+                    (String) snapshot.get("bits")
+            );
+
+            filters.put(workerUrl, filter);
+
+            Refresh inFlight = pending.remove(workerUrl);
+            if (inFlight != null) inFlight.keys().forEach(filter::add);
+
+            if (settled && inFlight != null && inFlight.generation() == generation.get()) trusted.add(workerUrl);
+            else trusted.remove(workerUrl);
+
+        } catch (Exception e) {
+            abortRefresh(workerUrl);
+            logger.warn("Invalid key filter from {}: {}", workerUrl, e.getMessage());
+        }
+    }
+
+    /** The previous filter stays valid: every key recorded meanwhile was also added to it. */
+    public void abortRefresh(String workerUrl) {
+        pending.remove(workerUrl);
+    }
+}
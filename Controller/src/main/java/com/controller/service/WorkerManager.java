@@ -1,6 +1,8 @@
 package com.controller.service;
 
 import com.controller.model.WorkerNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
@@ -8,33 +10,72 @@ import org.springframework.context.event.EventListener;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Service
 public class WorkerManager {
 
+    private static final Logger logger = LoggerFactory.getLogger(WorkerManager.class);
+
     private final Map<String, WorkerNode> workers = new ConcurrentHashMap<>();
     private final List<String> workerUrls = new ArrayList<>();
 
+    // registration saves state and pushes the view while holding it
+    private final ReentrantLock lock = new ReentrantLock();
+
     private final WorkerRegistry registry;
     private final StatePersistenceService persistence;
     private final ClusterResyncService resync;
     private final PartitioningService partition;
+    private final ClusterViewService views;
+    private final LeaderElectionService leadership;
 
     @Autowired
     public WorkerManager(WorkerRegistry registry,
                          StatePersistenceService persistence,
                          ClusterResyncService resync,
-                         PartitioningService partition) {
+                         PartitioningService partition,
+                         ClusterViewService views,
+                         LeaderElectionService leadership) {
         this.registry = registry;
         this.persistence = persistence;
         this.resync = resync;
         this.partition = partition;
+        this.views = views;
+        this.leadership = leadership;
     }
 
     @EventListener(ApplicationReadyEvent.class)
     public void init() {
         loadState();
-        resync.forceResync();
+        if (leadership.isLeader()) resync.forceResync();
+    }
+
+    @EventListener
+    public void onLeadershipChanged(LeaderElectionService.LeadershipChanged change) {
+        if (change.leader()) resync.takeOver();
+    }
+
+    /** Standby side: mirrors the leader's workers so their heartbeats are tracked before a takeover. */
+    public void follow(Map<String, String> workerIdsToUrls) {
+        lock.lock();
+        try {
+            boolean changed = false;
+            for (var e : workerIdsToUrls.entrySet()) {
+                String id = e.getKey();
+                String url = e.getValue();
+                WorkerNode existing = workers.get(url);
+                if (existing != null && existing.getWorkerId().equals(id)) continue;
+
+                workers.put(url, new WorkerNode(url, id));
+                if (!workerUrls.contains(url)) workerUrls.add(url);
+                registry.restore(id, url);
+                changed = true;
+            }
+            if (changed) save();
+        } finally {
+            lock.unlock();
+        }
     }
 
     private void loadState() {
@@ -53,41 +94,49 @@ public class WorkerManager {
         return "worker-" + UUID.randomUUID().toString().substring(0, 8);
     }
 
-    public synchronized String register(String url) {
-        System.out.println("[WorkerManager] register url=" + url +
-                " contains=" + workers.containsKey(url) +
-                " regId=" + registry.getWorkerIdByUrl(url));
-
-        // case: stale WorkerNode but registry lost workerId → treat as new
-        if (workers.containsKey(url) && registry.getWorkerIdByUrl(url) == null) {
-            System.out.println("[WorkerManager] stale entry, cleaning: " + url);
-            workers.remove(url);
-            workerUrls.remove(url);
-        }
+    public String register(String url, String zone, String rack) {
+        lock.lock();
+        try {
+            logger.debug("register url={} contains={} regId={}",
+                    url, workers.containsKey(url), registry.getWorkerIdByUrl(url));
+
+            // case: stale WorkerNode but registry lost workerId → treat as new
+            if (workers.containsKey(url) && registry.getWorkerIdByUrl(url) == null) {
+                logger.info("stale entry, cleaning url={}", url);
+                workers.remove(url);
+                workerUrls.remove(url);
+            }
+
+            // existing valid
+            if (workers.containsKey(url)) {
+                WorkerNode n = workers.get(url);
+                n.setZone(zone);
+                n.setRack(rack);
+                registry.updateHeartbeat(n.getWorkerId());
+                save();
+                resync.resyncWorker(url);
+                return n.getWorkerId();
+            }
+
+            // new worker
+            String wid = id();
+            WorkerNode node = new WorkerNode(url, wid);
+            node.setZone(zone);
+            node.setRack(rack);
+            node.updateHeartbeat();
+
+            workers.put(url, node);
+            if (!workerUrls.contains(url)) workerUrls.add(url);
+            registry.register(wid, url);
 
-        // existing valid
-        if (workers.containsKey(url)) {
-            WorkerNode n = workers.get(url);
-            registry.updateHeartbeat(n.getWorkerId());
             save();
-            resync.resyncCluster();
-            return n.getWorkerId();
-        }
-
-        // new worker
-        String wid = id();
-        WorkerNode node = new WorkerNode(url, wid);
-        node.updateHeartbeat();
-
-        workers.put(url, node);
-        if (!workerUrls.contains(url)) workerUrls.add(url);
-        registry.register(wid, url);
+            resync.resyncWorker(url);
 
-        save();
-        resync.resyncCluster();
-
-        System.out.println("[WorkerManager] NEW worker id=" + wid + " url=" + url);
-        return wid;
+            logger.info("NEW worker id={} url={} zone={} rack={}", wid, url, zone, rack);
+            return wid;
+        } finally {
+            lock.unlock();
+        }
     }
 
     public void heartbeat(String url) {
@@ -112,6 +161,10 @@ public class WorkerManager {
     public String getWorkerForKey(String key) {
         List<String> active = getActiveWorkers();
         if (active.isEmpty()) return null;
+
+        // owner of the key's slot in the current view; hash over active workers until it catches up
+        String owner = views.current().ownerOf(key);
+        if (owner != null && active.contains(owner)) return owner;
         return partition.getWorkerForKey(key, active);
     }
 
@@ -123,12 +176,15 @@ public class WorkerManager {
         return workers.values();
     }
 
-    public synchronized void removeByUrl(String url) {
-        WorkerNode removed = workers.remove(url);
-        boolean removedList = workerUrls.remove(url);
-        System.out.println("[WorkerManager] removeByUrl url=" + url +
-                " removed=" + (removed != null) +
-                " removedList=" + removedList);
+    public void removeByUrl(String url) {
+        lock.lock();
+        try {
+            WorkerNode removed = workers.remove(url);
+            boolean removedList = workerUrls.remove(url);
+            logger.info("removeByUrl url={} removed={} removedList={}", url, removed != null, removedList);
+        } finally {
+            lock.unlock();
+        }
     }
 
     private void save() {
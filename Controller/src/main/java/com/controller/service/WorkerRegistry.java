@@ -1,5 +1,8 @@
 package com.controller.service;
 
+import com.controller.model.WorkerStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -9,39 +12,64 @@ import java.util.concurrent.ConcurrentHashMap;
 @Component
 public class WorkerRegistry {
 
+    private static final Logger logger = LoggerFactory.getLogger(WorkerRegistry.class);
+
     private static class WorkerInfo {
         final String workerId;
         final String url;
-        volatile long lastHeartbeat;
+        final PhiAccrualFailureDetector detector;
 
-        WorkerInfo(String workerId, String url) {
+        WorkerInfo(String workerId, String url, PhiAccrualFailureDetector detector) {
             this.workerId = workerId;
             this.url = url;
-            this.lastHeartbeat = System.currentTimeMillis();
+            this.detector = detector;
         }
     }
 
-    @Value("${controller.heartbeat.timeout:15}")
-    private long timeoutSeconds;
-
     private final Map<String, WorkerInfo> workers = new ConcurrentHashMap<>(); // keyed by workerId
     private final Map<String, String> urlToId = new ConcurrentHashMap<>();     // url -> workerId
 
+    private final double phiSuspect;
+    private final double phiDead;
+    private final int windowSize;
+    private final long expectedIntervalMs;
+    private final long minStdDevMs;
+    private final long acceptablePauseMs;
+
+    public WorkerRegistry(
+            @Value("${controller.failure-detector.phi-suspect:3.0}") double phiSuspect,
+            @Value("${controller.failure-detector.phi-dead:8.0}") double phiDead,
+            @Value("${controller.failure-detector.window-size:100}") int windowSize,
+            @Value("${controller.heartbeat.interval:5000}") long expectedIntervalMs,
+            @Value("${controller.failure-detector.min-std-dev-ms:1000}") long minStdDevMs,
+            @Value("${controller.failure-detector.acceptable-pause-ms:3000}") long acceptablePauseMs) {
+        this.phiSuspect = phiSuspect;
+        this.phiDead = phiDead;
+        this.windowSize = windowSize;
+        this.expectedIntervalMs = expectedIntervalMs;
+        this.minStdDevMs = minStdDevMs;
+        this.acceptablePauseMs = acceptablePauseMs;
+    }
+
+    private WorkerInfo newWorker(String workerId, String url) {
+        return new WorkerInfo(workerId, url, new PhiAccrualFailureDetector(
+                windowSize, expectedIntervalMs, minStdDevMs, acceptablePauseMs, System.currentTimeMillis()));
+    }
+
     public synchronized void register(String workerId, String url) {
-        workers.put(workerId, new WorkerInfo(workerId, url));
+        workers.put(workerId, newWorker(workerId, url));
         urlToId.put(url, workerId);
-        System.out.println("[Registry] register id=" + workerId + " url=" + url);
+        logger.info("register id={} url={}", workerId, url);
     }
 
     public synchronized void restore(String workerId, String url) {
-        workers.put(workerId, new WorkerInfo(workerId, url));
+        workers.put(workerId, newWorker(workerId, url));
         urlToId.put(url, workerId);
-        System.out.println("[Registry] restore id=" + workerId + " url=" + url);
+        logger.info("restore id={} url={}", workerId, url);
     }
 
     public synchronized void updateHeartbeatById(String workerId) {
-        WorkerInfo w = workers.get(workerId);
-        if (w != null) w.lastHeartbeat = System.currentTimeMillis();
+        updateHeartbeat(workerId);
     }
 
     public synchronized void updateHeartbeatByUrl(String url) {
@@ -51,12 +79,12 @@ public class WorkerRegistry {
 
     public Set<String> getAllWorkerIds() { return workers.keySet(); }
 
+    /** Alive and suspect workers: a suspect keeps its replicas until it is declared dead. */
     public synchronized List<String> getAliveWorkerUrls() {
         long now = System.currentTimeMillis();
-        long timeoutMs = timeoutSeconds * 1000L;
         List<String> out = new ArrayList<>();
         for (var e : workers.entrySet()) {
-            if (now - e.getValue().lastHeartbeat < timeoutMs) out.add(e.getValue().url);
+            if (status(e.getValue(), now) != WorkerStatus.DEAD) out.add(e.getValue().url);
         }
         Collections.sort(out);
         return out;
@@ -64,15 +92,50 @@ public class WorkerRegistry {
 
     public synchronized List<String> getAliveWorkerIds() {
         long now = System.currentTimeMillis();
-        long timeoutMs = timeoutSeconds * 1000L;
         List<String> out = new ArrayList<>();
         for (var e : workers.entrySet()) {
-            if (now - e.getValue().lastHeartbeat < timeoutMs) out.add(e.getKey());
+            if (status(e.getValue(), now) != WorkerStatus.DEAD) out.add(e.getKey());
         }
         Collections.sort(out);
         return out;
     }
 
+    public WorkerStatus getStatus(String workerId) {
+        WorkerInfo w = workers.get(workerId);
+        return w == null ? WorkerStatus.DEAD : status(w, System.currentTimeMillis());
+    }
+
+    public Double getPhi(String workerId) {
+        WorkerInfo w = workers.get(workerId);
+        return w == null ? null : w.detector.phi(System.currentTimeMillis());
+    }
+
+    /** url -> {workerId, status, phi, lastHeartbeat} for every registered worker. */
+    public synchronized Map<String, Map<String, Object>> snapshotLiveness() {
+        long now = System.currentTimeMillis();
+        Map<String, Map<String, Object>> out = new TreeMap<>();
+        for (WorkerInfo w : workers.values()) {
+            double phi = w.detector.phi(now);
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("workerId", w.workerId);
+            entry.put("status", status(phi));
+            entry.put("phi", phi);
+            entry.put("lastHeartbeat", w.detector.lastHeartbeat());
+            out.put(w.url, entry);
+        }
+        return out;
+    }
+
+    private WorkerStatus status(WorkerInfo w, long now) {
+        return status(w.detector.phi(now));
+    }
+
+    private WorkerStatus status(double phi) {
+        if (phi >= phiDead) return WorkerStatus.DEAD;
+        if (phi >= phiSuspect) return WorkerStatus.SUSPECT;
+        return WorkerStatus.ALIVE;
+    }
+
     public synchronized String getUrl(String workerId) {
         WorkerInfo w = workers.get(workerId);
         return w == null ? null : w.url;
@@ -82,9 +145,16 @@ public class WorkerRegistry {
         return urlToId.get(url);
     }
 
+    /** workerId -> url for every registered worker. */
+    public synchronized Map<String, String> snapshotUrls() {
+        Map<String, String> out = new HashMap<>();
+        workers.forEach((id, w) -> out.put(id, w.url));
+        return out;
+    }
+
     public synchronized Map<String, Long> snapshotHeartbeats() {
         Map<String, Long> out = new HashMap<>();
-        workers.forEach((id, w) -> out.put(id, w.lastHeartbeat));
+        workers.forEach((id, w) -> out.put(id, w.detector.lastHeartbeat()));
         return out;
     }
 
@@ -92,7 +162,7 @@ public class WorkerRegistry {
         WorkerInfo removed = workers.remove(workerId);
         if (removed != null) {
             urlToId.remove(removed.url);
-            System.out.println("[Registry] markDead id=" + workerId + " url=" + removed.url);
+            logger.info("markDead id={} url={}", workerId, removed.url);
             return removed.url;
         }
         return null;
@@ -102,22 +172,18 @@ public class WorkerRegistry {
         String id = urlToId.remove(url);
         if (id != null) {
             workers.remove(id);
-            System.out.println("[Registry] removeByUrl url=" + url + " id=" + id);
+            logger.info("removeByUrl url={} id={}", url, id);
         }
         return id;
     }
 
-    public long getTimeoutSeconds() {
-        return timeoutSeconds;
-    }
-
     public void updateHeartbeat(String workerId) {
         WorkerInfo w = workers.get(workerId);
-        if (w != null) w.lastHeartbeat = System.currentTimeMillis();
+        if (w != null) w.detector.heartbeat(System.currentTimeMillis());
     }
 
     public Long getLastHeartbeat(String workerId) {
         WorkerInfo w = workers.get(workerId);
-        return (w == null) ? null : w.lastHeartbeat;
+        return (w == null) ? null : w.detector.lastHeartbeat();
     }
 }
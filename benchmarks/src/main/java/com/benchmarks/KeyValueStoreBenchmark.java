@@ -0,0 +1,69 @@
+package com.benchmarks;
+
+import com.worker.model.KeyValue;
+import com.worker.model.ReplicaInfo;
+import com.worker.model.ReplicaType;
+import com.worker.service.KeyValueStore;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/** Worker store: the primary write path, point reads (hits and filtered misses) and the /status copy. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeyValueStoreBenchmark {
+
+    @Param({"10000", "100000"})
+    public int keys;
+
+    private KeyValueStore store;
+    private String[] keyNames;
+    private ReplicaInfo replicaInfo;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        store = new KeyValueStore(keys, 0.01, 100, 0, 0.90, 0.75, "", "lru", true);
+        replicaInfo = new ReplicaInfo("http://localhost:8081", "http://localhost:8082", "http://localhost:8083");
+
+        keyNames = new String[keys];
+        for (int i = 0; i < keys; i++) {
+            keyNames[i] = "tenant-" + (i % 64) + ":key-" + i;
+            store.put(new KeyValue(keyNames[i], ReplicaType.PRIMARY, "value-" + i, replicaInfo));
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void put() {
+        int i = ThreadLocalRandom.current().nextInt(keys);
+        store.put(new KeyValue(keyNames[i], ReplicaType.PRIMARY, "value-" + i, replicaInfo));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public KeyValue getHit() {
+        return store.get(keyNames[ThreadLocalRandom.current().nextInt(keys)]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean getMiss() {
+        String key = "absent:" + ThreadLocalRandom.current().nextInt(keys);
+        return store.mightContain(key) && store.get(key) != null;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void getAll(Blackhole bh) {
+        Map<String, KeyValue> all = store.getAll();
+        bh.consume(all.size());
+    }
+}
@@ -0,0 +1,81 @@
+package com.benchmarks;
+
+import com.controller.model.KeyMetadata;
+import com.controller.service.MetadataStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controller metadata writes. Every update rewrites and fsyncs the whole table,
+ * so the cost grows with the number of keys; this tracks that curve.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MetadataStoreBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int keys;
+
+    private File dir;
+    private MetadataStore store;
+    private String[] keyNames;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        dir = Files.createTempDirectory("metadata-bench").toFile();
+        File file = new File(dir, "metadata.json");
+
+        // seed the file directly; going through update() would rewrite it once per key
+        keyNames = new String[keys];
+        Map<String, KeyMetadata> seed = new HashMap<>();
+        for (int i = 0; i < keys; i++) {
+            keyNames[i] = "tenant-" + (i % 64) + ":key-" + i;
+            seed.put(keyNames[i], meta(i));
+        }
+        new ObjectMapper().writeValue(file, seed);
+
+        store = new MetadataStore(file, 100_000, new SimpleMeterRegistry(), Tracer.NOOP);
+        if (store.get(keyNames[0]) == null) throw new IllegalStateException("metadata seed did not load");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        dir.delete();
+    }
+
+    @Benchmark
+    public void update() {
+        int i = ThreadLocalRandom.current().nextInt(keys);
+        store.update(keyNames[i], meta(i + 1));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public KeyMetadata get() {
+        return store.get(keyNames[ThreadLocalRandom.current().nextInt(keys)]);
+    }
+
+    private static KeyMetadata meta(int i) {
+        return new KeyMetadata(
+                "http://localhost:" + (8081 + i % 4),
+                "http://localhost:" + (8081 + (i + 1) % 4),
+                "http://localhost:" + (8081 + (i + 2) % 4)
+        );
+    }
+}
@@ -0,0 +1,63 @@
+package com.benchmarks;
+
+import com.controller.service.PartitioningService;
+import com.worker.service.ReplicaPlacement;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/** Key routing done by the controller on every put and replica placement done by recovery for every key. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PartitioningBenchmark {
+
+    @Param({"4", "32", "256"})
+    public int workerCount;
+
+    private final PartitioningService partitioning = new PartitioningService();
+    // rank() only reads the installed weights and domains
+    private final ReplicaPlacement placement = new ReplicaPlacement(null, null, 1, 0, "", "");
+    private List<String> workers;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        workers = new ArrayList<>();
+        Map<String, Double> weights = new HashMap<>();
+        Map<String, Map<String, Object>> domains = new HashMap<>();
+        for (int i = 0; i < workerCount; i++) {
+            String url = "http://worker-" + i + ":8081";
+            workers.add(url);
+            weights.put(url, 0.5 + (i % 4) * 0.25);
+            domains.put(url, Map.of("zone", "zone-" + (i % 3), "rack", "rack-" + (i % 6)));
+        }
+        placement.update(weights);
+        placement.updateDomains(domains);
+
+        keys = new String[4096];
+        for (int i = 0; i < keys.length; i++) keys[i] = "tenant-" + (i % 64) + ":key-" + i;
+    }
+
+    @Benchmark
+    public String getWorkerForKey() {
+        return partitioning.getWorkerForKey(keys[ThreadLocalRandom.current().nextInt(keys.length)], workers);
+    }
+
+    @Benchmark
+    public List<String> rankReplicas() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String primary = workers.get(random.nextInt(workerCount));
+        List<String> candidates = new ArrayList<>(workers);
+        candidates.remove(primary);
+        return placement.rank(keys[random.nextInt(keys.length)], candidates, List.of(primary));
+    }
+}
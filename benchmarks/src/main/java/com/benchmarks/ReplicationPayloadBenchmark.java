@@ -0,0 +1,78 @@
+package com.benchmarks;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replication payload maps as built by the worker's ReplicationService: the
+ * /replicate HTTP body (Jackson via RestTemplate) and the replication-events
+ * Kafka record (spring-kafka JsonSerializer), each both ways.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReplicationPayloadBenchmark {
+
+    @Param({"16", "1024", "65536"})
+    public int valueSize;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final JsonSerializer<Object> kafkaSerializer = new JsonSerializer<>();
+    private final JsonDeserializer<Object> kafkaDeserializer = new JsonDeserializer<>(Object.class);
+
+    private Map<String, Object> httpBody;
+    private Map<String, Object> kafkaPayload;
+    private byte[] httpBytes;
+    private byte[] kafkaBytes;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        kafkaDeserializer.addTrustedPackages("*");
+
+        httpBody = new HashMap<>();
+        httpBody.put("key", "tenant-7:key-123456");
+        httpBody.put("value", "x".repeat(valueSize));
+        httpBody.put("version", System.currentTimeMillis());
+        httpBody.put("expiresAt", System.currentTimeMillis() + 60_000);
+        httpBody.put("primaryUrl", "http://localhost:8081");
+        httpBody.put("syncUrl", "http://localhost:8082");
+        httpBody.put("asyncUrl", "http://localhost:8083");
+
+        kafkaPayload = new HashMap<>(httpBody);
+        kafkaPayload.remove("asyncUrl");
+        kafkaPayload.put("targetUrl", "http://localhost:8083");
+
+        httpBytes = mapper.writeValueAsBytes(httpBody);
+        kafkaBytes = kafkaSerializer.serialize("replication-events", kafkaPayload);
+    }
+
+    @Benchmark
+    public byte[] httpSerialize() throws Exception {
+        return mapper.writeValueAsBytes(httpBody);
+    }
+
+    @Benchmark
+    public Map<String, Object> httpDeserialize() throws Exception {
+        return mapper.readValue(httpBytes, new TypeReference<Map<String, Object>>() {});
+    }
+
+    @Benchmark
+    public byte[] kafkaSerialize() {
+        return kafkaSerializer.serialize("replication-events", kafkaPayload);
+    }
+
+    @Benchmark
+    public Object kafkaDeserialize() {
+        return kafkaDeserializer.deserialize("replication-events", kafkaBytes);
+    }
+}
@@ -0,0 +1,60 @@
+package com.benchmarks;
+
+import com.controller.service.WorkerRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Alive-worker lookups. Both reads and heartbeats synchronize on the registry,
+ * so the contended group measures readers competing with heartbeat writers.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WorkerRegistryBenchmark {
+
+    @Param({"4", "64"})
+    public int workerCount;
+
+    private WorkerRegistry registry;
+    private String[] urls;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        // an hour-long expected interval keeps every worker alive for the whole run
+        registry = new WorkerRegistry(3.0, 8.0, 100, 3_600_000, 1000, 3000);
+
+        urls = new String[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            urls[i] = "http://worker-" + i + ":8081";
+            registry.register("worker-" + i, urls[i]);
+        }
+    }
+
+    @Benchmark
+    @Group("uncontended")
+    @GroupThreads(1)
+    public List<String> aliveOnly() {
+        return registry.getAliveWorkerUrls();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(6)
+    public List<String> alive() {
+        return registry.getAliveWorkerUrls();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(2)
+    public void heartbeat() {
+        registry.updateHeartbeatByUrl(urls[ThreadLocalRandom.current().nextInt(workerCount)]);
+    }
+}
@@ -0,0 +1,81 @@
+package com.benchmarks;
+
+import com.controller.service.KeyBloomFilter;
+import com.worker.service.CountingBloomFilter;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The controller's KeyBloomFilter re-implements the worker's CountingBloomFilter
+ * hashing; a drift between the two turns into gets answered 404 for keys that exist.
+ */
+class KeyFilterCompatibilityTest {
+
+    private static final int KEYS = 20_000;
+    private static final int PROBES = 200_000;
+
+    @Test
+    void snapshotAnswersLikeTheWorkerFilter() {
+        CountingBloomFilter worker = new CountingBloomFilter(KEYS, 0.01);
+        for (int i = 0; i < KEYS; i++) worker.add("key-" + i);
+
+        KeyBloomFilter controller = snapshot(worker);
+
+        for (int i = 0; i < KEYS; i++) {
+            assertTrue(controller.mightContain("key-" + i), "false negative for key-" + i);
+        }
+        for (int i = 0; i < PROBES; i++) {
+            String probe = "probe-" + i;
+            assertEquals(worker.mightContain(probe), controller.mightContain(probe), probe);
+        }
+    }
+
+    @Test
+    void controllerAddSetsTheWorkerBitPositions() {
+        CountingBloomFilter worker = new CountingBloomFilter(KEYS, 0.01);
+        KeyBloomFilter controller = snapshot(worker);
+
+        // non-ASCII keys exercise the UTF-8 byte loop both sides hash over
+        String[] keys = {"a", "user:{42}:name", "ключ", "キー", "😀", ""};
+        for (String key : keys) {
+            worker.add(key);
+            controller.add(key);
+        }
+
+        for (int i = 0; i < PROBES; i++) {
+            String probe = "probe-" + i;
+            assertEquals(worker.mightContain(probe), controller.mightContain(probe), probe);
+        }
+        for (String key : keys) {
+            assertTrue(controller.mightContain(key), key);
+        }
+    }
+
+    @Test
+    void removedKeysStayAbsentOnBothSides() {
+        CountingBloomFilter worker = new CountingBloomFilter(KEYS, 0.01);
+        for (int i = 0; i < KEYS; i++) worker.add("key-" + i);
+        for (int i = 0; i < KEYS; i += 2) worker.remove("key-" + i);
+
+        KeyBloomFilter controller = snapshot(worker);
+
+        for (int i = 0; i < KEYS; i++) {
+            String key = "key-" + i;
+            assertEquals(worker.mightContain(key), controller.mightContain(key), key);
+        }
+    }
+
+    /** Same encoding as KeyValueStore.keyFilterSnapshot() and the controller's install. */
+    private static KeyBloomFilter snapshot(CountingBloomFilter worker) {
+        long[] bits = worker.toBits();
+        ByteBuffer buf = ByteBuffer.allocate(bits.length * Long.BYTES);
+        buf.asLongBuffer().put(bits);
+        return KeyBloomFilter.fromSnapshot(worker.getNumBits(), worker.getNumHashes(),
+                Base64.getEncoder().encodeToString(buf.array()));
+    }
+}
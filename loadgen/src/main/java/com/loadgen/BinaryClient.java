@@ -0,0 +1,179 @@
+package com.loadgen;
+
+import com.worker.model.BinaryProtocol;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.worker.model.BinaryProtocol.*;
+
+/**
+ * Client for one worker's binary data port ({@link BinaryProtocol}). Calls
+ * from any number of threads are pipelined over a single connection; a reader
+ * thread completes each call's future when the reply with its request id
+ * arrives. Once the connection fails every outstanding and later call fails.
+ */
+public class BinaryClient implements AutoCloseable {
+
+    /** One reply: value and version are set for 200 on GET, message for errors (the worker to try on 421). */
+    public record Reply(int status, long version, String value, String message) {}
+
+    private record Pending(byte op, CompletableFuture<Object> future) {}
+
+    private final SocketChannel channel;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final AtomicInteger ids = new AtomicInteger();
+    private final Map<Integer, Pending> inflight = new ConcurrentHashMap<>();
+    private ByteBuffer out = ByteBuffer.allocateDirect(64 * 1024);
+    private volatile IOException failure;
+
+    public BinaryClient(String host, int port) throws IOException {
+        channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        Thread reader = new Thread(this::readLoop, "binary-client-" + port);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    public boolean isOpen() {
+        return failure == null;
+    }
+
+    public CompletableFuture<Reply> get(String key) {
+        byte[] k = utf8(key);
+        return send(GET, 1 + keyBytes(k), buf -> putKey(buf, k));
+    }
+
+    public CompletableFuture<Reply> put(String key, String value, int ttlSeconds) {
+        byte[] k = utf8(key);
+        byte[] v = utf8(value);
+        return send(PUT, 1 + keyBytes(k) + valueBytes(v) + 4, buf -> {
+            putKey(buf, k);
+            putValue(buf, v);
+            buf.putInt(ttlSeconds);
+        });
+    }
+
+    /** One reply per key, in order; a failed frame fails the whole call. */
+    public CompletableFuture<List<Reply>> mget(List<String> keys) {
+        List<byte[]> encoded = new ArrayList<>(keys.size());
+        int bytes = 1 + 2;
+        for (String key : keys) {
+            byte[] k = utf8(key);
+            encoded.add(k);
+            bytes += keyBytes(k);
+        }
+        return send(MGET, bytes, buf -> {
+            buf.putShort((short) encoded.size());
+            for (byte[] k : encoded) putKey(buf, k);
+        });
+    }
+
+    private interface Body {
+        void write(ByteBuffer buf);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> send(byte op, int bytes, Body body) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        if (failure != null) {
+            future.completeExceptionally(failure);
+            return (CompletableFuture<T>) future;
+        }
+        int id = ids.incrementAndGet();
+        inflight.put(id, new Pending(op, future));
+
+        writeLock.lock();
+        try {
+            if (out.capacity() < 4 + 4 + bytes) out = ByteBuffer.allocateDirect(4 + 4 + bytes);
+            out.clear();
+            out.putInt(4 + bytes).putInt(id).put(op);
+            body.write(out);
+            out.flip();
+            while (out.hasRemaining()) channel.write(out);
+        } catch (IOException e) {
+            fail(e);
+        } finally {
+            writeLock.unlock();
+        }
+        // the connection may have failed between the check above and registering the call
+        if (failure != null && inflight.remove(id) != null) future.completeExceptionally(failure);
+        return (CompletableFuture<T>) future;
+    }
+
+    private void readLoop() {
+        ByteBuffer in = ByteBuffer.allocateDirect(64 * 1024);
+        try {
+            while (true) {
+                if (channel.read(in) < 0) throw new IOException("Connection closed by worker");
+                in.flip();
+                while (in.remaining() >= 4) {
+                    int length = in.getInt(in.position());
+                    if (in.remaining() < 4 + length) {
+                        if (4 + length > in.capacity()) {
+                            ByteBuffer bigger = ByteBuffer.allocateDirect(4 + length);
+                            bigger.put(in);
+                            in = bigger.flip();
+                        }
+                        break;
+                    }
+                    int start = in.position() + 4;
+                    in.position(start + length);
+                    complete(in.slice(start, length));
+                }
+                in.compact();
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void complete(ByteBuffer frame) {
+        Pending pending = inflight.remove(frame.getInt());
+        if (pending == null) return;
+        int status = frame.getShort();
+        if (pending.op() == MGET && status != OK) {
+            pending.future().completeExceptionally(new IOException("MGET failed: " + status + " " + getValue(frame)));
+        } else if (pending.op() == MGET) {
+            List<Reply> replies = new ArrayList<>();
+            int count = frame.getShort() & 0xffff;
+            for (int i = 0; i < count; i++) {
+                int s = frame.getShort();
+                replies.add(s == OK ? new Reply(s, frame.getLong(), getValue(frame), null) : new Reply(s, 0, null, null));
+            }
+            pending.future().complete(replies);
+        } else if (status != OK) {
+            pending.future().complete(new Reply(status, 0, null, getValue(frame)));
+        } else if (pending.op() == GET) {
+            pending.future().complete(new Reply(status, frame.getLong(), getValue(frame), null));
+        } else {
+            pending.future().complete(new Reply(status, frame.getLong(), null, null));
+        }
+    }
+
+    private void fail(IOException e) {
+        if (failure == null) failure = e;
+        for (Integer id : inflight.keySet()) {
+            Pending pending = inflight.remove(id);
+            if (pending != null) pending.future().completeExceptionally(failure);
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {}
+    }
+
+    @Override
+    public void close() {
+        fail(new IOException("Client closed"));
+    }
+}
@@ -0,0 +1,67 @@
+package com.loadgen;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/** Picks key indexes in [0, keyCount). */
+public interface KeyDistribution {
+
+    int next(ThreadLocalRandom random);
+
+    static KeyDistribution create(String name, int keyCount, double zipfTheta) {
+        return switch (name.toLowerCase()) {
+            case "uniform" -> random -> random.nextInt(keyCount);
+            case "zipfian", "zipf" -> new Zipfian(keyCount, zipfTheta);
+            default -> throw new IllegalArgumentException("Unknown distribution: " + name + " (uniform | zipfian)");
+        };
+    }
+
+    /**
+     * Zipfian ranks (Gray et al., "Quickly Generating Billion-Record Synthetic
+     * Databases"), scrambled with a hash so the hot keys are spread over the key
+     * space, and therefore over workers, instead of being the lowest indexes.
+     */
+    final class Zipfian implements KeyDistribution {
+        private final int n;
+        private final double theta;
+        private final double alpha;
+        private final double zetan;
+        private final double eta;
+
+        Zipfian(int n, double theta) {
+            if (theta <= 0 || theta >= 1) throw new IllegalArgumentException("zipfTheta must be in (0, 1)");
+            this.n = n;
+            this.theta = theta;
+            this.alpha = 1.0 / (1.0 - theta);
+            this.zetan = zeta(n, theta);
+            this.eta = (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta(2, theta) / zetan);
+        }
+
+        @Override
+        public int next(ThreadLocalRandom random) {
+            double u = random.nextDouble();
+            double uz = u * zetan;
+
+            long rank;
+            if (uz < 1.0) rank = 0;
+            else if (uz < 1.0 + Math.pow(0.5, theta)) rank = 1;
+            else rank = (long) (n * Math.pow(eta * u - eta + 1, alpha));
+
+            return (int) Math.floorMod(scramble(rank), (long) n);
+        }
+
+        private static double zeta(long n, double theta) {
+            double sum = 0;
+            for (long i = 1; i <= n; i++) sum += 1 / Math.pow(i, theta);
+            return sum;
+        }
+
+        private static long scramble(long v) {
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < 8; i++) {
+                h ^= (v >>> (i * 8)) & 0xff;
+                h *= 0x100000001b3L;
+            }
+            return h;
+        }
+    }
+}
@@ -0,0 +1,528 @@
+package com.loadgen;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.worker.model.ClusterView;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Boots a {@link LocalCluster} and drives a PUT/GET mix through the controller's
+ * /put and /get endpoints, reporting throughput and HdrHistogram latencies.
+ * Optionally kills a worker mid-run and measures how long the controller takes
+ * to notice and how long until that worker's keys are readable again; with a
+ * standby controller, can likewise stop the leader and time the takeover. A
+ * worker can also be added mid-run to time the rebalance that moves keys to it.
+ * With binary, puts and gets go straight to the key's slot owner over its
+ * binary data port, falling back to the controller when it answers 421.
+ *
+ * Options (all --name=value): workers, threads, duration, warmup, keys,
+ * readRatio, distribution (uniform|zipfian), zipfTheta, valueSize, rate
+ * (total ops/s, 0 = closed loop), killAfter (seconds into the measured run,
+ * -1 = never), killWorker, standby, killControllerAfter, joinAfter, heartbeatMs,
+ * acceptablePauseMs, histogramFile, quiet, reactive, binary, consistency.
+ */
+public class LoadGenerator {
+
+    private static final long MAX_LATENCY_US = TimeUnit.SECONDS.toMicros(60);
+
+    private final Map<String, String> opts;
+    private final PrintStream out;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpClient http = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(Executors.newCachedThreadPool())
+            .build();
+
+    private final Recorder putLatency = new Recorder(3);
+    private final Recorder getLatency = new Recorder(3);
+    private final LongAdder putErrors = new LongAdder();
+    private final LongAdder getErrors = new LongAdder();
+    private final LongAdder getMisses = new LongAdder();
+    private final Map<String, BinaryClient> binaryClients = new ConcurrentHashMap<>();
+
+    private boolean binary;
+    private String consistency;
+    private volatile List<String> slotOwners = List.of();
+    private volatile boolean hashTags;
+
+    private LocalCluster cluster;
+    private String[] keys;
+    private String[] values;
+
+    LoadGenerator(Map<String, String> opts, PrintStream out) {
+        this.opts = opts;
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            opts.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+
+        PrintStream out = System.out;
+        if (Boolean.parseBoolean(opts.getOrDefault("quiet", "true"))) {
+            // the services log every request to stdout/stderr, which would dominate the run
+            PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+            System.setOut(discard);
+            System.setErr(discard);
+        }
+
+        int exit = 0;
+        try {
+            new LoadGenerator(opts, out).run();
+        } catch (Exception e) {
+            e.printStackTrace(out);
+            exit = 1;
+        }
+        // Kafka and Tomcat leave non-daemon threads behind after close
+        System.exit(exit);
+    }
+
+    void run() throws Exception {
+        int workerCount = intOpt("workers", 3);
+        int threads = intOpt("threads", 8);
+        int durationSec = intOpt("duration", 30);
+        int warmupSec = intOpt("warmup", 5);
+        int keyCount = intOpt("keys", 10_000);
+        double readRatio = doubleOpt("readRatio", 0.9);
+        int valueSize = intOpt("valueSize", 128);
+        double rate = doubleOpt("rate", 0);
+        int killAfter = intOpt("killAfter", -1);
+        int killWorker = intOpt("killWorker", 0);
+        int killControllerAfter = intOpt("killControllerAfter", -1);
+        int joinAfter = intOpt("joinAfter", -1);
+        boolean standby = Boolean.parseBoolean(opts.getOrDefault("standby", String.valueOf(killControllerAfter >= 0)));
+        KeyDistribution distribution = KeyDistribution.create(
+                opts.getOrDefault("distribution", "uniform"), keyCount, doubleOpt("zipfTheta", 0.99));
+
+        out.printf("Starting controller%s + %d workers with embedded Kafka...%n", standby ? " + standby" : "", workerCount);
+        long bootStart = System.nanoTime();
+        boolean reactive = Boolean.parseBoolean(opts.getOrDefault("reactive", "false"));
+        binary = Boolean.parseBoolean(opts.getOrDefault("binary", "false"));
+        consistency = opts.get("consistency");
+        cluster = new LocalCluster(workerCount, intOpt("heartbeatMs", 1000), intOpt("acceptablePauseMs", 1000),
+                standby, reactive, binary);
+        ScheduledExecutorService routing = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "slot-routing");
+            t.setDaemon(true);
+            return t;
+        });
+
+        try {
+            cluster.awaitFormed(60_000);
+            // binary clients route by slot owner, like a smart client polling /cluster/view
+            if (binary) routing.scheduleWithFixedDelay(() -> {
+                hashTags = cluster.hashTags();
+                slotOwners = cluster.slotOwners();
+            }, 0, 500, TimeUnit.MILLISECONDS);
+            out.printf("Cluster formed in %.1fs: controller=%s data=%s workers=%s%n",
+                    (System.nanoTime() - bootStart) / 1e9, cluster.getControllerUrl(), cluster.getDataUrl(),
+                    cluster.getWorkerUrls());
+
+            prepareData(keyCount, valueSize);
+            preload(threads);
+
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            AtomicBoolean running = new AtomicBoolean(true);
+            long intervalNs = rate > 0 ? (long) (1e9 * threads / rate) : 0;
+            for (int t = 0; t < threads; t++) {
+                pool.submit(() -> drive(running, distribution, readRatio, intervalNs));
+            }
+
+            Thread.sleep(TimeUnit.SECONDS.toMillis(warmupSec));
+            resetStats();
+            out.printf("Warmup done (%ds), measuring for %ds...%n", warmupSec, durationSec);
+
+            long measureStart = System.nanoTime();
+            Map<String, Object> failover = null;
+            if (killAfter >= 0 && killAfter < durationSec) {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(killAfter));
+                failover = killAndMeasure(killWorker, keyCount);
+            }
+            if (killControllerAfter >= 0 && killControllerAfter < durationSec) {
+                long waitMs = TimeUnit.SECONDS.toMillis(killControllerAfter)
+                        - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - measureStart);
+                if (waitMs > 0) Thread.sleep(waitMs);
+                failover = killControllerAndMeasure(keyCount);
+            }
+            if (joinAfter >= 0 && joinAfter < durationSec) {
+                long waitMs = TimeUnit.SECONDS.toMillis(joinAfter)
+                        - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - measureStart);
+                if (waitMs > 0) Thread.sleep(waitMs);
+                failover = joinAndMeasure(keyCount);
+            }
+
+            long remainingMs = TimeUnit.SECONDS.toMillis(durationSec)
+                    - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - measureStart);
+            if (remainingMs > 0) Thread.sleep(remainingMs);
+
+            Histogram puts = putLatency.getIntervalHistogram();
+            Histogram gets = getLatency.getIntervalHistogram();
+            double elapsedSec = (System.nanoTime() - measureStart) / 1e9;
+
+            running.set(false);
+            pool.shutdown();
+            pool.awaitTermination(30, TimeUnit.SECONDS);
+
+            report(puts, gets, elapsedSec, failover);
+
+        } finally {
+            routing.shutdownNow();
+            binaryClients.values().forEach(BinaryClient::close);
+            cluster.close();
+        }
+    }
+
+    private void prepareData(int keyCount, int valueSize) {
+        keys = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) keys[i] = "load:" + i;
+
+        // a small pool of random values, so generating them stays out of the timed path
+        values = new String[64];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < values.length; i++) {
+            char[] chars = new char[valueSize];
+            for (int c = 0; c < valueSize; c++) chars[c] = (char) ('a' + random.nextInt(26));
+            values[i] = new String(chars);
+        }
+    }
+
+    private void preload(int threads) throws Exception {
+        out.printf("Preloading %d keys...%n", keys.length);
+        long start = System.nanoTime();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            futures.add(pool.submit(() -> {
+                for (int i = offset; i < keys.length; i += threads) {
+                    put(keys[i], values[i % values.length]);
+                }
+            }));
+        }
+        for (Future<?> f : futures) f.get();
+        pool.shutdown();
+
+        out.printf("Preloaded in %.1fs (%d put errors)%n", (System.nanoTime() - start) / 1e9, putErrors.sum());
+        resetStats();
+    }
+
+    private void drive(AtomicBoolean running, KeyDistribution distribution, double readRatio, long intervalNs) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long intervalUs = TimeUnit.NANOSECONDS.toMicros(intervalNs);
+        long next = System.nanoTime();
+
+        while (running.get()) {
+            if (intervalNs > 0) {
+                long wait = next - System.nanoTime();
+                if (wait > 0) LockSupport.parkNanos(wait);
+                next += intervalNs;
+            }
+
+            String key = keys[distribution.next(random)];
+            boolean read = random.nextDouble() < readRatio;
+
+            long start = System.nanoTime();
+            boolean ok = read ? get(key) : put(key, values[random.nextInt(values.length)]);
+            long latencyUs = Math.min(MAX_LATENCY_US, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+
+            if (!ok) continue;
+            Recorder recorder = read ? getLatency : putLatency;
+            // with a target rate, back-fill the requests a stalled response held up
+            if (intervalUs > 0) recorder.recordValueWithExpectedInterval(latencyUs, intervalUs);
+            else recorder.recordValue(latencyUs);
+        }
+    }
+
+    private boolean put(String key, String value) {
+        if (binary) {
+            int status = binaryStatus(key, client -> client.put(key, value, 0));
+            if (status / 100 == 2) return true;
+            if (status > 0) {
+                putErrors.increment();
+                return false;
+            }
+        }
+        try {
+            Map<String, String> body = consistency == null
+                    ? Map.of("key", key, "value", value)
+                    : Map.of("key", key, "value", value, "consistency", consistency);
+            HttpResponse<Void> res = send("PUT", "/put", body);
+            if (res.statusCode() / 100 == 2) return true;
+        } catch (Exception ignored) {}
+        putErrors.increment();
+        return false;
+    }
+
+    private boolean get(String key) {
+        if (binary) {
+            int status = binaryStatus(key, client -> client.get(key));
+            if (status / 100 == 2) return true;
+            if (status == 404) {
+                getMisses.increment();
+                return false;
+            }
+            if (status > 0) {
+                getErrors.increment();
+                return false;
+            }
+        }
+        try {
+            HttpResponse<Void> res = send("POST", "/get", Map.of("key", key));
+            if (res.statusCode() / 100 == 2) return true;
+            if (res.statusCode() == 404) {
+                getMisses.increment();
+                return false;
+            }
+        } catch (Exception ignored) {}
+        getErrors.increment();
+        return false;
+    }
+
+    /**
+     * Status of a call on the binary port of the key's slot owner, or -1 when
+     * it should go through the controller instead: no route yet, the owner is
+     * unreachable, or it answered 421.
+     */
+    private int binaryStatus(String key, Function<BinaryClient, CompletableFuture<BinaryClient.Reply>> call) {
+        List<String> owners = slotOwners;
+        if (owners.isEmpty()) return -1;
+        String owner = owners.get(ClusterView.slotOf(key, owners.size(), hashTags));
+        BinaryClient client = binaryClients.compute(owner, (url, c) -> c != null && c.isOpen() ? c : connect(url));
+        if (client == null) return -1;
+        try {
+            int status = call.apply(client).get(30, TimeUnit.SECONDS).status();
+            return status == 421 ? -1 : status;
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private BinaryClient connect(String workerUrl) {
+        int port = cluster.binaryPortOf(workerUrl);
+        if (port < 0) return null;
+        try {
+            return new BinaryClient(URI.create(workerUrl).getHost(), port);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    // failover probe, kept out of the measured error counts
+    private boolean readable(String key) {
+        try {
+            return send("POST", "/get", Map.of("key", key)).statusCode() / 100 == 2;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private HttpResponse<Void> send(String method, String path, Map<String, String> body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(cluster.getDataUrl() + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(body)))
+                .build();
+        return http.send(request, HttpResponse.BodyHandlers.discarding());
+    }
+
+    /**
+     * Kills one worker and times two things: until the controller drops it from the
+     * alive set (detection), and until every sampled key it was primary for can be
+     * read through the controller again (recovery).
+     */
+    private Map<String, Object> killAndMeasure(int index, int keyCount) throws InterruptedException {
+        String victim = cluster.getWorkerUrls().get(index);
+
+        Set<String> sample = new LinkedHashSet<>();
+        for (int i = 0; i < keyCount && sample.size() < 100; i++) {
+            if (victim.equals(cluster.primaryOf(keys[i]))) sample.add(keys[i]);
+        }
+
+        out.printf("Killing %s (primary for %d sampled keys)...%n", victim, sample.size());
+        long killedAt = System.nanoTime();
+        cluster.kill(index);
+
+        long detectedAt = -1;
+        long recoveredAt = -1;
+        long deadline = killedAt + TimeUnit.SECONDS.toNanos(120);
+
+        while (System.nanoTime() < deadline && (detectedAt < 0 || recoveredAt < 0)) {
+            if (detectedAt < 0 && !cluster.controllerSeesAlive(victim)) detectedAt = System.nanoTime();
+
+            if (recoveredAt < 0) {
+                sample.removeIf(key -> !victim.equals(cluster.primaryOf(key)) && readable(key));
+                if (sample.isEmpty()) recoveredAt = System.nanoTime();
+            }
+            Thread.sleep(50);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("worker", victim);
+        result.put("detectionMs", detectedAt < 0 ? null : TimeUnit.NANOSECONDS.toMillis(detectedAt - killedAt));
+        result.put("recoveryMs", recoveredAt < 0 ? null : TimeUnit.NANOSECONDS.toMillis(recoveredAt - killedAt));
+        result.put("unrecoveredKeys", sample.size());
+        out.println("Failover: " + result);
+        return result;
+    }
+
+    /**
+     * Stops the leading controller and times three things: until the standby
+     * holds the lease (takeover), until a PUT through it succeeds (writable),
+     * and whether sampled keys written before the stop are readable through
+     * it, which shows the metadata journal was streamed rather than reloaded.
+     */
+    private Map<String, Object> killControllerAndMeasure(int keyCount) throws InterruptedException {
+        Set<String> sample = new LinkedHashSet<>();
+        for (int i = 0; i < keyCount && sample.size() < 100; i++) sample.add(keys[i]);
+
+        out.println("Stopping the leading controller...");
+        long killedAt = System.nanoTime();
+        cluster.killController();
+
+        long takeoverAt = -1;
+        long writableAt = -1;
+        long deadline = killedAt + TimeUnit.SECONDS.toNanos(60);
+
+        while (System.nanoTime() < deadline && (takeoverAt < 0 || writableAt < 0)) {
+            if (takeoverAt < 0 && cluster.controllerIsLeader()) takeoverAt = System.nanoTime();
+            if (takeoverAt >= 0 && writableAt < 0 && writable("load:failover-probe")) writableAt = System.nanoTime();
+            Thread.sleep(20);
+        }
+        sample.removeIf(this::readable);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("controller", "leader");
+        result.put("takeoverMs", takeoverAt < 0 ? null : TimeUnit.NANOSECONDS.toMillis(takeoverAt - killedAt));
+        result.put("writableMs", writableAt < 0 ? null : TimeUnit.NANOSECONDS.toMillis(writableAt - killedAt));
+        result.put("unreadableKeys", sample.size());
+        out.println("Failover: " + result);
+        return result;
+    }
+
+    /**
+     * Boots one more worker and times two things: until the controller counts
+     * it alive (joined), and until every key whose slot it now owns has been
+     * moved to it and reads back through the controller (rebalanced).
+     */
+    private Map<String, Object> joinAndMeasure(int keyCount) throws Exception {
+        out.println("Adding a worker...");
+        long startedAt = System.nanoTime();
+        String joiner = cluster.getWorkerUrls().get(cluster.addWorker());
+
+        long joinedAt = -1;
+        long rebalancedAt = -1;
+        Set<String> pending = null;
+        long deadline = startedAt + TimeUnit.SECONDS.toNanos(120);
+
+        while (System.nanoTime() < deadline && rebalancedAt < 0) {
+            if (joinedAt < 0 && cluster.controllerSeesAlive(joiner)) {
+                joinedAt = System.nanoTime();
+                pending = new LinkedHashSet<>();
+                for (int i = 0; i < keyCount; i++) {
+                    if (joiner.equals(cluster.ownerOf(keys[i]))) pending.add(keys[i]);
+                }
+            }
+            if (pending != null) {
+                pending.removeIf(key -> joiner.equals(cluster.primaryOf(key)) && readable(key));
+                if (pending.isEmpty()) rebalancedAt = System.nanoTime();
+            }
+            Thread.sleep(50);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("worker", joiner);
+        result.put("joinMs", joinedAt < 0 ? null : TimeUnit.NANOSECONDS.toMillis(joinedAt - startedAt));
+        result.put("rebalanceMs", rebalancedAt < 0 ? null : TimeUnit.NANOSECONDS.toMillis(rebalancedAt - startedAt));
+        result.put("unmovedKeys", pending == null ? null : pending.size());
+        result.put("movedKeys", cluster.rebalanceStatus().get("movedKeys"));
+        out.println("Rebalance: " + result);
+        return result;
+    }
+
+    private boolean writable(String key) {
+        try {
+            return send("PUT", "/put", Map.of("key", key, "value", values[0])).statusCode() / 100 == 2;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void resetStats() {
+        putLatency.getIntervalHistogram();
+        getLatency.getIntervalHistogram();
+        putErrors.reset();
+        getErrors.reset();
+        getMisses.reset();
+    }
+
+    private void report(Histogram puts, Histogram gets, double elapsedSec, Map<String, Object> failover)
+            throws Exception {
+        out.println();
+        out.printf("Measured %.1fs%n", elapsedSec);
+        out.printf("%-5s %10s %10s %9s %9s %9s %9s %9s %9s %8s%n",
+                "op", "count", "ops/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "p99.99", "max ms", "errors");
+        row("PUT", puts, elapsedSec, putErrors.sum());
+        row("GET", gets, elapsedSec, getErrors.sum());
+
+        Histogram all = puts.copy();
+        all.add(gets);
+        row("ALL", all, elapsedSec, putErrors.sum() + getErrors.sum());
+        if (getMisses.sum() > 0) out.printf("GET misses (404): %d%n", getMisses.sum());
+        if (failover != null) out.println("Failover: " + failover);
+
+        String histogramFile = opts.get("histogramFile");
+        if (histogramFile != null) {
+            try (PrintStream file = new PrintStream(new FileOutputStream(histogramFile))) {
+                file.println("# PUT latency (ms)");
+                puts.outputPercentileDistribution(file, 1000.0);
+                file.println("# GET latency (ms)");
+                gets.outputPercentileDistribution(file, 1000.0);
+            }
+            out.println("Percentile distributions written to " + histogramFile);
+        }
+    }
+
+    private void row(String op, Histogram h, double elapsedSec, long errors) {
+        out.printf("%-5s %10d %10.0f %9.3f %9.3f %9.3f %9.3f %9.3f %9.3f %8d%n",
+                op, h.getTotalCount(), h.getTotalCount() / elapsedSec,
+                h.getValueAtPercentile(50) / 1000.0,
+                h.getValueAtPercentile(90) / 1000.0,
+                h.getValueAtPercentile(99) / 1000.0,
+                h.getValueAtPercentile(99.9) / 1000.0,
+                h.getValueAtPercentile(99.99) / 1000.0,
+                h.getMaxValue() / 1000.0,
+                errors);
+    }
+
+    private int intOpt(String name, int def) {
+        String v = opts.get(name);
+        return v == null ? def : Integer.parseInt(v);
+    }
+
+    private double doubleOpt(String name, double def) {
+        String v = opts.get(name);
+        return v == null ? def : Double.parseDouble(v);
+    }
+}
@@ -0,0 +1,260 @@
+package com.loadgen;
+
+import com.controller.controller.ReactiveKeyValueServer;
+import com.controller.service.ClusterViewService;
+import com.controller.service.LeaderElectionService;
+import com.controller.service.MetadataStore;
+import com.controller.service.RebalanceService;
+import com.controller.service.WorkerRegistry;
+import com.worker.controller.BinaryProtocolServer;
+import com.worker.service.ReplicationService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One controller and N workers booted as separate Spring contexts in this JVM,
+ * sharing an in-process KRaft broker for the worker-heartbeats and
+ * replication-events topics. State files go to a temp directory. With a
+ * standby, a second controller shares a file lease with the first and tails
+ * its metadata journal.
+ */
+public class LocalCluster implements AutoCloseable {
+
+    private static final String SECURITY_EXCLUDES = String.join(",",
+            "org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration",
+            "org.springframework.boot.autoconfigure.security.servlet.UserDetailsServiceAutoConfiguration",
+            "org.springframework.boot.actuate.autoconfigure.security.servlet.ManagementWebSecurityAutoConfiguration");
+
+    private final EmbeddedKafkaBroker kafka;
+    private final Path dataDir;
+    private final String brokers;
+    private final long heartbeatMs;
+    private final boolean reactive;
+    private final boolean binary;
+    private final String workerControllerUrls;
+    private volatile String controllerUrl;
+    private volatile String dataUrl;
+    private volatile ConfigurableApplicationContext controller;
+    private String standbyUrl;
+    private ConfigurableApplicationContext standby;
+    private final List<ConfigurableApplicationContext> workers = new ArrayList<>();
+    private final List<String> workerUrls = new ArrayList<>();
+
+    public LocalCluster(int workerCount, long heartbeatMs, long acceptablePauseMs, boolean withStandby,
+                        boolean reactive, boolean binary) throws Exception {
+        kafka = new EmbeddedKafkaKraftBroker(1, 3, "worker-heartbeats", "replication-events");
+        kafka.afterPropertiesSet();
+        brokers = kafka.getBrokersAsString();
+        this.heartbeatMs = heartbeatMs;
+        this.reactive = reactive;
+        this.binary = binary;
+
+        dataDir = Files.createTempDirectory("loadgen");
+
+        int controllerPort = freePort();
+        controllerUrl = "http://localhost:" + controllerPort;
+        controller = boot(com.controller.Main.class,
+                controllerProps("leader", controllerPort, brokers, heartbeatMs, acceptablePauseMs, withStandby));
+        dataUrl = dataUrlOf(controller, controllerUrl);
+
+        if (withStandby) {
+            int standbyPort = freePort();
+            standbyUrl = "http://localhost:" + standbyPort;
+            standby = boot(com.controller.Main.class,
+                    controllerProps("standby", standbyPort, brokers, heartbeatMs, acceptablePauseMs, true));
+            workerControllerUrls = controllerUrl + "," + standbyUrl;
+        } else {
+            workerControllerUrls = controllerUrl;
+        }
+
+        for (int i = 0; i < workerCount; i++) addWorker();
+    }
+
+    /** Boots one more worker; it registers with the controller like any other. Returns its index. */
+    public synchronized int addWorker() throws IOException {
+        int index = workers.size();
+        int port = freePort();
+
+        Map<String, Object> workerProps = new LinkedHashMap<>();
+        workerProps.put("spring.application.name", "worker-" + index);
+        workerProps.put("server.port", port);
+        workerProps.put("spring.kafka.bootstrap-servers", brokers);
+        workerProps.put("controller.url", workerControllerUrls);
+        workerProps.put("worker.heartbeat.interval", heartbeatMs);
+        if (binary) workerProps.put("worker.binary.port", 0);
+
+        workers.add(boot(com.worker.Main.class, workerProps));
+        workerUrls.add("http://localhost:" + port);
+        return index;
+    }
+
+    private Map<String, Object> controllerProps(String node, int port, String brokers, long heartbeatMs,
+                                                long acceptablePauseMs, boolean ha) {
+        // The controller module ships without spring-security; the worker's copy on this
+        // classpath would otherwise lock every controller endpoint behind basic auth.
+        Map<String, Object> props = new LinkedHashMap<>();
+        props.put("spring.application.name", "controller-" + node);
+        props.put("server.port", port);
+        props.put("spring.kafka.bootstrap-servers", brokers);
+        props.put("spring.autoconfigure.exclude", SECURITY_EXCLUDES);
+        // failure detector scaled to the heartbeat interval: dead after roughly 3 missed beats
+        props.put("controller.heartbeat.interval", heartbeatMs);
+        props.put("controller.failure-detector.acceptable-pause-ms", acceptablePauseMs);
+        props.put("controller.failure-detector.min-std-dev-ms", Math.max(heartbeatMs / 5, 50));
+        props.put("controller.state.file", dataDir.resolve(node + "-controller-state.json").toString());
+        props.put("controller.state.fallback-dir", dataDir.toString());
+        props.put("controller.metadata.file", dataDir.resolve(node + "-metadata.json").toString());
+        props.put("controller.cluster-view.file", dataDir.resolve(node + "-cluster-view.json").toString());
+        if (reactive) props.put("controller.reactive.port", 0);
+        if (ha) {
+            props.put("controller.ha.lease-store", "file");
+            props.put("controller.ha.lease-file", dataDir.resolve("controller-lease.json").toString());
+            props.put("controller.ha.node-id", node);
+            props.put("controller.heartbeat.group-id", "controller-" + node);
+        }
+        return props;
+    }
+
+    /** Blocks until the controller sees every live worker and each of them knows the full membership. */
+    public void awaitFormed(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (System.currentTimeMillis() < deadline) {
+            if (isFormed()) return;
+            Thread.sleep(200);
+        }
+        throw new IllegalStateException("Cluster did not form within " + timeoutMs + "ms: alive="
+                + controller.getBean(WorkerRegistry.class).getAliveWorkerUrls());
+    }
+
+    private boolean isFormed() {
+        List<String> live = liveWorkerUrls();
+        if (!controller.getBean(WorkerRegistry.class).getAliveWorkerUrls().containsAll(live)) return false;
+
+        for (ConfigurableApplicationContext worker : workers) {
+            if (worker == null) continue;
+            if (worker.getBean(ReplicationService.class).getAliveWorkers().size() != live.size()) return false;
+        }
+        return true;
+    }
+
+    /** Stops a worker's context: it stops serving and stops heartbeating at once. */
+    public void kill(int index) {
+        ConfigurableApplicationContext worker = workers.get(index);
+        if (worker == null) return;
+        workers.set(index, null);
+        worker.close();
+    }
+
+    /**
+     * Stops the leading controller and points clients at the standby. The
+     * standby answers 503 until it holds the lease.
+     */
+    public void killController() {
+        if (standby == null) throw new IllegalStateException("No standby controller to fail over to");
+        ConfigurableApplicationContext old = controller;
+        controller = standby;
+        controllerUrl = standbyUrl;
+        dataUrl = dataUrlOf(standby, standbyUrl);
+        standby = null;
+        old.close();
+    }
+
+    public boolean controllerIsLeader() {
+        return controller.getBean(LeaderElectionService.class).isLeader();
+    }
+
+    public boolean controllerSeesAlive(String workerUrl) {
+        return controller.getBean(WorkerRegistry.class).getAliveWorkerUrls().contains(workerUrl);
+    }
+
+    public String primaryOf(String key) {
+        var meta = controller.getBean(MetadataStore.class).get(key);
+        return meta == null ? null : meta.getPrimaryReplica();
+    }
+
+    /** Owner of the key's slot in the controller's current cluster view. */
+    public String ownerOf(String key) {
+        return controller.getBean(ClusterViewService.class).current().ownerOf(key);
+    }
+
+    /** Slot owners of the controller's current cluster view, indexed by slot. */
+    public List<String> slotOwners() {
+        return controller.getBean(ClusterViewService.class).current().getSlots();
+    }
+
+    /** Whether the controller's current cluster view slots keys by their {hash tag}. */
+    public boolean hashTags() {
+        return controller.getBean(ClusterViewService.class).current().isHashTags();
+    }
+
+    /** Port of a live worker's binary data port, or -1 when it is off or the worker is gone. */
+    public int binaryPortOf(String workerUrl) {
+        int index = workerUrls.indexOf(workerUrl);
+        ConfigurableApplicationContext worker = index < 0 ? null : workers.get(index);
+        return worker == null ? -1 : worker.getBean(BinaryProtocolServer.class).getPort();
+    }
+
+    public Map<String, Object> rebalanceStatus() {
+        return controller.getBean(RebalanceService.class).status();
+    }
+
+    public String getControllerUrl() {
+        return controllerUrl;
+    }
+
+    /** Where clients send put/get/delete: the controller's reactive port when enabled. */
+    public String getDataUrl() {
+        return dataUrl;
+    }
+
+    private static String dataUrlOf(ConfigurableApplicationContext controller, String servletUrl) {
+        int port = controller.getBean(ReactiveKeyValueServer.class).getPort();
+        return port < 0 ? servletUrl : "http://localhost:" + port;
+    }
+
+    public List<String> getWorkerUrls() {
+        return workerUrls;
+    }
+
+    private List<String> liveWorkerUrls() {
+        List<String> live = new ArrayList<>();
+        for (int i = 0; i < workers.size(); i++) {
+            if (workers.get(i) != null) live.add(workerUrls.get(i));
+        }
+        return live;
+    }
+
+    @Override
+    public void close() {
+        for (int i = 0; i < workers.size(); i++) kill(i);
+        if (standby != null) standby.close();
+        controller.close();
+        kafka.destroy();
+    }
+
+    private static ConfigurableApplicationContext boot(Class<?> mainClass, Map<String, Object> props) {
+        // command-line form so these win over any application.properties on the classpath
+        String[] args = props.entrySet().stream()
+                .map(e -> "--" + e.getKey() + "=" + e.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(mainClass).run(args);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            socket.setReuseAddress(true);
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.worker.config;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Passes on the spans of a fixed share of traces to a sink. Every request is
+ * traced locally, so SlowTraceLogger sees all of them; only here is the share
+ * applied. The choice goes by traceId ratio, so the controller and every
+ * worker keep or drop the same traces.
+ */
+public class SampledSpanExporter implements SpanExporter {
+
+    private final SpanExporter delegate;
+    private final Sampler sampler;
+
+    public SampledSpanExporter(SpanExporter delegate, double probability) {
+        this.delegate = delegate;
+        this.sampler = Sampler.traceIdRatioBased(probability);
+    }
+
+    @Override
+    public CompletableResultCode export(Collection<SpanData> spans) {
+        List<SpanData> kept = new ArrayList<>(spans.size());
+        for (SpanData span : spans) {
+            if (sampler.shouldSample(Context.root(), span.getTraceId(), span.getName(), SpanKind.INTERNAL,
+                    Attributes.empty(), List.of()).getDecision() == SamplingDecision.RECORD_AND_SAMPLE) {
+                kept.add(span);
+            }
+        }
+        return kept.isEmpty() ? CompletableResultCode.ofSuccess() : delegate.export(kept);
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return delegate.flush();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        return delegate.shutdown();
+    }
+}
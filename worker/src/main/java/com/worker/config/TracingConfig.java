@@ -0,0 +1,43 @@
+package com.worker.config;
+
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Span sinks for the OpenTelemetry tracer Spring Boot sets up. Any SpanExporter
+ * bean is picked up, so another sink only needs another bean here; wrap it in
+ * SampledSpanExporter so it only gets the exported share. The controller and
+ * the worker carry the same copy of this package, kept in step by hand.
+ */
+@Configuration
+public class TracingConfig {
+
+    /** Built through Boot's builder so calls to other nodes carry traceparent and record client spans. */
+    @Bean
+    public RestTemplate restTemplate(RestTemplateBuilder builder) {
+        return builder.build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "worker.tracing.sink", havingValue = "file")
+    public SpanExporter fileSpanExporter(
+            @Value("${worker.tracing.file:spans-worker.jsonl}") String file,
+            @Value("${worker.tracing.export-probability:0.01}") double exportProbability) throws IOException {
+        return new SampledSpanExporter(new FileSpanExporter(Path.of(file)), exportProbability);
+    }
+
+    @Bean
+    public SlowTraceLogger slowTraceLogger(
+            @Value("${worker.tracing.slow-request-ms:500}") long slowRequestMs,
+            @Value("${worker.tracing.max-pending-traces:10000}") int maxPendingTraces) {
+        return new SlowTraceLogger(slowRequestMs, maxPendingTraces);
+    }
+}
@@ -0,0 +1,555 @@
+package com.worker.controller;
+
+import com.worker.model.ApiResponse;
+import com.worker.model.BinaryProtocol;
+import com.worker.model.KeyValue;
+import com.worker.model.ReplicaType;
+import com.worker.service.KeyValueStore;
+import com.worker.service.ReplicationService;
+import com.worker.service.RequestMetrics;
+import com.worker.service.WorkerRegistrar;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static com.worker.model.BinaryProtocol.*;
+
+/**
+ * Optional binary data port (worker.binary.port, -1 = off) speaking
+ * {@link BinaryProtocol}. One selector thread reads frames into pooled direct
+ * buffers and answers GET and MGET inline from the store, batching replies of
+ * a pipelined burst into one write. PUTs run KeyValueController's put on a
+ * writer pool, since they wait for the sync replica, and their replies are
+ * handed back to the selector. A connection's operations run in the order
+ * they arrive: frames after a PUT queue behind it and run on the writer
+ * thread once it is done, so a pipelined PUT k; GET k reads its own write.
+ * Only keys whose slot this worker owns, and
+ * that it holds as primary, are served; anything else gets 421 naming the
+ * worker to try, so writes during a migration still go through the
+ * controller's dual-write path.
+ */
+@Component
+public class BinaryProtocolServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(BinaryProtocolServer.class);
+
+    private final KeyValueController keyValueController;
+    private final KeyValueStore keyValueStore;
+    private final ReplicationService replicationService;
+    private final WorkerRegistrar workerRegistrar;
+    private final RequestMetrics requestMetrics;
+
+    private final int port;
+    private final int maxFrameBytes;
+    private final BufferPool buffers;
+    private final Executor writers;
+
+    // connections with replies queued by writer threads
+    private final Queue<Connection> ready = new ConcurrentLinkedQueue<>();
+
+    private volatile ServerSocketChannel server;
+    private volatile Selector selector;
+    private volatile boolean running;
+
+    public BinaryProtocolServer(KeyValueController keyValueController,
+                                KeyValueStore keyValueStore,
+                                ReplicationService replicationService,
+                                WorkerRegistrar workerRegistrar,
+                                RequestMetrics requestMetrics,
+                                Environment environment,
+                                @Value("${worker.binary.port:-1}") int port,
+                                @Value("${worker.binary.buffer-bytes:65536}") int bufferBytes,
+                                @Value("${worker.binary.max-buffers:1024}") int maxBuffers,
+                                @Value("${worker.binary.max-frame-bytes:16777216}") int maxFrameBytes,
+                                @Value("${worker.binary.writer-threads:32}") int writerThreads) {
+        this.keyValueController = keyValueController;
+        this.keyValueStore = keyValueStore;
+        this.replicationService = replicationService;
+        this.workerRegistrar = workerRegistrar;
+        this.requestMetrics = requestMetrics;
+        this.port = port;
+        this.maxFrameBytes = maxFrameBytes;
+        this.buffers = new BufferPool(bufferBytes, maxBuffers);
+
+        if (Threading.VIRTUAL.isActive(environment)) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("binary-put-");
+            executor.setVirtualThreads(true);
+            this.writers = executor;
+        } else {
+            AtomicInteger n = new AtomicInteger();
+            this.writers = Executors.newFixedThreadPool(Math.max(1, writerThreads), r -> {
+                Thread t = new Thread(r, "binary-put-" + n.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() throws IOException {
+        if (port < 0) return;
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+
+        Thread loop = new Thread(this::loop, "binary-selector");
+        loop.setDaemon(true);
+        loop.start();
+        logger.info("Binary data port listening on {}", getPort());
+    }
+
+    /** Bound port, or -1 when the binary port is off. */
+    public int getPort() {
+        ServerSocketChannel s = server;
+        if (s == null) return -1;
+        try {
+            return ((InetSocketAddress) s.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        running = false;
+        Selector s = selector;
+        if (s == null) return;
+        s.wakeup();
+        server.close();
+        if (writers instanceof ExecutorService pool) pool.shutdownNow();
+    }
+
+    private void loop() {
+        while (running) {
+            try {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Connection c = (Connection) key.attachment();
+                        if (key.isReadable()) read(c);
+                        if (key.isValid() && key.isWritable()) flush(c);
+                    }
+                }
+                Connection c;
+                while ((c = ready.poll()) != null) {
+                    if (!c.closed) flush(c);
+                }
+            } catch (ClosedSelectorException e) {
+                break;
+            } catch (Exception e) {
+                logger.warn("Binary selector loop error: {}", e.getMessage());
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof Connection c) close(c);
+        }
+        try {
+            selector.close();
+        } catch (IOException ignored) {}
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        Connection c = new Connection(channel, buffers.take());
+        c.key = channel.register(selector, SelectionKey.OP_READ, c);
+    }
+
+    private void read(Connection c) {
+        try {
+            if (c.channel.read(c.in) < 0) {
+                close(c);
+                return;
+            }
+        } catch (IOException e) {
+            close(c);
+            return;
+        }
+
+        ByteBuffer in = c.in.flip();
+        while (in.remaining() >= 4) {
+            int length = in.getInt(in.position());
+            if (length < 5 || length > maxFrameBytes) {
+                logger.warn("Closing binary connection {}: bad frame length {}", c.remote(), length);
+                close(c);
+                return;
+            }
+            if (in.remaining() < 4 + length) {
+                if (4 + length > in.capacity()) in = grow(c, 4 + length);
+                break;
+            }
+            int start = in.position() + 4;
+            in.position(start + length);
+            handle(c, in.slice(start, length));
+        }
+        in.compact();
+        if (!c.pooledIn && in.position() == 0) {
+            // the oversized frame is done; back to a pooled buffer
+            c.in = buffers.take();
+            c.pooledIn = true;
+        }
+
+        if (c.batch != null) {
+            c.pending.add(c.batch.flip());
+            c.batch = null;
+        }
+        flush(c);
+    }
+
+    /** Replaces the read buffer with one that fits a frame larger than the pooled size. */
+    private ByteBuffer grow(Connection c, int frameBytes) {
+        ByteBuffer bigger = ByteBuffer.allocateDirect(frameBytes);
+        bigger.put(c.in);
+        if (c.pooledIn) buffers.release(c.in);
+        c.in = bigger;
+        c.pooledIn = false;
+        return bigger.flip();
+    }
+
+    private void handle(Connection c, ByteBuffer frame) {
+        boolean write = frame.remaining() > 4 && frame.get(frame.position() + 4) == PUT;
+        synchronized (c) {
+            if (!c.busy && !write) {
+                dispatch(frame, c::outbound);
+                return;
+            }
+            // the frame outlives this read, and the read buffer is reused
+            c.queued.add(ByteBuffer.allocate(frame.remaining()).put(frame).flip());
+            if (c.busy) return;
+            c.busy = true;
+        }
+        try {
+            writers.execute(() -> drain(c));
+        } catch (RejectedExecutionException e) {
+            synchronized (c) {
+                ByteBuffer queued;
+                while ((queued = c.queued.poll()) != null) {
+                    error(c.outbound(errorBytes("Worker is shutting down")),
+                            queued.getInt(queued.position()), (short) 503, "Worker is shutting down");
+                }
+                c.busy = false;
+            }
+        }
+    }
+
+    /** Runs a connection's queued frames one at a time, in arrival order, on a writer thread. */
+    private void drain(Connection c) {
+        while (true) {
+            ByteBuffer frame;
+            synchronized (c) {
+                frame = c.queued.poll();
+                if (frame == null) {
+                    c.busy = false;
+                    return;
+                }
+            }
+            ByteBuffer[] reply = new ByteBuffer[1];
+            dispatch(frame, bytes -> reply[0] = buffers.take(bytes));
+            c.complete(reply[0].flip());
+        }
+    }
+
+    /** Runs one frame, writing its single reply into a buffer taken from out. */
+    private void dispatch(ByteBuffer frame, IntFunction<ByteBuffer> out) {
+        int id = frame.getInt();
+        try {
+            byte op = frame.get();
+            switch (op) {
+                case GET -> get(out, id, getKey(frame));
+                case MGET -> {
+                    String[] keys = new String[frame.getShort() & 0xffff];
+                    for (int i = 0; i < keys.length; i++) keys[i] = getKey(frame);
+                    mget(out, id, keys);
+                }
+                case PUT -> {
+                    String key = getKey(frame);
+                    String value = getValue(frame);
+                    int ttl = frame.getInt();
+                    put(out, id, key, value, ttl);
+                }
+                default -> {
+                    String message = "Unknown op " + op;
+                    error(out.apply(errorBytes(message)), id, BAD_REQUEST, message);
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            error(out.apply(errorBytes("Malformed frame")), id, BAD_REQUEST, "Malformed frame");
+        }
+    }
+
+    private void get(IntFunction<ByteBuffer> reply, int id, String key) {
+        long start = System.nanoTime();
+        KeyValue kv = lookup(key);
+        String primary = misdirected(key, kv);
+        short status;
+        if (primary != null) {
+            status = MISDIRECTED;
+            error(reply.apply(errorBytes(primary)), id, status, primary);
+        } else if (kv == null) {
+            status = NOT_FOUND;
+            error(reply.apply(errorBytes("Key not found")), id, status, "Key not found");
+        } else {
+            status = OK;
+            byte[] value = utf8(kv.getValue());
+            ByteBuffer out = reply.apply(HEADER_BYTES + 2 + 8 + valueBytes(value));
+            out.putInt(4 + 2 + 8 + valueBytes(value)).putInt(id).putShort(OK).putLong(kv.getVersion());
+            putValue(out, value);
+        }
+        requestMetrics.record("binary-get", status, System.nanoTime() - start);
+    }
+
+    private void mget(IntFunction<ByteBuffer> reply, int id, String[] keys) {
+        long start = System.nanoTime();
+        short[] statuses = new short[keys.length];
+        long[] versions = new long[keys.length];
+        byte[][] values = new byte[keys.length][];
+        int body = 2 + 2;
+        // one read of all keys, so keys written together by /mput come back from the same batch
+        KeyValue[] found = keyValueStore.getAll(keys);
+        for (int i = 0; i < keys.length; i++) {
+            KeyValue kv = found[i];
+            if (misdirected(keys[i], kv) != null) {
+                statuses[i] = MISDIRECTED;
+            } else if (kv == null) {
+                statuses[i] = NOT_FOUND;
+            } else {
+                statuses[i] = OK;
+                versions[i] = kv.getVersion();
+                values[i] = utf8(kv.getValue());
+                body += 8 + valueBytes(values[i]);
+            }
+            body += 2;
+        }
+
+        ByteBuffer out = reply.apply(HEADER_BYTES + body);
+        out.putInt(4 + body).putInt(id).putShort(OK).putShort((short) keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            out.putShort(statuses[i]);
+            if (statuses[i] == OK) {
+                out.putLong(versions[i]);
+                putValue(out, values[i]);
+            }
+        }
+        requestMetrics.record("binary-mget", OK, System.nanoTime() - start);
+    }
+
+    private void put(IntFunction<ByteBuffer> out, int id, String key, String value, int ttl) {
+        long start = System.nanoTime();
+        short status;
+        String message;
+        long version = 0;
+
+        String primary = key == null ? null : misdirected(key, keyValueStore.peek(key));
+        if (key == null || key.isBlank() || value == null) {
+            status = BAD_REQUEST;
+            message = "Key and value required";
+        } else if (ttl < 0) {
+            status = BAD_REQUEST;
+            message = "ttl must be a positive number of seconds";
+        } else if (primary != null) {
+            status = MISDIRECTED;
+            message = primary;
+        } else {
+            Map<String, String> body = new HashMap<>();
+            body.put("key", key);
+            body.put("value", value);
+            if (ttl > 0) body.put("ttl", String.valueOf(ttl));
+
+            ResponseEntity<ApiResponse<Object>> response;
+            try {
+                response = keyValueController.doPut(body);
+            } catch (Exception e) {
+                response = ResponseEntity.internalServerError().body(ApiResponse.fail(500, e.getMessage()));
+            }
+            ApiResponse<Object> reply = response.getBody();
+            status = (short) response.getStatusCode().value();
+            message = reply == null ? null : reply.getErrorMessage();
+            if (reply != null && reply.getPayload() instanceof Map<?, ?> payload
+                    && payload.get("version") instanceof Number v) {
+                version = v.longValue();
+            }
+        }
+        requestMetrics.record("binary-put", status, System.nanoTime() - start);
+
+        if (status != OK) {
+            error(out.apply(errorBytes(message)), id, status, message);
+            return;
+        }
+        out.apply(HEADER_BYTES + 2 + 8).putInt(4 + 2 + 8).putInt(id).putShort(OK).putLong(version);
+    }
+
+    private KeyValue lookup(String key) {
+        // negative fast-path, as for /get
+        return keyValueStore.mightContain(key) ? keyValueStore.get(key) : null;
+    }
+
+    /**
+     * The worker the client should use for key instead of this one, or null
+     * when this worker owns the key's slot and does not hold it as a replica.
+     */
+    private String misdirected(String key, KeyValue held) {
+        String self = workerRegistrar.getWorkerUrl();
+        String owner = replicationService.getClusterView().ownerOf(key);
+        if (owner != null && !owner.equals(self)) return owner;
+        if (held != null && held.getReplicaType() != ReplicaType.PRIMARY) {
+            String primary = held.getReplicaInfo() == null ? null : held.getReplicaInfo().getPrimaryReplica();
+            return primary == null ? "" : primary;
+        }
+        return null;
+    }
+
+    private static int errorBytes(String message) {
+        return HEADER_BYTES + 2 + valueBytes(utf8(message));
+    }
+
+    private static void error(ByteBuffer out, int id, short status, String message) {
+        byte[] text = utf8(message);
+        out.putInt(4 + 2 + valueBytes(text)).putInt(id).putShort(status);
+        putValue(out, text);
+    }
+
+    private void flush(Connection c) {
+        try {
+            ByteBuffer head;
+            while ((head = c.pending.peek()) != null) {
+                c.channel.write(head);
+                if (head.hasRemaining()) {
+                    c.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                c.pending.poll();
+                buffers.release(head);
+            }
+            c.key.interestOps(SelectionKey.OP_READ);
+        } catch (IOException | CancelledKeyException e) {
+            close(c);
+        }
+    }
+
+    private void close(Connection c) {
+        if (c.closed) return;
+        c.closed = true;
+        if (c.key != null) c.key.cancel();
+        try {
+            c.channel.close();
+        } catch (IOException ignored) {}
+        if (c.pooledIn) buffers.release(c.in);
+        if (c.batch != null) buffers.release(c.batch);
+        ByteBuffer b;
+        while ((b = c.pending.poll()) != null) buffers.release(b);
+    }
+
+    private final class Connection {
+        final SocketChannel channel;
+        final Queue<ByteBuffer> pending = new ConcurrentLinkedQueue<>();
+        SelectionKey key;
+        ByteBuffer in;
+        boolean pooledIn = true;
+        // replies written inline during one read, sent together
+        ByteBuffer batch;
+        // frames waiting behind a PUT, and whether a writer thread is running them
+        final Queue<ByteBuffer> queued = new ArrayDeque<>();
+        boolean busy;
+        volatile boolean closed;
+
+        Connection(SocketChannel channel, ByteBuffer in) {
+            this.channel = channel;
+            this.in = in;
+        }
+
+        /** Room for one inline reply of the given size in the current batch. */
+        ByteBuffer outbound(int bytes) {
+            if (batch != null && batch.remaining() < bytes) {
+                pending.add(batch.flip());
+                batch = null;
+            }
+            if (batch == null) batch = buffers.take(bytes);
+            return batch;
+        }
+
+        /** Called from writer threads with a finished reply. */
+        void complete(ByteBuffer reply) {
+            if (closed) {
+                buffers.release(reply);
+                return;
+            }
+            pending.add(reply);
+            ready.add(this);
+            selector.wakeup();
+        }
+
+        String remote() {
+            try {
+                return String.valueOf(channel.getRemoteAddress());
+            } catch (IOException e) {
+                return "?";
+            }
+        }
+    }
+
+    /** Fixed-size direct buffers reused across connections and replies; larger needs get a one-off heap buffer. */
+    static final class BufferPool {
+        private final int bufferBytes;
+        private final int maxPooled;
+        private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+
+        BufferPool(int bufferBytes, int maxPooled) {
+            this.bufferBytes = bufferBytes;
+            this.maxPooled = maxPooled;
+        }
+
+        ByteBuffer take() {
+            return take(bufferBytes);
+        }
+
+        ByteBuffer take(int bytes) {
+            if (bytes > bufferBytes) return ByteBuffer.allocate(bytes);
+            ByteBuffer b;
+            synchronized (free) {
+                b = free.poll();
+            }
+            return b == null ? ByteBuffer.allocateDirect(bufferBytes) : b.clear();
+        }
+
+        void release(ByteBuffer b) {
+            if (!b.isDirect() || b.capacity() != bufferBytes) return;
+            synchronized (free) {
+                if (free.size() < maxPooled) free.push(b);
+            }
+        }
+    }
+}
@@ -1,17 +1,35 @@
 package com.worker.controller;
 
 import com.worker.model.ApiResponse;
+import com.worker.model.ClusterView;
+import com.worker.model.ConsistencyLevel;
 import com.worker.model.KeyValue;
 import com.worker.model.ReplicaInfo;
 import com.worker.model.ReplicaType;
+import com.worker.service.ChainForwarder;
+import com.worker.service.ConsistencyPolicy;
 import com.worker.service.KeyValueStore;
 import com.worker.service.ReplicationService;
+import com.worker.service.ReplicationService.Handoff;
+import com.worker.service.ReplicationService.SyncOutcome;
+import com.worker.service.RequestMetrics;
+import com.worker.service.ShardTransferService;
 import com.worker.service.WorkerRegistrar;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/")
@@ -26,8 +44,37 @@ public class KeyValueController {
     @Autowired
     private WorkerRegistrar workerRegistrar;
 
+    @Autowired
+    private RequestMetrics requestMetrics;
+
+    @Autowired
+    private ShardTransferService shardTransfer;
+
+    @Autowired
+    private ConsistencyPolicy consistencyPolicy;
+
+    @Autowired
+    private ChainForwarder chainForwarder;
+
+    @Value("${worker.scan.max-limit:1000}")
+    private int maxScanLimit;
+
     @PostMapping("/put")
     public ResponseEntity<ApiResponse<Object>> put(@RequestBody Map<String, String> body) {
+        return requestMetrics.time("put", () -> doPut(body));
+    }
+
+    @PostMapping("/replicate")
+    public ResponseEntity<ApiResponse<String>> replicate(@RequestBody Map<String, Object> body) {
+        return requestMetrics.time("replicate", () -> doReplicate(body));
+    }
+
+    @PostMapping("/get")
+    public ResponseEntity<ApiResponse<KeyValue>> get(@RequestBody Map<String, String> body) {
+        return requestMetrics.time("get", () -> doGet(body));
+    }
+
+    ResponseEntity<ApiResponse<Object>> doPut(Map<String, String> body) {
 
         String key = body.get("key");
         String value = body.get("value");
@@ -37,84 +84,249 @@ public class KeyValueController {
                     .body(ApiResponse.fail(400, "Key and value required"));
         }
 
+        long expiresAt = 0;
+        String ttl = body.get("ttl");
+        if (ttl != null) {
+            try {
+                long ttlSeconds = Long.parseLong(ttl.trim());
+                if (ttlSeconds <= 0) throw new NumberFormatException();
+                expiresAt = System.currentTimeMillis() + ttlSeconds * 1000L;
+            } catch (NumberFormatException e) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.fail(400, "ttl must be a positive number of seconds"));
+            }
+        }
+
+        ConsistencyLevel level;
+        try {
+            level = consistencyPolicy.levelFor(key, body.get("consistency"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.fail(400, "consistency must be ONE, SYNC or ALL"));
+        }
+
+        long start = System.nanoTime();
+        ResponseEntity<ApiResponse<Object>> response = write(key, value, expiresAt, level);
+        requestMetrics.recordPut(level, response.getStatusCode().value(), System.nanoTime() - start);
+        return response;
+    }
+
+    private ResponseEntity<ApiResponse<Object>> write(String key, String value, long expiresAt,
+                                                      ConsistencyLevel level) {
         KeyValue existing = keyValueStore.get(key);
         boolean isUpdate = (existing != null);
 
-        String oldValue = null;
-        ReplicaInfo oldInfo = null;
+        // raw entry (possibly a tombstone) restored on rollback; failover edits entries in place
+        KeyValue stored = keyValueStore.peek(key);
+        KeyValue previous = stored == null ? null : new KeyValue(stored);
+        ReplicaInfo oldInfo = isUpdate ? previous.getReplicaInfo() : null;
+
+        KeyValue incoming = new KeyValue(key, ReplicaType.PRIMARY, value, null);
+        incoming.setExpiresAt(expiresAt);
+        incoming.setVersion(KeyValue.nextVersion(previous));
 
-        if (isUpdate) {
-            oldValue = existing.getValue();
-            oldInfo = new ReplicaInfo(existing.getReplicaInfo());
+        // Refuse rather than OOM: only cache namespaces can make room by evicting
+        if (!keyValueStore.admit(incoming)) {
+            return ResponseEntity.status(507)
+                    .body(ApiResponse.fail(507, "Worker memory limit reached"));
         }
 
         try {
             String primaryUrl = workerRegistrar.getWorkerUrl();
             String syncTarget;
             String asyncTarget;
+            boolean chained = false;
 
-            if (!isUpdate) {
+            if (!isUpdate && level == ConsistencyLevel.ONE) {
+                // NEW KEY, not waiting → replicas by placement, contacted after the ack
+                Map<String, String> planned = replicationService.planReplicas(key);
+                syncTarget = planned.get("syncReplica");
+                asyncTarget = planned.get("asyncReplica");
+
+            } else if (!isUpdate) {
                 // NEW KEY → assign replicas
                 Map<String, String> syncMeta =
-                        replicationService.syncReplicaCreate(key, value, null);
+                        replicationService.syncReplicaCreate(incoming, null);
 
                 syncTarget = syncMeta.get("syncReplica");
                 asyncTarget = syncMeta.get("asyncReplica");
 
-                if (asyncTarget != null) {
-                    replicationService.replicateAsync(key, value, asyncTarget, syncTarget);
-                }
-
-                replicationService.notifyPrimaryToController(key, primaryUrl);
-
             } else {
                 // UPDATE on existing primary
-                String oldSync = oldInfo.getSyncReplica();
-                String oldAsync = oldInfo.getAsyncReplica();
-
-                boolean ok = replicationService.syncUpdate(key, value, oldSync, oldAsync);
-                if (!ok) throw new Exception("SYNC update failed");
-
-                syncTarget = oldSync;
-                asyncTarget = oldAsync;
-
-                if (oldAsync != null) {
-                    replicationService.replicateAsync(key, value, oldAsync, syncTarget);
+                syncTarget = oldInfo.getSyncReplica();
+                asyncTarget = oldInfo.getAsyncReplica();
+
+                if (level != ConsistencyLevel.ONE) {
+                    // SYNC and ALL acknowledge once a second copy exists: on the sync replica,
+                    // or on a fallback replica while the sync one is suspect
+                    SyncOutcome outcome = replicationService.syncUpdate(
+                            incoming, syncTarget, asyncTarget, chainForwarder.isEnabled(), Handoff.FALLBACK);
+                    if (outcome == SyncOutcome.FAILED) throw new Exception("SYNC update failed");
+                    chained = outcome == SyncOutcome.CHAINED;
                 }
             }
 
+            if (level == ConsistencyLevel.ALL && asyncTarget != null && !chained
+                    && !replicationService.asyncUpdate(incoming, asyncTarget, syncTarget)) {
+                throw new Exception("ASYNC update failed");
+            }
+
             ReplicaInfo newInfo = new ReplicaInfo(
                     primaryUrl,
                     syncTarget,
                     asyncTarget
             );
 
-            keyValueStore.put(new KeyValue(key, ReplicaType.PRIMARY, value, newInfo));
+            incoming.setReplicaInfo(newInfo);
+            keyValueStore.put(incoming);
+
+            if (level == ConsistencyLevel.ONE && syncTarget != null) {
+                replicationService.syncUpdateInBackground(incoming, syncTarget, asyncTarget, chainForwarder.isEnabled());
+            } else if (level != ConsistencyLevel.ALL && asyncTarget != null && !chained) {
+                replicationService.replicateAsync(incoming, asyncTarget, syncTarget);
+            }
+            if (!isUpdate) {
+                replicationService.notifyPrimaryToController(key, primaryUrl);
+            }
 
-            return ResponseEntity.ok(ApiResponse.success(200, Map.of(
-                    "primaryReplica", primaryUrl,
-                    "syncReplica", syncTarget,
-                    "asyncReplica", asyncTarget
-            )));
+            // replicas may be null with fewer than three workers
+            Map<String, Object> result = new HashMap<>();
+            result.put("primaryReplica", primaryUrl);
+            result.put("syncReplica", syncTarget);
+            result.put("asyncReplica", asyncTarget);
+            result.put("version", incoming.getVersion());
+            result.put("expiresAt", incoming.getExpiresAt());
+            result.put("consistency", level.name());
+            return ResponseEntity.ok(ApiResponse.success(200, result));
 
         } catch (Exception e) {
 
-            if (!isUpdate) {
+            if (previous == null) {
                 keyValueStore.remove(key);
             } else {
-                keyValueStore.put(new KeyValue(key, ReplicaType.PRIMARY, oldValue, oldInfo));
+                keyValueStore.put(previous);
             }
 
             return ResponseEntity.status(503)
                     .body(ApiResponse.fail(
                             503,
-                            "SYNC replication failed, rolled back: " + e.getMessage()
+                            level + " replication failed, rolled back: " + e.getMessage()
                     ));
         }
     }
 
-    @PostMapping("/replicate")
-    public ResponseEntity<ApiResponse<String>> replicate(@RequestBody Map<String, Object> body) {
+    /**
+     * Writes several keys of one slot as a unit: the batch goes to its sync
+     * replica as one request and to each async replica as one record, and is
+     * applied here in one step once the sync replica has it; otherwise
+     * nothing is written. Keys already stored with different sync replicas
+     * cannot share a batch (409). Keys meant to be written together share a
+     * {hash tag} when the cluster view slots by tags. Always SYNC, and the
+     * controller records the batch's metadata itself, so new keys are not
+     * announced one by one.
+     */
+    @PostMapping("/mput")
+    public ResponseEntity<ApiResponse<Object>> mput(@RequestBody Map<String, Object> body) {
+        return requestMetrics.time("mput", () -> doMput(body));
+    }
+
+    private ResponseEntity<ApiResponse<Object>> doMput(Map<String, Object> body) {
+        if (!(body.get("entries") instanceof Map<?, ?> entries) || entries.isEmpty()) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.fail(400, "entries (key -> value) required"));
+        }
+
+        long expiresAt = 0;
+        if (body.get("ttl") != null) {
+            try {
+                long ttlSeconds = Long.parseLong(String.valueOf(body.get("ttl")).trim());
+                if (ttlSeconds <= 0) throw new NumberFormatException();
+                expiresAt = System.currentTimeMillis() + ttlSeconds * 1000L;
+            } catch (NumberFormatException e) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.fail(400, "ttl must be a positive number of seconds"));
+            }
+        }
+
+        ClusterView view = replicationService.getClusterView();
+        List<KeyValue> batch = new ArrayList<>(entries.size());
+        Map<String, ReplicaInfo> placed = new HashMap<>();
+        for (var e : entries.entrySet()) {
+            if (!(e.getKey() instanceof String key) || !(e.getValue() instanceof String value)) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.fail(400, "entries must map string keys to string values"));
+            }
+            if (!view.getSlots().isEmpty()
+                    && view.slotOf(key) != view.slotOf(batch.isEmpty() ? key : batch.get(0).getKey())) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.fail(400, "All keys of a batch must hash to one slot"));
+            }
+
+            KeyValue stored = keyValueStore.peek(key);
+            if (stored != null && !stored.isTombstone() && stored.getReplicaType() != ReplicaType.PRIMARY) {
+                return ResponseEntity.status(409)
+                        .body(ApiResponse.fail(409, "Not the primary of key=" + key));
+            }
+            if (stored != null && !stored.isTombstone() && stored.getReplicaInfo() != null) {
+                placed.put(key, stored.getReplicaInfo());
+            }
+
+            KeyValue incoming = new KeyValue(key, ReplicaType.PRIMARY, value, null);
+            incoming.setExpiresAt(expiresAt);
+            incoming.setVersion(KeyValue.nextVersion(stored));
+            batch.add(incoming);
+        }
+
+        if (!keyValueStore.admitAll(batch)) {
+            return ResponseEntity.status(507)
+                    .body(ApiResponse.fail(507, "Worker memory limit reached"));
+        }
+
+        // keys already held keep their replicas; new ones join the first held key's, or a fresh pair
+        String primaryUrl = workerRegistrar.getWorkerUrl();
+        ReplicaInfo fresh = placed.values().stream().findFirst().orElseGet(() -> {
+            Map<String, String> planned = replicationService.planReplicas(batch.get(0).getKey());
+            return new ReplicaInfo(primaryUrl, planned.get("syncReplica"), planned.get("asyncReplica"));
+        });
+        Set<String> syncTargets = new HashSet<>();
+        Map<String, List<KeyValue>> byAsync = new LinkedHashMap<>();
+        for (KeyValue kv : batch) {
+            ReplicaInfo info = placed.getOrDefault(kv.getKey(), fresh);
+            kv.setReplicaInfo(new ReplicaInfo(primaryUrl, info.getSyncReplica(), info.getAsyncReplica()));
+            syncTargets.add(info.getSyncReplica());
+            if (info.getAsyncReplica() != null) byAsync.computeIfAbsent(info.getAsyncReplica(), t -> new ArrayList<>()).add(kv);
+        }
+
+        // one sync request is all-or-nothing; a second one failing would leave the first replica ahead
+        if (syncTargets.size() > 1) {
+            return ResponseEntity.status(409)
+                    .body(ApiResponse.fail(409, "Keys of the batch have different sync replicas: " + syncTargets));
+        }
+        String syncTarget = syncTargets.iterator().next();
+        if (syncTarget != null && !replicationService.syncBatch(batch, syncTarget)) {
+            return ResponseEntity.status(503)
+                    .body(ApiResponse.fail(503, "SYNC replication of batch to " + syncTarget + " failed, nothing written"));
+        }
+        keyValueStore.putAll(batch);
+        byAsync.forEach((target, group) -> replicationService.replicateAsyncBatch(group, target));
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("primaryReplica", primaryUrl);
+        result.put("keys", batch.size());
+        Map<String, Object> replicas = new LinkedHashMap<>();
+        for (KeyValue kv : batch) {
+            Map<String, Object> r = new HashMap<>();
+            r.put("syncReplica", kv.getReplicaInfo().getSyncReplica());
+            r.put("asyncReplica", kv.getReplicaInfo().getAsyncReplica());
+            r.put("version", kv.getVersion());
+            replicas.put(kv.getKey(), r);
+        }
+        result.put("entries", replicas);
+        result.put("expiresAt", expiresAt);
+        return ResponseEntity.ok(ApiResponse.success(200, result));
+    }
+
+    private ResponseEntity<ApiResponse<String>> doReplicate(Map<String, Object> body) {
         try {
             String key        = (String) body.get("key");
             String value      = (String) body.get("value");
@@ -122,7 +334,9 @@ public class KeyValueController {
             String syncUrl    = (String) body.get("syncUrl");
             String asyncUrl   = (String) body.get("asyncUrl"); // may be null
 
-            if (key == null || value == null || primaryUrl == null || syncUrl == null) {
+            boolean tombstone = Boolean.TRUE.equals(body.get("tombstone"));
+
+            if (key == null || (value == null && !tombstone) || primaryUrl == null || syncUrl == null) {
                 return ResponseEntity.badRequest()
                         .body(ApiResponse.fail(400, "key, value, primaryUrl, and syncUrl are required"));
             }
@@ -135,10 +349,35 @@ public class KeyValueController {
             KeyValue kv = new KeyValue();
             kv.setKey(key);
             kv.setValue(value);
-            kv.setReplicaType(ReplicaType.SYNC);
+            // a put at ConsistencyLevel.ALL writes its async replica here too
+            kv.setReplicaType("ASYNC".equals(body.get("replicaType")) ? ReplicaType.ASYNC : ReplicaType.SYNC);
             kv.setReplicaInfo(info);
+            if (body.get("expiresAt") instanceof Number expiresAt) {
+                kv.setExpiresAt(expiresAt.longValue());
+            }
+            if (body.get("version") instanceof Number version) {
+                kv.setVersion(version.longValue());
+            }
+            kv.setTombstone(tombstone);
+
+            if (!keyValueStore.admit(kv)) {
+                return ResponseEntity.status(507)
+                        .body(ApiResponse.fail(507, "Replica memory limit reached"));
+            }
 
-            keyValueStore.put(kv);
+            // a newer write already landed here; acknowledging keeps the primary from retrying
+            if (!keyValueStore.putIfNewer(kv)) {
+                return ResponseEntity.ok(
+                        ApiResponse.success(200, "Ignored stale key=" + key + " v" + kv.getVersion())
+                );
+            }
+
+            // chain replication: pass the write on to the tail before acknowledging it
+            if (Boolean.TRUE.equals(body.get("chain")) && asyncUrl != null
+                    && kv.getReplicaType() == ReplicaType.SYNC && !chainForwarder.forward(asyncUrl, kv)) {
+                return ResponseEntity.status(202)
+                        .body(ApiResponse.success(202, "Replicated key=" + key + ", tail " + asyncUrl + " missed it"));
+            }
 
             return ResponseEntity.ok(
                     ApiResponse.success(200,
@@ -151,8 +390,137 @@ public class KeyValueController {
         }
     }
 
-    @PostMapping("/get")
-    public ResponseEntity<ApiResponse<KeyValue>> get(@RequestBody Map<String, String> body) {
+    /**
+     * Many replica entries in one ShardTransferService stream, as a primary
+     * sends when it rebuilds lost replicas. Entries keep the replica type and
+     * info they were sent with; older versions than the one held are skipped.
+     */
+    @PostMapping(value = "/replicate/bulk", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<ApiResponse<String>> replicateBulk(InputStream body) {
+        try {
+            long[] stale = new long[1];
+            long received = shardTransfer.receive(body, entries -> {
+                for (KeyValue kv : entries) {
+                    if (kv.getReplicaType() == null || kv.getReplicaType() == ReplicaType.PRIMARY
+                            || kv.getReplicaInfo() == null) {
+                        throw new IllegalArgumentException("Bulk entries must be sync or async replicas: key=" + kv.getKey());
+                    }
+                    if (!keyValueStore.admit(kv)) return false;
+                    if (!keyValueStore.putIfNewer(kv)) stale[0]++;
+                }
+                return true;
+            });
+            if (received < 0) {
+                return ResponseEntity.status(507)
+                        .body(ApiResponse.fail(507, "Replica memory limit reached"));
+            }
+            return ResponseEntity.ok(ApiResponse.success(200,
+                    "Replicated " + (received - stale[0]) + " entries, ignored " + stale[0] + " stale"));
+
+        } catch (IllegalArgumentException | IOException e) {
+            // bad entry, checksum mismatch or truncated stream; frames before it are kept
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.fail(400, e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.fail(500, "Error in /replicate/bulk: " + e.getMessage()));
+        }
+    }
+
+    /** A sync replica's copy of one /mput batch, applied as a unit. */
+    @PostMapping("/replicate/batch")
+    public ResponseEntity<ApiResponse<String>> replicateBatch(@RequestBody Map<String, Object> body) {
+        return requestMetrics.time("replicate", () -> {
+            try {
+                List<KeyValue> batch = replicationService.batchEntries(body, ReplicaType.SYNC);
+                if (!keyValueStore.admitAll(batch)) {
+                    return ResponseEntity.status(507)
+                            .body(ApiResponse.fail(507, "Replica memory limit reached"));
+                }
+                int stored = keyValueStore.putAll(batch);
+                // eviction tombstones need not wait out the grace period here either
+                if (Boolean.TRUE.equals(body.get("evicted"))) keyValueStore.evictionsShipped(batch);
+                return ResponseEntity.ok(ApiResponse.success(200,
+                        "Replicated batch of " + stored + " keys, ignored " + (batch.size() - stored) + " stale"));
+
+            } catch (IllegalArgumentException | ClassCastException e) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.fail(400, e.getMessage()));
+            }
+        });
+    }
+
+    @PostMapping("/delete")
+    public ResponseEntity<ApiResponse<Object>> delete(@RequestBody Map<String, String> body) {
+
+        String key = body.get("key");
+        if (key == null || key.isBlank()) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.fail(400, "Key required"));
+        }
+
+        KeyValue existing = keyValueStore.get(key);
+        if (existing == null) {
+            return ResponseEntity.status(404)
+                    .body(ApiResponse.fail(404, "Key not found"));
+        }
+
+        if (existing.getReplicaType() != ReplicaType.PRIMARY) {
+            return ResponseEntity.status(409)
+                    .body(ApiResponse.fail(409, "Not the primary for key=" + key));
+        }
+
+        KeyValue previous = new KeyValue(existing);
+        ReplicaInfo info = previous.getReplicaInfo();
+        String syncTarget = info == null ? null : info.getSyncReplica();
+        String asyncTarget = info == null ? null : info.getAsyncReplica();
+
+        // The tombstone keeps the replica info so late writes can be versioned against it
+        KeyValue tombstone = new KeyValue(key, ReplicaType.PRIMARY, null, info);
+        tombstone.setVersion(KeyValue.nextVersion(previous));
+        tombstone.setTombstone(true);
+
+        keyValueStore.put(tombstone);
+
+        if (syncTarget != null && !replicationService.syncUpdate(tombstone, syncTarget, asyncTarget)) {
+            keyValueStore.put(previous);
+            return ResponseEntity.status(503)
+                    .body(ApiResponse.fail(503, "SYNC delete failed, rolled back"));
+        }
+
+        if (asyncTarget != null) {
+            replicationService.replicateAsync(tombstone, asyncTarget, syncTarget);
+        }
+
+        return ResponseEntity.ok(ApiResponse.success(200, Map.of(
+                "key", key,
+                "version", tombstone.getVersion()
+        )));
+    }
+
+    @PostMapping("/replicate/expire")
+    public ResponseEntity<ApiResponse<String>> replicateExpire(@RequestBody Map<String, Object> body) {
+        try {
+            if (!(body.get("entries") instanceof Map<?, ?> entries)) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.fail(400, "entries required"));
+            }
+
+            @SuppressWarnings("unchecked")
+            int removed = replicationService.applyExpiry((Map<String, ?>) entries);
+
+            return ResponseEntity.ok(
+                    ApiResponse.success(200,
+                            "Expired " + removed + " keys from " + body.get("primaryUrl"))
+            );
+
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.fail(500, "Error in /replicate/expire: " + e.getMessage()));
+        }
+    }
+
+    private ResponseEntity<ApiResponse<KeyValue>> doGet(Map<String, String> body) {
         try {
             String key = body.get("key");
             if (key == null || key.isBlank()) {
@@ -160,6 +528,12 @@ public class KeyValueController {
                         .body(ApiResponse.fail(400, "Key required"));
             }
 
+            // Negative fast-path: the filter never reports a stored key as absent
+            if (!keyValueStore.mightContain(key)) {
+                return ResponseEntity.status(404)
+                        .body(ApiResponse.fail(404, "Key not found"));
+            }
+
             KeyValue kv = keyValueStore.get(key);
 
             if (kv == null) {
@@ -174,4 +548,45 @@ public class KeyValueController {
                     .body(ApiResponse.fail(500, e.getMessage()));
         }
     }
+
+    /**
+     * One page of keys in order. Bounds are optional: start (inclusive), end
+     * (exclusive), prefix, and after (exclusive cursor, the previous nextCursor).
+     * primaryOnly restricts the page to keys this worker is primary for.
+     */
+    @PostMapping("/scan")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> scan(@RequestBody Map<String, Object> body) {
+        try {
+            int limit = 100;
+            if (body.get("limit") instanceof Number n) limit = n.intValue();
+            if (limit <= 0) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.fail(400, "limit must be positive"));
+            }
+            limit = Math.min(limit, maxScanLimit);
+
+            List<KeyValue> entries = keyValueStore.scan(
+                    (String) body.get("start"),
+                    (String) body.get("end"),
+                    (String) body.get("prefix"),
+                    (String) body.get("after"),
+                    limit,
+                    Boolean.TRUE.equals(body.get("primaryOnly"))
+            );
+
+            Map<String, Object> page = new HashMap<>();
+            page.put("entries", entries);
+            // a short page means the range is exhausted
+            page.put("nextCursor", entries.size() < limit ? null : entries.get(entries.size() - 1).getKey());
+
+            return ResponseEntity.ok(ApiResponse.success(200, page));
+
+        } catch (ClassCastException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.fail(400, "start, end, prefix and after must be strings"));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.fail(500, "Error in /scan: " + e.getMessage()));
+        }
+    }
 }
@@ -0,0 +1,140 @@
+package com.worker.controller;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.worker.model.ApiResponse;
+import com.worker.model.KeyValue;
+import com.worker.service.MigrationService;
+import com.worker.service.ShardTransferService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Slot migration steps driven by the controller's rebalancer. */
+@RestController
+@RequestMapping("/migration")
+public class MigrationController {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Autowired
+    private MigrationService migrationService;
+
+    @Autowired
+    private ShardTransferService shardTransfer;
+
+    @PostMapping("/export")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> export(@RequestBody Map<String, Object> body) {
+        try {
+            int slot = ((Number) body.get("slot")).intValue();
+            int slotCount = ((Number) body.get("slotCount")).intValue();
+            int limit = body.get("limit") instanceof Number n ? n.intValue() : 200;
+            boolean hashTags = Boolean.TRUE.equals(body.get("hashTags"));
+            List<KeyValue> entries = migrationService.export(slot, slotCount, hashTags, (String) body.get("after"), limit);
+
+            Map<String, Object> page = new HashMap<>();
+            page.put("entries", entries);
+            page.put("next", entries.size() < limit ? null : entries.get(entries.size() - 1).getKey());
+            return ResponseEntity.ok(ApiResponse.success(200, page));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.fail(500, "Error in /migration/export: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/import")
+    public ResponseEntity<ApiResponse<String>> importEntries(@RequestBody Map<String, Object> body) {
+        try {
+            String source = (String) body.get("source");
+            List<KeyValue> entries = mapper.convertValue(body.get("entries"), new TypeReference<List<KeyValue>>() {});
+            if (source == null || entries == null) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.fail(400, "source and entries are required"));
+            }
+            if (!migrationService.importEntries(source, entries)) {
+                return ResponseEntity.status(507)
+                        .body(ApiResponse.fail(507, "Worker memory limit reached"));
+            }
+            return ResponseEntity.ok(ApiResponse.success(200, "Imported " + entries.size() + " entries"));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.fail(500, "Error in /migration/import: " + e.getMessage()));
+        }
+    }
+
+    /** Like export, but the page is streamed to the target worker directly, up to maxBytes; only the keys come back. */
+    @PostMapping("/push")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> push(@RequestBody Map<String, Object> body) {
+        try {
+            int slot = ((Number) body.get("slot")).intValue();
+            int slotCount = ((Number) body.get("slotCount")).intValue();
+            int limit = body.get("limit") instanceof Number n ? n.intValue() : 5000;
+            long maxBytes = body.get("maxBytes") instanceof Number b ? b.longValue() : 0;
+            String target = (String) body.get("target");
+            if (target == null) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.fail(400, "target is required"));
+            }
+            return ResponseEntity.ok(ApiResponse.success(200,
+                    migrationService.push(slot, slotCount, Boolean.TRUE.equals(body.get("hashTags")),
+                            (String) body.get("after"), limit, maxBytes, target)));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.fail(500, "Error in /migration/push: " + e.getMessage()));
+        }
+    }
+
+    /** Receiving end of push: a ShardTransferService stream of the source's entries. */
+    @PostMapping(value = "/import/stream", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<ApiResponse<String>> importStream(@RequestParam String source, InputStream body) {
+        try {
+            long received = shardTransfer.receive(body, entries -> migrationService.importEntries(source, entries));
+            if (received < 0) {
+                return ResponseEntity.status(507)
+                        .body(ApiResponse.fail(507, "Worker memory limit reached"));
+            }
+            return ResponseEntity.ok(ApiResponse.success(200, "Imported " + received + " entries"));
+        } catch (IOException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.fail(400, "Error in /migration/import/stream: " + e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.fail(500, "Error in /migration/import/stream: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/activate")
+    public ResponseEntity<ApiResponse<Map<String, Map<String, String>>>> activate(@RequestBody Map<String, Object> body) {
+        try {
+            List<String> keys = (List<String>) body.get("keys");
+            return ResponseEntity.ok(ApiResponse.success(200, migrationService.activate(keys)));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.fail(500, "Error in /migration/activate: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/release")
+    public ResponseEntity<ApiResponse<String>> release(@RequestBody Map<String, Object> body) {
+        try {
+            List<String> keys = (List<String>) body.get("keys");
+            String owner = (String) body.get("owner");
+            if (keys == null || owner == null) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.fail(400, "keys and owner are required"));
+            }
+            int released = migrationService.release(keys, owner);
+            return ResponseEntity.ok(ApiResponse.success(200, "Released " + released + " keys to " + owner));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.fail(500, "Error in /migration/release: " + e.getMessage()));
+        }
+    }
+}
@@ -1,14 +1,21 @@
 package com.worker.controller;
 
 import com.worker.model.ApiResponse;
+import com.worker.model.ClusterView;
+import com.worker.service.AsyncCatchUpService;
+import com.worker.service.AsyncReplicationLog;
+import com.worker.service.ControllerLocator;
 import com.worker.service.FailoverService;
+import com.worker.service.HintedHandoffService;
+import com.worker.service.KeyValueStore;
 import com.worker.service.RecoveryService;
+import com.worker.service.ReplicaPlacement;
 import com.worker.service.ReplicationService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -24,26 +31,81 @@ public class ReplicaController {
     @Autowired
     public RecoveryService recoveryService;
 
+    @Autowired
+    public KeyValueStore keyValueStore;
+
+    @Autowired
+    public ControllerLocator controllerLocator;
+
+    @Autowired
+    public ReplicaPlacement replicaPlacement;
+
+    @Autowired
+    public AsyncReplicationLog asyncReplicationLog;
+
+    @Autowired
+    public AsyncCatchUpService asyncCatchUpService;
+
+    @Autowired
+    public HintedHandoffService hintedHandoffService;
+
     @Autowired
     public ReplicaController(ReplicationService replicationService) {
         this.replicationService = replicationService;
     }
 
     @PostMapping("/update")
-    public ResponseEntity<ApiResponse<String>> configureReplicas(
+    public ResponseEntity<ApiResponse<Map<String, Object>>> configureReplicas(
             @RequestBody Map<String, Object> body) {
 
         try {
-            List<String> deadWorkers  = (List<String>) body.get("deadWorkers");
-            List<String> aliveWorkers = (List<String>) body.get("aliveWorkers");
+            Map<String, Object> view = (Map<String, Object>) body.get("view");
+            long incoming = ClusterView.epochOf(view);
+            long held = replicationService.getClusterView().getEpoch();
 
-            replicationService.updateClusterState(new HashSet<>(aliveWorkers));
+            // a deposed controller that has not noticed yet must not move membership
+            long term = body.get("term") instanceof Number t ? t.longValue() : 0;
+            if (!controllerLocator.follow((String) body.get("leaderUrl"), term)) {
+                return ResponseEntity.status(409)
+                        .body(new ApiResponse<>("fail", 409, "Stale controller term=" + term,
+                                Map.of("epoch", held, "term", controllerLocator.getHighestTerm())));
+            }
 
-            failoverService.applyFailover(deadWorkers);
-            recoveryService.applyRecovery();
+            // a delayed push from before the view we hold must not roll membership back
+            if (incoming < held) {
+                return ResponseEntity.status(409)
+                        .body(new ApiResponse<>("fail", 409, "Stale cluster view epoch=" + incoming,
+                                Map.of("epoch", held)));
+            }
+
+            if (body.get("placement") instanceof Map weights) {
+                replicaPlacement.update((Map<String, Number>) weights);
+            }
+            if (body.get("domains") instanceof Map domains) {
+                replicaPlacement.updateDomains((Map<String, Map<String, Object>>) domains);
+            }
+            if (body.get("rebuildRates") instanceof Map rates) {
+                recoveryService.updateRebuildRates((Map<String, Number>) rates);
+            }
+
+            if (incoming > held) {
+                List<String> removed = replicationService.applyClusterView(view);
+                if (removed != null) {
+                    failoverService.applyFailover(removed);
+                    asyncCatchUpService.forget(removed);
+                }
+            }
+            // acked now; the paced rebuild must not hold up the controller's resync
+            recoveryService.requestRecovery();
+
+            // Publish the key filter with every resync so the controller can short-circuit misses
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("message", "Cluster state updated");
+            payload.put("epoch", replicationService.getClusterView().getEpoch());
+            payload.put("keyFilter", keyValueStore.keyFilterSnapshot());
 
             return ResponseEntity.ok(
-                    ApiResponse.success(200, "Cluster state updated")
+                    ApiResponse.success(200, payload)
             );
 
         } catch (Exception e) {
@@ -51,4 +113,55 @@ public class ReplicaController {
                     .body(ApiResponse.fail(500, e.getMessage()));
         }
     }
+
+    /** Whether a rebuild from here may still be adding keys to other workers. */
+    @GetMapping("/recovery")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> recovery() {
+        return ResponseEntity.ok(ApiResponse.success(200, Map.of("recovering", recoveryService.isRecovering())));
+    }
+
+    /** The key filter alone, for the controller's re-check once keys stopped moving after a view change. */
+    @GetMapping("/key-filter")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> keyFilter() {
+        return ResponseEntity.ok(ApiResponse.success(200, keyValueStore.keyFilterSnapshot()));
+    }
+
+    /** How far this worker's async stream to target has got, for target's lag tracking. */
+    @GetMapping("/async/seq")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> asyncSequence(@RequestParam String target) {
+        return ResponseEntity.ok(ApiResponse.success(200, Map.of(
+                "stream", asyncReplicationLog.stream(),
+                "seq", asyncReplicationLog.current(target)
+        )));
+    }
+
+    /** Pushes target the async records after "after" again, when its catch-up found a gap. */
+    @PostMapping("/async/catchup")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> asyncCatchUp(@RequestBody Map<String, Object> body) {
+        String target = (String) body.get("target");
+        if (target == null || !(body.get("after") instanceof Number after)) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.fail(400, "target and after required"));
+        }
+        int limit = body.get("limit") instanceof Number n ? n.intValue() : 5000;
+        try {
+            return ResponseEntity.ok(ApiResponse.success(200,
+                    asyncReplicationLog.catchUp(target, after.longValue(), limit)));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.fail(500, "Async catch-up to " + target + " failed: " + e.getMessage()));
+        }
+    }
+
+    /** A primary's hints replayed: drop the copies it stood here for the suspect sync replica. */
+    @PostMapping("/hints/release")
+    public ResponseEntity<ApiResponse<String>> releaseHandoffs(@RequestBody Map<String, Object> body) {
+        String primary = (String) body.get("primary");
+        if (primary == null || !(body.get("keys") instanceof Map<?, ?> keys)) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.fail(400, "primary and keys required"));
+        }
+        int released = hintedHandoffService.release(primary, (Map<String, Number>) keys);
+        return ResponseEntity.ok(ApiResponse.success(200, "Released " + released + " of " + keys.size() + " keys"));
+    }
 }
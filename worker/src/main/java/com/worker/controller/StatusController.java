@@ -25,4 +25,9 @@ public class StatusController {
                     .body(ApiResponse.fail(500, e.getMessage()));
         }
     }
+
+    @GetMapping("/status/memory")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getMemory() {
+        return ResponseEntity.ok(ApiResponse.success(200, keyValueStore.memoryStats()));
+    }
 }
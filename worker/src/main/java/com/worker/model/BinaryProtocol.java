@@ -0,0 +1,93 @@
+package com.worker.model;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Wire format of the worker's binary data port. Every frame is a 4-byte
+ * length (of the rest of the frame) followed by a 4-byte request id chosen by
+ * the client; replies carry the id back, so a connection may pipeline many
+ * requests and match replies that complete out of order. All integers are
+ * big-endian, keys are a 2-byte length plus UTF-8, values a 4-byte length plus
+ * UTF-8 (-1 = absent).
+ *
+ * Requests, after the id: op (1 byte), then
+ *   GET   key
+ *   PUT   key, value, ttlSeconds (4 bytes, 0 = none)
+ *   MGET  count (2 bytes), count keys
+ *
+ * Replies, after the id: status (2 bytes, HTTP codes), then
+ *   200 GET   version (8 bytes), value
+ *   200 PUT   version (8 bytes)
+ *   200 MGET  count (2 bytes), per key: status, and version and value when 200
+ *   else      message (a value)
+ */
+public final class BinaryProtocol {
+
+    public static final byte GET = 1;
+    public static final byte PUT = 2;
+    public static final byte MGET = 3;
+
+    public static final short OK = 200;
+    public static final short BAD_REQUEST = 400;
+    public static final short NOT_FOUND = 404;
+    /** Key is not owned or not held as primary here; the message names the worker to try. */
+    public static final short MISDIRECTED = 421;
+    public static final short SERVER_ERROR = 500;
+
+    /** Length prefix plus request id. */
+    public static final int HEADER_BYTES = 8;
+
+    private BinaryProtocol() {}
+
+    public static void putKey(ByteBuffer buf, byte[] key) {
+        buf.putShort((short) key.length);
+        buf.put(key);
+    }
+
+    public static void putValue(ByteBuffer buf, byte[] value) {
+        if (value == null) {
+            buf.putInt(-1);
+            return;
+        }
+        buf.putInt(value.length);
+        buf.put(value);
+    }
+
+    public static String getKey(ByteBuffer buf) {
+        int len = buf.getShort() & 0xffff;
+        return getUtf8(buf, len);
+    }
+
+    public static String getValue(ByteBuffer buf) {
+        int len = buf.getInt();
+        if (len < 0) return null;
+        return getUtf8(buf, len);
+    }
+
+    private static String getUtf8(ByteBuffer buf, int len) {
+        if (len > buf.remaining()) throw new BufferUnderflowException();
+        if (buf.hasArray()) {
+            String s = new String(buf.array(), buf.arrayOffset() + buf.position(), len, StandardCharsets.UTF_8);
+            buf.position(buf.position() + len);
+            return s;
+        }
+        byte[] bytes = new byte[len];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static byte[] utf8(String s) {
+        return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Encoded size of a key or value as written by putKey / putValue. */
+    public static int keyBytes(byte[] key) {
+        return 2 + key.length;
+    }
+
+    public static int valueBytes(byte[] value) {
+        return 4 + (value == null ? 0 : value.length);
+    }
+}
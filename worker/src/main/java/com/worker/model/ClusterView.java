@@ -0,0 +1,127 @@
+package com.worker.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * The controller's cluster view as this worker holds it: epoch, alive members
+ * and hash slot owners. Views arrive either full or as a delta against the
+ * epoch the worker already has; the checksum confirms a delta-applied view
+ * matches the controller's. The controller also decides whether keys are
+ * slotted by their {hash tag}.
+ */
+public final class ClusterView {
+
+    public static final ClusterView EMPTY = new ClusterView(0, List.of(), List.of());
+
+    private final long epoch;
+    private final List<String> members;
+    private final List<String> slots;
+    private final boolean hashTags;
+    private final long checksum;
+
+    public ClusterView(long epoch, List<String> members, List<String> slots) {
+        this(epoch, members, slots, false);
+    }
+
+    public ClusterView(long epoch, List<String> members, List<String> slots, boolean hashTags) {
+        this.epoch = epoch;
+        this.members = List.copyOf(members);
+        this.slots = Collections.unmodifiableList(new ArrayList<>(slots));
+        this.hashTags = hashTags;
+        this.checksum = checksum(epoch, this.members, this.slots);
+    }
+
+    public long getEpoch() { return epoch; }
+    public List<String> getMembers() { return members; }
+    public List<String> getSlots() { return slots; }
+    public long getChecksum() { return checksum; }
+    public boolean isHashTags() { return hashTags; }
+
+    /** Hash slot of a key; controller and workers must agree on it. */
+    public static int slotOf(String key, int slotCount) {
+        return slotOf(key, slotCount, false);
+    }
+
+    /**
+     * With hashTags, a key that has a non-empty {hash tag} is slotted by the
+     * tag alone, so keys written together by /mput can share a slot
+     * (user:{42}:name, user:{42}:email).
+     */
+    public static int slotOf(String key, int slotCount, boolean hashTags) {
+        return Math.floorMod((hashTags ? hashTag(key) : key).hashCode(), slotCount);
+    }
+
+    /** Slot of a key in this view. */
+    public int slotOf(String key) {
+        return slotOf(key, slots.size(), hashTags);
+    }
+
+    private static String hashTag(String key) {
+        int open = key.indexOf('{');
+        if (open < 0) return key;
+        int close = key.indexOf('}', open + 1);
+        return close > open + 1 ? key.substring(open + 1, close) : key;
+    }
+
+    /** Owner of the key's slot, or null before the first view arrives. */
+    public String ownerOf(String key) {
+        if (slots.isEmpty()) return null;
+        return slots.get(slotOf(key));
+    }
+
+    public static long epochOf(Map<String, Object> update) {
+        return ((Number) update.get("epoch")).longValue();
+    }
+
+    /**
+     * The view an update leads to from this one, or null when it cannot be
+     * applied here: a delta against another epoch, or a checksum mismatch.
+     */
+    @SuppressWarnings("unchecked")
+    public ClusterView apply(Map<String, Object> update) {
+        ClusterView next;
+        boolean nextHashTags = update.containsKey("hashTags") ? Boolean.TRUE.equals(update.get("hashTags")) : hashTags;
+        if ("full".equals(update.get("type"))) {
+            next = new ClusterView(epochOf(update),
+                    (List<String>) update.get("members"),
+                    (List<String>) update.get("slots"),
+                    nextHashTags);
+        } else {
+            if (((Number) update.get("fromEpoch")).longValue() != epoch) return null;
+
+            List<String> nextMembers = new ArrayList<>(members);
+            nextMembers.removeAll((List<String>) update.get("removed"));
+            nextMembers.addAll((List<String>) update.get("added"));
+            Collections.sort(nextMembers);
+
+            int slotCount = ((Number) update.get("slotCount")).intValue();
+            List<String> nextSlots = new ArrayList<>(slots.size() == slotCount
+                    ? slots : Collections.nCopies(slotCount, (String) null));
+            ((Map<String, String>) update.get("slots"))
+                    .forEach((slot, owner) -> nextSlots.set(Integer.parseInt(slot), owner));
+
+            next = new ClusterView(epochOf(update), nextMembers, nextSlots, nextHashTags);
+        }
+
+        long expected = ((Number) update.get("checksum")).longValue();
+        return next.checksum == expected ? next : null;
+    }
+
+    /** Must match the controller's ClusterView.checksum. */
+    public static long checksum(long epoch, List<String> members, List<String> slots) {
+        CRC32 crc = new CRC32();
+        crc.update(Long.toString(epoch).getBytes(StandardCharsets.UTF_8));
+        for (String m : members) {
+            crc.update('\n');
+            crc.update(m.getBytes(StandardCharsets.UTF_8));
+        }
+        crc.update('|');
+        for (String s : slots) {
+            crc.update('\n');
+            if (s != null) crc.update(s.getBytes(StandardCharsets.UTF_8));
+        }
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,21 @@
+package com.worker.model;
+
+import java.util.Locale;
+
+/**
+ * How many copies a put waits for before it is acknowledged:
+ *   ONE   the primary only; the sync replica is updated in the background
+ *   SYNC  the primary and its sync replica
+ *   ALL   the primary, the sync replica and the async replica, which is then
+ *         written over HTTP instead of through Kafka
+ * A level asks only for replicas the key has; with one live worker every
+ * level is ONE.
+ */
+public enum ConsistencyLevel {
+    ONE, SYNC, ALL;
+
+    /** Case-insensitive; throws IllegalArgumentException for an unknown level. */
+    public static ConsistencyLevel parse(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+}
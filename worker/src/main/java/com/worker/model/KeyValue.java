@@ -12,4 +12,27 @@ public class KeyValue {
     private ReplicaType replicaType;
     private String value;
     private ReplicaInfo replicaInfo;
+    private long expiresAt; // epoch millis, 0 = never expires
+    private long version;   // assigned by the primary; replicas ignore older versions
+    private boolean tombstone;
+
+    public KeyValue(String key, ReplicaType replicaType, String value, ReplicaInfo replicaInfo) {
+        this(key, replicaType, value, replicaInfo, 0L, 0L, false);
+    }
+
+    public KeyValue(KeyValue other) {
+        this(other.key, other.replicaType, other.value,
+                other.replicaInfo == null ? null : new ReplicaInfo(other.replicaInfo),
+                other.expiresAt, other.version, other.tombstone);
+    }
+
+    public boolean hasExpired(long nowMillis) {
+        return expiresAt > 0 && expiresAt <= nowMillis;
+    }
+
+    /** Next version for a write replacing {@code previous}: wall clock, but always moving forward. */
+    public static long nextVersion(KeyValue previous) {
+        long last = previous == null ? 0 : previous.getVersion();
+        return Math.max(System.currentTimeMillis(), last + 1);
+    }
 }
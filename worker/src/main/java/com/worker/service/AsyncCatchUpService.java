@@ -0,0 +1,236 @@
+package com.worker.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Replica side of async replication tracking. For each primary it keeps the
+ * high-water mark of that primary's stream to this worker: the sequence
+ * number up to which every record has been applied. Every interval it asks
+ * each primary how far its stream has got; a record the primary had sent
+ * grace-ms ago that is still missing (a lost Kafka record, or one that failed
+ * to apply) is a gap, and the primary is asked to push the range after the
+ * high-water mark again, batch records at a time.
+ *
+ * Exported per primary: kv.replication.async.lag.records (records sent but
+ * not yet applied here) and kv.replication.async.lag.ms (how long the oldest
+ * of them has been outstanding, to within one interval); and
+ * kv.replication.async.delay, the time from send to apply of each record.
+ *
+ * Catch-ups run on their own threads, one at a time per primary, with
+ * catchup-timeout-ms on every call: a stalled primary must not hold up the
+ * shared scheduler thread, which also sends the heartbeats.
+ */
+@Service
+public class AsyncCatchUpService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncCatchUpService.class);
+
+    // pending sequence numbers above a gap; past this the catch-up refills them anyway
+    private static final int MAX_PENDING = 100_000;
+    private static final int MAX_ROUNDS = 10;
+
+    private final LogThrottle catchUpLog = new LogThrottle(Duration.ofSeconds(1));
+
+    private final RestTemplate rest;
+    private final ExecutorService runner = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "async-catchup");
+        t.setDaemon(true);
+        return t;
+    });
+    private final WorkerRegistrar workerRegistrar;
+    private final MeterRegistry meterRegistry;
+    private final Timer delay;
+    private final long graceMs;
+    private final int batch;
+
+    private final Map<String, Stream> streams = new ConcurrentHashMap<>();
+
+    private static final class Stream {
+        long id;
+        long hwm;
+        final TreeSet<Long> pending = new TreeSet<>();
+        // the primary's sequence number when last asked, and when it was first seen unapplied
+        volatile long primarySeq;
+        long waitFor;
+        volatile long waitSince;
+        final List<Gauge> gauges = new ArrayList<>();
+        final AtomicBoolean running = new AtomicBoolean(false);
+
+        synchronized long lagRecords() {
+            return Math.max(0, primarySeq - hwm);
+        }
+
+        synchronized long lagMs() {
+            return hwm < waitFor ? System.currentTimeMillis() - waitSince : 0;
+        }
+
+        void reset(long newId) {
+            id = newId;
+            hwm = 0;
+            pending.clear();
+            waitFor = 0;
+        }
+
+        void advance(long seq) {
+            if (seq <= hwm) return;
+            if (seq == hwm + 1) {
+                hwm = seq;
+                while (!pending.isEmpty() && pending.first() <= hwm + 1) hwm = Math.max(hwm, pending.pollFirst());
+            } else if (pending.size() < MAX_PENDING) {
+                pending.add(seq);
+            }
+        }
+
+        void caughtUp(long upTo) {
+            if (upTo <= hwm) return;
+            hwm = upTo;
+            while (!pending.isEmpty() && pending.first() <= hwm + 1) hwm = Math.max(hwm, pending.pollFirst());
+        }
+    }
+
+    public AsyncCatchUpService(RestTemplateBuilder builder,
+                               WorkerRegistrar workerRegistrar,
+                               MeterRegistry meterRegistry,
+                               @Value("${worker.async.catchup-grace-ms:2000}") long graceMs,
+                               @Value("${worker.async.catchup-batch:5000}") int batch,
+                               @Value("${worker.async.catchup-timeout-ms:5000}") long timeoutMs) {
+        this.rest = builder
+                .setConnectTimeout(Duration.ofMillis(timeoutMs))
+                .setReadTimeout(Duration.ofMillis(timeoutMs))
+                .build();
+        this.workerRegistrar = workerRegistrar;
+        this.meterRegistry = meterRegistry;
+        this.graceMs = graceMs;
+        this.batch = Math.max(1, batch);
+        this.delay = Timer.builder("kv.replication.async.delay")
+                .description("Async record send on the primary until applied on this replica")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /** Records that the record seq of primary's stream was applied (or found stale) here. */
+    public void applied(String primary, long streamId, long seq, long sentAt) {
+        if (primary == null || streamId == 0 || seq <= 0) return;
+        if (sentAt > 0) delay.record(Math.max(0, System.currentTimeMillis() - sentAt), TimeUnit.MILLISECONDS);
+
+        Stream stream = streams.computeIfAbsent(primary, this::track);
+        synchronized (stream) {
+            if (stream.id != streamId) stream.reset(streamId);
+            stream.advance(seq);
+        }
+    }
+
+    /** Stops tracking primaries that left the cluster view. */
+    public void forget(Collection<String> removed) {
+        for (String primary : removed) {
+            Stream stream = streams.remove(primary);
+            if (stream != null) stream.gauges.forEach(meterRegistry::remove);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${worker.async.catchup-interval-ms:1000}")
+    public void catchUp() {
+        String me = workerRegistrar.getWorkerUrl();
+        if (me == null) return;
+        for (var e : streams.entrySet()) {
+            Stream stream = e.getValue();
+            // the previous round from this primary is still waiting on it
+            if (!stream.running.compareAndSet(false, true)) continue;
+            runner.execute(() -> {
+                try {
+                    catchUp(e.getKey(), stream, me);
+                } catch (Exception ex) {
+                    catchUpLog.warn(logger, "Async catch-up from {} failed: {}", e.getKey(), ex.getMessage());
+                } finally {
+                    stream.running.set(false);
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        runner.shutdownNow();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void catchUp(String primary, Stream stream, String me) {
+        Map<String, Object> response = rest.getForObject(
+                primary + "/replicas/async/seq?target={target}", Map.class, me);
+        Map<String, Object> payload = response == null ? null : (Map<String, Object>) response.get("payload");
+        if (payload == null) return;
+        long streamId = ((Number) payload.get("stream")).longValue();
+        long seq = ((Number) payload.get("seq")).longValue();
+
+        long after;
+        long target;
+        synchronized (stream) {
+            // the primary restarted: its records to us start over
+            if (stream.id != streamId) stream.reset(streamId);
+            stream.primarySeq = seq;
+
+            long now = System.currentTimeMillis();
+            if (stream.hwm >= stream.waitFor) {
+                stream.waitFor = seq;
+                stream.waitSince = now;
+            }
+            if (stream.hwm >= stream.waitFor || now - stream.waitSince < graceMs) return;
+            after = stream.hwm;
+            target = stream.waitFor;
+        }
+
+        for (int round = 0; round < MAX_ROUNDS && after < target; round++) {
+            Map<String, Object> body = new HashMap<>();
+            body.put("target", me);
+            body.put("after", after);
+            body.put("limit", batch);
+            response = rest.postForObject(primary + "/replicas/async/catchup", body, Map.class);
+            payload = response == null ? null : (Map<String, Object>) response.get("payload");
+            if (payload == null) return;
+
+            long upTo = ((Number) payload.get("upTo")).longValue();
+            meterRegistry.counter("kv.replication.async.catchup.entries")
+                    .increment(((Number) payload.get("sent")).doubleValue());
+            logger.info("Async catch-up from {}: records {}..{} resent {} entries{}", primary, after + 1, upTo,
+                    payload.get("sent"), Boolean.TRUE.equals(payload.get("truncated")) ? " (full resync)" : "");
+            if (upTo <= after) return;
+
+            synchronized (stream) {
+                if (stream.id != streamId) return;
+                stream.caughtUp(upTo);
+                after = stream.hwm;
+            }
+        }
+    }
+
+    private Stream track(String primary) {
+        Stream stream = new Stream();
+        stream.gauges.add(Gauge.builder("kv.replication.async.lag.records", stream, Stream::lagRecords)
+                .description("Async records sent by the primary but not yet applied here")
+                .tag("primary", primary)
+                .register(meterRegistry));
+        stream.gauges.add(Gauge.builder("kv.replication.async.lag.ms", stream, Stream::lagMs)
+                .description("Age of the oldest async record from the primary still missing here")
+                .tag("primary", primary)
+                .register(meterRegistry));
+        return stream;
+    }
+}
@@ -0,0 +1,134 @@
+package com.worker.service;
+
+import com.worker.model.KeyValue;
+import com.worker.model.ReplicaInfo;
+import com.worker.model.ReplicaType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Primary side of async replication tracking. Every Kafka record for an async
+ * replica gets the next sequence number of this worker's stream to that
+ * replica, and the ring of the last log-size keys per replica is kept so a
+ * replica that finds a gap can have the missing range pushed to it again. The
+ * stream id changes on every start, telling replicas that sequence numbers
+ * restarted.
+ */
+@Service
+public class AsyncReplicationLog {
+
+    private final KeyValueStore keyValueStore;
+    private final ShardTransferService shardTransfer;
+    private final WorkerRegistrar workerRegistrar;
+    private final int capacity;
+    private final long stream = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+
+    private final Map<String, Ring> rings = new ConcurrentHashMap<>();
+
+    private static final class Ring {
+        // a key, or the keys of one /mput batch
+        final Object[] keys;
+        long last;
+
+        Ring(int capacity) {
+            keys = new Object[capacity];
+        }
+    }
+
+    public AsyncReplicationLog(KeyValueStore keyValueStore,
+                               ShardTransferService shardTransfer,
+                               WorkerRegistrar workerRegistrar,
+                               @Value("${worker.async.log-size:100000}") int capacity) {
+        this.keyValueStore = keyValueStore;
+        this.shardTransfer = shardTransfer;
+        this.workerRegistrar = workerRegistrar;
+        this.capacity = Math.max(1024, capacity);
+    }
+
+    public long stream() {
+        return stream;
+    }
+
+    /** Sequence number for the next record to target; key is null for records a catch-up cannot replay (expiry). */
+    public long append(String target, String key) {
+        return append(target, (Object) key);
+    }
+
+    /** Sequence number for one record carrying all of keys. */
+    public long append(String target, List<String> keys) {
+        return append(target, (Object) List.copyOf(keys));
+    }
+
+    private long append(String target, Object keys) {
+        Ring ring = rings.computeIfAbsent(target, t -> new Ring(capacity));
+        synchronized (ring) {
+            ring.last++;
+            ring.keys[(int) (ring.last % capacity)] = keys;
+            return ring.last;
+        }
+    }
+
+    /** Last sequence number handed out for target, 0 before the first. */
+    public long current(String target) {
+        Ring ring = rings.get(target);
+        if (ring == null) return 0;
+        synchronized (ring) {
+            return ring.last;
+        }
+    }
+
+    /**
+     * Pushes the current entries of the keys sent to target after sequence
+     * number after, up to limit records, as async replicas over a bulk stream.
+     * When the range has already left the ring every key this worker holds
+     * with target as its async replica is pushed instead. Returns the sequence
+     * number the replica is now caught up to and how many entries were sent.
+     */
+    public Map<String, Object> catchUp(String target, long after, int limit) throws IOException {
+        Set<String> keys = new LinkedHashSet<>();
+        long upTo;
+        boolean truncated;
+
+        Ring ring = rings.get(target);
+        if (ring == null) return Map.of("upTo", 0L, "sent", 0, "truncated", false);
+        synchronized (ring) {
+            upTo = Math.min(ring.last, after + Math.max(1, limit));
+            truncated = after < ring.last - capacity;
+            if (truncated) {
+                upTo = ring.last;
+            } else {
+                for (long seq = after + 1; seq <= upTo; seq++) {
+                    Object slot = ring.keys[(int) (seq % capacity)];
+                    if (slot instanceof String key) keys.add(key);
+                    else if (slot instanceof List<?> batch) batch.forEach(key -> keys.add((String) key));
+                }
+            }
+        }
+
+        List<KeyValue> entries = new ArrayList<>();
+        if (truncated) {
+            for (KeyValue kv : keyValueStore.entries()) addReplica(entries, kv, target);
+        } else {
+            for (String key : keys) addReplica(entries, keyValueStore.peek(key), target);
+        }
+        if (!entries.isEmpty()) shardTransfer.send(target + "/replicate/bulk", entries, null);
+
+        return Map.of("upTo", upTo, "sent", entries.size(), "truncated", truncated);
+    }
+
+    private void addReplica(List<KeyValue> entries, KeyValue kv, String target) {
+        if (kv == null || kv.getReplicaType() != ReplicaType.PRIMARY || kv.hasExpired(System.currentTimeMillis())) return;
+        ReplicaInfo info = kv.getReplicaInfo();
+        if (info == null || !target.equals(info.getAsyncReplica())) return;
+
+        KeyValue copy = new KeyValue(kv);
+        copy.setReplicaType(ReplicaType.ASYNC);
+        copy.setReplicaInfo(new ReplicaInfo(workerRegistrar.getWorkerUrl(), info.getSyncReplica(), target));
+        entries.add(copy);
+    }
+}
@@ -0,0 +1,150 @@
+package com.worker.service;
+
+import com.worker.model.KeyValue;
+import com.worker.model.ReplicaInfo;
+import com.worker.model.ReplicaType;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The middle link of chain replication: a sync replica that stored a chained
+ * write forwards it to the key's async replica (the tail) and acknowledges the
+ * primary only once the tail has it. Forwards to one tail are group-committed
+ * by a sender thread of that tail: it sends everything queued for the tail as
+ * one /replicate/bulk stream, and keeps sending while more arrives, while the
+ * request threads only wait for their own write, up to timeout-ms. The
+ * primary then sends each write once and the copy to the tail leaves from the
+ * sync replica.
+ */
+@Service
+public class ChainForwarder {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChainForwarder.class);
+
+    private final LogThrottle forwardLog = new LogThrottle(Duration.ofSeconds(1));
+
+    private final ShardTransferService shardTransfer;
+    private final DistributionSummary batchSizes;
+    private final boolean enabled;
+    private final int maxBatch;
+    private final long timeoutMs;
+
+    private final Map<String, Tail> tails = new ConcurrentHashMap<>();
+    // at most one running per tail, guarded by Tail.sending
+    private final ExecutorService senders = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "chain-forward");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private record Forward(KeyValue kv, CompletableFuture<Boolean> done) {}
+
+    private static final class Tail {
+        final ConcurrentLinkedQueue<Forward> queue = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean sending = new AtomicBoolean(false);
+    }
+
+    public ChainForwarder(ShardTransferService shardTransfer,
+                          MeterRegistry meterRegistry,
+                          @Value("${worker.replication.chain:false}") boolean enabled,
+                          @Value("${worker.chain.max-batch:512}") int maxBatch,
+                          @Value("${worker.chain.timeout-ms:2000}") long timeoutMs) {
+        this.shardTransfer = shardTransfer;
+        this.enabled = enabled;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.timeoutMs = timeoutMs;
+        this.batchSizes = DistributionSummary.builder("kv.replication.chain.batch")
+                .description("Writes per forward from a sync replica to the chain tail")
+                .register(meterRegistry);
+    }
+
+    /** Whether primaries send writes down the chain instead of fanning out to both replicas. */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Forwards kv, as stored on this sync replica, to the tail and waits for
+     * it. Returns false when the tail did not take it within timeout-ms; the
+     * primary then falls back to Kafka for that write.
+     */
+    public boolean forward(String tailUrl, KeyValue kv) {
+        KeyValue copy = new KeyValue(kv);
+        ReplicaInfo info = kv.getReplicaInfo();
+        copy.setReplicaType(ReplicaType.ASYNC);
+        copy.setReplicaInfo(new ReplicaInfo(info.getPrimaryReplica(), info.getSyncReplica(), tailUrl));
+
+        Tail tail = tails.computeIfAbsent(tailUrl, t -> new Tail());
+        Forward forward = new Forward(copy, new CompletableFuture<>());
+        tail.queue.add(forward);
+        schedule(tailUrl, tail);
+
+        try {
+            return forward.done().get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        senders.shutdownNow();
+    }
+
+    /** Starts the tail's sender unless it is running already. */
+    private void schedule(String tailUrl, Tail tail) {
+        if (tail.queue.isEmpty() || !tail.sending.compareAndSet(false, true)) return;
+        try {
+            senders.execute(() -> drain(tailUrl, tail));
+        } catch (RejectedExecutionException e) {
+            // shutting down: the waiting writes time out and go through Kafka
+            tail.sending.set(false);
+        }
+    }
+
+    private void drain(String tailUrl, Tail tail) {
+        try {
+            while (!tail.queue.isEmpty()) {
+                List<Forward> batch = new ArrayList<>();
+                Forward next;
+                while (batch.size() < maxBatch && (next = tail.queue.poll()) != null) batch.add(next);
+                if (!batch.isEmpty()) send(tailUrl, batch);
+            }
+        } finally {
+            tail.sending.set(false);
+        }
+        // a write queued just before the release would otherwise wait for the next one
+        schedule(tailUrl, tail);
+    }
+
+    private void send(String tailUrl, List<Forward> batch) {
+        List<KeyValue> entries = new ArrayList<>(batch.size());
+        for (Forward f : batch) entries.add(f.kv());
+        boolean ok;
+        try {
+            shardTransfer.send(tailUrl + "/replicate/bulk", entries, null, (int) timeoutMs);
+            batchSizes.record(batch.size());
+            ok = true;
+        } catch (Exception e) {
+            forwardLog.warn(logger, "Chain forward of {} writes to tail {} failed: {}",
+                    batch.size(), tailUrl, e.getMessage());
+            ok = false;
+        }
+        for (Forward f : batch) f.done().complete(ok);
+    }
+}
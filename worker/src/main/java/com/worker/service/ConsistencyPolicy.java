@@ -0,0 +1,42 @@
+package com.worker.service;
+
+import com.worker.model.ConsistencyLevel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Picks the consistency level of a put: the one the request names, else the
+ * level configured for the key's namespace (its prefix before ':'), else the
+ * default.
+ */
+@Service
+public class ConsistencyPolicy {
+
+    private final ConsistencyLevel defaultLevel;
+    private final Map<String, ConsistencyLevel> namespaces = new HashMap<>();
+
+    public ConsistencyPolicy(@Value("${worker.consistency.default:SYNC}") String defaultLevel,
+                             @Value("${worker.consistency.namespaces:}") String namespaces) {
+        this.defaultLevel = ConsistencyLevel.parse(defaultLevel);
+        for (String entry : namespaces.split(",")) {
+            if (entry.isBlank()) continue;
+            int eq = entry.indexOf('=');
+            if (eq <= 0) throw new IllegalArgumentException("Expected namespace=LEVEL, got: " + entry.trim());
+            this.namespaces.put(entry.substring(0, eq).trim(), ConsistencyLevel.parse(entry.substring(eq + 1)));
+        }
+    }
+
+    /** Throws IllegalArgumentException when requested is not a level. */
+    public ConsistencyLevel levelFor(String key, String requested) {
+        if (requested != null && !requested.isBlank()) return ConsistencyLevel.parse(requested);
+        int sep = key.indexOf(':');
+        if (sep > 0) {
+            ConsistencyLevel level = namespaces.get(key.substring(0, sep));
+            if (level != null) return level;
+        }
+        return defaultLevel;
+    }
+}
@@ -1,5 +1,7 @@
 package com.worker.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -9,21 +11,25 @@ import org.springframework.web.client.RestTemplate;
 
 import jakarta.annotation.PostConstruct;
 import java.time.Instant;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Monitors controller health and detects controller failures.
  * Workers can continue operating even when controller is down,
- * but will retry connecting when controller recovers.
+ * but will retry connecting when controller recovers. With several
+ * controllers configured, a failed leader is replaced by whichever
+ * controller now holds the lease.
  */
 @Service
 public class ControllerHealthMonitor {
 
+    private static final Logger logger = LoggerFactory.getLogger(ControllerHealthMonitor.class);
+
     private final RestTemplate restTemplate = new RestTemplate();
-    
-    @Value("${controller.url}")
-    private String controllerUrl;
+
+    private final ControllerLocator controllers;
 
     @Value("${controller.health.check.interval:5000}")
     private long healthCheckIntervalMs;
@@ -35,9 +41,13 @@ public class ControllerHealthMonitor {
     private final AtomicLong lastSuccessfulContact = new AtomicLong(System.currentTimeMillis());
     private volatile boolean controllerDown = false;
 
+    public ControllerHealthMonitor(ControllerLocator controllers) {
+        this.controllers = controllers;
+    }
+
     @PostConstruct
     public void init() {
-        System.out.println("ControllerHealthMonitor initialized. Controller URL: " + controllerUrl);
+        logger.info("ControllerHealthMonitor initialized. Controller URL: {}", controllers.url());
         // Initial health check
         checkControllerHealth();
     }
@@ -46,11 +56,16 @@ public class ControllerHealthMonitor {
      * Periodically checks if the controller is available.
      */
     @Scheduled(fixedDelayString = "${controller.health.check.interval:5000}")
+    @SuppressWarnings("unchecked")
     public void checkControllerHealth() {
         try {
-            // Try to reach controller health endpoint
-            restTemplate.getForEntity(controllerUrl + "/worker/health", Object.class);
-            
+            // Try to reach controller; a standby answers with the current leader
+            Map<String, Object> response = restTemplate.getForObject(controllers.url() + "/ha/leader", Map.class);
+            Map<String, Object> payload = (Map<String, Object>) response.get("payload");
+            if (!Boolean.TRUE.equals(payload.get("leader")) && payload.get("leaderUrl") instanceof String leader) {
+                controllers.follow(leader, ((Number) payload.get("term")).longValue());
+            }
+
             // Controller is available
             boolean wasDown = controllerDown;
             controllerAvailable.set(true);
@@ -58,20 +73,24 @@ public class ControllerHealthMonitor {
             lastSuccessfulContact.set(System.currentTimeMillis());
             
             if (wasDown) {
-                System.out.println("Controller is back online! Re-establishing connection...");
+                logger.info("Controller is back online! Re-establishing connection...");
                 onControllerRecovery();
             }
             
         } catch (RestClientException e) {
-            // Controller is not responding
+            // The controller we follow is not responding; a standby may have taken over
+            if (controllers.discover() != null) {
+                lastSuccessfulContact.set(System.currentTimeMillis());
+                return;
+            }
             if (!controllerDown) {
-                System.out.println("Controller failure detected: " + e.getMessage());
+                logger.warn("Controller failure detected: {}", e.getMessage());
                 controllerDown = true;
                 controllerAvailable.set(false);
                 onControllerFailure();
             }
         } catch (Exception e) {
-            System.err.println("Error checking controller health: " + e.getMessage());
+            logger.error("Error checking controller health: {}", e.getMessage());
         }
     }
 
@@ -84,7 +103,7 @@ public class ControllerHealthMonitor {
         if (timeSinceLastContact > controllerTimeoutMs) {
             controllerAvailable.set(false);
             if (!controllerDown) {
-                System.out.println("Controller timeout: No response for " + (timeSinceLastContact / 1000) + " seconds");
+                logger.warn("Controller timeout: No response for {} seconds", timeSinceLastContact / 1000);
                 controllerDown = true;
                 onControllerFailure();
             }
@@ -103,15 +122,15 @@ public class ControllerHealthMonitor {
      * Called when controller failure is detected.
      */
     private void onControllerFailure() {
-        System.out.println("Controller is down. Worker will continue operating but some features may be limited.");
-        System.out.println("Worker will retry connecting to controller periodically.");
+        logger.warn("Controller is down. Worker will continue operating but some features may be limited.");
+        logger.warn("Worker will retry connecting to controller periodically.");
     }
 
     /**
      * Called when controller recovers.
      */
     private void onControllerRecovery() {
-        System.out.println("Controller recovered. Re-syncing worker configuration...");
+        logger.info("Controller recovered. Re-syncing worker configuration...");
         // Workers can re-register or re-sync with controller here if needed
         // For now, the controller will detect workers through its heartbeat monitor
     }
@@ -130,7 +149,7 @@ public class ControllerHealthMonitor {
                 java.util.Map<String, String> body = new java.util.HashMap<>();
                 body.put("workerUrl", workerUrl);
                 
-                restTemplate.postForEntity(controllerUrl + "/worker/heartbeat", body, Object.class);
+                restTemplate.postForEntity(controllers.url() + "/worker/heartbeat", body, Object.class);
                 lastSuccessfulContact.set(System.currentTimeMillis());
                 controllerAvailable.set(true);
                 controllerDown = false;
@@ -148,7 +167,7 @@ public class ControllerHealthMonitor {
                     }
                 }
             } catch (Exception e) {
-                System.err.println("Unexpected error sending heartbeat: " + e.getMessage());
+                logger.error("Unexpected error sending heartbeat: {}", e.getMessage());
                 return false;
             }
         }
@@ -0,0 +1,79 @@
+package com.worker.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Which controller to talk to. controller.url may list several controllers
+ * (comma-separated); the leader is learned from its cluster view pushes, or
+ * found by asking each one when the current controller stops answering.
+ * Pushes carrying an older term than one already seen come from a deposed
+ * leader and are refused.
+ */
+@Service
+public class ControllerLocator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ControllerLocator.class);
+
+    private final RestTemplate rest = new RestTemplate();
+    private final List<String> candidates;
+
+    private volatile String leaderUrl;
+    private long highestTerm;
+
+    public ControllerLocator(@Value("${controller.url:http://localhost:8080}") String controllerUrls) {
+        this.candidates = Arrays.stream(controllerUrls.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .toList();
+        this.leaderUrl = candidates.get(0);
+    }
+
+    public String url() {
+        return leaderUrl;
+    }
+
+    public synchronized long getHighestTerm() {
+        return highestTerm;
+    }
+
+    /** Follows a controller claiming leadership at term; false when a newer term is already known. */
+    public synchronized boolean follow(String url, long term) {
+        if (term < highestTerm) return false;
+        highestTerm = term;
+        if (url != null && !url.equals(leaderUrl)) {
+            logger.info("Following controller leader {} term={}", url, term);
+            leaderUrl = url;
+        }
+        return true;
+    }
+
+    /** Asks every configured controller who leads; follows and returns the answer, or null. */
+    @SuppressWarnings("unchecked")
+    public String discover() {
+        String best = null;
+        long bestTerm = -1;
+        for (String candidate : candidates) {
+            try {
+                Map<String, Object> response = rest.getForObject(candidate + "/ha/leader", Map.class);
+                Map<String, Object> payload = (Map<String, Object>) response.get("payload");
+                long term = ((Number) payload.get("term")).longValue();
+                if (payload.get("leaderUrl") instanceof String url && term > bestTerm) {
+                    best = url;
+                    bestTerm = term;
+                }
+            } catch (Exception e) {
+                logger.debug("Controller {} unreachable during discovery: {}", candidate, e.getMessage());
+            }
+        }
+        if (best != null) follow(best, bestTerm);
+        return best;
+    }
+}
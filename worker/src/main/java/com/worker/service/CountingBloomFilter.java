@@ -0,0 +1,127 @@
+package com.worker.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counting Bloom filter over the keys held by this worker.
+ * Counters are 4 bits wide and packed sixteen to a long, so the filter costs
+ * roughly 5 bytes per key at a 1% false-positive rate. A counter that reaches
+ * its maximum is never decremented again, which keeps removals from ever
+ * producing a false negative.
+ *
+ * The hashing scheme must stay identical to the controller's KeyBloomFilter,
+ * which consumes the bit set published by {@link #toBits()}.
+ */
+public class CountingBloomFilter {
+
+    private static final int COUNTER_BITS = 4;
+    private static final int COUNTERS_PER_WORD = Long.SIZE / COUNTER_BITS;
+    private static final long COUNTER_MAX = (1L << COUNTER_BITS) - 1;
+
+    private final AtomicLongArray counters;
+    private final int numCounters;
+    private final int numHashes;
+
+    public CountingBloomFilter(long expectedKeys, double fpp) {
+        long n = Math.max(1, expectedKeys);
+        double p = Math.min(Math.max(fpp, 1e-9), 0.5);
+
+        long m = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        this.numCounters = (int) Math.min(Math.max(m, 64), Integer.MAX_VALUE - 64);
+        this.numHashes = Math.max(1, (int) Math.round((double) numCounters / n * Math.log(2)));
+        this.counters = new AtomicLongArray((numCounters + COUNTERS_PER_WORD - 1) / COUNTERS_PER_WORD);
+    }
+
+    public void add(String key) {
+        long h1 = hash(key);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            increment(index(h1, h2, i));
+        }
+    }
+
+    public void remove(String key) {
+        long h1 = hash(key);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            decrement(index(h1, h2, i));
+        }
+    }
+
+    public boolean mightContain(String key) {
+        long h1 = hash(key);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            if (counter(index(h1, h2, i)) == 0) return false;
+        }
+        return true;
+    }
+
+    /** Collapses the counters into a plain bit set (bit i set when counter i is non-zero). */
+    public long[] toBits() {
+        long[] bits = new long[(numCounters + Long.SIZE - 1) / Long.SIZE];
+        for (int i = 0; i < numCounters; i++) {
+            if (counter(i) != 0) bits[i >>> 6] |= 1L << (i & 63);
+        }
+        return bits;
+    }
+
+    public int getNumBits() {
+        return numCounters;
+    }
+
+    public int getNumHashes() {
+        return numHashes;
+    }
+
+    private int index(long h1, long h2, int i) {
+        return (int) Math.floorMod(h1 + i * h2, (long) numCounters);
+    }
+
+    private long counter(int idx) {
+        int shift = (idx % COUNTERS_PER_WORD) * COUNTER_BITS;
+        return (counters.get(idx / COUNTERS_PER_WORD) >>> shift) & COUNTER_MAX;
+    }
+
+    private void increment(int idx) {
+        int word = idx / COUNTERS_PER_WORD;
+        int shift = (idx % COUNTERS_PER_WORD) * COUNTER_BITS;
+        while (true) {
+            long current = counters.get(word);
+            long c = (current >>> shift) & COUNTER_MAX;
+            if (c == COUNTER_MAX) return; // saturated, sticky
+            if (counters.compareAndSet(word, current, current + (1L << shift))) return;
+        }
+    }
+
+    private void decrement(int idx) {
+        int word = idx / COUNTERS_PER_WORD;
+        int shift = (idx % COUNTERS_PER_WORD) * COUNTER_BITS;
+        while (true) {
+            long current = counters.get(word);
+            long c = (current >>> shift) & COUNTER_MAX;
+            if (c == 0 || c == COUNTER_MAX) return;
+            if (counters.compareAndSet(word, current, current - (1L << shift))) return;
+        }
+    }
+
+    static long hash(String key) {
+        // 64-bit FNV-1a over the UTF-8 bytes, finished with a murmur3 mix
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= (b & 0xff);
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,27 @@
+package com.worker.service;
+
+/**
+ * Chooses which cache-namespace key to drop when the store crosses its high watermark.
+ * Implementations are told about every insert, read and removal of a tracked key
+ * and must be safe to call concurrently.
+ */
+public interface EvictionPolicy {
+
+    void onInsert(String key);
+
+    void onAccess(String key);
+
+    void onRemove(String key);
+
+    /** Removes and returns the next key to evict, or null when nothing is tracked. */
+    String nextVictim();
+
+    static EvictionPolicy create(String name) {
+        return switch (name == null ? "lru" : name.trim().toLowerCase()) {
+            case "lru" -> new LruEvictionPolicy();
+            case "lfu" -> new LfuEvictionPolicy();
+            case "w-tinylfu", "tinylfu" -> new TinyLfuEvictionPolicy();
+            default -> throw new IllegalArgumentException("Unknown eviction policy: " + name);
+        };
+    }
+}
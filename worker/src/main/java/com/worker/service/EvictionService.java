@@ -0,0 +1,98 @@
+package com.worker.service;
+
+import com.worker.model.KeyValue;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Ships the tombstones of primary keys the store evicted: one batch per sync
+ * and async replica, then one notice so the controller drops their metadata.
+ * Only then may the store drop those tombstones ahead of the grace period.
+ * Runs on its own thread, as a slow replica must not hold up heartbeats.
+ */
+@Service
+public class EvictionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EvictionService.class);
+
+    private final KeyValueStore keyValueStore;
+    private final ReplicationService replicationService;
+    private final AtomicBoolean shipping = new AtomicBoolean(false);
+    private final ExecutorService shipper = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "eviction");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public EvictionService(KeyValueStore keyValueStore, ReplicationService replicationService) {
+        this.keyValueStore = keyValueStore;
+        this.replicationService = replicationService;
+    }
+
+    @Scheduled(fixedDelayString = "${worker.ttl.tick-ms:100}")
+    public void shipEvicted() {
+        if (!shipping.compareAndSet(false, true)) return;
+        try {
+            shipper.execute(() -> {
+                try {
+                    List<KeyValue> evicted = keyValueStore.pollEvicted();
+                    if (!evicted.isEmpty()) ship(evicted);
+                } finally {
+                    shipping.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            shipping.set(false);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        shipper.shutdownNow();
+    }
+
+    private void ship(List<KeyValue> evicted) {
+        Map<String, List<KeyValue>> bySync = new LinkedHashMap<>();
+        Map<String, List<KeyValue>> byAsync = new LinkedHashMap<>();
+        for (KeyValue kv : evicted) {
+            String sync = kv.getReplicaInfo() == null ? null : kv.getReplicaInfo().getSyncReplica();
+            String async = kv.getReplicaInfo() == null ? null : kv.getReplicaInfo().getAsyncReplica();
+            if (sync != null) bySync.computeIfAbsent(sync, u -> new ArrayList<>()).add(kv);
+            if (async != null) byAsync.computeIfAbsent(async, u -> new ArrayList<>()).add(kv);
+        }
+
+        bySync.forEach((sync, batch) -> {
+            if (replicationService.syncBatch(batch, sync, true)) return;
+            // the replica may be down for a while: hint each tombstone like a background write
+            for (KeyValue kv : batch) replicationService.syncUpdateInBackground(kv, sync, null, false);
+        });
+        byAsync.forEach((async, batch) -> replicationService.replicateAsyncBatch(batch, async, true));
+
+        // keys written again since hold a newer entry and keep their metadata;
+        // a tombstone already purged under memory pressure still counts as removed
+        Map<String, Long> removed = new HashMap<>();
+        for (KeyValue kv : evicted) {
+            KeyValue held = keyValueStore.peek(kv.getKey());
+            if (held == null || (held.isTombstone() && held.getVersion() == kv.getVersion())) {
+                removed.put(kv.getKey(), kv.getVersion());
+            }
+        }
+        replicationService.notifyRemovedToController(removed);
+        keyValueStore.evictionsShipped(evicted);
+        logger.debug("Shipped {} evicted keys to {} sync and {} async replicas",
+                evicted.size(), bySync.size(), byAsync.size());
+    }
+}
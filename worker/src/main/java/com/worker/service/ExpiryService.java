@@ -0,0 +1,77 @@
+package com.worker.service;
+
+import com.worker.model.KeyValue;
+import com.worker.model.ReplicaInfo;
+import com.worker.model.ReplicaType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Drives the store's expiry wheel once per tick. Every replica expires its own
+ * copies locally; the primary additionally ships the keys it expired to its
+ * sync (HTTP) and async (Kafka) replicas, one batch per replica per tick, and
+ * has the controller drop their metadata.
+ */
+@Service
+public class ExpiryService {
+
+    private final KeyValueStore keyValueStore;
+    private final ReplicationService replicationService;
+
+    @Value("${worker.ttl.batch-size:500}")
+    private int batchSize;
+
+    public ExpiryService(KeyValueStore keyValueStore, ReplicationService replicationService) {
+        this.keyValueStore = keyValueStore;
+        this.replicationService = replicationService;
+    }
+
+    @Scheduled(fixedDelayString = "${worker.ttl.tick-ms:100}")
+    public void expireDueKeys() {
+        List<HierarchicalTimingWheel.Timer> due = keyValueStore.pollExpired(System.currentTimeMillis());
+        if (due.isEmpty()) return;
+
+        Map<String, Map<String, Long>> syncBatches = new HashMap<>();
+        Map<String, Map<String, Long>> asyncBatches = new HashMap<>();
+        Map<String, Long> removed = new HashMap<>();
+
+        for (HierarchicalTimingWheel.Timer timer : due) {
+            KeyValue expired = keyValueStore.removeIfExpiresAt(timer.getKey(), timer.getDeadline());
+            if (expired == null || expired.getReplicaType() != ReplicaType.PRIMARY) continue;
+
+            removed.put(timer.getKey(), expired.getVersion());
+            ReplicaInfo info = expired.getReplicaInfo();
+            if (info == null) continue;
+
+            if (info.getSyncReplica() != null) {
+                Map<String, Long> batch = syncBatches.computeIfAbsent(info.getSyncReplica(), u -> new HashMap<>());
+                batch.put(timer.getKey(), timer.getDeadline());
+                if (batch.size() >= batchSize) {
+                    replicationService.syncExpire(info.getSyncReplica(), batch);
+                    syncBatches.remove(info.getSyncReplica());
+                }
+            }
+
+            if (info.getAsyncReplica() != null) {
+                Map<String, Long> batch = asyncBatches.computeIfAbsent(info.getAsyncReplica(), u -> new HashMap<>());
+                batch.put(timer.getKey(), timer.getDeadline());
+                if (batch.size() >= batchSize) {
+                    replicationService.asyncExpire(info.getAsyncReplica(), batch);
+                    asyncBatches.remove(info.getAsyncReplica());
+                }
+            }
+        }
+
+        syncBatches.forEach(replicationService::syncExpire);
+        asyncBatches.forEach(replicationService::asyncExpire);
+
+        // a key written again since keeps its metadata
+        removed.keySet().removeIf(keyValueStore::contains);
+        replicationService.notifyRemovedToController(removed);
+    }
+}
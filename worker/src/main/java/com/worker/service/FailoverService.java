@@ -3,11 +3,12 @@ package com.worker.service;
 import com.worker.model.KeyValue;
 import com.worker.model.ReplicaInfo;
 import com.worker.model.ReplicaType;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.stereotype.Service;
 
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 @Service
@@ -15,25 +16,36 @@ public class FailoverService {
     private final KeyValueStore keyValueStore;
     private final ReplicationService replicationService;
     private final WorkerRegistrar workerRegistrar;
+    private final MeterRegistry meterRegistry;
+    private final Timer failoverTimer;
 
     public FailoverService(KeyValueStore store,
                            ReplicationService replicationService,
-                           WorkerRegistrar registrar) {
+                           WorkerRegistrar registrar,
+                           MeterRegistry meterRegistry) {
         this.keyValueStore = store;
         this.replicationService = replicationService;
         this.workerRegistrar = registrar;
+        this.meterRegistry = meterRegistry;
+        this.failoverTimer = Timer.builder("kv.failover.duration")
+                .description("Time for one failover pass over the local keys")
+                .register(meterRegistry);
     }
 
     public void applyFailover(List<String> deadWorkers) {
+        failoverTimer.record(() -> failover(deadWorkers));
+    }
+
+    private void failover(List<String> deadWorkers) {
         Set<String> dead = (deadWorkers == null) ? new HashSet<>() : new HashSet<>(deadWorkers);
         String myUrl = workerRegistrar.getWorkerUrl();
 
         keyValueStore.getAll().forEach((key, kv) -> {
             try {
                 ReplicaInfo info = kv.getReplicaInfo();
-                if (info == null) return;
+                if (info == null || kv.isTombstone()) return;
+                processed("examined");
 
-                String value = kv.getValue();
                 String primary = info.getPrimaryReplica();
                 String sync = info.getSyncReplica();
                 String async = info.getAsyncReplica();
@@ -48,6 +60,7 @@ public class FailoverService {
                     info.setAsyncReplica(null);
                     kv.setReplicaType(ReplicaType.PRIMARY);
                     replicationService.notifyPrimaryToController(key, myUrl);
+                    processed("sole_survivor");
                     return;
                 }
 
@@ -57,248 +70,77 @@ public class FailoverService {
                 ReplicaType type = kv.getReplicaType();
 
                 if (type == ReplicaType.SYNC && primaryDead) {
-                    handleSyncBecomesPrimary(key, value, info, kv);
+                    takeOver(key, info, kv);
+                    processed("sync_promoted");
                     return;
                 }
 
                 if (type == ReplicaType.ASYNC && primaryDead && syncDead) {
-                    handleAsyncBecomesPrimary(key, value, info, kv);
+                    takeOver(key, info, kv);
+                    processed("async_promoted");
                     return;
                 }
 
                 if (type == ReplicaType.PRIMARY) {
 
                     if (syncDead && async != null && !asyncDead) {
-                        handlePrimarySyncDeadOnly(key, value, info);
+                        // the async copy is live: recovery keeps it and places only a new sync
+                        info.setSyncReplica(null);
+                        processed("sync_replaced");
                         return;
                     }
 
                     if (!syncDead && (async == null || asyncDead)) {
-                        handlePrimaryAsyncDeadOnly(key, value, info);
+                        handlePrimaryAsyncDeadOnly(info, kv);
+                        processed("async_replaced");
                         return;
                     }
 
                     if (syncDead && (async == null || asyncDead)) {
-                        handlePrimaryBothDead(key, value, info, kv);
-                        return;
-                    }
-                }
-
-                alive = replicationService.getAliveWorkers();
-                if (alive == null) alive = new HashSet<>();
-                aliveCount = alive.size();
-
-                sync = info.getSyncReplica();
-                async = info.getAsyncReplica();
-
-                if (kv.getReplicaType() == ReplicaType.PRIMARY) {
-
-                    if (sync == null && aliveCount > 1) {
-                        try {
-                            Map<String, String> res = replicationService.syncReplicaCreate(key, value, async);
-                            if (res != null) {
-                                String syncReplica = res.get("syncReplica");
-                                String asyncReplica = res.get("asyncReplica");
-                                if (asyncReplica != null && asyncReplica.equals(syncReplica)) {
-                                    asyncReplica = null;
-                                }
-                                info.setSyncReplica(syncReplica);
-                                info.setAsyncReplica(asyncReplica);
-                                if (asyncReplica != null) {
-                                    boolean ok = replicationService.replicateAsync(key, value, asyncReplica, syncReplica);
-                                    if (!ok) info.setAsyncReplica(null);
-                                }
-                            }
-                        } catch (Exception ignored) {}
+                        dropReplicas(info);
+                        processed("both_replaced");
                         return;
                     }
-
-                    if (sync != null && (async == null || async.isBlank()) && aliveCount > 2) {
-                        String newAsync = replicationService.chooseAsyncCandidate(myUrl, sync);
-                        if (newAsync != null) {
-                            boolean updated = replicationService.syncUpdate(key, value, sync, newAsync);
-                            if (updated) {
-                                boolean queued = replicationService.replicateAsync(key, value, newAsync, sync);
-                                if (queued) info.setAsyncReplica(newAsync);
-                                else info.setAsyncReplica(null);
-                            } else {
-                                info.setAsyncReplica(null);
-                            }
-                        }
-                    }
                 }
 
             } catch (Exception ex) {
                 keyValueStore.remove(key);
+                processed("dropped");
             }
         });
     }
 
-    private void handleSyncBecomesPrimary(String key, String value, ReplicaInfo info, KeyValue kv) {
-        String myUrl = workerRegistrar.getWorkerUrl();
-        int aliveCount = replicationService.getAliveWorkers().size();
-
-        Map<String, String> res;
-        try {
-            res = replicationService.syncReplicaCreate(key, value, null);
-        } catch (Exception e) {
-            keyValueStore.remove(key);
-            return;
-        }
-
-        if (res == null) {
-            keyValueStore.remove(key);
-            return;
-        }
-
-        String syncReplica = res.get("syncReplica");
-        String asyncReplica = res.get("asyncReplica");
-
-        if (aliveCount < 3) asyncReplica = null;
-
-        info.setPrimaryReplica(myUrl);
-        info.setSyncReplica(syncReplica);
-        info.setAsyncReplica(asyncReplica);
-
-        if (aliveCount >= 3 && asyncReplica != null) {
-            boolean ok = replicationService.replicateAsync(key, value, asyncReplica, syncReplica);
-            if (!ok) info.setAsyncReplica(null);
-        }
-
-        kv.setReplicaType(ReplicaType.PRIMARY);
-        replicationService.notifyPrimaryToController(key, myUrl);
+    private void processed(String action) {
+        meterRegistry.counter("kv.failover.keys", "action", action).increment();
     }
 
-    private void handleAsyncBecomesPrimary(String key, String value, ReplicaInfo info, KeyValue kv) {
+    /** This copy becomes the primary; its replicas are rebuilt by the recovery pass that follows. */
+    private void takeOver(String key, ReplicaInfo info, KeyValue kv) {
         String myUrl = workerRegistrar.getWorkerUrl();
-        int aliveCount = replicationService.getAliveWorkers().size();
-
-        Map<String, String> res;
-        try {
-            res = replicationService.syncReplicaCreate(key, value, null);
-        } catch (Exception e) {
-            keyValueStore.remove(key);
-            return;
-        }
-
-        if (res == null) {
-            keyValueStore.remove(key);
-            return;
-        }
-
-        String syncReplica = res.get("syncReplica");
-        String asyncReplica = res.get("asyncReplica");
-
-        if (aliveCount < 3) asyncReplica = null;
-
         info.setPrimaryReplica(myUrl);
-        info.setSyncReplica(syncReplica);
-        info.setAsyncReplica(asyncReplica);
-
-        if (aliveCount >= 3 && asyncReplica != null) {
-            boolean ok = replicationService.replicateAsync(key, value, asyncReplica, syncReplica);
-            if (!ok) info.setAsyncReplica(null);
-        }
-
+        dropReplicas(info);
         kv.setReplicaType(ReplicaType.PRIMARY);
         replicationService.notifyPrimaryToController(key, myUrl);
     }
 
-    private void handlePrimarySyncDeadOnly(String key, String value, ReplicaInfo info) {
-        int aliveCount = replicationService.getAliveWorkers().size();
-
-        Map<String, String> res;
-        try {
-            res = replicationService.syncReplicaCreate(key, value, info.getAsyncReplica());
-        } catch (Exception e) {
-            info.setSyncReplica(null);
-            info.setAsyncReplica(null);
-            return;
-        }
-
-        if (res == null) {
-            info.setSyncReplica(null);
-            info.setAsyncReplica(null);
-            return;
-        }
-
-        String syncReplica = res.get("syncReplica");
-        String asyncReplica = res.get("asyncReplica");
-
-        if (aliveCount < 3) asyncReplica = null;
-
-        info.setSyncReplica(syncReplica);
-        info.setAsyncReplica(asyncReplica);
-
-        if (aliveCount >= 3 && asyncReplica != null) {
-            boolean ok = replicationService.replicateAsync(key, value, asyncReplica, syncReplica);
-            if (!ok) info.setAsyncReplica(null);
-        }
+    /**
+     * Forgets both replicas of a key this worker took over, or of a primary
+     * that lost both. The recovery pass run right after failover places new
+     * ones and copies all such keys to each new holder in one bulk stream,
+     * rather than a request per key.
+     */
+    private void dropReplicas(ReplicaInfo info) {
+        info.setSyncReplica(null);
+        info.setAsyncReplica(null);
     }
 
-    private void handlePrimaryAsyncDeadOnly(String key, String value, ReplicaInfo info) {
+    private void handlePrimaryAsyncDeadOnly(ReplicaInfo info, KeyValue kv) {
         int aliveCount = replicationService.getAliveWorkers().size();
 
+        info.setAsyncReplica(null);
+        // with three or more workers, recovery places a new async replica and updates the sync one in bulk
         if (aliveCount < 3) {
-            info.setAsyncReplica(null);
-            replicationService.syncUpdate(key, value, info.getSyncReplica(), info.getAsyncReplica());
-            return;
+            replicationService.syncUpdate(kv, info.getSyncReplica(), null);
         }
-
-        String sync = info.getSyncReplica();
-        String newAsync = replicationService.chooseAsyncCandidate(workerRegistrar.getWorkerUrl(), sync);
-
-        if (newAsync == null) {
-            info.setAsyncReplica(null);
-            return;
-        }
-
-        boolean updated = replicationService.syncUpdate(key, value, sync, newAsync);
-        if (!updated) {
-            info.setAsyncReplica(null);
-            return;
-        }
-
-        boolean queued = replicationService.replicateAsync(key, value, newAsync, sync);
-        if (!queued) {
-            info.setAsyncReplica(null);
-            return;
-        }
-
-        info.setAsyncReplica(newAsync);
-    }
-
-    private void handlePrimaryBothDead(String key, String value, ReplicaInfo info, KeyValue kv) {
-        int aliveCount = replicationService.getAliveWorkers().size();
-
-        Map<String, String> res;
-
-        try {
-            res = replicationService.syncReplicaCreate(key, value, null);
-        } catch (Exception e) {
-            keyValueStore.remove(key);
-            return;
-        }
-
-        if (res == null) {
-            keyValueStore.remove(key);
-            return;
-        }
-
-        String syncReplica = res.get("syncReplica");
-        String asyncReplica = res.get("asyncReplica");
-
-        if (aliveCount < 3) asyncReplica = null;
-
-        info.setSyncReplica(syncReplica);
-        info.setPrimaryReplica(workerRegistrar.getWorkerUrl());
-        info.setAsyncReplica(asyncReplica);
-
-        if (aliveCount >= 3 && asyncReplica != null) {
-            boolean ok = replicationService.replicateAsync(key, value, asyncReplica, syncReplica);
-            if (!ok) info.setAsyncReplica(null);
-        }
-
-        kv.setReplicaType(ReplicaType.PRIMARY);
     }
 }
@@ -1,5 +1,7 @@
 package com.worker.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
@@ -10,14 +12,19 @@ import java.util.Map;
 @Service
 public class HeartbeatProducer {
 
+    private static final Logger logger = LoggerFactory.getLogger(HeartbeatProducer.class);
+
     private final WorkerRegistrar registrar;
     private final KafkaTemplate<String, Object> kafka;
     private final KafkaHeartbeatGate gate;
+    private final ReplicaPlacement placement;
 
-    public HeartbeatProducer(WorkerRegistrar registrar, KafkaTemplate<String, Object> kafka, KafkaHeartbeatGate gate) {
+    public HeartbeatProducer(WorkerRegistrar registrar, KafkaTemplate<String, Object> kafka, KafkaHeartbeatGate gate,
+                             ReplicaPlacement placement) {
         this.registrar = registrar;
         this.kafka = kafka;
         this.gate = gate;
+        this.placement = placement;
     }
 
     @Scheduled(fixedDelayString = "${worker.heartbeat.interval}")
@@ -29,14 +36,18 @@ public class HeartbeatProducer {
         var payload = Map.of(
                 "workerId", registrar.getWorkerId(),
                 "timestamp", Instant.now().toString(),
-                "status", "alive"
+                "status", "alive",
+                // the controller weighs replica placement by these
+                "capacity", placement.capacity(),
+                "load", placement.load(),
+                "topology", placement.topology()
         );
 
         try {
             kafka.send("worker-heartbeats", registrar.getWorkerId(), payload);
-            System.out.println("[WORKER] Kafka heartbeat: " + payload);
+            logger.debug("Kafka heartbeat: {}", payload);
         } catch (Exception e) {
-            System.err.println("[WORKER] Kafka heartbeat failed: " + e.getMessage());
+            logger.warn("Kafka heartbeat failed: {}", e.getMessage());
         }
     }
 }
@@ -1,5 +1,7 @@
 package com.worker.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
@@ -9,15 +11,19 @@ import java.util.Map;
 @Service
 public class HeartbeatService {
 
-    @Value("${controller.url:http://localhost:8080}")
-    private String controllerUrl;
+    private static final Logger logger = LoggerFactory.getLogger(HeartbeatService.class);
 
     @Value("${server.port:8081}")
     private int port;
 
     private final RestTemplate rest = new RestTemplate();
+    private final ControllerLocator controllers;
     private volatile boolean running = false;
 
+    public HeartbeatService(ControllerLocator controllers) {
+        this.controllers = controllers;
+    }
+
     /**
      * Starts a daemon thread that sends heartbeats every 5 seconds.
      * Safe to call multiple times; only one thread will run.
@@ -31,10 +37,11 @@ public class HeartbeatService {
         Thread t = new Thread(() -> {
             while (running) {
                 try {
-                    System.out.println("[WORKER] Sending HTTP heartbeat to " + controllerUrl + "/worker/heartbeat -> " + workerUrl);
+                    String controllerUrl = controllers.url();
+                    logger.debug("Sending HTTP heartbeat to {}/worker/heartbeat -> {}", controllerUrl, workerUrl);
                     rest.postForEntity(controllerUrl + "/worker/heartbeat", Map.of("workerUrl", workerUrl), String.class);
                 } catch (Exception e) {
-                    System.err.println("[WORKER] HTTP heartbeat failed: " + e.getMessage());
+                    logger.warn("HTTP heartbeat failed: {}", e.getMessage());
                 }
 
                 try {
@@ -0,0 +1,110 @@
+package com.worker.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel for key expiry: four levels of 64 slots, so the
+ * default 100ms tick covers ~19 days before entries start re-cascading.
+ * Scheduling is O(1) and each pending deadline costs one small intrusive list
+ * node instead of a scheduled task.
+ *
+ * Timers are never cancelled. When a key is overwritten or removed its old timer
+ * still fires, and the caller drops it because the deadline no longer matches.
+ */
+public class HierarchicalTimingWheel {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    public static final class Timer {
+        private final String key;
+        private final long deadline;
+        private final long tick;
+        private Timer next;
+
+        private Timer(String key, long deadline, long tick) {
+            this.key = key;
+            this.deadline = deadline;
+            this.tick = tick;
+        }
+
+        public String getKey() { return key; }
+        public long getDeadline() { return deadline; }
+    }
+
+    private final long tickMs;
+    private final Timer[][] wheel = new Timer[LEVELS][SLOTS];
+    private long currentTick;
+    private int size;
+
+    public HierarchicalTimingWheel(long tickMs, long startMillis) {
+        this.tickMs = Math.max(1, tickMs);
+        this.currentTick = startMillis / this.tickMs;
+    }
+
+    public synchronized void schedule(String key, long deadlineMillis) {
+        long tick = (deadlineMillis + tickMs - 1) / tickMs;
+        place(new Timer(key, deadlineMillis, tick), currentTick + 1);
+        size++;
+    }
+
+    /** Moves the wheel forward to {@code nowMillis} and returns every timer that came due. */
+    public synchronized List<Timer> advance(long nowMillis) {
+        List<Timer> expired = new ArrayList<>();
+        long target = nowMillis / tickMs;
+
+        while (currentTick < target) {
+            currentTick++;
+
+            // crossing a level boundary pulls that level's slot down a level
+            for (int level = 1; level < LEVELS; level++) {
+                long levelMask = (1L << (SLOT_BITS * level)) - 1;
+                if ((currentTick & levelMask) != 0) break;
+
+                int slot = (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+                Timer t = wheel[level][slot];
+                wheel[level][slot] = null;
+                while (t != null) {
+                    Timer next = t.next;
+                    place(t, currentTick); // level-0 slot for this tick is drained below
+                    t = next;
+                }
+            }
+
+            int slot = (int) (currentTick & SLOT_MASK);
+            Timer t = wheel[0][slot];
+            wheel[0][slot] = null;
+            while (t != null) {
+                Timer next = t.next;
+                t.next = null;
+                if (t.tick <= currentTick) {
+                    expired.add(t);
+                    size--;
+                } else {
+                    place(t, currentTick + 1);
+                }
+                t = next;
+            }
+        }
+        return expired;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private void place(Timer t, long earliestTick) {
+        long tick = Math.max(t.tick, earliestTick);
+        long delta = tick - currentTick;
+
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (SLOT_BITS * (level + 1)))) level++;
+
+        int slot = (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+        t.next = wheel[level][slot];
+        wheel[level][slot] = t;
+    }
+}
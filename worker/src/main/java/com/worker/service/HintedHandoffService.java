@@ -0,0 +1,282 @@
+package com.worker.service;
+
+import com.worker.model.KeyValue;
+import com.worker.model.ReplicaInfo;
+import com.worker.model.ReplicaType;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Hinted handoff for sync replicas that are suspect but not dead. When the
+ * sync update of a put fails or times out on a replica the controller still
+ * lists as alive, the primary keeps the write as a hint for that replica
+ * instead of retrying for several heartbeats. A put acknowledged at
+ * ConsistencyLevel.ONE settles for the hint alone; SYNC and ALL puts first
+ * store the write on a fallback replica, so two copies exist before the ack,
+ * and the hint remembers it. Hints are coalesced per key (only the newest
+ * version is kept) and replayed as bulk frames once the replica answers
+ * again, after which the fallback copies are handed back: the fallback drops
+ * them unless a newer write reached it. Writes for a replica with pending
+ * hints join the queue without trying it, so a stalled peer costs one
+ * timeout, not one per write. Hints for a replica the controller removes are
+ * dropped: failover and the replica rebuild cover its keys from then on.
+ * Replays run on their own thread and time out after timeout-ms, so a frozen
+ * replica cannot stall the scheduler thread that sends heartbeats.
+ */
+@Service
+public class HintedHandoffService {
+
+    private static final Logger logger = LoggerFactory.getLogger(HintedHandoffService.class);
+
+    private final LogThrottle hintLog = new LogThrottle(Duration.ofSeconds(1));
+
+    private final ShardTransferService shardTransfer;
+    private final KeyValueStore keyValueStore;
+    private final RestTemplate client;
+    private final int timeoutMs;
+    private final AtomicBoolean replaying = new AtomicBoolean(false);
+    private final ExecutorService replayer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "hint-replay");
+        t.setDaemon(true);
+        return t;
+    });
+    private final boolean enabled;
+    private final int maxPerTarget;
+    private final int batchSize;
+    private final long maxBackoffMs;
+
+    private final Map<String, Hints> pending = new ConcurrentHashMap<>();
+
+    private static final class Hints {
+        final Map<String, KeyValue> entries = new ConcurrentHashMap<>();
+        // key -> fallback replicas holding a copy of it until the hint replays
+        final Map<String, Set<String>> handedTo = new ConcurrentHashMap<>();
+        volatile long nextReplayAt;
+        long backoffMs;
+    }
+
+    public HintedHandoffService(ShardTransferService shardTransfer,
+                                KeyValueStore keyValueStore,
+                                RestTemplateBuilder builder,
+                                MeterRegistry meterRegistry,
+                                @Value("${worker.hints.enabled:true}") boolean enabled,
+                                @Value("${worker.hints.timeout-ms:500}") long timeoutMs,
+                                @Value("${worker.hints.max-per-target:100000}") int maxPerTarget,
+                                @Value("${worker.hints.batch-size:5000}") int batchSize,
+                                @Value("${worker.hints.max-backoff-ms:5000}") long maxBackoffMs) {
+        this.shardTransfer = shardTransfer;
+        this.keyValueStore = keyValueStore;
+        this.client = builder
+                .setConnectTimeout(Duration.ofMillis(timeoutMs))
+                .setReadTimeout(Duration.ofMillis(timeoutMs))
+                .build();
+        this.timeoutMs = (int) timeoutMs;
+        this.enabled = enabled;
+        this.maxPerTarget = maxPerTarget;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxBackoffMs = maxBackoffMs;
+
+        Gauge.builder("kv.replication.hints", pending, p -> p.values().stream().mapToInt(h -> h.entries.size()).sum())
+                .description("Writes held for suspect sync replicas")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Client for sync updates while hints are on: a stalled replica times out instead of blocking the write. */
+    public RestTemplate client() {
+        return client;
+    }
+
+    /** True while writes for target are queued behind earlier hints. */
+    public boolean hasHints(String target) {
+        Hints hints = pending.get(target);
+        return hints != null && !hints.entries.isEmpty();
+    }
+
+    public boolean hint(String target, KeyValue kv, String primaryUrl, String asyncUrl) {
+        return hint(target, kv, primaryUrl, asyncUrl, null);
+    }
+
+    /**
+     * Holds kv for target, replacing an older hint for the same key; fallback,
+     * if not null, holds a copy of it until the hint replays. Returns false
+     * when target already holds max-per-target hints; the caller then falls
+     * back to retrying the replica.
+     */
+    public boolean hint(String target, KeyValue kv, String primaryUrl, String asyncUrl, String fallback) {
+        if (!enabled) return false;
+        Hints hints = pending.computeIfAbsent(target, t -> new Hints());
+        if (hints.entries.size() >= maxPerTarget && !hints.entries.containsKey(kv.getKey())) {
+            hintLog.warn(logger, "Hint queue for {} is full ({} keys), not hinting key={}",
+                    target, hints.entries.size(), kv.getKey());
+            return false;
+        }
+
+        KeyValue copy = new KeyValue(kv);
+        copy.setReplicaType(ReplicaType.SYNC);
+        copy.setReplicaInfo(new ReplicaInfo(primaryUrl, target, asyncUrl));
+        if (fallback != null) hints.handedTo.computeIfAbsent(kv.getKey(), k -> ConcurrentHashMap.newKeySet()).add(fallback);
+        hints.entries.merge(kv.getKey(), copy, (old, neu) -> neu.getVersion() >= old.getVersion() ? neu : old);
+        return true;
+    }
+
+    /**
+     * Asks fallback to drop its copies of keys (key -> version handed to it),
+     * skipping keys whose replicas now include fallback anyway. A copy the
+     * fallback keeps after a failed hand-back is a stray replica of this
+     * primary's key until the key is written or released again.
+     */
+    public void handBack(String fallback, String primaryUrl, Map<String, Long> keys) {
+        Map<String, Long> release = new HashMap<>();
+        keys.forEach((key, version) -> {
+            KeyValue kv = keyValueStore.peek(key);
+            ReplicaInfo info = kv == null ? null : kv.getReplicaInfo();
+            if (info != null && (fallback.equals(info.getSyncReplica()) || fallback.equals(info.getAsyncReplica()))) return;
+            release.put(key, version);
+        });
+        if (release.isEmpty()) return;
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("primary", primaryUrl);
+        body.put("keys", release);
+        try {
+            client.postForEntity(fallback + "/replicas/hints/release", body, String.class);
+        } catch (Exception e) {
+            hintLog.warn(logger, "Hand-back of {} keys to {} failed: {}", release.size(), fallback, e.getMessage());
+        }
+    }
+
+    /**
+     * Fallback side of handBack: drops the copies primary stood here while
+     * their sync replica was suspect, unless a newer version arrived since.
+     */
+    public int release(String primary, Map<String, ? extends Number> keys) {
+        int released = 0;
+        for (var e : keys.entrySet()) {
+            KeyValue kv = keyValueStore.peek(e.getKey());
+            if (kv == null || kv.getReplicaType() == ReplicaType.PRIMARY || kv.getReplicaInfo() == null) continue;
+            if (!primary.equals(kv.getReplicaInfo().getPrimaryReplica())) continue;
+            if (kv.getVersion() > e.getValue().longValue()) continue;
+            keyValueStore.remove(e.getKey());
+            released++;
+        }
+        return released;
+    }
+
+    /**
+     * Replays due hints to every replica still in alive, and drops those for
+     * replicas that left, in the background; a call while the previous replay
+     * is still running is skipped.
+     */
+    public void replay(Set<String> alive) {
+        if (pending.isEmpty() || !replaying.compareAndSet(false, true)) return;
+        try {
+            replayer.execute(() -> {
+                try {
+                    replayAll(alive);
+                } finally {
+                    replaying.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            replaying.set(false);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        replayer.shutdownNow();
+    }
+
+    private void replayAll(Set<String> alive) {
+        for (var e : pending.entrySet()) {
+            String target = e.getKey();
+            Hints hints = e.getValue();
+
+            if (!alive.contains(target)) {
+                int dropped = hints.entries.size();
+                pending.remove(target, hints);
+                List<KeyValue> held = new ArrayList<>(hints.entries.values());
+                hints.entries.clear();
+                handBackAll(hints, held);
+                if (dropped > 0) logger.info("Dropped {} hints for removed replica {}", dropped, target);
+                continue;
+            }
+            if (hints.entries.isEmpty() || System.currentTimeMillis() < hints.nextReplayAt) continue;
+
+            replayTo(target, hints);
+        }
+    }
+
+    private void replayTo(String target, Hints hints) {
+        int replayed = 0;
+        List<KeyValue> batch = new ArrayList<>(Math.min(batchSize, hints.entries.size()));
+        try {
+            for (KeyValue kv : hints.entries.values()) {
+                batch.add(kv);
+                if (batch.size() >= batchSize) {
+                    replayed += send(target, hints, batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) replayed += send(target, hints, batch);
+
+            hints.backoffMs = 0;
+            hints.nextReplayAt = 0;
+            logger.info("Replayed {} hints to {}", replayed, target);
+
+        } catch (Exception ex) {
+            hints.backoffMs = hints.backoffMs == 0 ? 100 : Math.min(maxBackoffMs, hints.backoffMs * 2);
+            hints.nextReplayAt = System.currentTimeMillis() + hints.backoffMs;
+            hintLog.warn(logger, "Hint replay to {} failed after {} keys ({} pending), retry in {} ms: {}",
+                    target, replayed, hints.entries.size(), hints.backoffMs, ex.getMessage());
+        }
+    }
+
+    private int send(String target, Hints hints, List<KeyValue> batch) throws Exception {
+        shardTransfer.send(target + "/replicate/bulk", batch, null, timeoutMs);
+        // a newer write for the same key may have replaced a hint meanwhile; keep that one
+        List<KeyValue> replayed = new ArrayList<>(batch.size());
+        for (KeyValue kv : batch) {
+            if (hints.entries.remove(kv.getKey(), kv)) replayed.add(kv);
+        }
+        handBackAll(hints, replayed);
+        return batch.size();
+    }
+
+    /** Hands back the fallback copies of entries whose keys hold no newer hint. */
+    private void handBackAll(Hints hints, Iterable<KeyValue> entries) {
+        Map<String, Map<String, Long>> byFallback = new HashMap<>();
+        String primaryUrl = null;
+        for (KeyValue kv : entries) {
+            if (hints.entries.containsKey(kv.getKey())) continue;
+            Set<String> fallbacks = hints.handedTo.remove(kv.getKey());
+            if (fallbacks == null) continue;
+            primaryUrl = kv.getReplicaInfo().getPrimaryReplica();
+            for (String f : fallbacks) byFallback.computeIfAbsent(f, x -> new HashMap<>()).put(kv.getKey(), kv.getVersion());
+        }
+        for (var e : byFallback.entrySet()) handBack(e.getKey(), primaryUrl, e.getValue());
+    }
+}
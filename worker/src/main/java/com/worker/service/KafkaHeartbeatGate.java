@@ -1,15 +1,19 @@
 package com.worker.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 @Component
 public class KafkaHeartbeatGate {
 
+    private static final Logger logger = LoggerFactory.getLogger(KafkaHeartbeatGate.class);
+
     private volatile boolean enabled = false;
 
     public void enableKafkaHeartbeats() {
         enabled = true;
-        System.out.println("[WORKER] Kafka heartbeats enabled");
+        logger.info("Kafka heartbeats enabled");
     }
 
     public boolean isEnabled() {
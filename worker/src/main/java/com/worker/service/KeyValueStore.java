@@ -1,35 +1,631 @@
 package com.worker.service;
 
+import com.worker.model.ClusterView;
 import com.worker.model.KeyValue;
+import com.worker.model.ReplicaType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
 
 @Service
 public class KeyValueStore {
 
+    private static final Logger logger = LoggerFactory.getLogger(KeyValueStore.class);
+
     // Store the entire KeyValue object
     private final ConcurrentHashMap<String, KeyValue> store = new ConcurrentHashMap<>();
 
+    // Membership summary used to answer misses without probing the map.
+    // Writers hold the read lock; growing the filter takes the write lock.
+    private final ReadWriteLock filterLock = new ReentrantReadWriteLock();
+    private final AtomicBoolean growing = new AtomicBoolean(false);
+    private final double filterFpp;
+    private volatile long filterCapacity;
+    private volatile CountingBloomFilter keyFilter;
+
+    // Expiry deadlines of keys written with a TTL, drained by ExpiryService
+    private final HierarchicalTimingWheel expiryWheel;
+
+    // Optional sorted view of the live keys for range and prefix scans. Without it
+    // a scan walks the whole map and keeps only the first `limit` matches.
+    private final NavigableSet<String> orderedIndex;
+
+    // Tombstones in the order they were written, purged by TombstoneSweeper once
+    // the grace period has passed. Entries for rewritten keys are skipped on purge.
+    private record Tombstone(String key, long version, long deletedAt) {}
+    private final ConcurrentLinkedQueue<Tombstone> tombstones = new ConcurrentLinkedQueue<>();
+
+    // Estimated heap held by entries. Above the high watermark cache-namespace keys
+    // are evicted down to the low watermark; storage-namespace writes are refused.
+    private final AtomicLong usedBytes = new AtomicLong();
+
+    // Multi-key batches apply under their slots' write locks and getAll() reads
+    // optimistically against them, so it sees a batch whole or not at all
+    private static final int SLOT_LOCKS = 256;
+    private final StampedLock[] slotLocks = new StampedLock[SLOT_LOCKS];
+    private final AtomicLong evictions = new AtomicLong();
+    // one eviction at a time; writers arriving meanwhile wait for the room it makes
+    private final ReentrantLock evictLock = new ReentrantLock();
+    // Evicted primaries, as tombstones EvictionService still has to replicate
+    private final ConcurrentLinkedQueue<KeyValue> evicted = new ConcurrentLinkedQueue<>();
+    // Eviction tombstones EvictionService has replicated; these alone may go before the
+    // grace period is up, when memory is short. Delete tombstones always wait it out.
+    private final ConcurrentLinkedQueue<Tombstone> shippedEvictions = new ConcurrentLinkedQueue<>();
+    private final long maxBytes;
+    private final long highWatermarkBytes;
+    private final long lowWatermarkBytes;
+    private final Set<String> cacheNamespaces;
+    private final String evictionPolicyName;
+    private final EvictionPolicy evictionPolicy;
+
+    // Rough per-entry costs: map node + KeyValue + ReplicaInfo headers, and the three replica URLs
+    private static final long ENTRY_OVERHEAD_BYTES = 128;
+    private static final long METADATA_BYTES = 3 * (40 + 2 * 24);
+    private static final long STRING_HEADER_BYTES = 40;
+
+    public KeyValueStore(@Value("${worker.bloom.expected-keys:100000}") long expectedKeys,
+                         @Value("${worker.bloom.fpp:0.01}") double fpp,
+                         @Value("${worker.ttl.tick-ms:100}") long ttlTickMs,
+                         @Value("${worker.memory.max-bytes:0}") long maxBytes,
+                         @Value("${worker.memory.high-watermark:0.90}") double highWatermark,
+                         @Value("${worker.memory.low-watermark:0.75}") double lowWatermark,
+                         @Value("${worker.memory.cache-namespaces:}") String cacheNamespaces,
+                         @Value("${worker.memory.eviction-policy:lru}") String evictionPolicy,
+                         @Value("${worker.index.ordered:true}") boolean orderedIndex) {
+        this.filterFpp = fpp;
+        this.filterCapacity = Math.max(1024, expectedKeys);
+        this.keyFilter = new CountingBloomFilter(filterCapacity, fpp);
+        this.expiryWheel = new HierarchicalTimingWheel(ttlTickMs, System.currentTimeMillis());
+
+        // 0 = half of the heap, leaving the rest to request handling and replication buffers
+        this.maxBytes = maxBytes > 0 ? maxBytes : Runtime.getRuntime().maxMemory() / 2;
+        this.highWatermarkBytes = (long) (this.maxBytes * highWatermark);
+        this.lowWatermarkBytes = (long) (this.maxBytes * Math.min(lowWatermark, highWatermark));
+        this.cacheNamespaces = Arrays.stream(cacheNamespaces.split(","))
+                .map(String::trim)
+                .filter(ns -> !ns.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        this.evictionPolicyName = evictionPolicy;
+        this.evictionPolicy = EvictionPolicy.create(evictionPolicy);
+        this.orderedIndex = orderedIndex ? new ConcurrentSkipListSet<>() : null;
+        for (int i = 0; i < SLOT_LOCKS; i++) slotLocks[i] = new StampedLock();
+    }
+
     public void put(KeyValue keyValue) {
-        store.put(keyValue.getKey(), keyValue);
+        filterLock.readLock().lock();
+        try {
+            store.compute(keyValue.getKey(), (k, previous) -> {
+                stored(k, previous, keyValue);
+                return keyValue;
+            });
+        } finally {
+            filterLock.readLock().unlock();
+        }
+
+        written(keyValue);
+    }
+
+    /**
+     * Replica-side write: applied unless the stored entry already carries a newer
+     * version, so a delayed write can never resurrect a deleted key or roll back
+     * a newer value. Returns false when the write was stale and dropped.
+     */
+    public boolean putIfNewer(KeyValue keyValue) {
+        boolean[] applied = new boolean[1];
+        filterLock.readLock().lock();
+        try {
+            store.compute(keyValue.getKey(), (k, previous) -> {
+                if (previous != null && previous.getVersion() > keyValue.getVersion()) return previous;
+                stored(k, previous, keyValue);
+                applied[0] = true;
+                return keyValue;
+            });
+        } finally {
+            filterLock.readLock().unlock();
+        }
+
+        if (applied[0]) written(keyValue);
+        return applied[0];
+    }
+
+    /**
+     * Applies a multi-key batch as one unit: getAll() sees all of it or none.
+     * As in putIfNewer, an entry older than the one held is skipped; the newer
+     * single-key write is then ordered after the batch. Returns how many
+     * entries were applied.
+     */
+    public int putAll(List<KeyValue> batch) {
+        int[] slots = slotsOf(batch.stream().map(KeyValue::getKey).toArray(String[]::new));
+        long[] stamps = new long[slots.length];
+        for (int i = 0; i < slots.length; i++) stamps[i] = slotLocks[slots[i]].writeLock();
+        try {
+            int applied = 0;
+            for (KeyValue kv : batch) {
+                if (putIfNewer(kv)) applied++;
+            }
+            return applied;
+        } finally {
+            for (int i = slots.length - 1; i >= 0; i--) slotLocks[slots[i]].unlockWrite(stamps[i]);
+        }
+    }
+
+    /** get() of several keys at one point between putAll batches; null where get() would be. */
+    public KeyValue[] getAll(String[] keys) {
+        int[] slots = slotsOf(keys);
+        long[] stamps = new long[slots.length];
+        KeyValue[] found = new KeyValue[keys.length];
+
+        boolean valid = true;
+        for (int i = 0; i < slots.length && valid; i++) {
+            stamps[i] = slotLocks[slots[i]].tryOptimisticRead();
+            valid = stamps[i] != 0;
+        }
+        if (valid) {
+            for (int j = 0; j < keys.length; j++) found[j] = store.get(keys[j]);
+            for (int i = 0; i < slots.length && valid; i++) valid = slotLocks[slots[i]].validate(stamps[i]);
+        }
+        if (!valid) {
+            // a batch was applying: wait it out
+            for (int i = 0; i < slots.length; i++) stamps[i] = slotLocks[slots[i]].readLock();
+            try {
+                for (int j = 0; j < keys.length; j++) found[j] = store.get(keys[j]);
+            } finally {
+                for (int i = slots.length - 1; i >= 0; i--) slotLocks[slots[i]].unlockRead(stamps[i]);
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        for (int j = 0; j < keys.length; j++) {
+            KeyValue kv = found[j];
+            if (kv == null || kv.isTombstone() || kv.hasExpired(now)) {
+                found[j] = null;
+            } else if (isCacheKey(keys[j])) {
+                evictionPolicy.onAccess(keys[j]);
+            }
+        }
+        return found;
+    }
+
+    /** Distinct lock slots of keys in ascending order, the order they are locked in. */
+    private static int[] slotsOf(String[] keys) {
+        return Arrays.stream(keys)
+                .mapToInt(key -> ClusterView.slotOf(key, SLOT_LOCKS))
+                .distinct()
+                .sorted()
+                .toArray();
+    }
+
+    private void written(KeyValue keyValue) {
+        if (keyValue.isTombstone()) {
+            tombstones.add(new Tombstone(keyValue.getKey(), keyValue.getVersion(), System.currentTimeMillis()));
+        } else if (keyValue.getExpiresAt() > 0) {
+            expiryWheel.schedule(keyValue.getKey(), keyValue.getExpiresAt());
+        }
+
+        if (usedBytes.get() > highWatermarkBytes) evictTo(lowWatermarkBytes);
+        if (store.mappingCount() > filterCapacity) growFilter();
     }
 
+    /** Expired entries and tombstones are hidden here even before they are purged. */
     public KeyValue get(String key) {
+        KeyValue kv = store.get(key);
+        if (kv == null || kv.isTombstone()) return null;
+        if (kv.hasExpired(System.currentTimeMillis())) return null;
+        if (isCacheKey(key)) evictionPolicy.onAccess(key);
+        return kv;
+    }
+
+    /** Raw entry including tombstones, used to version the next write of a key. */
+    public KeyValue peek(String key) {
         return store.get(key);
     }
 
+    /**
+     * Admission control for a write that is about to be stored. Over the high
+     * watermark, cache-namespace keys are evicted to make room; if that is not
+     * enough the write must be refused instead of growing the heap.
+     */
+    public boolean admit(KeyValue incoming) {
+        return admitGrowth(growth(incoming));
+    }
+
+    /** admit() for a whole batch: room for all of it, or none is taken. */
+    public boolean admitAll(List<KeyValue> batch) {
+        long delta = 0;
+        for (KeyValue kv : batch) delta += growth(kv);
+        return admitGrowth(delta);
+    }
+
+    private long growth(KeyValue incoming) {
+        KeyValue existing = store.get(incoming.getKey());
+        return estimateSize(incoming) - (existing == null ? 0 : estimateSize(existing));
+    }
+
+    private boolean admitGrowth(long delta) {
+        if (usedBytes.get() + delta <= highWatermarkBytes) return true;
+
+        evictTo(lowWatermarkBytes);
+        return usedBytes.get() + delta <= highWatermarkBytes;
+    }
+
+    public Map<String, Object> memoryStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("usedBytes", usedBytes.get());
+        stats.put("maxBytes", maxBytes);
+        stats.put("highWatermarkBytes", highWatermarkBytes);
+        stats.put("lowWatermarkBytes", lowWatermarkBytes);
+        stats.put("entries", store.mappingCount());
+        stats.put("evictions", evictions.get());
+        stats.put("tombstones", tombstones.size());
+        stats.put("evictionPolicy", evictionPolicyName);
+        stats.put("cacheNamespaces", cacheNamespaces);
+        return stats;
+    }
+
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /** Copy of the entries, tombstones included; those past their TTL are left out, as failover must not revive them. */
     public Map<String, KeyValue> getAll() {
-        return new HashMap<>(store);
+        long now = System.currentTimeMillis();
+        Map<String, KeyValue> copy = new HashMap<>();
+        store.forEach((key, kv) -> {
+            if (!kv.hasExpired(now)) copy.put(key, kv);
+        });
+        return copy;
+    }
+
+    /**
+     * Live, weakly consistent view of the entries, for walks that should not copy
+     * the map. Expired entries not yet reaped are in it; callers skip them.
+     */
+    public Collection<KeyValue> entries() {
+        return store.values();
     }
 
     public void remove(String key) {
-        store.remove(key);
+        filterLock.readLock().lock();
+        try {
+            store.computeIfPresent(key, (k, previous) -> {
+                removed(k, previous);
+                return null;
+            });
+        } finally {
+            filterLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the key only if it still carries the given deadline, so a timer or
+     * replicated expiry never deletes a newer write. Returns the removed entry.
+     */
+    public KeyValue removeIfExpiresAt(String key, long expiresAt) {
+        KeyValue[] removed = new KeyValue[1];
+        filterLock.readLock().lock();
+        try {
+            store.computeIfPresent(key, (k, current) -> {
+                if (current.getExpiresAt() != expiresAt) return current;
+                removed(k, current);
+                removed[0] = current;
+                return null;
+            });
+        } finally {
+            filterLock.readLock().unlock();
+        }
+        return removed[0];
+    }
+
+    public List<HierarchicalTimingWheel.Timer> pollExpired(long nowMillis) {
+        return expiryWheel.advance(nowMillis);
+    }
+
+    /** Drops tombstones written before {@code cutoffMillis}; returns how many were purged. */
+    public int purgeTombstones(long cutoffMillis) {
+        int purged = 0;
+        Tombstone head;
+        while ((head = tombstones.peek()) != null && head.deletedAt() <= cutoffMillis) {
+            tombstones.poll();
+            if (removeIfTombstone(head.key(), head.version())) purged++;
+        }
+        return purged;
+    }
+
+    public int pendingTombstones() {
+        return tombstones.size();
+    }
+
+    private boolean removeIfTombstone(String key, long version) {
+        boolean[] removed = new boolean[1];
+        filterLock.readLock().lock();
+        try {
+            store.computeIfPresent(key, (k, current) -> {
+                if (!current.isTombstone() || current.getVersion() != version) return current;
+                removed(k, current);
+                removed[0] = true;
+                return null;
+            });
+        } finally {
+            filterLock.readLock().unlock();
+        }
+        return removed[0];
+    }
+
+    /**
+     * Live entries with {@code start <= key < end}, starting with {@code prefix} and
+     * strictly after {@code after} (the previous page's last key), in key order.
+     * Any bound may be null. At most {@code limit} entries are returned.
+     */
+    public List<KeyValue> scan(String start, String end, String prefix, String after,
+                               int limit, boolean primaryOnly) {
+        String from = start;
+        if (prefix != null && (from == null || prefix.compareTo(from) > 0)) from = prefix;
+
+        long now = System.currentTimeMillis();
+        List<KeyValue> page = new ArrayList<>(Math.min(limit, 1024));
+        if (limit <= 0) return page;
+
+        if (orderedIndex != null) {
+            NavigableSet<String> range = orderedIndex;
+            if (after != null && (from == null || after.compareTo(from) >= 0)) {
+                range = range.tailSet(after, false);
+            } else if (from != null) {
+                range = range.tailSet(from, true);
+            }
+
+            for (String key : range) {
+                if (end != null && key.compareTo(end) >= 0) break;
+                if (prefix != null && !key.startsWith(prefix)) break; // past the prefix range
+
+                KeyValue kv = scannable(key, now, primaryOnly);
+                if (kv == null) continue;
+                page.add(kv);
+                if (page.size() >= limit) break;
+            }
+            return page;
+        }
+
+        // No index: keep the `limit` smallest matches in a max-heap, evicting the largest
+        PriorityQueue<KeyValue> smallest =
+                new PriorityQueue<>(Comparator.comparing(KeyValue::getKey).reversed());
+        for (String key : store.keySet()) {
+            if (from != null && key.compareTo(from) < 0) continue;
+            if (after != null && key.compareTo(after) <= 0) continue;
+            if (end != null && key.compareTo(end) >= 0) continue;
+            if (prefix != null && !key.startsWith(prefix)) continue;
+            if (smallest.size() >= limit && key.compareTo(smallest.peek().getKey()) >= 0) continue;
+
+            KeyValue kv = scannable(key, now, primaryOnly);
+            if (kv == null) continue;
+            smallest.add(kv);
+            if (smallest.size() > limit) smallest.poll();
+        }
+
+        page.addAll(smallest);
+        page.sort(Comparator.comparing(KeyValue::getKey));
+        return page;
+    }
+
+    /** Keys strictly after {@code after} (all keys when null) in order; needs the ordered index. */
+    public NavigableSet<String> orderedKeysAfter(String after) {
+        return after == null ? orderedIndex : orderedIndex.tailSet(after, false);
+    }
+
+    public boolean isOrderedIndexEnabled() {
+        return orderedIndex != null;
+    }
+
+    private KeyValue scannable(String key, long now, boolean primaryOnly) {
+        KeyValue kv = store.get(key);
+        if (kv == null || kv.isTombstone() || kv.hasExpired(now)) return null;
+        if (primaryOnly && kv.getReplicaType() != ReplicaType.PRIMARY) return null;
+        return kv;
     }
 
     public boolean contains(String key) {
         return store.containsKey(key);
     }
+
+    /** False means the key is definitely not stored here; true means it probably is. */
+    public boolean mightContain(String key) {
+        return keyFilter.mightContain(key);
+    }
+
+    /** Bit-set form of the key filter, published to the controller on every cluster resync. */
+    public Map<String, Object> keyFilterSnapshot() {
+        CountingBloomFilter filter = keyFilter;
+        long[] bits = filter.toBits();
+
+        ByteBuffer buf = ByteBuffer.allocate(bits.length * Long.BYTES);
+        buf.asLongBuffer().put(bits);
+
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("numBits", filter.getNumBits());
+        snapshot.put("numHashes", filter.getNumHashes());
+        snapshot.put("bits", Base64.getEncoder().encodeToString(buf.array()));
+        return snapshot;
+    }
+
+    // Bookkeeping run inside the map's per-key compute, so transitions are never reordered
+    // The key filter tracks live keys only, so a tombstone counts as absent.
+    private void stored(String key, KeyValue previous, KeyValue current) {
+        boolean wasLive = previous != null && !previous.isTombstone();
+        boolean isLive = !current.isTombstone();
+        if (!wasLive && isLive) {
+            keyFilter.add(key);
+            if (orderedIndex != null) orderedIndex.add(key);
+        }
+        if (wasLive && !isLive) {
+            keyFilter.remove(key);
+            if (orderedIndex != null) orderedIndex.remove(key);
+        }
+        usedBytes.addAndGet(estimateSize(current) - (previous == null ? 0 : estimateSize(previous)));
+
+        // a tombstone is not evictable; the policy forgets the key until it is written again
+        if (isCacheKey(key)) {
+            if (!isLive) evictionPolicy.onRemove(key);
+            else if (!wasLive) evictionPolicy.onInsert(key);
+            else evictionPolicy.onAccess(key);
+        }
+    }
+
+    private void removed(String key, KeyValue previous) {
+        if (!previous.isTombstone()) {
+            keyFilter.remove(key);
+            if (orderedIndex != null) orderedIndex.remove(key);
+        }
+        usedBytes.addAndGet(-estimateSize(previous));
+        if (isCacheKey(key)) evictionPolicy.onRemove(key);
+    }
+
+    /**
+     * Frees memory down to targetBytes: first the tombstones of evictions
+     * already replicated, then cache-namespace victims. An evicted primary
+     * frees only its value until its tombstone has been shipped, so victims
+     * are taken until what they free covers the excess, not until usedBytes
+     * drops. Stops when nothing more can be freed; the caller then refuses
+     * the write.
+     */
+    private void evictTo(long targetBytes) {
+        evictLock.lock();
+        try {
+            Tombstone head;
+            while (usedBytes.get() > targetBytes && (head = shippedEvictions.poll()) != null) {
+                removeIfTombstone(head.key(), head.version());
+            }
+
+            long excess = usedBytes.get() - targetBytes;
+            long freed = 0;
+            while (freed < excess) {
+                String victim = evictionPolicy.nextVictim();
+                if (victim == null) break;
+                long bytes = evict(victim);
+                if (bytes < 0) continue;
+                freed += bytes;
+                evictions.incrementAndGet();
+            }
+        } finally {
+            evictLock.unlock();
+        }
+    }
+
+    /**
+     * Called by EvictionService once these eviction tombstones reached the
+     * key's replicas, and on a replica once it applied them: they no longer
+     * need to wait out the grace period when memory is short, and are dropped
+     * now if the store is over its high watermark.
+     */
+    public void evictionsShipped(List<KeyValue> shipped) {
+        for (KeyValue kv : shipped) shippedEvictions.add(new Tombstone(kv.getKey(), kv.getVersion(), 0));
+        if (usedBytes.get() > highWatermarkBytes) evictTo(lowWatermarkBytes);
+    }
+
+    /**
+     * A replica's copy is dropped outright. A primary's entry becomes a
+     * versioned tombstone, as a delete would, so its replicas and the
+     * controller learn of it through EvictionService instead of keeping the
+     * value alive for a failover to bring back. Returns the bytes freed, or
+     * -1 when key was not evicted.
+     */
+    private long evict(String key) {
+        KeyValue[] tombstone = new KeyValue[1];
+        long[] freed = {-1};
+        filterLock.readLock().lock();
+        try {
+            store.computeIfPresent(key, (k, current) -> {
+                if (current.isTombstone()) return current;
+                if (current.getReplicaType() != ReplicaType.PRIMARY) {
+                    removed(k, current);
+                    freed[0] = estimateSize(current);
+                    return null;
+                }
+                KeyValue t = new KeyValue(k, ReplicaType.PRIMARY, null, current.getReplicaInfo());
+                t.setVersion(KeyValue.nextVersion(current));
+                t.setTombstone(true);
+                stored(k, current, t);
+                freed[0] = estimateSize(current) - estimateSize(t);
+                tombstone[0] = t;
+                return t;
+            });
+        } finally {
+            filterLock.readLock().unlock();
+        }
+
+        if (tombstone[0] != null) {
+            tombstones.add(new Tombstone(key, tombstone[0].getVersion(), System.currentTimeMillis()));
+            evicted.add(tombstone[0]);
+        }
+        return freed[0];
+    }
+
+    /** Tombstones of primaries evicted since the last call, oldest first. */
+    public List<KeyValue> pollEvicted() {
+        List<KeyValue> batch = new ArrayList<>();
+        KeyValue kv;
+        while ((kv = evicted.poll()) != null) batch.add(kv);
+        return batch;
+    }
+
+    private boolean isCacheKey(String key) {
+        if (cacheNamespaces.isEmpty()) return false;
+        int sep = key.indexOf(':');
+        return sep > 0 && cacheNamespaces.contains(key.substring(0, sep));
+    }
+
+    static long estimateSize(KeyValue kv) {
+        long size = ENTRY_OVERHEAD_BYTES + METADATA_BYTES;
+        if (kv.getKey() != null) size += STRING_HEADER_BYTES + 2L * kv.getKey().length();
+        if (kv.getValue() != null) size += STRING_HEADER_BYTES + 2L * kv.getValue().length();
+        return size;
+    }
+
+    private void growFilter() {
+        if (!growing.compareAndSet(false, true)) return;
+
+        filterLock.writeLock().lock();
+        try {
+            if (store.mappingCount() <= filterCapacity) return;
+
+            long capacity = filterCapacity * 2;
+            CountingBloomFilter grown = new CountingBloomFilter(capacity, filterFpp);
+            store.forEach((k, kv) -> {
+                if (!kv.isTombstone()) grown.add(k);
+            });
+
+            keyFilter = grown;
+            filterCapacity = capacity;
+            logger.info("key filter grown to capacity={}", capacity);
+        } finally {
+            filterLock.writeLock().unlock();
+            growing.set(false);
+        }
+    }
 }
@@ -0,0 +1,74 @@
+package com.worker.service;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+/**
+ * Least-frequently-used with O(1) operations: keys are bucketed by hit count and
+ * the victim is the oldest key in the lowest non-empty bucket.
+ */
+public class LfuEvictionPolicy implements EvictionPolicy {
+
+    private final Map<String, Integer> counts = new HashMap<>();
+    private final Map<Integer, LinkedHashSet<String>> buckets = new HashMap<>();
+    private int minCount = 1;
+
+    @Override
+    public synchronized void onInsert(String key) {
+        if (counts.containsKey(key)) {
+            touch(key);
+            return;
+        }
+        counts.put(key, 1);
+        buckets.computeIfAbsent(1, c -> new LinkedHashSet<>()).add(key);
+        minCount = 1;
+    }
+
+    @Override
+    public synchronized void onAccess(String key) {
+        if (counts.containsKey(key)) touch(key);
+    }
+
+    @Override
+    public synchronized void onRemove(String key) {
+        Integer count = counts.remove(key);
+        if (count == null) return;
+        LinkedHashSet<String> bucket = buckets.get(count);
+        bucket.remove(key);
+        if (bucket.isEmpty()) buckets.remove(count);
+    }
+
+    @Override
+    public synchronized String nextVictim() {
+        if (counts.isEmpty()) return null;
+
+        LinkedHashSet<String> bucket = buckets.get(minCount);
+        while (bucket == null) {
+            minCount++;
+            bucket = buckets.get(minCount);
+        }
+
+        Iterator<String> it = bucket.iterator();
+        String victim = it.next();
+        it.remove();
+        if (bucket.isEmpty()) buckets.remove(minCount);
+        counts.remove(victim);
+        return victim;
+    }
+
+    private void touch(String key) {
+        int count = counts.get(key);
+        LinkedHashSet<String> bucket = buckets.get(count);
+        bucket.remove(key);
+        if (bucket.isEmpty()) {
+            buckets.remove(count);
+            if (minCount == count) minCount = count + 1;
+        }
+
+        int next = count == Integer.MAX_VALUE ? count : count + 1;
+        counts.put(key, next);
+        buckets.computeIfAbsent(next, c -> new LinkedHashSet<>()).add(key);
+    }
+}
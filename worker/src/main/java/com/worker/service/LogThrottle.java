@@ -0,0 +1,51 @@
+package com.worker.service;
+
+import org.slf4j.Logger;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rate limit for a family of hot-path log lines: at most one per interval
+ * gets through, and the lines dropped in between are counted and reported
+ * with the next one. Lock-free, so a burst of failures costs a CAS per call
+ * instead of a trip through the appender.
+ */
+public class LogThrottle {
+
+    private final long intervalNanos;
+    private final AtomicLong nextAllowed = new AtomicLong(System.nanoTime());
+    private final AtomicLong suppressed = new AtomicLong();
+
+    public LogThrottle(Duration interval) {
+        this.intervalNanos = interval.toNanos();
+    }
+
+    /**
+     * @return -1 if the caller should skip this line, otherwise the number of
+     *         lines suppressed since the last one that got through
+     */
+    public long acquire() {
+        long now = System.nanoTime();
+        long next = nextAllowed.get();
+        if (now - next < 0 || !nextAllowed.compareAndSet(next, now + intervalNanos)) {
+            suppressed.incrementAndGet();
+            return -1;
+        }
+        return suppressed.getAndSet(0);
+    }
+
+    /** Logs at WARN if the throttle lets this line through, noting how many were dropped. */
+    public void warn(Logger logger, String format, Object... args) {
+        long dropped = acquire();
+        if (dropped < 0) return;
+        if (dropped == 0) {
+            logger.warn(format, args);
+            return;
+        }
+        Object[] withCount = Arrays.copyOf(args, args.length + 1);
+        withCount[args.length] = dropped;
+        logger.warn(format + " ({} similar suppressed)", withCount);
+    }
+}
@@ -0,0 +1,34 @@
+package com.worker.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/** Least-recently-used: an access-ordered LinkedHashMap, evicting from the head. */
+public class LruEvictionPolicy implements EvictionPolicy {
+
+    private final LinkedHashMap<String, Boolean> order = new LinkedHashMap<>(16, 0.75f, true);
+
+    @Override
+    public synchronized void onInsert(String key) {
+        order.put(key, Boolean.TRUE);
+    }
+
+    @Override
+    public synchronized void onAccess(String key) {
+        order.get(key);
+    }
+
+    @Override
+    public synchronized void onRemove(String key) {
+        order.remove(key);
+    }
+
+    @Override
+    public synchronized String nextVictim() {
+        Iterator<String> it = order.keySet().iterator();
+        if (!it.hasNext()) return null;
+        String victim = it.next();
+        it.remove();
+        return victim;
+    }
+}
@@ -0,0 +1,202 @@
+package com.worker.service;
+
+import com.worker.model.ClusterView;
+import com.worker.model.KeyValue;
+import com.worker.model.ReplicaInfo;
+import com.worker.model.ReplicaType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Worker side of moving a hash slot to a new owner. The controller pages the
+ * slot's primary keys out of the old owner, imports them here as copies held
+ * on behalf of that owner, activates them ahead of flipping ownership, and
+ * finally tells the old owner and its replicas to let go.
+ */
+@Service
+public class MigrationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MigrationService.class);
+
+    private final KeyValueStore keyValueStore;
+    private final RecoveryService recoveryService;
+    private final ReplicationService replicationService;
+    private final WorkerRegistrar workerRegistrar;
+    private final ShardTransferService shardTransfer;
+
+    // imports and activations of the same keys must not interleave: an import
+    // racing activate() would turn a fresh primary back into a held copy
+    private final Object activation = new Object();
+
+    public MigrationService(KeyValueStore keyValueStore,
+                            RecoveryService recoveryService,
+                            ReplicationService replicationService,
+                            WorkerRegistrar workerRegistrar,
+                            ShardTransferService shardTransfer) {
+        this.keyValueStore = keyValueStore;
+        this.recoveryService = recoveryService;
+        this.replicationService = replicationService;
+        this.workerRegistrar = workerRegistrar;
+        this.shardTransfer = shardTransfer;
+    }
+
+    /**
+     * Up to limit live primary entries of the slot, in key order after the cursor.
+     * With the ordered index a page walks on from the cursor, so paging through a
+     * slot reads each key once; without it every page scans the whole store.
+     */
+    public List<KeyValue> export(int slot, int slotCount, boolean hashTags, String after, int limit) {
+        long now = System.currentTimeMillis();
+        if (keyValueStore.isOrderedIndexEnabled()) {
+            List<KeyValue> page = new ArrayList<>(Math.min(limit, 1024));
+            for (String key : keyValueStore.orderedKeysAfter(after)) {
+                if (page.size() >= limit) break;
+                if (ClusterView.slotOf(key, slotCount, hashTags) != slot) continue;
+                KeyValue kv = keyValueStore.peek(key);
+                if (kv == null || kv.getReplicaType() != ReplicaType.PRIMARY || kv.isTombstone() || kv.hasExpired(now)) continue;
+                page.add(kv);
+            }
+            return page;
+        }
+
+        TreeMap<String, KeyValue> page = new TreeMap<>();
+        for (KeyValue kv : keyValueStore.entries()) {
+            if (kv.getReplicaType() != ReplicaType.PRIMARY || kv.isTombstone() || kv.hasExpired(now)) continue;
+            String key = kv.getKey();
+            if (ClusterView.slotOf(key, slotCount, hashTags) != slot) continue;
+            if (after != null && key.compareTo(after) <= 0) continue;
+
+            page.put(key, kv);
+            if (page.size() > limit) page.pollLastEntry();
+        }
+        return new ArrayList<>(page.values());
+    }
+
+    /**
+     * Streams one page of the slot's primary entries straight into target's
+     * import, as binary frames rather than JSON relayed by the controller.
+     * With maxBytes > 0 the page ends on the entry that reaches that many
+     * bytes, the budget the controller reserved for it. Returns the keys
+     * sent, the bytes streamed and the cursor of the next page.
+     */
+    public Map<String, Object> push(int slot, int slotCount, boolean hashTags, String after, int limit,
+                                    long maxBytes, String target) throws IOException {
+        List<KeyValue> entries = export(slot, slotCount, hashTags, after, limit);
+        boolean full = entries.size() >= limit;
+        if (maxBytes > 0) {
+            long size = 0;
+            for (int i = 0; i < entries.size(); i++) {
+                size += KeyValueStore.estimateSize(entries.get(i));
+                if (size >= maxBytes && i + 1 < entries.size()) {
+                    entries = entries.subList(0, i + 1);
+                    full = true;
+                    break;
+                }
+            }
+        }
+        long[] bytes = new long[1];
+        if (!entries.isEmpty()) {
+            String source = URLEncoder.encode(workerRegistrar.getWorkerUrl(), StandardCharsets.UTF_8);
+            shardTransfer.send(target + "/migration/import/stream?source=" + source, entries, b -> bytes[0] += b);
+        }
+
+        List<String> keys = new ArrayList<>(entries.size());
+        for (KeyValue kv : entries) keys.add(kv.getKey());
+        Map<String, Object> page = new HashMap<>();
+        page.put("keys", keys);
+        page.put("bytes", bytes[0]);
+        page.put("next", full ? keys.get(keys.size() - 1) : null);
+        return page;
+    }
+
+    /**
+     * Stores entries copied from the slot's old owner. They are held as sync
+     * copies of that owner: recovery leaves them alone and a failover of the
+     * old owner promotes them, until activate() makes them primaries here.
+     * A write mirrored to a key activated already is applied as a primary
+     * write and replicated, as the controller still routes it to the old owner
+     * until the metadata flips. Returns false when this worker is out of
+     * memory for them.
+     */
+    public boolean importEntries(String sourceUrl, List<KeyValue> entries) {
+        String self = workerRegistrar.getWorkerUrl();
+        for (KeyValue entry : entries) {
+            synchronized (activation) {
+                KeyValue held = keyValueStore.peek(entry.getKey());
+                boolean active = held != null && held.getReplicaType() == ReplicaType.PRIMARY
+                        && held.getReplicaInfo() != null && self.equals(held.getReplicaInfo().getPrimaryReplica());
+                KeyValue kv = new KeyValue(entry.getKey(), active ? ReplicaType.PRIMARY : ReplicaType.SYNC, entry.getValue(),
+                        active ? new ReplicaInfo(held.getReplicaInfo()) : new ReplicaInfo(sourceUrl, self, null),
+                        entry.getExpiresAt(), entry.getVersion(), entry.isTombstone());
+                if (!keyValueStore.admit(kv)) return false;
+                if (keyValueStore.putIfNewer(kv) && active) replicate(kv);
+            }
+        }
+        return true;
+    }
+
+    /** Passes a write to an activated key on to its replicas; a failed sync copy fails the import. */
+    private void replicate(KeyValue kv) {
+        String sync = kv.getReplicaInfo().getSyncReplica();
+        String async = kv.getReplicaInfo().getAsyncReplica();
+        if (sync != null && !replicationService.syncUpdate(kv, sync, async)) {
+            throw new IllegalStateException("sync replica " + sync + " missed key=" + kv.getKey());
+        }
+        if (async != null) replicationService.replicateAsync(kv, async, sync);
+    }
+
+    /**
+     * Takes over the imported keys as their primary and builds their replicas
+     * in one bulk rebuild. Returns the replicas of every key that was activated;
+     * keys not held here or deleted meanwhile are left out and must not change
+     * owner. Runs while writes to the slot go on; mirrored writes to these keys
+     * wait for it.
+     */
+    public Map<String, Map<String, String>> activate(List<String> keys) {
+        String self = workerRegistrar.getWorkerUrl();
+        Map<String, Map<String, String>> activated = new LinkedHashMap<>();
+        synchronized (activation) {
+            List<KeyValue> primaries = new ArrayList<>(keys.size());
+            for (String key : keys) {
+                KeyValue held = keyValueStore.peek(key);
+                if (held == null || held.isTombstone()) continue;
+
+                KeyValue kv = new KeyValue(held);
+                kv.setReplicaType(ReplicaType.PRIMARY);
+                kv.setReplicaInfo(new ReplicaInfo(self, null, null));
+                keyValueStore.put(kv);
+                primaries.add(kv);
+            }
+            recoveryService.rebuild(primaries);
+
+            for (KeyValue kv : primaries) {
+                Map<String, String> replicas = new HashMap<>();
+                replicas.put("syncReplica", kv.getReplicaInfo().getSyncReplica());
+                replicas.put("asyncReplica", kv.getReplicaInfo().getAsyncReplica());
+                activated.put(kv.getKey(), replicas);
+            }
+        }
+        logger.info("Activated {} of {} migrated keys", activated.size(), keys.size());
+        return activated;
+    }
+
+    /** Drops local copies of keys that now belong to owner; copies already re-made under owner stay. */
+    public int release(List<String> keys, String owner) {
+        int released = 0;
+        for (String key : keys) {
+            KeyValue kv = keyValueStore.peek(key);
+            if (kv == null) continue;
+            ReplicaInfo info = kv.getReplicaInfo();
+            if (info != null && owner.equals(info.getPrimaryReplica())) continue;
+            keyValueStore.remove(key);
+            released++;
+        }
+        return released;
+    }
+}
@@ -3,76 +3,265 @@ package com.worker.service;
 import com.worker.model.KeyValue;
 import com.worker.model.ReplicaInfo;
 import com.worker.model.ReplicaType;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Service
 public class RecoveryService {
 
+    private static final Logger logger = LoggerFactory.getLogger(RecoveryService.class);
+
     private final KeyValueStore keyValueStore;
     private final ReplicationService replicationService;
     private final WorkerRegistrar workerRegistrar;
+    private final ReplicaPlacement placement;
+    private final ShardTransferService shardTransfer;
+
+    // bytes/s this worker may rebuild into each failure domain (zone/rack), planned by the controller
+    private volatile Map<String, Long> rebuildRates = Map.of();
+    private final Map<String, Long> nextSendNanos = new HashMap<>();
+
+    // paced rebuilds can take minutes; they run here, not on the resync request that asked for them
+    private final AtomicBoolean queued = new AtomicBoolean(false);
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "recovery");
+        t.setDaemon(true);
+        return t;
+    });
 
     public RecoveryService(KeyValueStore keyValueStore,
                            ReplicationService replicationService,
-                           WorkerRegistrar workerRegistrar) {
+                           WorkerRegistrar workerRegistrar,
+                           ReplicaPlacement placement,
+                           ShardTransferService shardTransfer) {
         this.keyValueStore = keyValueStore;
         this.replicationService = replicationService;
         this.workerRegistrar = workerRegistrar;
+        this.placement = placement;
+        this.shardTransfer = shardTransfer;
+    }
+
+    /** Replicas one primary key is being given: its entry here and the planned sync and async holders. */
+    private record Rebuild(KeyValue kv, String sync, String async) {}
+
+    public void updateRebuildRates(Map<String, Number> rates) {
+        Map<String, Long> copy = new HashMap<>();
+        rates.forEach((domain, rate) -> copy.put(domain, rate.longValue()));
+        rebuildRates = Map.copyOf(copy);
     }
 
+    /**
+     * Runs applyRecovery() in the background. Calls made while one is waiting
+     * to start share it; a call made while one runs queues another pass, as
+     * the cluster view may have changed under it.
+     */
+    public void requestRecovery() {
+        if (!queued.compareAndSet(false, true)) return;
+        try {
+            rebuilder.execute(() -> {
+                running.set(true);
+                queued.set(false);
+                try {
+                    applyRecovery();
+                } catch (Exception e) {
+                    logger.warn("Recovery pass failed: {}", e.getMessage());
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queued.set(false);
+        }
+    }
+
+    /** True while a recovery pass is waiting or copying replicas to other workers. */
+    public boolean isRecovering() {
+        return queued.get() || running.get();
+    }
+
+    @PreDestroy
+    public void stop() {
+        rebuilder.shutdownNow();
+    }
+
+    /**
+     * Rebuilds missing replicas of every primary here. Copies are grouped by
+     * the worker taking them and sent as one bulk stream per worker, paced per
+     * target failure domain; keys whose sync stream fails fall back to the
+     * per-key path.
+     */
     public void applyRecovery() {
+        rebuild(keyValueStore.entries());
+    }
+
+    /** Rebuilds the missing replicas of the given entries the same way; a key migrated here is activated so. */
+    public void rebuild(Collection<KeyValue> entries) {
         String myUrl = workerRegistrar.getWorkerUrl();
         Set<String> alive = replicationService.getAliveWorkers();
         int aliveCount = alive.size();
 
-        keyValueStore.getAll().forEach((key, kv) -> {
-            ReplicaInfo info = kv.getReplicaInfo();
-            if (info == null || kv.getReplicaType() != ReplicaType.PRIMARY) return;
+        long now = System.currentTimeMillis();
+        Map<String, List<Rebuild>> bySync = new LinkedHashMap<>();
+        for (KeyValue kv : entries) {
+            // expiring anyway; a copy would only outlive it on the new replica until its timer fires
+            if (kv.hasExpired(now)) continue;
+            Rebuild rebuild = plan(kv, myUrl, alive);
+            if (rebuild != null) bySync.computeIfAbsent(rebuild.sync(), t -> new ArrayList<>()).add(rebuild);
+        }
+        if (bySync.isEmpty()) return;
+
+        // sync copies first: a key's async copy names its sync holder
+        Map<String, List<Rebuild>> byAsync = new LinkedHashMap<>();
+        List<Rebuild> failed = new ArrayList<>();
+        bySync.forEach((sync, rebuilds) -> {
+            if (!sendBulk(sync, rebuilds, ReplicaType.SYNC, myUrl)) {
+                failed.addAll(rebuilds);
+                return;
+            }
+            for (Rebuild r : rebuilds) {
+                r.kv().getReplicaInfo().setSyncReplica(sync);
+                if (r.async() != null) byAsync.computeIfAbsent(r.async(), t -> new ArrayList<>()).add(r);
+                else r.kv().getReplicaInfo().setAsyncReplica(null);
+            }
+        });
+        byAsync.forEach((async, rebuilds) -> {
+            // a failed async copy is left missing and planned again by the next recovery
+            boolean sent = sendBulk(async, rebuilds, ReplicaType.ASYNC, myUrl);
+            for (Rebuild r : rebuilds) r.kv().getReplicaInfo().setAsyncReplica(sent ? async : null);
+        });
+
+        for (Rebuild r : failed) recover(r, myUrl, aliveCount);
+    }
 
-            String value = kv.getValue();
-            String sync = info.getSyncReplica();
-            String async = info.getAsyncReplica();
+    /** The replicas kv is missing and where they go, or null when it is not a primary short of any. */
+    private Rebuild plan(KeyValue kv, String myUrl, Set<String> alive) {
+        ReplicaInfo info = kv.getReplicaInfo();
+        if (info == null || kv.getReplicaType() != ReplicaType.PRIMARY || kv.isTombstone()) return null;
 
-            // === 1 → 2 RECOVERY: missing syncReplica ===
-            if (sync == null && aliveCount >= 2) {
-                try {
-                    Map<String, String> res = replicationService.syncReplicaCreate(key, value, null);
-                    if (res == null) return;
+        String sync = info.getSyncReplica();
+        if (sync == null && alive.size() >= 2) {
+            // a surviving async replica stays; its copy is re-sent so it names the new sync
+            String kept = alive.contains(info.getAsyncReplica()) ? info.getAsyncReplica() : null;
+            for (String candidate : placement.rank(kv.getKey(), alive, List.of(myUrl))) {
+                if (candidate.equals(myUrl) || candidate.equals(kept)) continue;
+                String async = kept != null ? kept
+                        : alive.size() >= 3 ? replicationService.chooseAsyncCandidate(kv.getKey(), myUrl, candidate) : null;
+                return new Rebuild(kv, candidate, async);
+            }
+            // no other worker: the async replica becomes the sync one
+            return kept == null ? null : new Rebuild(kv, kept, null);
+        }
+        if (sync != null && info.getAsyncReplica() == null && alive.size() >= 3) {
+            String async = replicationService.chooseAsyncCandidate(kv.getKey(), myUrl, sync);
+            // the sync copy is re-sent so its holder learns the new async replica
+            return async == null ? null : new Rebuild(kv, sync, async);
+        }
+        return null;
+    }
 
-                    String syncReplica = res.get("syncReplica");
-                    String asyncReplica = (aliveCount >= 3) ? res.get("asyncReplica") : null;
+    private boolean sendBulk(String target, List<Rebuild> rebuilds, ReplicaType type, String myUrl) {
+        List<KeyValue> copies = new ArrayList<>(rebuilds.size());
+        for (Rebuild r : rebuilds) {
+            KeyValue copy = new KeyValue(r.kv());
+            copy.setReplicaType(type);
+            copy.setReplicaInfo(new ReplicaInfo(myUrl, r.sync(), r.async()));
+            copies.add(copy);
+        }
+        long start = System.nanoTime();
+        try {
+            shardTransfer.send(target + "/replicate/bulk", copies, bytes -> pace(target, bytes));
+            logger.info("Rebuilt {} {} replicas on {} in {} ms", copies.size(), type, target,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return true;
+        } catch (Exception e) {
+            logger.warn("Bulk rebuild of {} {} replicas on {} failed: {}", copies.size(), type, target, e.getMessage());
+            return false;
+        }
+    }
 
-                    info.setSyncReplica(syncReplica);
-                    info.setAsyncReplica(asyncReplica);
+    private void recover(Rebuild r, String myUrl, int aliveCount) {
+        KeyValue kv = r.kv();
+        ReplicaInfo info = kv.getReplicaInfo();
+        if (info == null || kv.getReplicaType() != ReplicaType.PRIMARY) return;
+        if (kv.isTombstone()) return; // purged soon; nothing to re-replicate
 
-                    if (asyncReplica != null && aliveCount >= 3) {
-                        boolean ok = replicationService.replicateAsync(key, value, asyncReplica, syncReplica);
-                        if (!ok) info.setAsyncReplica(null);
-                    }
+        String sync = info.getSyncReplica();
+        String async = info.getAsyncReplica();
 
-                    return; // sync was rebuilt
-                } catch (Exception e) {
-                    return;
+        // === 1 → 2 RECOVERY: missing syncReplica ===
+        if (sync == null && aliveCount >= 2) {
+            // paced against the planned holders before copying; a retry may land elsewhere
+            pace(r.sync(), KeyValueStore.estimateSize(kv));
+            pace(r.async(), KeyValueStore.estimateSize(kv));
+            try {
+                Map<String, String> res = replicationService.syncReplicaCreate(kv, async);
+                if (res == null) return;
+
+                String syncReplica = res.get("syncReplica");
+                String asyncReplica = (aliveCount >= 3) ? res.get("asyncReplica") : null;
+
+                info.setSyncReplica(syncReplica);
+                info.setAsyncReplica(asyncReplica);
+
+                if (asyncReplica != null && aliveCount >= 3) {
+                    boolean ok = replicationService.replicateAsync(kv, asyncReplica, syncReplica);
+                    if (!ok) info.setAsyncReplica(null);
                 }
+
+                return; // sync was rebuilt
+            } catch (Exception e) {
+                return;
             }
+        }
 
-            // === 2 → 3 RECOVERY: sync exists but async missing ===
-            if (sync != null && async == null && aliveCount >= 3) {
+        // === 2 → 3 RECOVERY: sync exists but async missing ===
+        if (sync != null && async == null && aliveCount >= 3) {
 
-                String newAsync = replicationService.chooseAsyncCandidate(myUrl, sync);
-                if (newAsync == null) return;
+            String newAsync = replicationService.chooseAsyncCandidate(kv.getKey(), myUrl, sync);
+            if (newAsync == null) return;
+            pace(newAsync, KeyValueStore.estimateSize(kv));
 
-                boolean updated = replicationService.syncUpdate(key, value, sync, newAsync);
-                if (!updated) return;
+            boolean updated = replicationService.syncUpdate(kv, sync, newAsync);
+            if (!updated) return;
 
-                boolean queued = replicationService.replicateAsync(key, value, newAsync, sync);
-                if (!queued) return;
+            boolean queued = replicationService.replicateAsync(kv, newAsync, sync);
+            if (!queued) return;
 
-                info.setAsyncReplica(newAsync);
-            }
-        });
+            info.setAsyncReplica(newAsync);
+        }
+    }
+
+    /**
+     * Spaces rebuild copies into target's failure domain at its planned rate,
+     * so losing a rack does not have every survivor flood the rest at once.
+     */
+    private void pace(String target, long bytes) {
+        if (target == null) return;
+        String domain = placement.domainOf(target).key();
+        Long rate = rebuildRates.get(domain);
+        if (rate == null || rate <= 0) return;
+
+        long waitNanos;
+        synchronized (nextSendNanos) {
+            long now = System.nanoTime();
+            long sendAt = Math.max(now, nextSendNanos.getOrDefault(domain, now));
+            nextSendNanos.put(domain, sendAt + bytes * 1_000_000_000L / rate);
+            waitNanos = sendAt - now;
+        }
+        try {
+            if (waitNanos > 0) TimeUnit.NANOSECONDS.sleep(waitNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 }
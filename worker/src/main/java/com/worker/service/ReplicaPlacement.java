@@ -0,0 +1,174 @@
+package com.worker.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * Where this worker puts the sync and async replicas of its keys. Candidates
+ * are ranked per key by weighted rendezvous hashing, so one worker's replicas
+ * spread over all its peers in proportion to their weight instead of piling
+ * onto a fixed neighbour. Weights come from the controller, which derives
+ * them from each worker's capacity and heartbeat load. Candidates in another
+ * zone, then another rack, than the key's replicas placed so far come first,
+ * so one failure domain never holds every copy while another is available.
+ */
+@Service
+public class ReplicaPlacement {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaPlacement.class);
+
+    private final RestTemplate rest = new RestTemplate();
+    private final KeyValueStore keyValueStore;
+    private final ControllerLocator controllers;
+    private final int cpus;
+    private final double configuredWeight;
+    private final String zone;
+    private final String rack;
+
+    private volatile Map<String, Double> weights = Map.of();
+    private volatile Map<String, Domain> domains = Map.of();
+
+    /** A worker's failure domain; blank labels mean "same as every other unlabelled worker". */
+    public record Domain(String zone, String rack) {
+        static final Domain NONE = new Domain("", "");
+
+        /** 0 = other zone, 1 = same zone but other rack, 2 = same rack. */
+        int distanceFrom(Domain other) {
+            if (!zone.equals(other.zone)) return 0;
+            return rack.equals(other.rack) ? 2 : 1;
+        }
+
+        /** Key used for per-domain rebuild rates: zone/rack. */
+        public String key() {
+            return zone + "/" + rack;
+        }
+    }
+
+    public ReplicaPlacement(KeyValueStore keyValueStore,
+                            ControllerLocator controllers,
+                            @Value("${worker.placement.cpus:0}") int cpus,
+                            @Value("${worker.placement.weight:0}") double configuredWeight,
+                            @Value("${worker.zone:}") String zone,
+                            @Value("${worker.rack:}") String rack) {
+        this.keyValueStore = keyValueStore;
+        this.controllers = controllers;
+        this.cpus = cpus > 0 ? cpus : Runtime.getRuntime().availableProcessors();
+        this.configuredWeight = configuredWeight;
+        this.zone = zone.trim();
+        this.rack = rack.trim();
+    }
+
+    /** This worker's failure domain labels, sent at registration and with every heartbeat. */
+    public Map<String, Object> topology() {
+        Map<String, Object> topology = new HashMap<>();
+        topology.put("zone", zone);
+        topology.put("rack", rack);
+        return topology;
+    }
+
+    public Domain domainOf(String workerUrl) {
+        return domains.getOrDefault(workerUrl, Domain.NONE);
+    }
+
+    /** Static size of this worker, sent at registration and with every heartbeat. */
+    public Map<String, Object> capacity() {
+        Map<String, Object> capacity = new HashMap<>();
+        capacity.put("memoryBytes", keyValueStore.getMaxBytes());
+        capacity.put("cpus", cpus);
+        capacity.put("weight", configuredWeight);
+        return capacity;
+    }
+
+    /** Current load, sent with every heartbeat. systemLoad is -1 where the OS does not report it. */
+    public Map<String, Object> load() {
+        Map<String, Object> load = new HashMap<>();
+        load.put("usedBytes", keyValueStore.getUsedBytes());
+        load.put("systemLoad", ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage());
+        return load;
+    }
+
+    public Map<String, Double> getWeights() {
+        return weights;
+    }
+
+    public void update(Map<String, ? extends Number> newWeights) {
+        Map<String, Double> copy = new HashMap<>();
+        newWeights.forEach((url, w) -> copy.put(url, w.doubleValue()));
+        weights = Map.copyOf(copy);
+    }
+
+    /** Installs url -> {zone, rack} as published by the controller. */
+    public void updateDomains(Map<String, Map<String, Object>> newDomains) {
+        Map<String, Domain> copy = new HashMap<>();
+        newDomains.forEach((url, d) -> copy.put(url, new Domain(label(d.get("zone")), label(d.get("rack")))));
+        domains = Map.copyOf(copy);
+    }
+
+    private static String label(Object o) {
+        return o == null ? "" : o.toString();
+    }
+
+    @Scheduled(fixedDelayString = "${worker.placement.refresh-ms:5000}")
+    @SuppressWarnings("unchecked")
+    public void refresh() {
+        try {
+            Map<String, Object> response = rest.getForObject(controllers.url() + "/cluster/placement", Map.class);
+            if (response != null
+                    && response.get("payload") instanceof Map payload
+                    && payload.get("weights") instanceof Map w) {
+                update((Map<String, Number>) w);
+                if (payload.get("domains") instanceof Map d) updateDomains(d);
+            }
+        } catch (Exception e) {
+            // keep the last weights; equal weights until the first answer
+            logger.debug("Placement weights refresh failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Candidates in the order a replica of key should be placed on them, best
+     * first, given the workers already holding a copy. Those furthest from
+     * every placed copy come first; ties go by weighted rendezvous score.
+     */
+    public List<String> rank(String key, Collection<String> candidates, Collection<String> placed) {
+        Map<String, Double> w = weights;
+        Map<String, Domain> d = domains;
+        Map<String, Double> scores = new HashMap<>();
+        Map<String, Integer> distances = new HashMap<>();
+        for (String candidate : candidates) {
+            scores.put(candidate, score(key, candidate, w.getOrDefault(candidate, 1.0)));
+
+            Domain domain = d.getOrDefault(candidate, Domain.NONE);
+            int closest = 0;
+            for (String p : placed) {
+                closest = Math.max(closest, domain.distanceFrom(d.getOrDefault(p, Domain.NONE)));
+            }
+            distances.put(candidate, closest);
+        }
+        List<String> ranked = new ArrayList<>(candidates);
+        ranked.sort(Comparator.comparingInt((String c) -> distances.get(c))
+                .thenComparing(Comparator.comparingDouble((String c) -> scores.get(c)).reversed()));
+        return ranked;
+    }
+
+    /** Weighted rendezvous score: -w / ln(u) with u uniform in (0,1) per (key, node). */
+    static double score(String key, String node, double weight) {
+        if (weight <= 0) return 0;
+        long h = mix(((long) key.hashCode() << 32) ^ (node.hashCode() & 0xffffffffL));
+        double u = ((h >>> 11) + 0.5) / (double) (1L << 53);
+        return -weight / Math.log(u);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
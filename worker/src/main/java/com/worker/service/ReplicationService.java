@@ -1,7 +1,13 @@
 package com.worker.service;
 
 import com.worker.model.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
 import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
@@ -10,64 +16,158 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Service
 public class ReplicationService {
 
+    private static final Logger logger = LoggerFactory.getLogger(ReplicationService.class);
+
+    // a dead replica fails every write routed to it; one line per second is enough to see it
+    private final LogThrottle syncFailureLog = new LogThrottle(Duration.ofSeconds(1));
+    private final LogThrottle asyncFailureLog = new LogThrottle(Duration.ofSeconds(1));
+    private final LogThrottle notifyFailureLog = new LogThrottle(Duration.ofSeconds(1));
+
     @Value("${worker.heartbeat.interval:5000}")
     private long heartbeatInterval;
 
-    private final RestTemplate rest = new RestTemplate();
+    private final RestTemplate rest;
     private final KafkaTemplate<String, Object> kafkaTemplate;
     private final KeyValueStore keyValueStore;
     private final WorkerRegistrar workerRegistrar;
+    private final MeterRegistry meterRegistry;
+    // built once per (op, outcome): every sync attempt and Kafka ack records one
+    private final Map<TimerTags, Timer> syncTimers = new ConcurrentHashMap<>();
+    private final Map<TimerTags, Timer> asyncTimers = new ConcurrentHashMap<>();
+    private record TimerTags(String op, boolean success) {}
+    private final Tracer tracer;
+    private final ControllerLocator controllers;
+    private final ReplicaPlacement placement;
+    private final HintedHandoffService hints;
+    private final AsyncReplicationLog asyncLog;
+    private final AsyncCatchUpService asyncCatchUp;
+    // sync updates of puts acknowledged at ConsistencyLevel.ONE
+    private final Executor background;
+    private volatile ClusterView clusterView = ClusterView.EMPTY;
     private volatile Set<String> aliveWorkers = new HashSet<>();
+    // a view install may pull from the controller over HTTP while holding it
+    private final ReentrantLock viewLock = new ReentrantLock();
 
     public ReplicationService(
             KafkaTemplate<String, Object> kafkaTemplate,
             KeyValueStore keyValueStore,
-            WorkerRegistrar workerRegistrar
+            WorkerRegistrar workerRegistrar,
+            MeterRegistry meterRegistry,
+            RestTemplate rest,
+            Tracer tracer,
+            ControllerLocator controllers,
+            ReplicaPlacement placement,
+            HintedHandoffService hints,
+            AsyncReplicationLog asyncLog,
+            AsyncCatchUpService asyncCatchUp,
+            @Qualifier("applicationTaskExecutor") Executor background
     ) {
         this.kafkaTemplate = kafkaTemplate;
         this.keyValueStore = keyValueStore;
         this.workerRegistrar = workerRegistrar;
+        this.meterRegistry = meterRegistry;
+        this.rest = rest;
+        this.tracer = tracer;
+        this.controllers = controllers;
+        this.placement = placement;
+        this.hints = hints;
+        this.asyncLog = asyncLog;
+        this.asyncCatchUp = asyncCatchUp;
+        this.background = background;
+    }
+
+    /**
+     * Installs a view pushed by the controller. Returns the members that left
+     * since the installed view, or null when the update is not newer than it
+     * (a delayed or duplicate push). A delta against an epoch this worker does
+     * not hold, or one that fails its checksum, is replaced by a pull.
+     */
+    public List<String> applyClusterView(Map<String, Object> update) {
+        viewLock.lock();
+        try {
+            ClusterView current = clusterView;
+            if (ClusterView.epochOf(update) <= current.getEpoch()) return null;
+
+            ClusterView next = current.apply(update);
+            if (next == null) next = pullClusterView(current);
+            if (next.getEpoch() <= current.getEpoch()) return null;
+
+            List<String> removed = new ArrayList<>(current.getMembers());
+            removed.removeAll(next.getMembers());
+
+            clusterView = next;
+            aliveWorkers = new HashSet<>(next.getMembers());
+            logger.info("Cluster view epoch={} members={} removed={}",
+                    next.getEpoch(), next.getMembers().size(), removed);
+            return removed;
+        } finally {
+            viewLock.unlock();
+        }
     }
 
-    public void updateClusterState(Set<String> newAliveWorkers) {
-        this.aliveWorkers = newAliveWorkers;
+    @SuppressWarnings("unchecked")
+    private ClusterView pullClusterView(ClusterView current) {
+        Map<String, Object> response = rest.getForObject(
+                controllers.url() + "/cluster/view?since=" + current.getEpoch(), Map.class);
+        if (response == null || !(response.get("payload") instanceof Map payload))
+            throw new IllegalStateException("Empty cluster view from controller");
+
+        ClusterView next = current.apply(payload);
+        if (next == null) {
+            // delta still does not fit: take the full view
+            response = rest.getForObject(controllers.url() + "/cluster/view", Map.class);
+            next = ClusterView.EMPTY.apply((Map<String, Object>) response.get("payload"));
+        }
+        if (next == null) throw new IllegalStateException("Cluster view checksum mismatch");
+        return next;
+    }
+
+    public ClusterView getClusterView() {
+        return clusterView;
     }
 
     public Set<String> getAliveWorkers() {
         return aliveWorkers;
     }
 
-    private Map<String, String> createSyncReplica(String key,
-                                                  String value,
+    private Map<String, String> createSyncReplica(KeyValue kv,
                                                   String targetUrl,
                                                   String primaryUrl,
                                                   String asyncUrl,
                                                   boolean isPromotion) {
 
+        long start = System.nanoTime();
         try {
             if (asyncUrl != null && asyncUrl.equals(targetUrl)) {
                 asyncUrl = null;
             }
 
-            Map<String, Object> body = new HashMap<>();
-            body.put("key", key);
-            body.put("value", value);
+            Map<String, Object> body = replicationBody(kv);
             body.put("primaryUrl", primaryUrl);
             body.put("syncUrl", targetUrl);
             body.put("asyncUrl", asyncUrl);
 
             rest.postForEntity(targetUrl + "/replicate", body, String.class);
+            recordSync("create", start, true);
 
-            System.out.println((isPromotion ?
-                    "Promoted ASYNC -> SYNC: " : "Created SYNC on: ") + targetUrl);
+            logger.debug("{} key={} target={}",
+                    isPromotion ? "Promoted ASYNC -> SYNC" : "Created SYNC", kv.getKey(), targetUrl);
 
             Map<String, String> result = new HashMap<>();
             result.put("primaryReplica", primaryUrl);
@@ -76,17 +176,19 @@ public class ReplicationService {
             return result;
 
         } catch (Exception e) {
-            System.err.println(
-                    (isPromotion ? "Promotion" : "SYNC create") +
-                            " failed on " + targetUrl + ": " + e.getMessage()
-            );
+            recordSync("create", start, false);
+            syncFailureLog.warn(logger, "{} failed key={} target={}: {}",
+                    isPromotion ? "Promotion" : "SYNC create", kv.getKey(), targetUrl, e.getMessage());
             return null;
         }
     }
 
-    public String chooseAsyncCandidate(String primary,
-                                        String syncCandidate) {
-        for (String cand : aliveWorkers) {
+    /** Best-ranked live worker for key's async replica other than its primary and sync replica. */
+    public String chooseAsyncCandidate(String key,
+                                       String primary,
+                                       String syncCandidate) {
+        List<String> placed = syncCandidate == null ? List.of(primary) : List.of(primary, syncCandidate);
+        for (String cand : placement.rank(key, aliveWorkers, placed)) {
             if (cand.equals(primary)) continue;
             if (cand.equals(syncCandidate)) continue;
             return cand;
@@ -94,8 +196,43 @@ public class ReplicationService {
         return null;
     }
 
-    public Map<String, String> syncReplicaCreate(String key,
-                                                 String value,
+    /**
+     * Replicas for a new key chosen by placement alone, without contacting
+     * them: for puts that do not wait for the sync replica. Values are null
+     * when too few workers are alive.
+     */
+    public Map<String, String> planReplicas(String key) {
+        String primaryUrl = workerRegistrar.getWorkerUrl();
+        String syncUrl = null;
+        for (String cand : placement.rank(key, aliveWorkers, List.of(primaryUrl))) {
+            if (!cand.equals(primaryUrl)) {
+                syncUrl = cand;
+                break;
+            }
+        }
+        String asyncUrl = syncUrl == null ? null : chooseAsyncCandidate(key, primaryUrl, syncUrl);
+
+        Map<String, String> result = new HashMap<>();
+        result.put("primaryReplica", primaryUrl);
+        result.put("syncReplica", syncUrl);
+        result.put("asyncReplica", asyncUrl);
+        return result;
+    }
+
+    public Map<String, String> syncReplicaCreate(KeyValue kv,
+                                                 String oldAsync) throws Exception {
+        Span span = tracer.nextSpan().name("replication.sync.create").tag("kv.key", kv.getKey()).start();
+        try (Tracer.SpanInScope ignored = tracer.withSpan(span)) {
+            return placeSyncReplica(kv, oldAsync);
+        } catch (Exception e) {
+            span.error(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    private Map<String, String> placeSyncReplica(KeyValue kv,
                                                  String oldAsync) throws Exception {
 
         String primaryUrl = workerRegistrar.getWorkerUrl();
@@ -107,7 +244,9 @@ public class ReplicationService {
         int maxAttempts = 4;
         long endTime = System.currentTimeMillis() + (retryDelay * maxAttempts);
 
-        List<String> candidates = new ArrayList<>(aliveWorkers);
+        // ranked per key, so this worker's replicas spread over all peers by weight
+        // and land outside its own failure domain when one is available
+        List<String> candidates = placement.rank(kv.getKey(), aliveWorkers, List.of(primaryUrl));
 
         while (System.currentTimeMillis() < endTime) {
 
@@ -124,11 +263,11 @@ public class ReplicationService {
                 }
 
                 if (asyncUrl == null && aliveWorkers.size() > 2) {
-                    asyncUrl = chooseAsyncCandidate(primaryUrl, candidate);
+                    asyncUrl = chooseAsyncCandidate(kv.getKey(), primaryUrl, candidate);
                 }
 
                 Map<String, String> result =
-                        createSyncReplica(key, value, candidate, primaryUrl, asyncUrl, false);
+                        createSyncReplica(kv, candidate, primaryUrl, asyncUrl, false);
 
                 if (result != null)
                     return result;
@@ -141,7 +280,7 @@ public class ReplicationService {
                 String asyncUrl = null;
 
                 if (aliveWorkers.size() > 2) {
-                    asyncUrl = chooseAsyncCandidate(primaryUrl, oldAsync);
+                    asyncUrl = chooseAsyncCandidate(kv.getKey(), primaryUrl, oldAsync);
                 }
 
                 if (asyncUrl != null && asyncUrl.equals(oldAsync)) {
@@ -149,89 +288,463 @@ public class ReplicationService {
                 }
 
                 Map<String, String> result =
-                        createSyncReplica(key, value, oldAsync, primaryUrl, asyncUrl, true);
+                        createSyncReplica(kv, oldAsync, primaryUrl, asyncUrl, true);
 
                 if (result != null)
                     return result;
             }
 
+            countRetry("create");
             try {
                 Thread.sleep(retryDelay);
             } catch (InterruptedException ignored) {}
         }
 
-        throw new Exception("Unable to create SYNC replica for key=" + key + " after retry window");
+        throw new Exception("Unable to create SYNC replica for key=" + kv.getKey() + " after retry window");
     }
 
-    public boolean syncUpdate(String key,
-                              String value,
+    /** How far a sync update got: not at all, to the sync replica (or a stand-in for it), or on to the chain tail. */
+    public enum SyncOutcome { FAILED, STORED, CHAINED }
+
+    /**
+     * What a sync update may settle for when the sync replica is suspect:
+     * nothing but the replica itself, a hint for it, or a hint plus a copy
+     * on a fallback replica so the write still has two copies.
+     */
+    public enum Handoff { NONE, HINT, FALLBACK }
+
+    public boolean syncUpdate(KeyValue kv,
                               String syncUrl,
                               String asyncTarget) {
+        return syncUpdate(kv, syncUrl, asyncTarget, false, Handoff.NONE) != SyncOutcome.FAILED;
+    }
 
+    /**
+     * With chain, the sync replica forwards the write to asyncTarget and
+     * answers CHAINED once that tail holds it; on STORED the caller still
+     * owes the async replica its copy. With HINT, STORED may mean the write
+     * is merely held as a hint for a suspect replica; with FALLBACK it may
+     * mean a fallback replica holds it until the hint replays. Hinted handoff
+     * being off turns both into NONE.
+     */
+    public SyncOutcome syncUpdate(KeyValue kv,
+                                  String syncUrl,
+                                  String asyncTarget,
+                                  boolean chain,
+                                  Handoff handoff) {
+        Span span = tracer.nextSpan().name("replication.sync.update").tag("kv.key", kv.getKey()).start();
+        try (Tracer.SpanInScope ignored = tracer.withSpan(span)) {
+            SyncOutcome outcome = updateSyncReplica(kv, syncUrl, asyncTarget,
+                    chain && asyncTarget != null, hints.isEnabled() ? handoff : Handoff.NONE);
+            if (outcome == SyncOutcome.FAILED) span.event("failed");
+            return outcome;
+        } finally {
+            span.end();
+        }
+    }
+
+    private SyncOutcome updateSyncReplica(KeyValue kv,
+                                          String syncUrl,
+                                          String asyncTarget,
+                                          boolean chain,
+                                          Handoff handoff) {
+
+        String key = kv.getKey();
         String primaryUrl = workerRegistrar.getWorkerUrl();
 
-        Map<String, Object> body = new HashMap<>();
-        body.put("key", key);
-        body.put("value", value);
+        Map<String, Object> body = replicationBody(kv);
         body.put("primaryUrl", primaryUrl);
         body.put("syncUrl", syncUrl);
         body.put("asyncUrl", asyncTarget);
+        if (chain) body.put("chain", true);
+
+        boolean hinted = handoff != Handoff.NONE;
+        // a replica that already missed writes is not tried again until its hints replay
+        if (hinted && hints.hasHints(syncUrl) && handOff(kv, syncUrl, primaryUrl, asyncTarget, handoff)) {
+            return SyncOutcome.STORED;
+        }
 
+        RestTemplate client = hinted ? hints.client() : rest;
         long retryDelay = heartbeatInterval;
         int maxRetries = 4;
 
         for (int attempt = 1; attempt <= maxRetries; attempt++) {
             if (!aliveWorkers.contains(syncUrl)) {
-                System.err.println("SYNC update aborted — controller marked " +
-                        syncUrl + " as dead");
-                return false;
+                syncFailureLog.warn(logger, "SYNC update aborted key={}: controller marked sync={} as dead",
+                        key, syncUrl);
+                return SyncOutcome.FAILED;
             }
 
+            long start = System.nanoTime();
             try {
-                rest.postForEntity(syncUrl + "/replicate", body, String.class);
-                return true; // Success
+                ResponseEntity<String> reply = client.postForEntity(syncUrl + "/replicate", body, String.class);
+                recordSync("update", start, true);
+                // 202: stored on the sync replica, but the tail did not take it
+                return chain && reply.getStatusCode().value() == 200 ? SyncOutcome.CHAINED : SyncOutcome.STORED;
+            }
+            catch (HttpStatusCodeException e) {
+                recordSync("update", start, false);
+                // the replica refused the write for lack of memory; retrying will not help
+                if (e.getStatusCode().value() == 507) {
+                    syncFailureLog.warn(logger, "SYNC update rejected key={} sync={}: memory limit reached",
+                            key, syncUrl);
+                    return SyncOutcome.FAILED;
+                }
+                syncFailureLog.warn(logger, "SYNC update attempt {}/{} failed key={} sync={}: {}",
+                        attempt, maxRetries, key, syncUrl, e.getMessage());
+                if (hinted && e.getStatusCode().is5xxServerError()
+                        && handOff(kv, syncUrl, primaryUrl, asyncTarget, handoff)) return SyncOutcome.STORED;
             }
             catch (Exception e) {
-                System.err.println("SYNC update attempt " + attempt + "/" + maxRetries +
-                        " failed for key=" + key + " sync=" + syncUrl +
-                        ": " + e.getMessage());
+                recordSync("update", start, false);
+                syncFailureLog.warn(logger, "SYNC update attempt {}/{} failed key={} sync={}: {}",
+                        attempt, maxRetries, key, syncUrl, e.getMessage());
+                if (hinted && handOff(kv, syncUrl, primaryUrl, asyncTarget, handoff)) return SyncOutcome.STORED;
             }
 
+            if (attempt < maxRetries) countRetry("update");
             try {
                 Thread.sleep(retryDelay);
             } catch (InterruptedException ignored) {}
         }
 
-        System.err.println("SYNC update failed for key=" + key +
-                " after " + maxRetries + " attempts");
-        return false;
+        syncFailureLog.warn(logger, "SYNC update failed key={} sync={} after {} attempts", key, syncUrl, maxRetries);
+        return SyncOutcome.FAILED;
     }
 
-    public boolean replicateAsync(String key, String value, String asyncTarget, String syncUrl) {
+    /**
+     * Runs syncUpdate off the request thread, for a put already acknowledged
+     * at ConsistencyLevel.ONE, then queues the async copy unless the chain
+     * delivered it. A failure leaves the sync replica behind until the key is
+     * written again or its replicas are rebuilt.
+     */
+    public void syncUpdateInBackground(KeyValue kv, String syncUrl, String asyncTarget, boolean chain) {
+        KeyValue copy = new KeyValue(kv);
+        try {
+            background.execute(() -> {
+                SyncOutcome outcome = syncUpdate(copy, syncUrl, asyncTarget, chain, Handoff.HINT);
+                if (outcome == SyncOutcome.FAILED) {
+                    meterRegistry.counter("kv.replication.sync.background.failures").increment();
+                }
+                if (outcome != SyncOutcome.CHAINED && asyncTarget != null) {
+                    replicateAsync(copy, asyncTarget, syncUrl);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            meterRegistry.counter("kv.replication.sync.background.failures").increment();
+            syncFailureLog.warn(logger, "Background SYNC update rejected key={}: {}", kv.getKey(), e.getMessage());
+            if (asyncTarget != null) replicateAsync(copy, asyncTarget, syncUrl);
+        }
+    }
+
+    /**
+     * Writes kv to its async replica over HTTP and waits for the answer, for
+     * puts at ConsistencyLevel.ALL; other puts reach it through Kafka.
+     */
+    public boolean asyncUpdate(KeyValue kv, String asyncTarget, String syncUrl) {
+        Map<String, Object> body = replicationBody(kv);
+        body.put("primaryUrl", workerRegistrar.getWorkerUrl());
+        body.put("syncUrl", syncUrl);
+        body.put("asyncUrl", asyncTarget);
+        body.put("replicaType", ReplicaType.ASYNC.name());
+
+        RestTemplate client = hints.isEnabled() ? hints.client() : rest;
+        long start = System.nanoTime();
+        try {
+            client.postForEntity(asyncTarget + "/replicate", body, String.class);
+            recordSync("async-update", start, true);
+            return true;
+        } catch (Exception e) {
+            recordSync("async-update", start, false);
+            asyncFailureLog.warn(logger, "ASYNC update failed key={} target={}: {}",
+                    kv.getKey(), asyncTarget, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Suspect but not dead: keep the write as a hint for syncUrl rather than
+     * retrying it, with FALLBACK only once a fallback replica holds a copy.
+     * False leaves the caller to retry syncUrl itself.
+     */
+    private boolean handOff(KeyValue kv, String syncUrl, String primaryUrl, String asyncTarget, Handoff handoff) {
+        if (!aliveWorkers.contains(syncUrl)) return false;
+        String fallback = null;
+        if (handoff == Handoff.FALLBACK) {
+            fallback = storeOnFallback(kv, syncUrl, primaryUrl, asyncTarget);
+            if (fallback == null) return false;
+        }
+        if (!hints.hint(syncUrl, kv, primaryUrl, asyncTarget, fallback)) {
+            if (fallback != null) hints.handBack(fallback, primaryUrl, Map.of(kv.getKey(), kv.getVersion()));
+            return false;
+        }
+        countHint();
+        return true;
+    }
+
+    /**
+     * Writes kv as a sync copy to the best-ranked live worker that is not
+     * already one of its replicas nor behind on hints itself, trying at most
+     * two. Returns the worker that took it, or null.
+     */
+    private String storeOnFallback(KeyValue kv, String syncUrl, String primaryUrl, String asyncTarget) {
+        int tried = 0;
+        for (String cand : placement.rank(kv.getKey(), aliveWorkers, List.of(primaryUrl, syncUrl))) {
+            if (cand.equals(primaryUrl) || cand.equals(syncUrl) || cand.equals(asyncTarget)) continue;
+            if (hints.hasHints(cand)) continue;
+            if (tried++ == 2) break;
+
+            Map<String, Object> body = replicationBody(kv);
+            body.put("primaryUrl", primaryUrl);
+            body.put("syncUrl", cand);
+            body.put("asyncUrl", asyncTarget);
+
+            long start = System.nanoTime();
+            try {
+                hints.client().postForEntity(cand + "/replicate", body, String.class);
+                recordSync("fallback", start, true);
+                return cand;
+            } catch (Exception e) {
+                recordSync("fallback", start, false);
+                syncFailureLog.warn(logger, "Fallback for sync={} failed key={} fallback={}: {}",
+                        syncUrl, kv.getKey(), cand, e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    @Scheduled(fixedDelayString = "${worker.hints.replay-interval-ms:200}")
+    public void replayHints() {
+        if (hints.isEnabled()) hints.replay(aliveWorkers);
+    }
+
+    public boolean replicateAsync(KeyValue kv, String asyncTarget, String syncUrl) {
         if (asyncTarget == null || asyncTarget.isBlank()) return false;
 
+        String key = kv.getKey();
+
         try {
             String primaryUrl = workerRegistrar.getWorkerUrl();
 
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("key", key);
-            payload.put("value", value);
+            Map<String, Object> payload = replicationBody(kv);
             payload.put("targetUrl", asyncTarget);
             payload.put("primaryUrl", primaryUrl);
             payload.put("syncUrl", syncUrl);
+            sequence(payload, asyncTarget, key);
 
-            kafkaTemplate.send("replication-events", asyncTarget, payload);
+            enqueueAsync("put", asyncTarget, payload);
 
-            System.out.println("ASYNC queued → " + payload);
+            logger.debug("ASYNC queued key={} target={} v{}", key, asyncTarget, kv.getVersion());
             return true;
 
         } catch (Exception e) {
-            System.err.println("ASYNC enqueue failed for key=" + key +
-                    " target=" + asyncTarget + " : " + e.getMessage());
+            asyncFailureLog.warn(logger, "ASYNC enqueue failed key={} target={}: {}",
+                    key, asyncTarget, e.getMessage());
             return false;
         }
     }
 
+    public boolean syncBatch(List<KeyValue> batch, String syncUrl) {
+        return syncBatch(batch, syncUrl, false);
+    }
+
+    /**
+     * Sends an /mput batch, or with evicted a batch of evicted keys' tombstones,
+     * to one sync replica as a single /replicate/batch request, applied there as
+     * a unit. There is no hint or chain path: the batch reaches the replica whole
+     * or the /mput fails. The replica may drop eviction tombstones early when
+     * short of memory, as the primary does.
+     */
+    public boolean syncBatch(List<KeyValue> batch, String syncUrl, boolean evicted) {
+        Map<String, Object> body = batchBody(batch, evicted);
+
+        long retryDelay = heartbeatInterval;
+        int maxRetries = 4;
+
+        for (int attempt = 1; attempt <= maxRetries; attempt++) {
+            if (!aliveWorkers.contains(syncUrl)) {
+                syncFailureLog.warn(logger, "SYNC batch aborted: controller marked sync={} as dead", syncUrl);
+                return false;
+            }
+
+            long start = System.nanoTime();
+            try {
+                rest.postForEntity(syncUrl + "/replicate/batch", body, String.class);
+                recordSync("batch", start, true);
+                return true;
+            } catch (HttpStatusCodeException e) {
+                recordSync("batch", start, false);
+                if (e.getStatusCode().is4xxClientError() || e.getStatusCode().value() == 507) {
+                    syncFailureLog.warn(logger, "SYNC batch of {} keys rejected by sync={}: {}",
+                            batch.size(), syncUrl, e.getMessage());
+                    return false;
+                }
+                syncFailureLog.warn(logger, "SYNC batch attempt {}/{} failed sync={}: {}",
+                        attempt, maxRetries, syncUrl, e.getMessage());
+            } catch (Exception e) {
+                recordSync("batch", start, false);
+                syncFailureLog.warn(logger, "SYNC batch attempt {}/{} failed sync={}: {}",
+                        attempt, maxRetries, syncUrl, e.getMessage());
+            }
+
+            if (attempt < maxRetries) countRetry("batch");
+            try {
+                Thread.sleep(retryDelay);
+            } catch (InterruptedException ignored) {}
+        }
+        return false;
+    }
+
+    public boolean replicateAsyncBatch(List<KeyValue> batch, String asyncTarget) {
+        return replicateAsyncBatch(batch, asyncTarget, false);
+    }
+
+    /** Queues a batch, as for syncBatch, for one async replica as a single Kafka record. */
+    public boolean replicateAsyncBatch(List<KeyValue> batch, String asyncTarget, boolean evicted) {
+        if (asyncTarget == null || batch.isEmpty()) return false;
+
+        try {
+            Map<String, Object> payload = batchBody(batch, evicted);
+            payload.put("op", "batch");
+            payload.put("targetUrl", asyncTarget);
+            sequence(payload, asyncTarget, batch.stream().map(KeyValue::getKey).toList());
+
+            enqueueAsync("batch", asyncTarget, payload);
+            return true;
+
+        } catch (Exception e) {
+            asyncFailureLog.warn(logger, "ASYNC batch enqueue of {} keys failed target={}: {}",
+                    batch.size(), asyncTarget, e.getMessage());
+            return false;
+        }
+    }
+
+    /** Entries of a /replicate/batch body or "batch" record, as replicas of type. */
+    @SuppressWarnings("unchecked")
+    public List<KeyValue> batchEntries(Map<String, Object> body, ReplicaType type) {
+        String primaryUrl = (String) body.get("primaryUrl");
+        if (primaryUrl == null || !(body.get("entries") instanceof List<?> entries)) {
+            throw new IllegalArgumentException("primaryUrl and entries are required");
+        }
+
+        List<KeyValue> batch = new ArrayList<>(entries.size());
+        for (Object entry : entries) {
+            Map<String, Object> e = (Map<String, Object>) entry;
+            String key = (String) e.get("key");
+            boolean tombstone = Boolean.TRUE.equals(e.get("tombstone"));
+            if (key == null || (e.get("value") == null && !tombstone)) {
+                throw new IllegalArgumentException("Batch entries need a key and value");
+            }
+
+            KeyValue kv = new KeyValue();
+            kv.setKey(key);
+            kv.setValue((String) e.get("value"));
+            kv.setReplicaType(type);
+            kv.setReplicaInfo(new ReplicaInfo(primaryUrl, (String) e.get("syncUrl"), (String) e.get("asyncUrl")));
+            kv.setExpiresAt(longOf(e.get("expiresAt")));
+            kv.setVersion(longOf(e.get("version")));
+            kv.setTombstone(tombstone);
+            batch.add(kv);
+        }
+        return batch;
+    }
+
+    private Map<String, Object> batchBody(List<KeyValue> batch, boolean evicted) {
+        List<Map<String, Object>> entries = new ArrayList<>(batch.size());
+        for (KeyValue kv : batch) {
+            Map<String, Object> entry = replicationBody(kv);
+            entry.put("syncUrl", kv.getReplicaInfo().getSyncReplica());
+            entry.put("asyncUrl", kv.getReplicaInfo().getAsyncReplica());
+            entries.add(entry);
+        }
+        Map<String, Object> body = new HashMap<>();
+        body.put("primaryUrl", workerRegistrar.getWorkerUrl());
+        body.put("entries", entries);
+        if (evicted) body.put("evicted", true);
+        return body;
+    }
+
+    /** Sends one batch of expired keys (key -> deadline) to a sync replica. */
+    public boolean syncExpire(String syncUrl, Map<String, Long> expired) {
+        if (syncUrl == null || expired.isEmpty()) return false;
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("primaryUrl", workerRegistrar.getWorkerUrl());
+        body.put("entries", expired);
+
+        long start = System.nanoTime();
+        try {
+            rest.postForEntity(syncUrl + "/replicate/expire", body, String.class);
+            recordSync("expire", start, true);
+            return true;
+        } catch (Exception e) {
+            recordSync("expire", start, false);
+            syncFailureLog.warn(logger, "SYNC expire batch of {} keys failed sync={}: {}",
+                    expired.size(), syncUrl, e.getMessage());
+            return false;
+        }
+    }
+
+    /** Queues one batch of expired keys for an async replica as a single Kafka record. */
+    public boolean asyncExpire(String asyncTarget, Map<String, Long> expired) {
+        if (asyncTarget == null || expired.isEmpty()) return false;
+
+        try {
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("op", "expire");
+            payload.put("targetUrl", asyncTarget);
+            payload.put("primaryUrl", workerRegistrar.getWorkerUrl());
+            payload.put("entries", expired);
+            sequence(payload, asyncTarget, (String) null);
+
+            enqueueAsync("expire", asyncTarget, payload);
+            return true;
+
+        } catch (Exception e) {
+            asyncFailureLog.warn(logger, "ASYNC expire enqueue failed target={}: {}",
+                    asyncTarget, e.getMessage());
+            return false;
+        }
+    }
+
+    /** Applies a replicated expiry batch; entries rewritten since carry a different deadline and survive. */
+    public int applyExpiry(Map<String, ?> entries) {
+        int removed = 0;
+        for (var e : entries.entrySet()) {
+            if (!(e.getValue() instanceof Number deadline)) continue;
+            if (keyValueStore.removeIfExpiresAt(e.getKey(), deadline.longValue()) != null) removed++;
+        }
+        return removed;
+    }
+
+    /** Numbers a record in this worker's stream to asyncTarget, so the replica can find gaps. */
+    private void sequence(Map<String, Object> payload, String asyncTarget, String key) {
+        stamp(payload, asyncLog.append(asyncTarget, key));
+    }
+
+    private void sequence(Map<String, Object> payload, String asyncTarget, List<String> keys) {
+        stamp(payload, asyncLog.append(asyncTarget, keys));
+    }
+
+    private void stamp(Map<String, Object> payload, long seq) {
+        payload.put("stream", asyncLog.stream());
+        payload.put("seq", seq);
+        payload.put("sentAt", System.currentTimeMillis());
+    }
+
+    private static long longOf(Object value) {
+        return value instanceof Number n ? n.longValue() : 0;
+    }
+
+    private Map<String, Object> replicationBody(KeyValue kv) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("key", kv.getKey());
+        body.put("value", kv.getValue());
+        body.put("version", kv.getVersion());
+        if (kv.getExpiresAt() > 0) body.put("expiresAt", kv.getExpiresAt());
+        if (kv.isTombstone()) body.put("tombstone", true);
+        return body;
+    }
 
     @KafkaListener(
             topics = "replication-events",
@@ -249,10 +762,40 @@ public class ReplicationService {
 
             if (!myUrl.equals(targetUrl)) return;
 
+            if ("expire".equals(payload.get("op"))) {
+                if (payload.get("entries") instanceof Map<?, ?> entries) {
+                    int removed = applyExpiry((Map<String, ?>) entries);
+                    logger.debug("ASYNC EXPIRED {} keys from primary={}", removed, primaryUrl);
+                }
+                applied(payload);
+                return;
+            }
+
+            if ("batch".equals(payload.get("op"))) {
+                List<KeyValue> batch = batchEntries(payload, ReplicaType.ASYNC);
+                if (!keyValueStore.admitAll(batch)) {
+                    asyncFailureLog.warn(logger, "ASYNC dropped batch of {} keys: memory limit reached", batch.size());
+                    return;
+                }
+                int stored = keyValueStore.putAll(batch);
+                if (Boolean.TRUE.equals(payload.get("evicted"))) keyValueStore.evictionsShipped(batch);
+                applied(payload);
+                logger.debug("ASYNC STORED batch of {} keys ({} stale) primary={}",
+                        stored, batch.size() - stored, primaryUrl);
+                return;
+            }
+
             KeyValue kv = new KeyValue();
             kv.setKey(key);
             kv.setValue(value);
             kv.setReplicaType(ReplicaType.ASYNC);
+            if (payload.get("expiresAt") instanceof Number expiresAt) {
+                kv.setExpiresAt(expiresAt.longValue());
+            }
+            if (payload.get("version") instanceof Number version) {
+                kv.setVersion(version.longValue());
+            }
+            kv.setTombstone(Boolean.TRUE.equals(payload.get("tombstone")));
 
             ReplicaInfo info = new ReplicaInfo();
             info.setPrimaryReplica(primaryUrl);
@@ -261,9 +804,21 @@ public class ReplicationService {
 
             kv.setReplicaInfo(info);
 
-            keyValueStore.put(kv);
+            // a dropped record leaves a gap that AsyncCatchUpService fills once there is room
+            if (!keyValueStore.admit(kv)) {
+                asyncFailureLog.warn(logger, "ASYNC dropped key={}: memory limit reached", key);
+                return;
+            }
+
+            if (!keyValueStore.putIfNewer(kv)) {
+                logger.debug("ASYNC STALE key={} v{} ignored", key, kv.getVersion());
+                applied(payload);
+                return;
+            }
+            applied(payload);
 
-            System.out.println("ASYNC STORED -> " + key + " from " + primaryUrl);
+            logger.debug("{} key={} v{} primary={}",
+                    kv.isTombstone() ? "ASYNC DELETED" : "ASYNC STORED", key, kv.getVersion(), primaryUrl);
 
 //            rest.postForEntity(
 //                    "http://localhost:8080/notify/async",
@@ -272,27 +827,92 @@ public class ReplicationService {
 //            );
 
         } catch (Exception e) {
-            System.err.println("Async replication failed: " + e.getMessage());
+            meterRegistry.counter("kv.replication.async.apply.failures").increment();
+            asyncFailureLog.warn(logger, "Async replication failed: {}", e.getMessage());
         }
     }
 
-    public void notifyPrimaryToController(String key, String primaryUrl) {
+    private void applied(Map<String, Object> payload) {
+        asyncCatchUp.applied((String) payload.get("primaryUrl"), longOf(payload.get("stream")),
+                longOf(payload.get("seq")), longOf(payload.get("sentAt")));
+    }
+
+    /** Hands a record to Kafka; the send timer stops when the broker acks (or fails) it. */
+    private void enqueueAsync(String op, String asyncTarget, Map<String, Object> payload) {
+        long start = System.nanoTime();
         try {
-            String controllerUrl = "http://localhost:8080/notify/primary";
+            kafkaTemplate.send("replication-events", asyncTarget, payload)
+                    .whenComplete((result, ex) -> recordAsync(op, start, ex == null));
+        } catch (RuntimeException e) {
+            recordAsync(op, start, false);
+            throw e;
+        }
+    }
+
+    private void recordSync(String op, long startNanos, boolean success) {
+        syncTimers.computeIfAbsent(new TimerTags(op, success), t -> Timer.builder("kv.replication.sync")
+                        .description("Sync replica round trip per attempt")
+                        .tag("op", t.op())
+                        .tag("outcome", t.success() ? "success" : "failure")
+                        .publishPercentileHistogram()
+                        .register(meterRegistry))
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void recordAsync(String op, long startNanos, boolean success) {
+        asyncTimers.computeIfAbsent(new TimerTags(op, success), t -> Timer.builder("kv.replication.async.enqueue")
+                        .description("Async replication record enqueue until broker ack")
+                        .tag("op", t.op())
+                        .tag("outcome", t.success() ? "success" : "failure")
+                        .publishPercentileHistogram()
+                        .register(meterRegistry))
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
 
+    private void countHint() {
+        meterRegistry.counter("kv.replication.sync.hinted").increment();
+        Span current = tracer.currentSpan();
+        if (current != null) current.event("hinted");
+    }
+
+    private void countRetry(String op) {
+        meterRegistry.counter("kv.replication.sync.retries", "op", op).increment();
+        Span current = tracer.currentSpan();
+        if (current != null) current.event("retry");
+    }
+
+    public void notifyPrimaryToController(String key, String primaryUrl) {
+        try {
             Map<String, String> body = Map.of(
                     "key", key,
                     "worker", primaryUrl
             );
 
-            new org.springframework.web.client.RestTemplate()
-                    .postForEntity(controllerUrl, body, String.class);
+            rest.postForEntity(controllers.url() + "/notify/primary", body, String.class);
+
+            logger.debug("Notified controller of new primary key={} primary={}", key, primaryUrl);
+
+        } catch (Exception e) {
+            notifyFailureLog.warn(logger, "Failed to notify controller of primary key={}: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * Keys this primary evicted or expired (key -> version it last had);
+     * the controller removes their metadata while it still names this worker.
+     */
+    public void notifyRemovedToController(Map<String, Long> removed) {
+        if (removed.isEmpty()) return;
+        try {
+            Map<String, Object> body = Map.of(
+                    "worker", workerRegistrar.getWorkerUrl(),
+                    "keys", removed
+            );
 
-            System.out.println("Notified controller about new primary for key="
-                    + key + " -> " + primaryUrl);
+            rest.postForEntity(controllers.url() + "/notify/removed", body, String.class);
 
         } catch (Exception e) {
-            System.err.println("Failed to notify primary to controller: " + e.getMessage());
+            notifyFailureLog.warn(logger, "Failed to notify controller of {} removed keys: {}", removed.size(), e.getMessage());
         }
     }
 }
@@ -0,0 +1,60 @@
+package com.worker.service;
+
+import com.worker.model.ConsistencyLevel;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Latency of the worker's data-path endpoints, tagged by operation and the
+ * status returned. Put latency includes the sync replica round trip.
+ * Timers are built once per tag combination rather than looked up on every request.
+ */
+@Component
+public class RequestMetrics {
+
+    private final MeterRegistry registry;
+    private final Map<Tags, Timer> requests = new ConcurrentHashMap<>();
+    private final Map<Tags, Timer> puts = new ConcurrentHashMap<>();
+
+    private record Tags(String name, int status) {}
+
+    public RequestMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public <T> ResponseEntity<T> time(String op, Supplier<ResponseEntity<T>> handler) {
+        long start = System.nanoTime();
+        ResponseEntity<T> response = handler.get();
+        record(op, response.getStatusCode().value(), System.nanoTime() - start);
+        return response;
+    }
+
+    /** For requests served outside Spring MVC, such as the binary data port. */
+    public void record(String op, int status, long nanos) {
+        requests.computeIfAbsent(new Tags(op, status), t -> Timer.builder("kv.worker.requests")
+                        .description("Worker put/replicate/get latency")
+                        .tag("op", t.name())
+                        .tag("status", String.valueOf(t.status()))
+                        .publishPercentileHistogram()
+                        .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Put latency per consistency level, whichever port the put arrived on. */
+    public void recordPut(ConsistencyLevel level, int status, long nanos) {
+        puts.computeIfAbsent(new Tags(level.name(), status), t -> Timer.builder("kv.worker.put.consistency")
+                        .description("Worker put latency by consistency level")
+                        .tag("level", t.name())
+                        .tag("status", String.valueOf(t.status()))
+                        .publishPercentileHistogram()
+                        .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
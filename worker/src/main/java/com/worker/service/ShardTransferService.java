@@ -0,0 +1,219 @@
+package com.worker.service;
+
+import com.worker.model.KeyValue;
+import com.worker.model.ReplicaInfo;
+import com.worker.model.ReplicaType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.zip.CRC32C;
+
+/**
+ * Bulk copy of many entries to another worker in one HTTP stream, instead of
+ * one JSON request per key. Entries are packed into binary frames of up to
+ * frame-bytes, each checked by CRC32C:
+ *
+ *   payloadBytes (4), entryCount (4), crc32c of the payload (4), payload
+ *
+ * and the stream ends with a frame of zero payload bytes whose count is the
+ * total number of entries sent, so a truncated stream is detected. Each entry
+ * is key, value, version, expiresAt, flags (1 = tombstone), replica type and
+ * its primary/sync/async urls; strings are a 4-byte length (-1 = null) and
+ * UTF-8. The receiver applies each frame as soon as it verifies, so a large
+ * range is loaded into the store without being held in memory whole.
+ */
+@Service
+public class ShardTransferService {
+
+    private static final ReplicaType[] TYPES = ReplicaType.values();
+
+    private final int frameBytes;
+    private final int timeoutMs;
+
+    public ShardTransferService(@Value("${worker.transfer.frame-bytes:1048576}") int frameBytes,
+                                @Value("${worker.transfer.timeout-ms:60000}") int timeoutMs) {
+        this.frameBytes = Math.max(4096, frameBytes);
+        this.timeoutMs = timeoutMs;
+    }
+
+    /** Called before each frame is sent with its size in bytes; may block to pace the stream. */
+    public interface FrameListener {
+        void sent(long bytes);
+    }
+
+    /**
+     * Streams entries to url as one request. Returns the receiver's reply body;
+     * throws if it does not answer 2xx, e.g. on a checksum mismatch or when it
+     * runs out of memory (507).
+     */
+    public String send(String url, Collection<KeyValue> entries, FrameListener listener) throws IOException {
+        return send(url, entries, listener, timeoutMs);
+    }
+
+    /** send with its own connect and read timeout, for peers that may be stalled. */
+    public String send(String url, Collection<KeyValue> entries, FrameListener listener,
+                       int timeoutMs) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) URI.create(url).toURL().openConnection();
+        conn.setRequestMethod("POST");
+        conn.setDoOutput(true);
+        conn.setConnectTimeout(Math.min(timeoutMs, 5000));
+        conn.setReadTimeout(timeoutMs);
+        conn.setRequestProperty("Content-Type", "application/octet-stream");
+        conn.setChunkedStreamingMode(frameBytes);
+
+        try (OutputStream out = new BufferedOutputStream(conn.getOutputStream(), frameBytes)) {
+            ByteBuffer frame = ByteBuffer.allocate(frameBytes);
+            CRC32C crc = new CRC32C();
+            int count = 0;
+            for (KeyValue kv : entries) {
+                byte[][] strings = strings(kv);
+                int size = entryBytes(strings);
+                if (count > 0 && frame.remaining() < size) {
+                    writeFrame(out, frame, count, crc, listener);
+                    count = 0;
+                }
+                if (frame.capacity() < size) frame = ByteBuffer.allocate(size);
+                encode(frame, kv, strings);
+                count++;
+            }
+            if (count > 0) writeFrame(out, frame, count, crc, listener);
+
+            // trailer: no payload, total entries
+            DataOutputStream trailer = new DataOutputStream(out);
+            trailer.writeInt(0);
+            trailer.writeInt(entries.size());
+            trailer.writeInt(0);
+            trailer.flush();
+        }
+
+        int status = conn.getResponseCode();
+        InputStream body = status / 100 == 2 ? conn.getInputStream() : conn.getErrorStream();
+        String reply = body == null ? "" : new String(body.readAllBytes(), StandardCharsets.UTF_8);
+        if (status / 100 != 2) throw new IOException("Bulk transfer to " + url + " failed: " + status + " " + reply);
+        return reply;
+    }
+
+    private void writeFrame(OutputStream out, ByteBuffer frame, int count, CRC32C crc,
+                            FrameListener listener) throws IOException {
+        frame.flip();
+        crc.reset();
+        crc.update(frame.array(), 0, frame.limit());
+
+        if (listener != null) listener.sent(12L + frame.limit());
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(frame.limit());
+        header.writeInt(count);
+        header.writeInt((int) crc.getValue());
+        out.write(frame.array(), 0, frame.limit());
+        frame.clear();
+    }
+
+    /**
+     * Reads a stream written by send, handing each verified frame's entries to
+     * sink. Returns the total entry count, or -1 as soon as sink refuses a
+     * frame by returning false.
+     */
+    public long receive(InputStream in, Predicate<List<KeyValue>> sink) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in, frameBytes));
+        CRC32C crc = new CRC32C();
+        byte[] payload = new byte[frameBytes];
+        long received = 0;
+        while (true) {
+            int length = data.readInt();
+            int count = data.readInt();
+            int checksum = data.readInt();
+            if (length == 0) {
+                if (count != received) throw new IOException("Stream ended after " + received + " of " + count + " entries");
+                return received;
+            }
+            if (length < 0 || count <= 0) throw new IOException("Bad frame header: " + length + " bytes, " + count + " entries");
+            if (payload.length < length) payload = new byte[length];
+            data.readFully(payload, 0, length);
+
+            crc.reset();
+            crc.update(payload, 0, length);
+            if ((int) crc.getValue() != checksum) throw new IOException("Checksum mismatch in frame after " + received + " entries");
+
+            ByteBuffer frame = ByteBuffer.wrap(payload, 0, length);
+            List<KeyValue> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) entries.add(decode(frame));
+            if (!sink.test(entries)) return -1;
+            received += count;
+        }
+    }
+
+    private static byte[][] strings(KeyValue kv) {
+        ReplicaInfo info = kv.getReplicaInfo();
+        return new byte[][]{
+                utf8(kv.getKey()),
+                utf8(kv.getValue()),
+                utf8(info == null ? null : info.getPrimaryReplica()),
+                utf8(info == null ? null : info.getSyncReplica()),
+                utf8(info == null ? null : info.getAsyncReplica())
+        };
+    }
+
+    private static int entryBytes(byte[][] strings) {
+        int size = 8 + 8 + 1 + 1;
+        for (byte[] s : strings) size += 4 + (s == null ? 0 : s.length);
+        return size;
+    }
+
+    private static void encode(ByteBuffer buf, KeyValue kv, byte[][] strings) {
+        putString(buf, strings[0]);
+        putString(buf, strings[1]);
+        buf.putLong(kv.getVersion());
+        buf.putLong(kv.getExpiresAt());
+        buf.put((byte) (kv.isTombstone() ? 1 : 0));
+        buf.put((byte) (kv.getReplicaType() == null ? -1 : kv.getReplicaType().ordinal()));
+        putString(buf, strings[2]);
+        putString(buf, strings[3]);
+        putString(buf, strings[4]);
+    }
+
+    private static KeyValue decode(ByteBuffer buf) {
+        KeyValue kv = new KeyValue();
+        kv.setKey(getString(buf));
+        kv.setValue(getString(buf));
+        kv.setVersion(buf.getLong());
+        kv.setExpiresAt(buf.getLong());
+        kv.setTombstone((buf.get() & 1) != 0);
+        byte type = buf.get();
+        kv.setReplicaType(type < 0 ? null : TYPES[type]);
+        String primary = getString(buf);
+        String sync = getString(buf);
+        String async = getString(buf);
+        if (primary != null || sync != null || async != null) kv.setReplicaInfo(new ReplicaInfo(primary, sync, async));
+        return kv;
+    }
+
+    private static void putString(ByteBuffer buf, byte[] s) {
+        if (s == null) {
+            buf.putInt(-1);
+            return;
+        }
+        buf.putInt(s.length);
+        buf.put(s);
+    }
+
+    private static String getString(ByteBuffer buf) {
+        int len = buf.getInt();
+        if (len < 0) return null;
+        String s = new String(buf.array(), buf.arrayOffset() + buf.position(), len, StandardCharsets.UTF_8);
+        buf.position(buf.position() + len);
+        return s;
+    }
+
+    private static byte[] utf8(String s) {
+        return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,148 @@
+package com.worker.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * W-TinyLFU: new keys land in a small LRU window; the main area is a segmented
+ * LRU (probation + protected). When the window outgrows its share, its oldest key
+ * competes with the probation victim and the one with the lower estimated
+ * frequency (count-min sketch with periodic halving) is evicted.
+ */
+public class TinyLfuEvictionPolicy implements EvictionPolicy {
+
+    private static final double WINDOW_SHARE = 0.01;
+    private static final double PROTECTED_SHARE = 0.80;
+
+    private final LinkedHashMap<String, Boolean> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Boolean> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Boolean> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch = new FrequencySketch();
+
+    @Override
+    public synchronized void onInsert(String key) {
+        sketch.increment(key);
+        if (window.containsKey(key) || probation.containsKey(key) || protectedSegment.containsKey(key)) {
+            touch(key);
+            return;
+        }
+        window.put(key, Boolean.TRUE);
+    }
+
+    @Override
+    public synchronized void onAccess(String key) {
+        sketch.increment(key);
+        touch(key);
+    }
+
+    @Override
+    public synchronized void onRemove(String key) {
+        if (window.remove(key) == null && probation.remove(key) == null) {
+            protectedSegment.remove(key);
+        }
+    }
+
+    @Override
+    public synchronized String nextVictim() {
+        int total = window.size() + probation.size() + protectedSegment.size();
+        if (total == 0) return null;
+
+        int windowMax = Math.max(1, (int) (total * WINDOW_SHARE));
+
+        if (window.size() > windowMax) {
+            String candidate = eldest(window);
+            String victim = !probation.isEmpty() ? eldest(probation) : eldest(protectedSegment);
+
+            if (victim == null || sketch.frequency(candidate) <= sketch.frequency(victim)) {
+                window.remove(candidate);
+                return candidate;
+            }
+
+            // candidate wins admission into the main area
+            window.remove(candidate);
+            if (probation.remove(victim) == null) protectedSegment.remove(victim);
+            probation.put(candidate, Boolean.TRUE);
+            return victim;
+        }
+
+        String victim = popEldest(probation);
+        if (victim == null) victim = popEldest(protectedSegment);
+        if (victim == null) victim = popEldest(window);
+        return victim;
+    }
+
+    private void touch(String key) {
+        if (window.containsKey(key)) {
+            window.get(key);
+        } else if (probation.remove(key) != null) {
+            protectedSegment.put(key, Boolean.TRUE);
+            int mainSize = probation.size() + protectedSegment.size();
+            if (protectedSegment.size() > Math.max(1, (int) (mainSize * PROTECTED_SHARE))) {
+                String demoted = popEldest(protectedSegment);
+                if (demoted != null) probation.put(demoted, Boolean.TRUE);
+            }
+        } else if (protectedSegment.containsKey(key)) {
+            protectedSegment.get(key);
+        }
+    }
+
+    private static String eldest(LinkedHashMap<String, Boolean> segment) {
+        Iterator<String> it = segment.keySet().iterator();
+        return it.hasNext() ? it.next() : null;
+    }
+
+    private static String popEldest(LinkedHashMap<String, Boolean> segment) {
+        Iterator<String> it = segment.keySet().iterator();
+        if (!it.hasNext()) return null;
+        String key = it.next();
+        it.remove();
+        return key;
+    }
+
+    /** 4-row count-min sketch with 4-bit counters; all counters halve every sampleSize increments. */
+    private static final class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int WIDTH = 1 << 16;
+        private static final int MAX_COUNT = 15;
+
+        private final byte[][] table = new byte[DEPTH][WIDTH];
+        private final int sampleSize = WIDTH * 10;
+        private int additions;
+
+        void increment(String key) {
+            int h = spread(key.hashCode());
+            for (int row = 0; row < DEPTH; row++) {
+                int idx = index(h, row);
+                if (table[row][idx] < MAX_COUNT) table[row][idx]++;
+            }
+            if (++additions >= sampleSize) reset();
+        }
+
+        int frequency(String key) {
+            int h = spread(key.hashCode());
+            int min = MAX_COUNT;
+            for (int row = 0; row < DEPTH; row++) {
+                min = Math.min(min, table[row][index(h, row)]);
+            }
+            return min;
+        }
+
+        private void reset() {
+            for (byte[] row : table) {
+                for (int i = 0; i < row.length; i++) row[i] = (byte) (row[i] >> 1);
+            }
+            additions /= 2;
+        }
+
+        private static int index(int h, int row) {
+            int seeded = (h + row * 0x9E3779B9) * 0x85EBCA6B;
+            return (seeded ^ (seeded >>> 16)) & (WIDTH - 1);
+        }
+
+        private static int spread(int h) {
+            h ^= h >>> 16;
+            h *= 0x45d9f3b;
+            return h ^ (h >>> 16);
+        }
+    }
+}
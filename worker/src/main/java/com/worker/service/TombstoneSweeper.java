@@ -0,0 +1,35 @@
+package com.worker.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Purges tombstones once they have outlived the grace period. The grace period
+ * only has to cover in-flight replication: a write older than the tombstone that
+ * arrives later would otherwise recreate the deleted key on a replica.
+ */
+@Service
+public class TombstoneSweeper {
+
+    private static final Logger logger = LoggerFactory.getLogger(TombstoneSweeper.class);
+
+    private final KeyValueStore keyValueStore;
+
+    @Value("${worker.tombstone.grace-ms:60000}")
+    private long graceMs;
+
+    public TombstoneSweeper(KeyValueStore keyValueStore) {
+        this.keyValueStore = keyValueStore;
+    }
+
+    @Scheduled(fixedDelayString = "${worker.tombstone.sweep-interval-ms:1000}")
+    public void sweep() {
+        int purged = keyValueStore.purgeTombstones(System.currentTimeMillis() - graceMs);
+        if (purged > 0) {
+            logger.debug("purged {} tombstones", purged);
+        }
+    }
+}
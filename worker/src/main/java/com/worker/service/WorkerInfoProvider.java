@@ -1,6 +1,8 @@
 package com.worker.service;
 
 import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
@@ -8,6 +10,8 @@ import org.springframework.stereotype.Component;
 @Component
 public class WorkerInfoProvider {
 
+    private static final Logger logger = LoggerFactory.getLogger(WorkerInfoProvider.class);
+
     private final Environment env;
 
     @Value("${worker.host:localhost}")
@@ -25,7 +29,7 @@ public class WorkerInfoProvider {
         String port = env.getProperty("local.server.port");
 
         myUrl = "http://" + host + ":" + port;
-        System.out.println("Worker resolved its URL → " + myUrl);
+        logger.info("Worker resolved its URL: {}", myUrl);
     }
 
     public String getMyUrl() {
@@ -1,5 +1,7 @@
 package com.worker.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
@@ -10,16 +12,22 @@ import java.util.Map;
 @Service
 public class WorkerRegistrar {
 
-    @Value("${controller.url:http://localhost:8080}")
-    private String controllerUrl;
+    private static final Logger logger = LoggerFactory.getLogger(WorkerRegistrar.class);
 
     @Value("${server.port:8081}")
     private int port;
 
     private final RestTemplate rest = new RestTemplate();
+    private final ControllerLocator controllers;
+    private final ReplicaPlacement placement;
 
     private volatile String workerId;
 
+    public WorkerRegistrar(ControllerLocator controllers, ReplicaPlacement placement) {
+        this.controllers = controllers;
+        this.placement = placement;
+    }
+
     public String getWorkerId() {
         return workerId;
     }
@@ -31,30 +39,44 @@ public class WorkerRegistrar {
     public void registerAfterReady() {
         String workerUrl = "http://localhost:" + port;
 
-        Map<String, String> body = new HashMap<>();
+        Map<String, Object> body = new HashMap<>();
         body.put("url", workerUrl);
+        body.put("capacity", placement.capacity());
+        body.put("topology", placement.topology());
 
         try {
-            // Expect controller API to return ApiResponse wrapper: {status:"success", payload:{workerId: "..."}}
-            @SuppressWarnings("unchecked")
-            Map<String, Object> response = rest.postForObject(controllerUrl + "/worker/register", body, Map.class);
-
-            if (response == null || !"success".equals(response.get("status"))) {
-                throw new RuntimeException("Invalid response from controller: " + response);
+            register(controllers.url(), workerUrl, body);
+        } catch (Exception e) {
+            // controller.url may name a standby: ask the configured controllers who leads
+            String leader = controllers.discover();
+            if (leader == null) {
+                throw new RuntimeException("[WORKER] Failed to register with controller: " + e.getMessage(), e);
+            }
+            try {
+                register(leader, workerUrl, body);
+            } catch (Exception retry) {
+                throw new RuntimeException("[WORKER] Failed to register with controller: " + retry.getMessage(), retry);
             }
+        }
+    }
 
-            @SuppressWarnings("unchecked")
-            Map<String, Object> payload = (Map<String, Object>) response.get("payload");
-            this.workerId = (String) payload.get("workerId");
+    private void register(String controllerUrl, String workerUrl, Map<String, Object> body) {
+        // Expect controller API to return ApiResponse wrapper: {status:"success", payload:{workerId: "..."}}
+        @SuppressWarnings("unchecked")
+        Map<String, Object> response = rest.postForObject(controllerUrl + "/worker/register", body, Map.class);
 
-            if (this.workerId == null) {
-                throw new RuntimeException("Missing workerId in controller response");
-            }
+        if (response == null || !"success".equals(response.get("status"))) {
+            throw new RuntimeException("Invalid response from controller: " + response);
+        }
 
-            System.out.println("[WORKER] Registered with controller. workerId=" + workerId + " url=" + workerUrl);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> payload = (Map<String, Object>) response.get("payload");
+        this.workerId = (String) payload.get("workerId");
 
-        } catch (Exception e) {
-            throw new RuntimeException("[WORKER] Failed to register with controller: " + e.getMessage(), e);
+        if (this.workerId == null) {
+            throw new RuntimeException("Missing workerId in controller response");
         }
+
+        logger.info("Registered with controller {}. workerId={} url={}", controllerUrl, workerId, workerUrl);
     }
 }
@@ -1,5 +1,7 @@
 package com.worker.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
@@ -8,6 +10,8 @@ import org.springframework.stereotype.Component;
 @Component
 public class WorkerStartupCoordinator {
 
+    private static final Logger logger = LoggerFactory.getLogger(WorkerStartupCoordinator.class);
+
     @Autowired
     private WorkerRegistrar registrar;
 
@@ -16,7 +20,7 @@ public class WorkerStartupCoordinator {
 
     @EventListener(ApplicationReadyEvent.class)
     public void onReady() {
-        System.out.println("[WORKER] ApplicationReadyEvent received: worker is fully started");
+        logger.info("ApplicationReadyEvent received: worker is fully started");
 
         // 1) Register with controller (must succeed or throw)
         registrar.registerAfterReady();
@@ -24,6 +28,6 @@ public class WorkerStartupCoordinator {
         // 3) Enable Kafka heartbeats now worker is registered
         kafkaHeartbeatGate.enableKafkaHeartbeats();
 
-        System.out.println("[WORKER] Startup sequence complete");
+        logger.info("Startup sequence complete");
     }
 }